@@ -0,0 +1,106 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.AutoScheduler;
+import appointmentManager.BusinessCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// An intake campaign: a few hundred requests for one working week, each with a two to four hour window and three
+// allowed consultants, placed around 200k existing appointments. greedy is the first pass alone; the quality local
+// search adds within its budget is printed at setup, since its running time is the budget by construction.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutoSchedulerBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final LocalDate WEEK = LocalDate.of(2020, 3, 2);
+    private static final int[] LENGTHS = {30, 45, 60};
+
+    @Param({"200"})
+    public int users;
+
+    @Param({"200000"})
+    public long appointments;
+
+    @Param({"500", "1500"})
+    public int requests;
+
+    private Connection conn;
+    private List<AutoScheduler.Request> batch;
+    private Map<Integer, List<Appointment>> busy;
+    private AutoScheduler greedy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = EmbeddedDatabase.create("scheduler-benchmark");
+        new SyntheticData(42, users, 5_000, 100, appointments, 400, 1_000, FIRST_DAY).populate(conn);
+        ZoneId zone = ZoneId.systemDefault();
+
+        SplittableRandom random = new SplittableRandom(7);
+        batch = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            ZonedDateTime windowStart = WEEK.plusDays(random.nextInt(5)).atTime(LocalTime.of(9, 0)).plusMinutes(30L * random.nextInt(12)).atZone(zone);
+            Set<Integer> consultants = new LinkedHashSet<>();
+            while (consultants.size() < 3) {
+                consultants.add(1 + random.nextInt(users));
+            }
+            batch.add(new AutoScheduler.Request("Customer " + (1 + random.nextInt(5_000)), "Intake", "Consultation",
+                    Duration.ofMinutes(LENGTHS[random.nextInt(LENGTHS.length)]), windowStart, windowStart.plusHours(2 + random.nextInt(3)), consultants));
+        }
+
+        BusinessCalendar calendar = BusinessCalendar.daily(LocalTime.of(9, 0), LocalTime.of(18, 0), zone);
+        greedy = new AutoScheduler(userId -> calendar, Duration.ofMinutes(15), Duration.ZERO, 1);
+        AutoScheduler search = new AutoScheduler(userId -> calendar, Duration.ofMinutes(15), Duration.ofMillis(500), 1);
+        busy = greedy.busyFor(new MySQL(conn), batch);
+        report("Greedy", greedy.solve(batch, busy));
+        AutoScheduler.Schedule searched = search.solve(batch, busy);
+        report("Greedy and local search", searched);
+        long placeableAlone = searched.getUnplaced().stream().filter(request -> !greedy.solve(List.of(request), busy).getAssignments().isEmpty()).count();
+        System.out.println("Unplaced requests that would fit without the rest of the batch: " + placeableAlone);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public Object greedy() {
+        return greedy.solve(batch, busy);
+    }
+
+    private void report(String label, AutoScheduler.Schedule schedule) {
+        System.out.printf("%s: %d of %d placed, load deviation %d minutes, %d moves (%d improving) in %d ms%n", label,
+                schedule.getAssignments().size(), batch.size(), schedule.getLoadDeviation(), schedule.getMoves(),
+                schedule.getImprovements(), schedule.getElapsed().toMillis());
+    }
+}
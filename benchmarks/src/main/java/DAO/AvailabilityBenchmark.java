@@ -0,0 +1,89 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.AvailabilityFinder;
+import appointmentManager.BusinessCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// The free slot search the Find Free Time form runs: a 45 minute slot in one working week across every consultant.
+// find is the whole search, query included; sweep is the in-memory part alone, over busy lists fetched at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final LocalDate WEEK = LocalDate.of(2020, 3, 2);
+    private static final Duration LENGTH = Duration.ofMinutes(45);
+
+    @Param({"200"})
+    public int users;
+
+    @Param({"200000"})
+    public long appointments;
+
+    private Connection conn;
+    private MySQL mySQL;
+    private AvailabilityFinder finder;
+    private List<Integer> userIds;
+    private Map<Integer, List<Appointment>> busy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = EmbeddedDatabase.create("availability-benchmark");
+        new SyntheticData(42, users, 5_000, 100, appointments, 400, 1_000, FIRST_DAY).populate(conn);
+        mySQL = new MySQL(conn);
+        BusinessCalendar calendar = BusinessCalendar.daily(LocalTime.of(9, 0), LocalTime.of(18, 0), ZoneId.systemDefault());
+        finder = new AvailabilityFinder(userId -> calendar);
+        userIds = IntStream.rangeClosed(1, users).boxed().collect(Collectors.toList());
+        busy = mySQL.getAppointmentsForUsers(WEEK, WEEK.plusDays(4), userIds).stream()
+                .collect(Collectors.groupingBy(Appointment::getUserId, HashMap::new, Collectors.toList()));
+
+        System.out.println("Busy intervals in the week: " + busy.values().stream().mapToInt(List::size).sum()
+                + ", free slots: " + finder.find(mySQL, userIds, WEEK, WEEK.plusDays(4), LENGTH, null).size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public Object find() {
+        return finder.find(mySQL, userIds, WEEK, WEEK.plusDays(4), LENGTH, null);
+    }
+
+    @Benchmark
+    public Object sweep() {
+        return userIds.parallelStream()
+                .map(userId -> finder.sweep(userId, new ArrayList<>(busy.getOrDefault(userId, List.of())), WEEK, WEEK.plusDays(4), LENGTH, null))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,203 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Many clients, each on its own connection, racing to book the same handful of overlapping slots for a few
+// consultants, first with the old check-then-insert pair and then with bookAppointment. Afterwards every pair of one
+// consultant's appointments that overlap is a double-booking. bookAppointment must leave none, however many clients
+// race, and exits non-zero if it does; check-then-insert is run alongside to show the race is really there. Two more
+// runs race the other ways in: EDIT books and, every other attempt, moves one of the day's appointments to another
+// slot and consultant with updateAppointment, and UNIT books through a unit of work, every other attempt two
+// overlapping appointments for one consultant in the same unit, which must always be refused. Neither may double-book
+// either.
+//
+// Each run gets a fresh embedded H2 database: gradle :benchmarks:bookingContention --args="--clients=32 --consultants=4"
+// Run it with --consultants=1 and a larger number to compare the serialized and the parallel case.
+public class BookingContention {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+
+    private enum Mode {
+        CHECK_THEN_INSERT,
+        BOOK,
+        EDIT,
+        UNIT
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = new CommandLine(args);
+        int clients = commandLine.getInt("clients", 32);
+        int consultants = commandLine.getInt("consultants", 4);
+        int slots = commandLine.getInt("slots", 16);
+        int attempts = commandLine.getInt("attempts", 200);
+        long seed = commandLine.getLong("seed", 42);
+
+        boolean failed = false;
+        for (Mode mode : Mode.values()) {
+            long doubleBooked = run(mode, clients, consultants, slots, attempts, seed);
+            if (mode != Mode.CHECK_THEN_INSERT && doubleBooked > 0) {
+                System.out.println("FAILED: " + mode + " double-booked " + doubleBooked + " times.");
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    // Returns the number of double-bookings left behind.
+    private static long run(Mode mode, int clients, int consultants, int slots, int attempts, long seed) throws Exception {
+        String name = "booking-contention-" + mode.name().toLowerCase();
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1";
+        Connection keepAlive = EmbeddedDatabase.create(name);
+        EmbeddedDatabase.seed(keepAlive, consultants, 1, 0, DAY, seed);
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger retried = new AtomicInteger();
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            SplittableRandom random = new SplittableRandom(seed + i);
+            Connection conn = DriverManager.getConnection(url);
+            try (Statement statement = conn.createStatement()) {
+                // Every client may queue behind all the others for the same consultant.
+                statement.execute("SET LOCK_TIMEOUT 60000");
+            }
+
+            new Thread(() -> {
+                MySQL mySQL = new MySQL(conn);
+                try {
+                    start.await();
+                    for (int attempt = 0; attempt < attempts; attempt++) {
+                        // Half hour slots starting every quarter hour, so most pairs of slots overlap.
+                        LocalDateTime slotStart = DAY.atTime(9, 0).plusMinutes(15L * random.nextInt(slots));
+                        int userId = 1 + random.nextInt(consultants);
+                        boolean done;
+                        try {
+                            done = mode == Mode.EDIT && attempt % 2 == 1
+                                    ? move(mySQL, random, consultants, userId, slotStart, slotStart.plusMinutes(30))
+                                    : book(mySQL, mode, userId, slotStart, slotStart.plusMinutes(30), attempt % 2 == 1);
+                        } catch (SQLException sqle) {
+                            // Under enough concurrent inserts, H2 now and then gives a new row an id already taken. The
+                            // insert fails and is rolled back, so nothing was booked, and the attempt is made again.
+                            if (!"23505".equals(sqle.getSQLState())) {
+                                throw sqle;
+                            }
+                            retried.incrementAndGet();
+                            attempt--;
+                            continue;
+                        }
+                        if (done) {
+                            booked.incrementAndGet();
+                        } else {
+                            refused.incrementAndGet();
+                        }
+                    }
+                } catch (SQLException sqle) {
+                    failure.compareAndSet(null, sqle);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    mySQL.close();
+                    finished.countDown();
+                }
+            }, "booking-client-" + i).start();
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        finished.await();
+        long elapsed = System.nanoTime() - started;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        long doubleBooked = countDoubleBookings(keepAlive);
+        keepAlive.close();
+        System.out.printf("%-17s %d clients, %d consultants: %d booked, %d refused, %d double-booked, %d retried for a duplicate id, %.0f attempts/s%n",
+                mode, clients, consultants, booked.get(), refused.get(), doubleBooked, retried.get(),
+                (booked.get() + refused.get()) / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)));
+        return doubleBooked;
+    }
+
+    // In UNIT mode with pair set, the unit also books the consultant a quarter hour later, overlapping the first.
+    private static boolean book(MySQL mySQL, Mode mode, int userId, LocalDateTime start, LocalDateTime end, boolean pair) throws SQLException {
+        if (mode == Mode.BOOK || mode == Mode.EDIT) {
+            return mySQL.bookAppointment("Customer 1", userId, "Contended", "Booked under contention", "Phoenix", "Contact",
+                    "Type", "https://example.com", start, end, null, "contention") == null;
+        }
+        if (mode == Mode.UNIT) {
+            Appointment appointment = new Appointment(0, "Customer 1", userId, "Contended", "Booked under contention", "Phoenix", "Contact",
+                    "Type", "https://example.com", start.atZone(ZoneId.systemDefault()), end.atZone(ZoneId.systemDefault()));
+            UnitOfWork work = new UnitOfWork("contention").insertAppointment(appointment);
+            if (pair) {
+                work.insertAppointment(new Appointment(0, "Customer 1", userId, "Contended", "Overlaps the first in its unit", "Phoenix", "Contact",
+                        "Type", "https://example.com", start.plusMinutes(15).atZone(ZoneId.systemDefault()), end.plusMinutes(15).atZone(ZoneId.systemDefault())));
+            }
+            try {
+                mySQL.commit(work);
+                return true;
+            } catch (OverlapException oe) {
+                return false;
+            }
+        }
+
+        if (mySQL.checkForOverlappingAppointment(start, end, userId) != null) {
+            return false;
+        }
+        mySQL.insertAppointment("Customer 1", userId, "Contended", "Booked under contention", "Phoenix", "Contact",
+                "Type", "https://example.com", start, end, "contention");
+        return true;
+    }
+
+    // Move one of a random consultant's appointments, if they have any, to the consultant and times given, after the
+    // same check the form makes. Refused when the slot was taken meanwhile or the appointment was moved under it.
+    private static boolean move(MySQL mySQL, SplittableRandom random, int consultants, int userId, LocalDateTime start, LocalDateTime end) throws SQLException {
+        List<Appointment> day = mySQL.getAppointmentsInRange(DAY, DAY, 1 + random.nextInt(consultants));
+        if (day.isEmpty()) {
+            return false;
+        }
+
+        Appointment appointment = day.get(random.nextInt(day.size()));
+        Appointment overlap = mySQL.checkForOverlappingAppointment(start, end, userId);
+        if (overlap != null && overlap.getId() != appointment.getId()) {
+            return false;
+        }
+        try {
+            mySQL.updateAppointment(appointment.getId(), appointment.getCustomerName(), userId, "Moved", appointment.getDescription(),
+                    appointment.getLocation(), appointment.getContact(), appointment.getType(), appointment.getUrl(), start, end,
+                    appointment.getVersion(), "contention");
+            return true;
+        } catch (OverlapException | UpdateConflictException e) {
+            return false;
+        }
+    }
+
+    // Pairs of one consultant's appointments that overlap.
+    private static long countDoubleBookings(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet result = statement.executeQuery(
+                     "SELECT COUNT(*) FROM appointment AS a, appointment AS b" +
+                             "   WHERE a.userId = b.userId AND a.appointmentId < b.appointmentId AND a.start < b.end AND b.start < a.end")) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
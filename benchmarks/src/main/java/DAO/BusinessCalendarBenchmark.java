@@ -0,0 +1,105 @@
+package DAO;
+
+import appointmentManager.BusinessCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// The save path's business hours check against a calendar with split weekday hours, a Saturday, holidays and
+// closures: the compiled slot bitmaps against evaluating the same rules with LocalTime comparisons on every check.
+// Bookings are spread over two years, so the bitmap cache holds every day after the first pass.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusinessCalendarBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int BOOKINGS = 4096;
+    private static final LocalTime[][] WEEKDAY = {{LocalTime.of(9, 0), LocalTime.of(12, 0)}, {LocalTime.of(13, 0), LocalTime.of(18, 0)}};
+    private static final LocalTime[][] SATURDAY = {{LocalTime.of(10, 0), LocalTime.of(14, 0)}};
+    private static final Set<LocalDate> HOLIDAYS = Set.of(LocalDate.of(2020, 12, 25), LocalDate.of(2021, 1, 1), LocalDate.of(2021, 7, 5));
+    private static final Map<LocalDate, LocalTime[]> CLOSURES = Map.of(
+            LocalDate.of(2020, 7, 3), new LocalTime[] {LocalTime.of(12, 0), LocalTime.of(18, 0)},
+            LocalDate.of(2020, 11, 25), new LocalTime[] {LocalTime.of(15, 0), LocalTime.of(18, 0)});
+
+    private BusinessCalendar calendar;
+    private ZonedDateTime[] starts;
+    private ZonedDateTime[] ends;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ZoneId zone = ZoneId.systemDefault();
+        calendar = BusinessCalendar.parse("MON-FRI 09:00-12:00,13:00-18:00; SAT 10:00-14:00",
+                "2020-12-25, 2021-01-01, 2021-07-05", "2020-07-03 12:00-18:00, 2020-11-25 15:00-18:00", zone);
+
+        SplittableRandom random = new SplittableRandom(42);
+        starts = new ZonedDateTime[BOOKINGS];
+        ends = new ZonedDateTime[BOOKINGS];
+        long open = 0;
+        for (int i = 0; i < BOOKINGS; i++) {
+            starts[i] = FIRST_DAY.plusDays(random.nextInt(730)).atTime(8, 0).plusMinutes(15L * random.nextInt(44)).atZone(zone);
+            ends[i] = starts[i].plusMinutes(15L * (1 + random.nextInt(8)));
+            if (calendar.isOpen(starts[i], ends[i])) {
+                open++;
+            }
+            if (calendar.isOpen(starts[i], ends[i]) != rules(starts[i], ends[i])) {
+                throw new IllegalStateException("Bitmap and rules disagree on " + starts[i] + " to " + ends[i]);
+            }
+        }
+        System.out.println(open + " of " + BOOKINGS + " bookings fall in business hours.");
+    }
+
+    @Benchmark
+    public boolean bitmap() {
+        int i = next++ & (BOOKINGS - 1);
+        return calendar.isOpen(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public boolean rules() {
+        int i = next++ & (BOOKINGS - 1);
+        return rules(starts[i], ends[i]);
+    }
+
+    // The same calendar as rules, for bookings within one day.
+    private static boolean rules(ZonedDateTime start, ZonedDateTime end) {
+        LocalDateTime from = start.toLocalDateTime();
+        LocalDateTime to = end.toLocalDateTime();
+        LocalDate day = from.toLocalDate();
+        if (!to.toLocalDate().equals(day) || HOLIDAYS.contains(day) || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            return false;
+        }
+
+        LocalTime[] closure = CLOSURES.get(day);
+        if (closure != null && from.toLocalTime().isBefore(closure[1]) && to.toLocalTime().isAfter(closure[0])) {
+            return false;
+        }
+        for (LocalTime[] hours : List.of(day.getDayOfWeek() == DayOfWeek.SATURDAY ? SATURDAY : WEEKDAY)) {
+            if (!from.toLocalTime().isBefore(hours[0]) && !to.toLocalTime().isAfter(hours[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package DAO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// The save path's overlap check for a proposed half hour in business hours: the interval query alone against the
+// same check through BusySlots, and the bitmap test on its own. The bitmaps are warmed over every probe at setup, so
+// this measures held days; how many probes they answer without falling back to the query is printed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusySlotsBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int PROBES = 4096;
+
+    @Param({"200"})
+    public int users;
+
+    @Param({"200000"})
+    public long appointments;
+
+    private Connection conn;
+    private MySQL mySQL;
+    private BusySlots slots;
+    private Repository cached;
+    private int[] userIds;
+    private LocalDateTime[] starts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = EmbeddedDatabase.create("busy-slots-benchmark");
+        new SyntheticData(42, users, 5_000, 100, appointments, 400, 1_000, FIRST_DAY).populate(conn);
+        mySQL = new MySQL(conn);
+        slots = new BusySlots(mySQL, Duration.ofHours(1), 100_000);
+        cached = BusySlots.instrument(mySQL, Duration.ofHours(1), 100_000);
+
+        SplittableRandom random = new SplittableRandom(42);
+        userIds = new int[PROBES];
+        starts = new LocalDateTime[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            userIds[i] = 1 + random.nextInt(users);
+            starts[i] = FIRST_DAY.plusDays(random.nextInt(180)).atTime(9, 0).plusMinutes(15L * random.nextInt(34));
+        }
+
+        long clear = 0;
+        for (int i = 0; i < PROBES; i++) {
+            ZoneId zone = ZoneId.systemDefault();
+            if (!slots.mayOverlap(userIds[i], starts[i].atZone(zone).toInstant(), starts[i].plusMinutes(30).atZone(zone).toInstant())) {
+                clear++;
+            }
+            cached.checkForOverlappingAppointment(starts[i], starts[i].plusMinutes(30), userIds[i]);
+        }
+        System.out.printf("%d of %d probes answered by the bitmaps alone.%n", clear, PROBES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public Object intervalQuery() {
+        int i = next++ & (PROBES - 1);
+        return mySQL.checkForOverlappingAppointment(starts[i], starts[i].plusMinutes(30), userIds[i]);
+    }
+
+    @Benchmark
+    public Object busySlots() {
+        int i = next++ & (PROBES - 1);
+        return cached.checkForOverlappingAppointment(starts[i], starts[i].plusMinutes(30), userIds[i]);
+    }
+
+    @Benchmark
+    public boolean bitmapsOnly() throws SQLException {
+        int i = next++ & (PROBES - 1);
+        ZoneId zone = ZoneId.systemDefault();
+        return slots.mayOverlap(userIds[i], starts[i].atZone(zone).toInstant(), starts[i].plusMinutes(30).atZone(zone).toInstant());
+    }
+}
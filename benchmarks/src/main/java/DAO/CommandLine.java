@@ -0,0 +1,34 @@
+package DAO;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Parses --key=value arguments for the command line tools in this module.
+public class CommandLine {
+    private final Map<String, String> options = new HashMap<>();
+
+    public CommandLine(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+    }
+
+    public String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return options.containsKey(key) ? Integer.parseInt(options.get(key)) : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return options.containsKey(key) ? Long.parseLong(options.get(key)) : defaultValue;
+    }
+
+    public boolean has(String key) {
+        return options.containsKey(key);
+    }
+}
@@ -0,0 +1,99 @@
+package DAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+// Builds throwaway in-process H2 databases, in MySQL compatibility mode, holding the C195 schema and a small
+// deterministic data set. Nothing here touches the network.
+public class EmbeddedDatabase {
+    private EmbeddedDatabase() {}
+
+    // Open a new, empty in-memory database with the C195 schema installed and migrated to the current version.
+    public static Connection create(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1"
+        );
+
+        try (Statement statement = conn.createStatement()) {
+            for (String ddl : readSchema().split(";")) {
+                if (!ddl.isBlank()) {
+                    statement.execute(ddl);
+                }
+            }
+        }
+        Migrations.migrate(conn);
+
+        return conn;
+    }
+
+    // Insert one country/city, the requested number of users and customers, and appointmentsPerUser appointments
+    // per user spread over the days following firstDay, inside 09:00-18:00 UTC. The same seed always produces the
+    // same rows.
+    public static void seed(Connection conn, int users, int customers, int appointmentsPerUser, LocalDate firstDay, long seed) throws SQLException {
+        Random random = new Random(seed);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.of(2020, 1, 1, 0, 0));
+
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO country (country, createDate, createdBy, lastUpdateBy) VALUES ('US', '2020-01-01', 'seed', 'seed')");
+            statement.execute("INSERT INTO city (city, countryId, createDate, createdBy, lastUpdateBy) VALUES ('Phoenix', 1, '2020-01-01', 'seed', 'seed')");
+            statement.execute("INSERT INTO address (address, address2, cityId, postalCode, phone, createDate, createdBy, lastUpdateBy) VALUES ('1 Main St', 'Suite 1', 1, '85001', '(555) 555-5555', '2020-01-01', 'seed', 'seed')");
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO user (userName, password) VALUES (?, ?)")) {
+            for (int i = 1; i <= users; i++) {
+                ps.setString(1, "user" + i);
+                ps.setString(2, "password" + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO customer (customerName, addressId, active, createDate, createdBy, lastUpdateBy) VALUES (?, 1, 1, ?, 'seed', 'seed')")) {
+            for (int i = 1; i <= customers; i++) {
+                ps.setString(1, "Customer " + i);
+                ps.setTimestamp(2, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO appointment (customerId, userId, title, description, location, contact, type, url, start, end, createDate, createdBy, lastUpdateBy)" +
+                        "    VALUES (?, ?, ?, 'Seeded appointment', 'Phoenix', ?, ?, 'https://example.com', ?, ?, ?, 'seed', 'seed')"
+        )) {
+            for (int user = 1; user <= users; user++) {
+                for (int i = 0; i < appointmentsPerUser; i++) {
+                    LocalDateTime start = firstDay.plusDays(random.nextInt(60)).atTime(9 + random.nextInt(8), 15 * random.nextInt(4));
+                    ps.setInt(1, 1 + random.nextInt(customers));
+                    ps.setInt(2, user);
+                    ps.setString(3, "Appointment " + i);
+                    ps.setString(4, "Contact " + random.nextInt(50));
+                    ps.setString(5, "Type " + random.nextInt(5));
+                    ps.setTimestamp(6, Timestamp.valueOf(start));
+                    ps.setTimestamp(7, Timestamp.valueOf(start.plusMinutes(15 + 15 * random.nextInt(4))));
+                    ps.setTimestamp(8, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private static String readSchema() {
+        try (InputStream in = EmbeddedDatabase.class.getResourceAsStream("/c195-schema.sql")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll("(?m)^--.*$", "");
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to read the embedded schema.", ioe);
+        }
+    }
+}
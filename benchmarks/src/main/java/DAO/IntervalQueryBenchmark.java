@@ -0,0 +1,114 @@
+package DAO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// The week view's range query over a large table: the old BETWEEN ... OR BETWEEN form, which no index can serve,
+// against the half-open interval query getAppointmentsInRange runs now. The plans of both are printed at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntervalQueryBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final String LEGACY_QUERY =
+            "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                    "   FROM appointment AS a, customer AS c" +
+                    "   WHERE a.customerId = c.customerId AND ((a.start BETWEEN ? AND ?) OR (a.end BETWEEN ? AND ?)) AND a.userId = ?";
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"200"})
+    public int users;
+
+    private Connection conn;
+    private MySQL mySQL;
+    private PreparedStatement legacyQuery;
+    private int nextWeek;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = EmbeddedDatabase.create("interval-benchmark");
+        new SyntheticData(42, users, 5_000, 100, rows, 400, 1_000, FIRST_DAY).populate(conn);
+        mySQL = new MySQL(conn);
+        legacyQuery = conn.prepareStatement(LEGACY_QUERY);
+
+        explain(LEGACY_QUERY.replaceFirst("\\?", "'2020-03-02'").replaceFirst("\\?", "'2020-03-08'")
+                .replaceFirst("\\?", "'2020-03-02'").replaceFirst("\\?", "'2020-03-08'").replaceFirst("\\?", "1"));
+        explain("SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                "   FROM appointment AS a, customer AS c" +
+                "   WHERE a.customerId = c.customerId AND a.userId = 1 AND a.start < '2020-03-09 00:00:00'" +
+                "   AND a.end > '2020-03-02 00:00:00' AND a.start >= '2020-03-01 22:30:00'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        legacyQuery.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public void legacyBetween(Blackhole blackhole) throws SQLException {
+        LocalDate start = nextWeek();
+        legacyQuery.setString(1, start.toString());
+        legacyQuery.setString(2, start.plusDays(6).toString());
+        legacyQuery.setString(3, start.toString());
+        legacyQuery.setString(4, start.plusDays(6).toString());
+        legacyQuery.setInt(5, nextUser());
+
+        try (ResultSet rs = legacyQuery.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(mySQL.resultSetToAppointment(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object halfOpenInterval() {
+        LocalDate start = nextWeek();
+        return mySQL.getAppointmentsInRange(start, start.plusDays(6), nextUser());
+    }
+
+    // Mondays through the first year of data.
+    private LocalDate nextWeek() {
+        nextWeek = (nextWeek + 1) % 52;
+        return FIRST_DAY.plusWeeks(nextWeek);
+    }
+
+    private int nextUser() {
+        nextUser = nextUser % users + 1;
+        return nextUser;
+    }
+
+    private void explain(String sql) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                System.out.println(rs.getString(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package DAO;
+
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Two clients on one database, each caching busy slots for an hour. Client B checks a slot, which loads the day into
+// its cache, then client A books that slot and B checks again. Without a bus B still sees the slot free; with an
+// InvalidationBroker on loopback A's booking drops B's day and B sees the clash. Prints how often B was wrong each
+// way and how long it took from A starting the write to the event reaching B, and exits non-zero if B was ever wrong
+// with the bus.
+//
+// Runs against a fresh embedded H2 database: gradle :benchmarks:invalidationCheck --args="--rounds=500"
+public class InvalidationCheck {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 7);
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = new CommandLine(args);
+        int rounds = commandLine.getInt("rounds", 500);
+
+        run("without bus", rounds, false);
+        if (run("with bus", rounds, true) > 0) {
+            System.out.println("FAILED: B answered from a stale cache with the bus connected.");
+            System.exit(1);
+        }
+    }
+
+    // Returns how many of B's second checks missed A's booking.
+    private static int run(String label, int rounds, boolean withBus) throws Exception {
+        String name = "invalidation-check-" + (withBus ? "bus" : "ttl");
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1";
+        Connection keepAlive = EmbeddedDatabase.create(name);
+        EmbeddedDatabase.seed(keepAlive, 1, 1, 0, FIRST_DAY, 42);
+
+        InvalidationBroker broker = withBus ? new InvalidationBroker(InetAddress.getLoopbackAddress(), 0) : null;
+        InvalidationBus busA = withBus ? new InvalidationBus("localhost", broker.getPort()) : null;
+        InvalidationBus busB = withBus ? new InvalidationBus("localhost", broker.getPort()) : null;
+
+        MySQL clientA = new MySQL(DriverManager.getConnection(url));
+        MySQL backendB = new MySQL(DriverManager.getConnection(url));
+        clientA.publishTo(busA);
+        Repository clientB = BusySlots.instrument(backendB, MAX_AGE, 1000, busB);
+
+        BlockingQueue<Long> received = new ArrayBlockingQueue<>(rounds);
+        if (withBus) {
+            busB.subscribe(event -> {
+                if (event.getEntity() == ChangeEvent.Entity.APPOINTMENT) {
+                    received.offer(System.nanoTime());
+                }
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (broker.getClientCount() < 2 || !busA.isConnected() || !busB.isConnected()) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("The buses didn't connect to the broker.");
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        int stale = 0;
+        long[] latencies = new long[withBus ? rounds : 0];
+        for (int round = 0; round < rounds; round++) {
+            LocalDateTime start = FIRST_DAY.plusDays(round).atTime(10, 0);
+            LocalDateTime end = start.plusMinutes(30);
+            if (clientB.checkForOverlappingAppointment(start, end, 1) != null) {
+                throw new IllegalStateException("Round " + round + " started with the slot already booked.");
+            }
+
+            long writing = System.nanoTime();
+            clientA.insertAppointment("Customer 1", 1, "Invalidation", "Booked by the other client", "Phoenix", "Contact",
+                    "Type", "https://example.com", start, end, "invalidation");
+            if (withBus) {
+                Long at = received.poll(5, TimeUnit.SECONDS);
+                if (at == null) {
+                    throw new IllegalStateException("Round " + round + ": no event reached client B.");
+                }
+                latencies[round] = at - writing;
+            }
+
+            if (clientB.checkForOverlappingAppointment(start, end, 1) == null) {
+                stale++;
+            }
+        }
+
+        if (withBus) {
+            Arrays.sort(latencies);
+            System.out.printf("%-12s %d rounds: %d stale answers, write to event p50 %.0f us, p99 %.0f us%n", label, rounds, stale,
+                    latencies[rounds / 2] / 1000.0, latencies[Math.min(rounds - 1, rounds * 99 / 100)] / 1000.0);
+            busA.close();
+            busB.close();
+            broker.close();
+        } else {
+            System.out.printf("%-12s %d rounds: %d stale answers%n", label, rounds, stale);
+        }
+
+        clientA.close();
+        backendB.close();
+        keepAlive.close();
+        return stale;
+    }
+}
@@ -0,0 +1,239 @@
+package DAO;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Replays the application's real query mix against a database with concurrent virtual users, each on its own
+// connection through the DAO, and reports throughput and p50/p99 latency per operation.
+//
+// Without --url it builds an embedded H2 database and fills it with SyntheticData first, so the driver can be run
+// anywhere: gradle :benchmarks:loadTest --args="--virtualUsers=16 --seconds=60 --appointments=200000"
+//
+// With --api=true the virtual users go through an ApiServer on loopback instead, sharing --pool connections (4) and
+// the server's cache, and the server's pool and cache counters are reported after the run.
+public class LoadDriver {
+    // Weighted roughly as the main window is used: mostly paging and saving, with the occasional report.
+    private enum Operation {
+        GET_APPOINTMENTS_IN_RANGE(50),
+        CHECK_FOR_OVERLAPPING_APPOINTMENT(20),
+        GET_APPOINTMENTS_BY_TYPE(10),
+        GET_CONSULTANT_REPORT(10),
+        GET_CONTACT_REPORT(10);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = new CommandLine(args);
+        int virtualUsers = commandLine.getInt("virtualUsers", 8);
+        long seconds = commandLine.getLong("seconds", 30);
+        long seed = commandLine.getLong("seed", 42);
+        String url;
+        String user = commandLine.get("user", "");
+        String password = commandLine.get("password", "");
+
+        Connection keepAlive = null;
+        if (commandLine.has("url")) {
+            url = commandLine.get("url", null);
+        } else {
+            // The in-memory database lives as long as one connection to it stays open.
+            url = "jdbc:h2:mem:load-driver;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1";
+            keepAlive = EmbeddedDatabase.create("load-driver");
+            SyntheticData.fromCommandLine(commandLine).populate(keepAlive);
+        }
+
+        Workload workload = Workload.discover(DriverManager.getConnection(url, user, password));
+        ApiServer server = null;
+        if (Boolean.parseBoolean(commandLine.get("api", "false"))) {
+            List<Repository> members = new ArrayList<>();
+            for (int i = commandLine.getInt("pool", 4); i > 0; i--) {
+                members.add(new MySQL(DriverManager.getConnection(url, user, password)));
+            }
+            Properties properties = new Properties();
+            properties.setProperty("metrics", "false");
+            server = new ApiServer(members, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), properties, null);
+        }
+        URI api = server == null ? null : URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+        Recorder[] recorders = new Recorder[virtualUsers];
+        CountDownLatch finished = new CountDownLatch(virtualUsers);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int i = 0; i < virtualUsers; i++) {
+            Recorder recorder = new Recorder();
+            recorders[i] = recorder;
+            SplittableRandom random = new SplittableRandom(seed + i);
+            Repository repository = api != null ? new HttpRepository(api) : new MySQL(DriverManager.getConnection(url, user, password));
+
+            Thread virtualUser = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        Operation operation = workload.pick(random);
+                        long started = System.nanoTime();
+                        workload.run(repository, operation, random);
+                        recorder.record(operation, System.nanoTime() - started);
+                    }
+                } catch (SQLException sqle) {
+                    sqle.printStackTrace();
+                } finally {
+                    repository.close();
+                    finished.countDown();
+                }
+            }, "virtual-user-" + i);
+            virtualUser.start();
+        }
+
+        finished.await();
+        report(recorders, seconds, virtualUsers);
+        if (server != null) {
+            ServerCache cache = server.getCache();
+            System.out.printf("server cache: %d hits, %d misses, %d entries%n", cache.getHits(), cache.getMisses(), cache.size());
+            server.close();
+        }
+
+        if (keepAlive != null) {
+            keepAlive.close();
+        }
+    }
+
+    private static void report(Recorder[] recorders, long seconds, int virtualUsers) {
+        System.out.printf("%d virtual users for %d s%n", virtualUsers, seconds);
+        System.out.printf("%-36s %10s %10s %10s %10s %10s%n", "operation", "calls", "ops/s", "p50 ms", "p99 ms", "max ms");
+
+        for (Operation operation : Operation.values()) {
+            long[] merged = Arrays.stream(recorders).flatMapToLong(recorder -> Arrays.stream(recorder.samples(operation))).sorted().toArray();
+            if (merged.length == 0) {
+                continue;
+            }
+
+            System.out.printf("%-36s %10d %10.1f %10.2f %10.2f %10.2f%n",
+                    operation.name(),
+                    merged.length,
+                    merged.length / (double) seconds,
+                    percentile(merged, 0.50) / 1e6,
+                    percentile(merged, 0.99) / 1e6,
+                    merged[merged.length - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    // What the virtual users query for, read from the database under test so ids and names are always valid.
+    private static class Workload {
+        private final int maxUserId;
+        private final List<String> usernames;
+        private final List<String> contacts;
+        private final LocalDate firstDay;
+        private final int daySpan;
+        private final int totalWeight = Arrays.stream(Operation.values()).mapToInt(operation -> operation.weight).sum();
+
+        private Workload(int maxUserId, List<String> usernames, List<String> contacts, LocalDate firstDay, int daySpan) {
+            this.maxUserId = maxUserId;
+            this.usernames = usernames;
+            this.contacts = contacts;
+            this.firstDay = firstDay;
+            this.daySpan = daySpan;
+        }
+
+        private static Workload discover(Connection conn) throws SQLException {
+            try (conn; Statement statement = conn.createStatement()) {
+                List<String> usernames = new ArrayList<>();
+                List<String> contacts = new ArrayList<>();
+                int maxUserId;
+                LocalDate firstDay;
+                LocalDate lastDay;
+
+                try (ResultSet rs = statement.executeQuery("SELECT userName FROM user")) {
+                    while (rs.next()) {
+                        usernames.add(rs.getString(1));
+                    }
+                }
+                try (ResultSet rs = statement.executeQuery("SELECT DISTINCT contact FROM appointment LIMIT 1000")) {
+                    while (rs.next()) {
+                        contacts.add(rs.getString(1));
+                    }
+                }
+                try (ResultSet rs = statement.executeQuery("SELECT MAX(userId), MIN(start), MAX(start) FROM appointment")) {
+                    rs.next();
+                    maxUserId = rs.getInt(1);
+                    firstDay = rs.getTimestamp(2).toLocalDateTime().toLocalDate();
+                    lastDay = rs.getTimestamp(3).toLocalDateTime().toLocalDate();
+                }
+
+                return new Workload(maxUserId, usernames, contacts, firstDay, (int) Math.max(1, lastDay.toEpochDay() - firstDay.toEpochDay()));
+            }
+        }
+
+        private Operation pick(SplittableRandom random) {
+            int ticket = random.nextInt(totalWeight);
+            for (Operation operation : Operation.values()) {
+                ticket -= operation.weight;
+                if (ticket < 0) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        private void run(Repository repository, Operation operation, SplittableRandom random) throws SQLException {
+            int userId = 1 + random.nextInt(maxUserId);
+            LocalDate day = firstDay.plusDays(random.nextInt(daySpan));
+
+            switch (operation) {
+                case GET_APPOINTMENTS_IN_RANGE:
+                    LocalDate monthStart = day.withDayOfMonth(1);
+                    repository.getAppointmentsInRange(monthStart, monthStart.withDayOfMonth(monthStart.lengthOfMonth()), userId);
+                    break;
+                case CHECK_FOR_OVERLAPPING_APPOINTMENT:
+                    repository.checkForOverlappingAppointment(day.atTime(10, 0), day.atTime(10, 45), userId);
+                    break;
+                case GET_APPOINTMENTS_BY_TYPE:
+                    repository.getAppointmentsByType();
+                    break;
+                case GET_CONSULTANT_REPORT:
+                    repository.getConsultantReport(usernames.get(random.nextInt(usernames.size())));
+                    break;
+                case GET_CONTACT_REPORT:
+                    repository.getContactReport(contacts.get(random.nextInt(contacts.size())));
+                    break;
+            }
+        }
+    }
+
+    // Per virtual user latency samples, so recording never contends across threads.
+    private static class Recorder {
+        private final long[][] samples = new long[Operation.values().length][1024];
+        private final int[] counts = new int[Operation.values().length];
+
+        private void record(Operation operation, long nanos) {
+            int index = operation.ordinal();
+            if (counts[index] == samples[index].length) {
+                samples[index] = Arrays.copyOf(samples[index], counts[index] * 2);
+            }
+            samples[index][counts[index]++] = nanos;
+        }
+
+        private long[] samples(Operation operation) {
+            return Arrays.copyOf(samples[operation.ordinal()], counts[operation.ordinal()]);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package DAO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+// The DAO hot paths, run against an embedded H2 database seeded with a consultant-heavy data set.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MySQLBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 5, 1);
+
+    @Param({"20"})
+    public int users;
+
+    @Param({"1000"})
+    public int appointmentsPerUser;
+
+    private Connection conn;
+    private MySQL mySQL;
+    private Repository instrumented;
+    private PreparedStatement mappingQuery;
+    private int nextUser;
+    private int nextCustomer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = EmbeddedDatabase.create("mysql-benchmark");
+        EmbeddedDatabase.seed(conn, users, 200, appointmentsPerUser, FIRST_DAY, 42);
+        mySQL = new MySQL(conn);
+        instrumented = QueryMetrics.instrument(mySQL);
+        mappingQuery = conn.prepareStatement(
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                        "   FROM appointment AS a, customer AS c" +
+                        "   WHERE a.customerId = c.customerId AND a.userId = 1 LIMIT 500"
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mappingQuery.close();
+        conn.close();
+    }
+
+    // Baseline for resultSetToAppointment: the same 500 rows, read but not mapped.
+    @Benchmark
+    public void readRowsWithoutMapping(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = mappingQuery.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getInt("appointmentId"));
+            }
+        }
+    }
+
+    @Benchmark
+    public void resultSetToAppointment(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = mappingQuery.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(mySQL.resultSetToAppointment(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object convertTimeZone() {
+        return mySQL.convertTimeZone(LocalDateTime.of(2020, 5, 12, 10, 30), ZoneOffset.UTC, ZoneId.of("America/Phoenix"));
+    }
+
+    @Benchmark
+    public Object checkForOverlappingAppointment() {
+        LocalDateTime start = FIRST_DAY.plusDays(nextUser % 60).atTime(10, 0);
+        return mySQL.checkForOverlappingAppointment(start, start.plusMinutes(45), nextUser());
+    }
+
+    @Benchmark
+    public Object getAppointmentsInRange() {
+        return mySQL.getAppointmentsInRange(FIRST_DAY, FIRST_DAY.withDayOfMonth(FIRST_DAY.lengthOfMonth()), nextUser());
+    }
+
+    // The same query through the QueryMetrics proxy Repositories.open() hands the application, to keep its overhead
+    // visible next to the bare call.
+    @Benchmark
+    public Object getAppointmentsInRangeInstrumented() {
+        return instrumented.getAppointmentsInRange(FIRST_DAY, FIRST_DAY.withDayOfMonth(FIRST_DAY.lengthOfMonth()), nextUser());
+    }
+
+    // Just the histogram and counters, with no query underneath.
+    @Benchmark
+    public void recordLatency() {
+        QueryMetrics.stats("benchmark").getLatency().record(nextUser * 1_000L);
+    }
+
+    // The four-step lookup-or-insert chain the customer form runs for a new customer.
+    @Benchmark
+    public void customerUpsert() throws SQLException {
+        int countryId = mySQL.insertCountry("US", "benchmark");
+        int cityId = mySQL.insertCity("Phoenix", countryId, "benchmark");
+        int addressId = mySQL.insertAddress("1 Main St", "Suite 1", cityId, "85001", "(555) 555-5555", "benchmark");
+        mySQL.insertCustomer("Benchmark Customer " + nextCustomer++, addressId, "benchmark");
+    }
+
+    private int nextUser() {
+        nextUser = nextUser % users + 1;
+        return nextUser;
+    }
+}
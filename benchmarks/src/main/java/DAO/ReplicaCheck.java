@@ -0,0 +1,257 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// A session that books an appointment and straight away opens the contact report for it, then runs other reports
+// --thinkMillis apart, against a primary and a replica that follows it --lagMillis behind. Both are embedded H2
+// databases; the replica is refreshed by copying the appointment tables over, and counts as having applied everything
+// the primary had when the copy began. Run once with freshness tokens and once trusting the replica blindly, it
+// prints how many reports the replica served, how many fell back to the primary for lag, and how many missed the
+// session's own booking, and exits non-zero if any did with tokens. Then 20 rounds of the same session run against a
+// replica that was never reached, each failure printing its stack trace, and it exits non-zero unless every report
+// still came back from the primary.
+//
+// gradle :benchmarks:replicaCheck --args="--rounds=1000 --writeEvery=10 --lagMillis=50 --thinkMillis=10"
+public class ReplicaCheck {
+    private static final String URL = "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1";
+    private static final List<String> REPORTS = List.of("getAppointmentsByType", "getConsultantReport", "getUniqueContacts", "getContactReport");
+    private static final List<String> TABLES = List.of("appointment", "appointment_exception");
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = new CommandLine(args);
+        int rounds = commandLine.getInt("rounds", 1000);
+        int writeEvery = commandLine.getInt("writeEvery", 10);
+        long lagMillis = commandLine.getLong("lagMillis", 50);
+        long thinkMillis = commandLine.getLong("thinkMillis", 10);
+
+        run("blind", rounds, writeEvery, lagMillis, thinkMillis, false);
+        if (run("tokens", rounds, writeEvery, lagMillis, thinkMillis, true) > 0) {
+            System.out.println("FAILED: a session missed its own write with freshness tokens.");
+            System.exit(1);
+        }
+        if (runDown(20, writeEvery) > 0) {
+            System.out.println("FAILED: a report failed with the replica down instead of falling back to the primary.");
+            System.exit(1);
+        }
+    }
+
+    // Returns how many reports missed the session's own booking.
+    private static int run(String label, int rounds, int writeEvery, long lagMillis, long thinkMillis, boolean tokens) throws Exception {
+        LocalDate firstDay = LocalDate.now().withDayOfMonth(1);
+        Connection primaryKeepAlive = EmbeddedDatabase.create("replica-check-primary-" + label);
+        Connection replicaKeepAlive = EmbeddedDatabase.create("replica-check-replica-" + label);
+        EmbeddedDatabase.seed(primaryKeepAlive, 20, 50, 50, firstDay, 42);
+        EmbeddedDatabase.seed(replicaKeepAlive, 20, 50, 50, firstDay, 42);
+
+        Replicator replicator = new Replicator(DriverManager.getConnection(String.format(URL, "replica-check-primary-" + label)),
+                DriverManager.getConnection(String.format(URL, "replica-check-replica-" + label)), lagMillis);
+        replicator.start();
+
+        ReadReplica.Freshness freshness = new ReadReplica.Freshness() {
+            public String position() {
+                return String.valueOf(System.nanoTime());
+            }
+
+            public boolean applied(String position) {
+                return !tokens || replicator.appliedUpTo >= Long.parseLong(position);
+            }
+        };
+        Repository repository = ReadReplica.route(
+                new MySQL(DriverManager.getConnection(String.format(URL, "replica-check-primary-" + label))),
+                new MySQL(DriverManager.getConnection(String.format(URL, "replica-check-replica-" + label))),
+                freshness, new ReadReplica.Session());
+
+        long[] replicaBefore = calls("replica.");
+        long[] fallbackBefore = calls("fallback.");
+        Random random = new Random(42);
+        int missed = 0;
+        int reports = 0;
+        long started = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            if (round % writeEvery == 0) {
+                String contact = "Booked " + round;
+                LocalDateTime start = firstDay.plusDays(random.nextInt(28)).atTime(9 + random.nextInt(8), 0);
+                repository.insertAppointment("Customer 1", 1 + random.nextInt(20), "Round " + round, "Checked", "Phoenix", contact,
+                        "Type 0", "https://example.com", start, start.plusMinutes(30), "check");
+                List<Appointment> report = repository.getContactReport(contact);
+                reports++;
+                if (report.isEmpty()) {
+                    missed++;
+                }
+                continue;
+            }
+
+            Thread.sleep(thinkMillis);
+            reports++;
+            switch (random.nextInt(3)) {
+                case 0:
+                    repository.getAppointmentsByType();
+                    break;
+                case 1:
+                    repository.getConsultantReport("user" + (1 + random.nextInt(20)));
+                    break;
+                default:
+                    repository.getContactReport("Contact " + random.nextInt(50));
+                    break;
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long[] replicaAfter = calls("replica.");
+        long[] fallbackAfter = calls("fallback.");
+        long served = replicaAfter[0] - replicaBefore[0];
+        long fellBack = fallbackAfter[0] - fallbackBefore[0];
+        System.out.printf("%-8s %d reports in %.1f s: %d (%.0f%%) on the replica taking %.0f ms there, %d fell back for lag, %d missed the session's own booking%n",
+                label, reports, seconds, served, 100.0 * served / reports, (replicaAfter[1] - replicaBefore[1]) / 1e6, fellBack, missed);
+
+        replicator.interrupt();
+        replicator.join();
+        repository.close();
+        primaryKeepAlive.close();
+        replicaKeepAlive.close();
+        return missed;
+    }
+
+    // Against a replica whose server was down when it was opened, which MySQL leaves without a connection. Returns how
+    // many reports didn't come back as the primary answers them.
+    private static int runDown(int rounds, int writeEvery) throws Exception {
+        LocalDate firstDay = LocalDate.now().withDayOfMonth(1);
+        Connection keepAlive = EmbeddedDatabase.create("replica-check-primary-down");
+        EmbeddedDatabase.seed(keepAlive, 20, 50, 50, firstDay, 42);
+        MySQL primary = new MySQL(DriverManager.getConnection(String.format(URL, "replica-check-primary-down")));
+
+        ReadReplica.Freshness freshness = new ReadReplica.Freshness() {
+            public String position() {
+                return String.valueOf(System.nanoTime());
+            }
+
+            public boolean applied(String position) {
+                return true;
+            }
+        };
+        Repository repository = ReadReplica.route(primary, new MySQL((Connection) null), freshness, new ReadReplica.Session());
+
+        long errorsBefore = errors("replica.");
+        Random random = new Random(42);
+        int wrong = 0;
+        for (int round = 0; round < rounds; round++) {
+            String contact = "Contact " + random.nextInt(50);
+            if (round % writeEvery == 0) {
+                contact = "Booked " + round;
+                LocalDateTime start = firstDay.plusDays(random.nextInt(28)).atTime(9 + random.nextInt(8), 0);
+                repository.insertAppointment("Customer 1", 1 + random.nextInt(20), "Round " + round, "Checked", "Phoenix", contact,
+                        "Type 0", "https://example.com", start, start.plusMinutes(30), "check");
+            }
+            try {
+                if (repository.getContactReport(contact).size() != primary.getContactReport(contact).size()) {
+                    wrong++;
+                }
+            } catch (SQLException | RuntimeException e) {
+                wrong++;
+            }
+        }
+
+        System.out.printf("%-8s %d reports: %d fell back to the primary after the replica failed, %d didn't come back as the primary answers them%n",
+                "down", rounds, errors("replica.") - errorsBefore, wrong);
+
+        repository.close();
+        keepAlive.close();
+        return wrong;
+    }
+
+    // Errors recorded under the prefix given for the report methods.
+    private static long errors(String prefix) {
+        long errors = 0;
+        for (String report : REPORTS) {
+            errors += QueryMetrics.stats(prefix + report).getErrors();
+        }
+        return errors;
+    }
+
+    // Calls and total nanoseconds recorded under the prefix given for the report methods.
+    private static long[] calls(String prefix) {
+        long[] totals = new long[2];
+        for (String report : REPORTS) {
+            QueryMetrics.QueryStats stats = QueryMetrics.stats(prefix + report);
+            totals[0] += stats.getCalls();
+            totals[1] += (long) (stats.getMeanMillis() * 1e6 * stats.getCalls());
+        }
+        return totals;
+    }
+
+    // Copies the appointment tables from primary to replica every lagMillis, as a stand-in for replication.
+    private static class Replicator extends Thread {
+        private final Connection primary;
+        private final Connection replica;
+        private final long lagMillis;
+        private volatile long appliedUpTo = System.nanoTime();
+
+        private Replicator(Connection primary, Connection replica, long lagMillis) {
+            super("replicator");
+            this.primary = primary;
+            this.replica = replica;
+            this.lagMillis = lagMillis;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (primary; replica) {
+                replica.setAutoCommit(false);
+                while (!isInterrupted()) {
+                    Thread.sleep(lagMillis);
+                    long started = System.nanoTime();
+                    for (String table : TABLES) {
+                        copy(table);
+                    }
+                    replica.commit();
+                    appliedUpTo = started;
+                }
+            } catch (InterruptedException ie) {
+                // Asked to stop.
+            } catch (SQLException sqle) {
+                sqle.printStackTrace();
+            }
+        }
+
+        private void copy(String table) throws SQLException {
+            // Generated columns, such as appointment's startYearMonth, are computed again on the replica.
+            List<String> columns = new ArrayList<>();
+            try (PreparedStatement ps = replica.prepareStatement(
+                    "SELECT column_name FROM information_schema.columns WHERE table_name = ? AND is_generated = 'NEVER' ORDER BY ordinal_position")) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        columns.add(rs.getString(1));
+                    }
+                }
+            }
+
+            String list = String.join(", ", columns);
+            try (Statement read = primary.createStatement(); Statement clear = replica.createStatement();
+                 ResultSet rs = read.executeQuery("SELECT " + list + " FROM " + table);
+                 PreparedStatement ps = replica.prepareStatement(
+                         "INSERT INTO " + table + " (" + list + ") VALUES (" + "?, ".repeat(columns.size() - 1) + "?)")) {
+                clear.execute("DELETE FROM " + table);
+                while (rs.next()) {
+                    for (int i = 1; i <= columns.size(); i++) {
+                        ps.setObject(i, rs.getObject(i));
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+}
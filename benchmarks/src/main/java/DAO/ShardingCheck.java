@@ -0,0 +1,200 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+// Writes the same appointments to one embedded H2 database and to a ShardedRepository over --shards more, then asks
+// both the same questions: every consultant's month, the reports across consultants, and an appointment moved to a
+// consultant on another shard and deleted by the id the shards handed out. Prints how the consultants spread over the
+// shards and how long the scatter-gather reports take against the single database, and exits non-zero if any answer
+// differs.
+//
+// gradle :benchmarks:shardingCheck --args="--shards=4 --users=200 --appointments=20 --rounds=200"
+public class ShardingCheck {
+    private static final String URL = "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER,VALUE,END;DB_CLOSE_DELAY=-1";
+
+    private static int mismatches;
+
+    public static void main(String[] args) throws Exception {
+        CommandLine commandLine = new CommandLine(args);
+        int shardCount = commandLine.getInt("shards", 4);
+        int users = commandLine.getInt("users", 200);
+        int appointmentsPerUser = commandLine.getInt("appointments", 20);
+        int rounds = commandLine.getInt("rounds", 200);
+        LocalDate firstDay = LocalDate.now().withDayOfMonth(1);
+
+        List<Connection> keepAlive = new ArrayList<>();
+        Repository single = new MySQL(open("sharding-single", users, firstDay, keepAlive));
+        List<Repository> members = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            members.add(new MySQL(open("sharding-" + i, users, firstDay, keepAlive)));
+        }
+        ShardedRepository sharded = new ShardedRepository(members);
+
+        List<Appointment> appointments = generate(users, appointmentsPerUser, firstDay, commandLine.getLong("seed", 42));
+        single.insertAppointments(appointments, "check");
+        sharded.insertAppointments(appointments, "check");
+
+        int[] usersPerShard = new int[shardCount];
+        for (int user = 1; user <= users; user++) {
+            usersPerShard[sharded.shardFor(user)]++;
+        }
+        System.out.printf("%d users over %d shards: %s%n", users, shardCount, Arrays.toString(usersPerShard));
+
+        LocalDate lastDay = firstDay.plusMonths(1).minusDays(1);
+        List<Integer> userIds = new ArrayList<>();
+        for (int user = 1; user <= users; user++) {
+            userIds.add(user);
+            compare("getAppointmentsInRange user" + user, single.getAppointmentsInRange(firstDay, lastDay, user),
+                    sharded.getAppointmentsInRange(firstDay, lastDay, user));
+        }
+        compare("getAppointmentsForUsers", single.getAppointmentsForUsers(firstDay, lastDay, userIds),
+                sharded.getAppointmentsForUsers(firstDay, lastDay, userIds));
+        compare("getConsultantReport user1", single.getConsultantReport("user1"), sharded.getConsultantReport("user1"));
+        check("getAppointmentsByType", byType(single.getAppointmentsByType()).equals(byType(sharded.getAppointmentsByType())));
+        check("getUniqueContacts", new TreeSet<>(single.getUniqueContacts()).equals(new TreeSet<>(sharded.getUniqueContacts())));
+        for (String contact : single.getUniqueContacts()) {
+            compare("getContactReport " + contact, single.getContactReport(contact), sharded.getContactReport(contact));
+        }
+
+        moveAndDelete(single, sharded, users, firstDay, lastDay);
+
+        String contact = single.getUniqueContacts().get(0);
+        System.out.printf("%-24s %12s %12s%n", "mean ms", "single", "sharded");
+        System.out.printf("%-24s %12.3f %12.3f%n", "getContactReport",
+                time(rounds, () -> single.getContactReport(contact)), time(rounds, () -> sharded.getContactReport(contact)));
+        System.out.printf("%-24s %12.3f %12.3f%n", "getAppointmentsByType",
+                time(rounds, single::getAppointmentsByType), time(rounds, sharded::getAppointmentsByType));
+        System.out.printf("%-24s %12.3f %12.3f%n", "getAppointmentsInRange",
+                time(rounds, () -> single.getAppointmentsInRange(firstDay, lastDay, 1)), time(rounds, () -> sharded.getAppointmentsInRange(firstDay, lastDay, 1)));
+
+        single.close();
+        sharded.close();
+        for (Connection conn : keepAlive) {
+            conn.close();
+        }
+
+        if (mismatches > 0) {
+            System.out.println("FAILED: " + mismatches + " answers differed between the sharded and the single database.");
+            System.exit(1);
+        }
+        System.out.println("Sharded and single database agreed.");
+    }
+
+    // Give user1's first appointment to a consultant on another shard, check it moved in both, then delete it and
+    // check a stale version is reported against the id it now has.
+    private static void moveAndDelete(Repository single, ShardedRepository sharded, int users, LocalDate firstDay, LocalDate lastDay) throws SQLException {
+        int to = 2;
+        while (to < users && sharded.shardFor(to) == sharded.shardFor(1)) {
+            to++;
+        }
+        if (sharded.shardFor(to) == sharded.shardFor(1)) {
+            System.out.println("Every user is on one shard; skipping the move.");
+            return;
+        }
+
+        for (Repository repository : List.of(single, sharded)) {
+            Appointment appointment = repository.getAppointmentsInRange(firstDay, lastDay, 1).get(0);
+            repository.updateAppointment(appointment.getId(), appointment.getCustomerName(), to, "Moved", appointment.getDescription(),
+                    appointment.getLocation(), appointment.getContact(), appointment.getType(), appointment.getUrl(),
+                    appointment.getStart().toLocalDateTime(), appointment.getEnd().toLocalDateTime(), appointment.getVersion(), "check");
+        }
+        compare("moved from user1", single.getAppointmentsInRange(firstDay, lastDay, 1), sharded.getAppointmentsInRange(firstDay, lastDay, 1));
+        compare("moved to user" + to, single.getAppointmentsInRange(firstDay, lastDay, to), sharded.getAppointmentsInRange(firstDay, lastDay, to));
+
+        Appointment moved = sharded.getAppointmentsInRange(firstDay, lastDay, to).stream()
+                .filter(appointment -> appointment.getTitle().equals("Moved")).findFirst().orElseThrow();
+        check("moved appointment on its consultant's shard", ShardedRepository.shardOf(moved.getId()) == sharded.shardFor(to));
+        try {
+            sharded.updateAppointment(moved.getId(), moved.getCustomerName(), to, "Stale", moved.getDescription(), moved.getLocation(),
+                    moved.getContact(), moved.getType(), moved.getUrl(), moved.getStart().toLocalDateTime(), moved.getEnd().toLocalDateTime(),
+                    moved.getVersion() + 1, "check");
+            check("stale version refused", false);
+        } catch (UpdateConflictException uce) {
+            check("conflict names the global id", uce.getId() == moved.getId() && uce.getCurrentAppointment().getId() == moved.getId());
+        }
+
+        sharded.deleteAppointment(moved.getId());
+        check("deleted by global id", sharded.getAppointmentsInRange(firstDay, lastDay, to).stream().noneMatch(a -> a.getTitle().equals("Moved")));
+    }
+
+    private static Connection open(String name, int users, LocalDate firstDay, List<Connection> keepAlive) throws SQLException {
+        keepAlive.add(EmbeddedDatabase.create(name));
+        EmbeddedDatabase.seed(keepAlive.get(keepAlive.size() - 1), users, 50, 0, firstDay, 42);
+        return DriverManager.getConnection(String.format(URL, name));
+    }
+
+    private static List<Appointment> generate(int users, int perUser, LocalDate firstDay, long seed) {
+        Random random = new Random(seed);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int user = 1; user <= users; user++) {
+            for (int i = 0; i < perUser; i++) {
+                ZonedDateTime start = firstDay.plusDays(random.nextInt(firstDay.lengthOfMonth()))
+                        .atTime(9 + random.nextInt(8), 15 * random.nextInt(4)).atZone(ZoneId.systemDefault());
+                appointments.add(new Appointment(0, "Customer " + (1 + random.nextInt(50)), user, "Appointment " + i, "Generated",
+                        "Phoenix", "Contact " + random.nextInt(50), "Type " + random.nextInt(5), "https://example.com",
+                        start, start.plusMinutes(15 + 15 * random.nextInt(4))));
+            }
+        }
+        return appointments;
+    }
+
+    // The same appointments, whatever their ids and order.
+    private static void compare(String what, Collection<Appointment> expected, Collection<Appointment> actual) {
+        check(what, signatures(expected).equals(signatures(actual)));
+    }
+
+    private static List<String> signatures(Collection<Appointment> appointments) {
+        return appointments.stream()
+                .map(a -> a.getUserId() + "|" + a.getCustomerName() + "|" + a.getTitle() + "|" + a.getContact() + "|" + a.getType() + "|" + a.getStart().toInstant())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, String> byType(String report) {
+        Map<String, String> counts = new HashMap<>();
+        for (String line : report.split("\r\n")) {
+            int colon = line.lastIndexOf(":  ");
+            if (colon >= 0) {
+                counts.put(line.substring(0, colon), line.substring(colon + 3));
+            }
+        }
+        return counts;
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) {
+            mismatches++;
+            System.out.println("Mismatch: " + what);
+        }
+    }
+
+    private interface Query {
+        Object run() throws SQLException;
+    }
+
+    private static double time(int rounds, Query query) throws SQLException {
+        for (int i = 0; i < rounds / 10; i++) {
+            query.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - started) / 1e6 / rounds;
+    }
+}
@@ -0,0 +1,306 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.SplittableRandom;
+
+// Deterministic, seedable generator for the whole C195 schema. The same options always produce the same rows, so
+// load tests and query plans can be compared run to run.
+//
+// Skew is modelled on what a real consultancy looks like: consultant workload and customer popularity follow a Zipf
+// distribution, a few appointment types and contacts dominate, and no consultant is ever double booked. Start times
+// are not skewed: each consultant's day is filled from 9:00 with evenly drawn gaps. Everything is written with batched
+// inserts and periodic commits.
+//
+// Usage: gradle :benchmarks:generateData --args="--url=jdbc:mysql://host/db?rewriteBatchedStatements=true --user=u --password=p --appointments=2000000"
+public class SyntheticData {
+    private static final String[] TYPES = {"Consultation", "Follow-up", "Presentation", "Scrum", "Training", "Review", "Onboarding"};
+    private static final String[] COUNTRIES = {"US", "Canada", "United Kingdom", "Mexico", "Germany", "India", "Japan", "Brazil"};
+    private static final int[] DURATIONS = {15, 30, 30, 30, 45, 60, 60, 90};
+    private static final LocalTime DAY_START = LocalTime.of(9, 0);
+    private static final LocalTime DAY_END = LocalTime.of(18, 0);
+
+    private final long seed;
+    private final int users;
+    private final int customers;
+    private final int cities;
+    private final long appointments;
+    private final int contacts;
+    private final int batchSize;
+    private final LocalDate firstDay;
+
+    public SyntheticData(long seed, int users, int customers, int cities, long appointments, int contacts, int batchSize, LocalDate firstDay) {
+        this.seed = seed;
+        this.users = users;
+        this.customers = customers;
+        this.cities = cities;
+        this.appointments = appointments;
+        this.contacts = contacts;
+        this.batchSize = batchSize;
+        this.firstDay = firstDay;
+    }
+
+    public static SyntheticData fromCommandLine(CommandLine commandLine) {
+        return new SyntheticData(
+                commandLine.getLong("seed", 42),
+                commandLine.getInt("users", 200),
+                commandLine.getInt("customers", 50_000),
+                commandLine.getInt("cities", 500),
+                commandLine.getLong("appointments", 1_000_000),
+                commandLine.getInt("contacts", 400),
+                commandLine.getInt("batchSize", 1_000),
+                LocalDate.parse(commandLine.get("firstDay", "2020-01-01"))
+        );
+    }
+
+    public static void main(String[] args) throws SQLException {
+        CommandLine commandLine = new CommandLine(args);
+        SyntheticData generator = fromCommandLine(commandLine);
+
+        try (Connection conn = DriverManager.getConnection(
+                commandLine.get("url", "jdbc:mysql://localhost/U05iv3"),
+                commandLine.get("user", "root"),
+                commandLine.get("password", "")
+        )) {
+            generator.populate(conn);
+        }
+    }
+
+    // Fill an empty schema. Ids are written explicitly so every reference is reproducible.
+    public void populate(Connection conn) throws SQLException {
+        long started = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try {
+            SplittableRandom random = new SplittableRandom(seed);
+            insertCountriesAndCities(conn, random.split());
+            insertAddressesAndCustomers(conn, random.split());
+            insertUsers(conn);
+            long inserted = insertAppointments(conn, random.split());
+            conn.commit();
+
+            System.out.printf("Generated %d users, %d customers, %d cities and %d appointments in %.1f s (seed %d).%n",
+                    users, customers, cities, inserted, (System.nanoTime() - started) / 1e9, seed);
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void insertCountriesAndCities(Connection conn, SplittableRandom random) throws SQLException {
+        Timestamp created = Timestamp.valueOf(firstDay.atStartOfDay());
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO country (countryId, country, createDate, createdBy, lastUpdateBy) VALUES (?, ?, ?, 'generator', 'generator')")) {
+            for (int i = 0; i < COUNTRIES.length; i++) {
+                ps.setInt(1, i + 1);
+                ps.setString(2, COUNTRIES[i]);
+                ps.setTimestamp(3, created);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        // Most cities are in the first couple of countries.
+        Zipf countryPicker = new Zipf(COUNTRIES.length, 1.2);
+        try (Batch batch = new Batch(conn, "INSERT INTO city (cityId, city, countryId, createDate, createdBy, lastUpdateBy) VALUES (?, ?, ?, ?, 'generator', 'generator')")) {
+            for (int i = 1; i <= cities; i++) {
+                batch.ps.setInt(1, i);
+                batch.ps.setString(2, "City " + i);
+                batch.ps.setInt(3, countryPicker.next(random) + 1);
+                batch.ps.setTimestamp(4, created);
+                batch.add();
+            }
+        }
+    }
+
+    private void insertAddressesAndCustomers(Connection conn, SplittableRandom random) throws SQLException {
+        Timestamp created = Timestamp.valueOf(firstDay.atStartOfDay());
+        Zipf cityPicker = new Zipf(cities, 1.0);
+
+        try (Batch addresses = new Batch(conn, "INSERT INTO address (addressId, address, address2, cityId, postalCode, phone, createDate, createdBy, lastUpdateBy) VALUES (?, ?, ?, ?, ?, ?, ?, 'generator', 'generator')");
+             Batch customerRows = new Batch(conn, "INSERT INTO customer (customerId, customerName, addressId, active, createDate, createdBy, lastUpdateBy) VALUES (?, ?, ?, ?, ?, 'generator', 'generator')")) {
+            for (int i = 1; i <= customers; i++) {
+                addresses.ps.setInt(1, i);
+                addresses.ps.setString(2, (100 + random.nextInt(9900)) + " Main St");
+                addresses.ps.setString(3, random.nextInt(4) == 0 ? "Suite " + random.nextInt(500) : "");
+                addresses.ps.setInt(4, cityPicker.next(random) + 1);
+                addresses.ps.setString(5, String.format("%05d", random.nextInt(100_000)));
+                addresses.ps.setString(6, String.format("(%03d) %03d-%04d", 200 + random.nextInt(800), random.nextInt(1000), random.nextInt(10_000)));
+                addresses.ps.setTimestamp(7, created);
+                addresses.add();
+
+                customerRows.ps.setInt(1, i);
+                customerRows.ps.setString(2, "Customer " + i);
+                customerRows.ps.setInt(3, i);
+                customerRows.ps.setBoolean(4, random.nextInt(20) != 0);
+                customerRows.ps.setTimestamp(5, created);
+                customerRows.add();
+            }
+            // Addresses must land before the customers that reference them.
+            addresses.flush();
+        }
+    }
+
+    private void insertUsers(Connection conn) throws SQLException {
+        try (Batch batch = new Batch(conn, "INSERT INTO user (userId, userName, password, active, createDate, createdBy, lastUpdateBy) VALUES (?, ?, ?, 1, ?, 'generator', 'generator')")) {
+            for (int i = 1; i <= users; i++) {
+                batch.ps.setInt(1, i);
+                batch.ps.setString(2, "consultant" + i);
+                batch.ps.setString(3, "password");
+                batch.ps.setTimestamp(4, Timestamp.valueOf(firstDay.atStartOfDay()));
+                batch.add();
+            }
+        }
+    }
+
+    // Each consultant gets a Zipf-weighted share of the appointments, laid out back to back through the business day
+    // with random gaps, so busy consultants have dense calendars and nobody overlaps.
+    private long insertAppointments(Connection conn, SplittableRandom random) throws SQLException {
+        Zipf customerPicker = new Zipf(customers, 0.9);
+        Zipf contactPicker = new Zipf(contacts, 1.1);
+        Zipf typePicker = new Zipf(TYPES.length, 1.3);
+        long[] perUser = Zipf.apportion(appointments, users, 1.0);
+        long appointmentId = 0;
+
+        try (Batch batch = new Batch(conn,
+                "INSERT INTO appointment (appointmentId, customerId, userId, title, description, location, contact, type, url, start, end, createDate, createdBy, lastUpdateBy)" +
+                        "    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'generator', 'generator')")) {
+            for (int user = 1; user <= users; user++) {
+                // Spread the busiest consultants over more days, but never fewer than ~6 appointments a day.
+                long days = Math.max(1, perUser[user - 1] / 6);
+                long gapBudget = Math.max(0, (days * 9 * 60) / Math.max(1, perUser[user - 1]) - 45);
+                LocalDateTime cursor = firstDay.atTime(DAY_START);
+
+                for (long i = 0; i < perUser[user - 1]; i++) {
+                    int duration = DURATIONS[random.nextInt(DURATIONS.length)];
+                    LocalDateTime start = cursor.plusMinutes(gapBudget == 0 ? 0 : 15 * random.nextLong(gapBudget / 15 + 1));
+                    if (start.toLocalTime().plusMinutes(duration).isAfter(DAY_END) || start.toLocalDate().isAfter(cursor.toLocalDate())) {
+                        start = nextBusinessDay(cursor.toLocalDate()).atTime(DAY_START).plusMinutes(15 * random.nextInt(4));
+                    }
+                    LocalDateTime end = start.plusMinutes(duration);
+                    int customerId = customerPicker.next(random) + 1;
+                    String type = TYPES[typePicker.next(random)];
+
+                    batch.ps.setLong(1, ++appointmentId);
+                    batch.ps.setInt(2, customerId);
+                    batch.ps.setInt(3, user);
+                    batch.ps.setString(4, type + " with Customer " + customerId);
+                    batch.ps.setString(5, "Generated appointment");
+                    batch.ps.setString(6, "Office " + (1 + random.nextInt(12)));
+                    batch.ps.setString(7, "Contact " + (contactPicker.next(random) + 1));
+                    batch.ps.setString(8, type);
+                    batch.ps.setString(9, "https://example.com/meet/" + appointmentId);
+                    batch.ps.setTimestamp(10, Timestamp.valueOf(start));
+                    batch.ps.setTimestamp(11, Timestamp.valueOf(end));
+                    batch.ps.setTimestamp(12, Timestamp.valueOf(start.minusDays(1 + random.nextInt(30))));
+                    batch.add();
+
+                    cursor = end;
+                }
+            }
+        }
+
+        return appointmentId;
+    }
+
+    private static LocalDate nextBusinessDay(LocalDate day) {
+        LocalDate next = day.plusDays(1);
+        while (next.getDayOfWeek().getValue() > 5) {
+            next = next.plusDays(1);
+        }
+        return next;
+    }
+
+    // A PreparedStatement that sends itself every batchSize rows and commits every few batches, so huge loads don't
+    // build a single giant transaction.
+    private class Batch implements AutoCloseable {
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private int pending;
+        private int batchesSinceCommit;
+
+        private Batch(Connection conn, String sql) throws SQLException {
+            this.conn = conn;
+            this.ps = conn.prepareStatement(sql);
+        }
+
+        private void add() throws SQLException {
+            ps.addBatch();
+            if (++pending == batchSize) {
+                flush();
+                if (++batchesSinceCommit == 20) {
+                    conn.commit();
+                    batchesSinceCommit = 0;
+                }
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (pending > 0) {
+                ps.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            flush();
+            ps.close();
+        }
+    }
+
+    // Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent.
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        int next(SplittableRandom random) {
+            double target = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Split total into n Zipf-weighted shares that add up exactly to total.
+        static long[] apportion(long total, int n, double exponent) {
+            Zipf zipf = new Zipf(n, exponent);
+            long[] shares = new long[n];
+            long assigned = 0;
+            for (int i = 0; i < n; i++) {
+                double previous = i == 0 ? 0 : zipf.cumulative[i - 1];
+                shares[i] = Math.round(total * (zipf.cumulative[i] - previous));
+                assigned += shares[i];
+            }
+            shares[0] += total - assigned;
+            return shares;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package appointmentManager;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Refresh cost of a 10k-row appointment table: replacing every row, as setItems with a new list did, versus applying
+// a ListDiff, both when a handful of rows changed (edits) and when every row did, as paging to the next week does
+// (pageSwap). The listener stands in for the TableView, and the rows it would have to re-render are reported next to
+// the timings as the rerenderedRows counter.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListDiffBenchmark {
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"10"})
+    public int changedRows;
+
+    @Param({"edits", "pageSwap"})
+    public String refresh;
+
+    private ObservableList<Appointment> table;
+    private List<Appointment> latest;
+    private RenderCounter counter;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RenderCounter {
+        public long rerenderedRows;
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp(RenderCounter counter) {
+        this.counter = counter;
+        ZonedDateTime start = ZonedDateTime.of(2020, 5, 1, 9, 0, 0, 0, ZoneId.of("UTC"));
+        List<Appointment> current = new ArrayList<>(rows);
+        latest = new ArrayList<>(rows);
+
+        for (int i = 0; i < rows; i++) {
+            current.add(appointment(i, "Title " + i, start.plusMinutes(i)));
+            if (refresh.equals("pageSwap")) {
+                // The next page is entirely different appointments.
+                latest.add(appointment(rows + i, "Title " + (rows + i), start.plusWeeks(1).plusMinutes(i)));
+                continue;
+            }
+            // Every (rows / changedRows)th row comes back from the database with a new title.
+            boolean changed = i % (rows / changedRows) == 0;
+            latest.add(appointment(i, changed ? "Renamed " + i : "Title " + i, start.plusMinutes(i)));
+        }
+
+        table = FXCollections.observableArrayList(current);
+        table.addListener((ListChangeListener<Appointment>) change -> {
+            while (change.next()) {
+                counter.rerenderedRows += change.getAddedSize() + change.getRemovedSize();
+            }
+        });
+    }
+
+    @Benchmark
+    public void replaceAllRows() {
+        table.setAll(latest);
+    }
+
+    @Benchmark
+    public int applyListDiff() {
+        return ListDiff.apply(table, latest, Appointment::getId, Appointment::sameContent);
+    }
+
+    private static Appointment appointment(int id, String title, ZonedDateTime start) {
+        return new Appointment(id, "Customer", 1, title, "Description", "Location", "Contact", "Type", "https://example.com", start, start.plusMinutes(30));
+    }
+}
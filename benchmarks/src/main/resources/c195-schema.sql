@@ -0,0 +1,77 @@
+-- The C195 client schema, as the DAO expects it. Used to build embedded H2 (MySQL mode) databases for benchmarks.
+CREATE TABLE country (
+    countryId INT AUTO_INCREMENT PRIMARY KEY,
+    country VARCHAR(50) NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL
+);
+
+CREATE TABLE city (
+    cityId INT AUTO_INCREMENT PRIMARY KEY,
+    city VARCHAR(50) NOT NULL,
+    countryId INT NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL,
+    FOREIGN KEY (countryId) REFERENCES country (countryId)
+);
+
+CREATE TABLE address (
+    addressId INT AUTO_INCREMENT PRIMARY KEY,
+    address VARCHAR(50) NOT NULL,
+    address2 VARCHAR(50) NOT NULL,
+    cityId INT NOT NULL,
+    postalCode VARCHAR(10) NOT NULL,
+    phone VARCHAR(20) NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL,
+    FOREIGN KEY (cityId) REFERENCES city (cityId)
+);
+
+CREATE TABLE customer (
+    customerId INT AUTO_INCREMENT PRIMARY KEY,
+    customerName VARCHAR(45) NOT NULL,
+    addressId INT NOT NULL,
+    active TINYINT NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL,
+    FOREIGN KEY (addressId) REFERENCES address (addressId)
+);
+
+CREATE TABLE user (
+    userId INT AUTO_INCREMENT PRIMARY KEY,
+    userName VARCHAR(50) NOT NULL,
+    password VARCHAR(50) NOT NULL,
+    active TINYINT NOT NULL DEFAULT 1,
+    createDate DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    createdBy VARCHAR(40) NOT NULL DEFAULT 'system',
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL DEFAULT 'system'
+);
+
+CREATE TABLE appointment (
+    appointmentId INT AUTO_INCREMENT PRIMARY KEY,
+    customerId INT NOT NULL,
+    userId INT NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    description TEXT NOT NULL,
+    location TEXT NOT NULL,
+    contact TEXT NOT NULL,
+    type TEXT NOT NULL,
+    url VARCHAR(255) NOT NULL,
+    start DATETIME NOT NULL,
+    end DATETIME NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    lastUpdate TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastUpdateBy VARCHAR(40) NOT NULL,
+    FOREIGN KEY (customerId) REFERENCES customer (customerId),
+    FOREIGN KEY (userId) REFERENCES user (userId)
+);
@@ -0,0 +1,259 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Converts the arguments and results of Repository methods to and from Json values, by the types the methods
+// declare, for ApiServer and HttpRepository.
+//
+// Times cross as instants with an offset and arrive in the receiver's timezone, so a client and server in different
+// zones agree on when an appointment is. Days (LocalDate) and series rules have no zone of their own and are read in
+// the server's, so a server should run in the same timezone as the operators using it.
+public class ApiCodec {
+    private ApiCodec() {
+    }
+
+    public static Object encode(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        } else if (value instanceof LocalDate) {
+            return value.toString();
+        } else if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+        } else if (value instanceof ZonedDateTime) {
+            return ((ZonedDateTime) value).toOffsetDateTime().toString();
+        } else if (value instanceof RecurrenceRule) {
+            return value.toString();
+        } else if (value instanceof Appointment) {
+            return encodeAppointment((Appointment) value);
+        } else if (value instanceof Customer) {
+            return encodeCustomer((Customer) value);
+        } else if (value instanceof CustomerIds) {
+            CustomerIds ids = (CustomerIds) value;
+            return object("customerId", ids.getCustomerId(), "addressId", ids.getAddressId(), "cityId", ids.getCityId(), "countryId", ids.getCountryId());
+        } else if (value instanceof UnitOfWork) {
+            return encodeUnitOfWork((UnitOfWork) value);
+        } else if (value instanceof UnitOfWork.Result) {
+            UnitOfWork.Result result = (UnitOfWork.Result) value;
+            return object("statements", result.getStatements(), "skipped", result.getSkipped(), "roundTrips", result.getRoundTrips(),
+                    "unbatchedRoundTrips", result.getUnbatchedRoundTrips());
+        } else if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                list.add(encode(element));
+            }
+            return list;
+        } else if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(String.valueOf(entry.getKey()), encode(entry.getValue()));
+            }
+            return map;
+        }
+        throw new IllegalArgumentException("Can't send a " + value.getClass().getName() + " over the API.");
+    }
+
+    public static Object decode(Object json, Type type) {
+        Class<?> raw = type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+        if (json == null) {
+            return raw == int.class ? 0 : raw == boolean.class ? Boolean.FALSE : null;
+        } else if (raw == String.class) {
+            return json;
+        } else if (raw == int.class || raw == Integer.class) {
+            return ((Number) json).intValue();
+        } else if (raw == long.class || raw == Long.class) {
+            return ((Number) json).longValue();
+        } else if (raw == boolean.class || raw == Boolean.class) {
+            return json;
+        } else if (raw == LocalDate.class) {
+            return LocalDate.parse((String) json);
+        } else if (raw == LocalDateTime.class) {
+            return OffsetDateTime.parse((String) json).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } else if (raw == RecurrenceRule.class) {
+            return RecurrenceRule.parse((String) json);
+        } else if (raw == Appointment.class) {
+            return decodeAppointment(map(json));
+        } else if (raw == Customer.class) {
+            return decodeCustomer(map(json));
+        } else if (raw == CustomerIds.class) {
+            Map<String, Object> ids = map(json);
+            return new CustomerIds(integer(ids, "customerId"), integer(ids, "addressId"), integer(ids, "cityId"), integer(ids, "countryId"));
+        } else if (raw == UnitOfWork.class) {
+            return decodeUnitOfWork(map(json));
+        } else if (raw == UnitOfWork.Result.class) {
+            Map<String, Object> result = map(json);
+            return new UnitOfWork.Result(integer(result, "statements"), integer(result, "skipped"), integer(result, "roundTrips"),
+                    integer(result, "unbatchedRoundTrips"));
+        } else if (Collection.class.isAssignableFrom(raw)) {
+            Type elementType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            ObservableList<Object> list = FXCollections.observableArrayList();
+            for (Object element : (List<?>) json) {
+                list.add(decode(element, elementType));
+            }
+            return list;
+        } else if (raw == Map.class) {
+            Type[] types = ((ParameterizedType) type).getActualTypeArguments();
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : map(json).entrySet()) {
+                map.put(types[0] == Integer.class ? (Object) Integer.valueOf(entry.getKey()) : entry.getKey(), decode(entry.getValue(), types[1]));
+            }
+            return map;
+        }
+        throw new IllegalArgumentException("Can't read a " + type.getTypeName() + " from the API.");
+    }
+
+    // A failed call as the server reports it: the SQLException's message and SQLState, for a conflict the row as it
+    // now stands, and for an overlap the appointment in the way.
+    public static Map<String, Object> encodeError(Throwable failure) {
+        Map<String, Object> error = object("error", String.valueOf(failure.getMessage()));
+        if (failure instanceof SQLException) {
+            error.put("sqlState", ((SQLException) failure).getSQLState());
+        }
+        if (failure instanceof UpdateConflictException) {
+            UpdateConflictException conflict = (UpdateConflictException) failure;
+            error.put("conflict", object("entity", conflict.isCustomer() ? "customer" : "appointment", "id", conflict.getId(),
+                    "expectedVersion", conflict.getExpectedVersion(),
+                    "current", encode(conflict.isCustomer() ? conflict.getCurrentCustomer() : conflict.getCurrentAppointment())));
+        }
+        if (failure instanceof OverlapException) {
+            error.put("overlap", encode(((OverlapException) failure).getOverlap()));
+        }
+        return error;
+    }
+
+    // The exception a caller of the Repository would have got from the server's backend.
+    public static SQLException decodeError(Map<String, Object> error) {
+        if (error.get("overlap") != null) {
+            return new OverlapException(decodeAppointment(map(error.get("overlap"))));
+        }
+        Map<String, Object> conflict = error.get("conflict") == null ? null : map(error.get("conflict"));
+        if (conflict == null) {
+            return new SQLException((String) error.get("error"), (String) error.get("sqlState"));
+        }
+
+        int id = integer(conflict, "id");
+        int expectedVersion = integer(conflict, "expectedVersion");
+        Object current = conflict.get("current");
+        return "customer".equals(conflict.get("entity"))
+                ? new UpdateConflictException(id, expectedVersion, current == null ? null : decodeCustomer(map(current)))
+                : new UpdateConflictException(id, expectedVersion, current == null ? null : decodeAppointment(map(current)));
+    }
+
+    private static Map<String, Object> encodeAppointment(Appointment appointment) {
+        Map<String, Object> json = object("id", appointment.getId(), "customerName", appointment.getCustomerName(), "userId", appointment.getUserId(),
+                "title", appointment.getTitle(), "description", appointment.getDescription(), "location", appointment.getLocation(),
+                "contact", appointment.getContact(), "type", appointment.getType(), "url", appointment.getUrl(),
+                "start", encode(appointment.getStart()), "end", encode(appointment.getEnd()), "version", appointment.getVersion());
+        json.put("recurrence", appointment.getRecurrence());
+        return json;
+    }
+
+    private static Appointment decodeAppointment(Map<String, Object> json) {
+        Appointment appointment = new Appointment(integer(json, "id"), (String) json.get("customerName"), integer(json, "userId"),
+                (String) json.get("title"), (String) json.get("description"), (String) json.get("location"), (String) json.get("contact"),
+                (String) json.get("type"), (String) json.get("url"), zoned(json.get("start")), zoned(json.get("end")));
+        appointment.setVersion(integer(json, "version"));
+        appointment.setRecurrence((String) json.get("recurrence"));
+        return appointment;
+    }
+
+    private static Map<String, Object> encodeCustomer(Customer customer) {
+        return object("id", customer.getId(), "name", customer.getName(), "address", customer.getAddress(), "address2", customer.getAddress2(),
+                "city", customer.getCity(), "country", customer.getCountry(), "postalCode", customer.getPostalCode(), "phone", customer.getPhone(),
+                "version", customer.getVersion(), "addressId", customer.getAddressId(), "cityId", customer.getCityId(), "countryId", customer.getCountryId());
+    }
+
+    private static Customer decodeCustomer(Map<String, Object> json) {
+        Customer customer = new Customer(integer(json, "id"), (String) json.get("name"), (String) json.get("address"), (String) json.get("address2"),
+                (String) json.get("city"), (String) json.get("country"), (String) json.get("postalCode"), (String) json.get("phone"));
+        customer.setVersion(integer(json, "version"));
+        customer.setRowIds(integer(json, "addressId"), integer(json, "cityId"), integer(json, "countryId"));
+        return customer;
+    }
+
+    private static Map<String, Object> encodeUnitOfWork(UnitOfWork work) {
+        List<Object> writes = new ArrayList<>();
+        for (UnitOfWork.Write write : work.getWrites()) {
+            Map<String, Object> json = object("kind", write.kind.name(), "id", write.id, "version", write.version);
+            json.put("value", encode(write.value));
+            json.put("before", encode(write.before));
+            json.put("occurrenceStart", encode(write.occurrenceStart));
+            writes.add(json);
+        }
+        return object("username", work.getUsername(), "writes", writes);
+    }
+
+    // Rebuilt through UnitOfWork's own methods, so the server's copy is exactly what the client built.
+    private static UnitOfWork decodeUnitOfWork(Map<String, Object> json) {
+        UnitOfWork work = new UnitOfWork((String) json.get("username"));
+        for (Object element : (List<?>) json.get("writes")) {
+            Map<String, Object> write = map(element);
+            int id = integer(write, "id");
+            int version = integer(write, "version");
+            LocalDateTime occurrenceStart = (LocalDateTime) decode(write.get("occurrenceStart"), LocalDateTime.class);
+            switch (UnitOfWork.Kind.valueOf((String) write.get("kind"))) {
+                case INSERT_CUSTOMER:
+                    work.insertCustomer(decodeCustomer(map(write.get("value"))));
+                    break;
+                case UPDATE_CUSTOMER:
+                    work.updateCustomer(decodeCustomer(map(write.get("before"))), decodeCustomer(map(write.get("value"))));
+                    break;
+                case INSERT_APPOINTMENT:
+                    work.insertAppointment(decodeAppointment(map(write.get("value"))));
+                    break;
+                case DELETE_APPOINTMENT:
+                    work.deleteAppointment(id);
+                    break;
+                case DELETE_APPOINTMENT_VERSION:
+                    work.deleteAppointment(id, version);
+                    break;
+                case CANCEL_OCCURRENCE:
+                    work.cancelOccurrence(id, occurrenceStart, version);
+                    break;
+                case END_SERIES_BEFORE:
+                    work.endSeriesBefore(id, occurrenceStart, version);
+                    break;
+            }
+        }
+        return work;
+    }
+
+    private static ZonedDateTime zoned(Object json) {
+        return OffsetDateTime.parse((String) json).atZoneSameInstant(ZoneId.systemDefault());
+    }
+
+    private static int integer(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object json) {
+        return (Map<String, Object>) json;
+    }
+
+    // An object from alternating keys and values, in that order.
+    private static Map<String, Object> object(Object... keysAndValues) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            object.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return object;
+    }
+}
@@ -0,0 +1,242 @@
+package DAO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Headless server mode: the Repository over HTTP and JSON, so operators' clients share one pool of database
+// connections and one set of caches instead of each holding a connection of its own. HttpRepository is the client.
+//
+//     POST /api/<method>    the body is a JSON array of the method's arguments; the reply is {"result": ...}, or
+//                           {"error": ..., "sqlState": ...} with status 409 for a version conflict (carrying the row
+//                           as it now stands) or an overlap (carrying the appointment in the way), 400 for a request
+//                           that doesn't fit the method and 500 otherwise
+//     GET  /stats           pool and cache counters
+//
+// Every Repository method is served except close. Behind the HTTP threads the calls go through ServerCache, then the
+// usual BusySlots, DaoEvents and QueryMetrics, and then a PooledRepository. Run it with gradle apiServer; it reads
+// db.properties as the app does, plus:
+//
+//     server.address, server.port   where to listen (loopback, 8195)
+//     server.token                  a shared secret every request must carry in the X-Api-Token header, as clients do
+//                                   with http.token; without one the server only listens on a loopback address
+//     server.pool                   database connections (8), per shard when sharded; the embedded backend has one
+//     server.threads                HTTP worker threads (twice server.pool)
+//     server.cache.seconds, server.cache.entries   how long and how many reads are cached (60, 10000)
+public class ApiServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8195;
+    public static final String TOKEN_HEADER = "X-Api-Token";
+
+    static {
+        // The JDK's server writes a reply's headers and body separately, and with Nagle's algorithm on, every reply
+        // then waits out the client's delayed ACK: some 40 ms a call. Read once, when the first server is made.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Map<String, Method> methods = new HashMap<>();
+    private final Repository pool;
+    private final ServerCache cache;
+    private final Repository repository;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final byte[] token;
+
+    // Serve the pooled members, which the server then owns, on the address given. Anything but a loopback address
+    // needs a server.token, or any host that can reach the port could read and rewrite every calendar.
+    public ApiServer(List<Repository> members, InetSocketAddress address, Properties properties, InvalidationBus bus) throws IOException {
+        String secret = properties.getProperty("server.token", "").trim();
+        if (secret.isEmpty() && (address.getAddress() == null || !address.getAddress().isLoopbackAddress())) {
+            throw new IllegalArgumentException("Set server.token before serving on " + address.getHostString() + ", which isn't a loopback address.");
+        }
+        token = secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+
+        for (Method method : Repository.class.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers()) && !method.getName().equals("close")) {
+                // By name, so a default overload, which runs through the others, gives way to the one that doesn't.
+                methods.merge(method.getName(), method, (kept, other) -> kept.isDefault() ? other : kept);
+            }
+        }
+
+        pool = PooledRepository.of(members, 30_000);
+        cache = new ServerCache(pool,
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("server.cache.seconds", "60").trim())),
+                Integer.parseInt(properties.getProperty("server.cache.entries", "10000").trim()),
+                bus);
+        repository = Repositories.decorate(cache.repository(), properties, bus, true);
+
+        int threads = Integer.parseInt(properties.getProperty("server.threads", String.valueOf(2 * members.size())).trim());
+        workers = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(address, 64);
+        server.setExecutor(workers);
+        server.createContext("/api/", this::call);
+        server.createContext("/stats", this::stats);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = Repositories.readProperties();
+        if (properties == null) {
+            throw new IllegalStateException("No db.properties: set the backend to serve there before starting the server.");
+        }
+
+        InvalidationBus bus = Repositories.bus(properties);
+        List<Repository> members = new ArrayList<>();
+        String backend = properties.getProperty("backend", "mysql").trim();
+        if (backend.equals("mysql") || backend.equals("sharded")) {
+            int size = Integer.parseInt(properties.getProperty("server.pool", "8").trim());
+            for (int i = 0; i < size; i++) {
+                Repository member = Repositories.openBackend(properties);
+                if (ReadReplica.primaryOf(member) instanceof MySQL) {
+                    ((MySQL) ReadReplica.primaryOf(member)).publishTo(bus);
+                } else if (member instanceof ShardedRepository) {
+                    ((ShardedRepository) member).publishTo(bus);
+                }
+                members.add(member);
+            }
+        } else {
+            members.add(Repositories.openBackend(properties));
+        }
+
+        InetSocketAddress address = new InetSocketAddress(
+                InetAddress.getByName(properties.getProperty("server.address", InetAddress.getLoopbackAddress().getHostAddress()).trim()),
+                Integer.parseInt(properties.getProperty("server.port", String.valueOf(DEFAULT_PORT)).trim()));
+        ApiServer server = new ApiServer(members, address, properties, bus);
+        System.out.println("Serving the " + properties.getProperty("backend", "mysql").trim() + " backend on http://"
+                + address.getHostString() + ":" + server.getPort() + "/api/ with " + members.size() + " connection(s).");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ServerCache getCache() {
+        return cache;
+    }
+
+    // Stop taking requests, let those in flight finish for up to a second, and close the pool.
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+        repository.close();
+    }
+
+    private void call(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                return;
+            }
+
+            Method method = methods.get(exchange.getRequestURI().getPath().substring("/api/".length()));
+            if (method == null || !exchange.getRequestMethod().equals("POST")) {
+                reply(exchange, 404, Map.of("error", "No such method: " + exchange.getRequestURI().getPath()));
+                return;
+            }
+
+            Object[] args;
+            try (InputStream in = exchange.getRequestBody()) {
+                args = arguments(method, Json.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            } catch (RuntimeException re) {
+                reply(exchange, 400, ApiCodec.encodeError(re));
+                return;
+            }
+
+            try {
+                Object result = method.invoke(repository, args);
+                Map<String, Object> reply = new LinkedHashMap<>();
+                reply.put("result", ApiCodec.encode(result));
+                reply(exchange, 200, reply);
+            } catch (InvocationTargetException ite) {
+                Throwable failure = ite.getCause();
+                reply(exchange, failure instanceof UpdateConflictException || failure instanceof OverlapException ? 409 : 500, ApiCodec.encodeError(failure));
+                if (!(failure instanceof SQLException)) {
+                    failure.printStackTrace();
+                }
+            } catch (IllegalAccessException iae) {
+                reply(exchange, 500, ApiCodec.encodeError(iae));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Whether the request carries the token, if the server has one; if not, it has been answered with a 401. The
+    // comparison takes as long whichever byte differs.
+    private boolean authorized(HttpExchange exchange) throws IOException {
+        if (token == null) {
+            return true;
+        }
+        String given = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        if (given != null && MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+        reply(exchange, 401, Map.of("error", "Missing or wrong " + TOKEN_HEADER + " header.", "sqlState", "28000"));
+        return false;
+    }
+
+    private static Object[] arguments(Method method, Object json) {
+        List<?> values = (List<?>) json;
+        Type[] types = method.getGenericParameterTypes();
+        if (values.size() != types.length) {
+            throw new IllegalArgumentException(method.getName() + " takes " + types.length + " arguments, not " + values.size() + ".");
+        }
+
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = ApiCodec.decode(values.get(i), types[i]);
+        }
+        return args;
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorized(exchange)) {
+                return;
+            }
+
+            PooledRepository.Stats poolStats = (PooledRepository.Stats) pool;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("poolSize", poolStats.getPoolSize());
+            stats.put("poolIdle", poolStats.getPoolIdle());
+            stats.put("poolBorrowed", poolStats.getPoolBorrowed());
+            stats.put("poolWaited", poolStats.getPoolWaited());
+            stats.put("poolWaitMillis", poolStats.getPoolWaitNanos() / 1_000_000);
+            stats.put("cacheEntries", cache.size());
+            stats.put("cacheHits", cache.getHits());
+            stats.put("cacheMisses", cache.getMisses());
+            reply(exchange, 200, stats);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, Object json) throws IOException {
+        byte[] body = Json.write(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
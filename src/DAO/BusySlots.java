@@ -0,0 +1,398 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Each consultant's busy time, one UTC day at a time, as a bitmap of five minute slots: bit i is set when any
+// appointment touches the slot starting i * 5 minutes after midnight UTC. A day is five longs.
+//
+// checkForOverlappingAppointment goes through the bitmaps first. A proposed time whose slots are all clear overlaps
+// nothing, which is the usual answer when saving, and costs a few word ANDs instead of a query. When a slot is set
+// the query runs as before, both to return the appointment in the way and because a slot an appointment only partly
+// covers is set as a whole. A day is loaded with one range query the first time it is checked, then kept up to date
+// by the writes that go through this Repository: inserts set their slots and everything else drops the days it may
+// have changed. bookAppointment is never answered from here; its check has to run under the consultant's lock.
+//
+// The range query runs outside the lock, and checks of a day already being loaded wait for that load rather than
+// starting their own. A day that fails to load isn't kept, and the check falls through to the query. A day is only
+// kept if nothing was written while it loaded, since the write may have landed after the read.
+//
+// Writes from other clients are only seen once a day is reloaded, so days are dropped after maxAge, and the oldest
+// go first once more than maxDays are held. A stale day can only miss appointments booked elsewhere within maxAge.
+// Given an InvalidationBus, other clients' writes drop the days they touch as they happen, so while the bus is
+// connected days are kept until they are changed or evicted, and maxAge only applies while it is down.
+public class BusySlots {
+    public static final int SLOT_MINUTES = 5;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int SLOT_WORDS = (SLOTS_PER_DAY + 63) / 64;
+
+    private final Repository target;
+    private final long maxAgeNanos;
+    private final int maxDays;
+    private final InvalidationBus bus;
+    // By user and UTC day, oldest first.
+    private final LinkedHashMap<Long, Day> days = new LinkedHashMap<>();
+    // The cached days each appointment was seen on, so changing it drops exactly those.
+    private final Map<Integer, Set<Long>> daysByAppointment = new HashMap<>();
+    // Days being loaded, by key, and a count of the writes seen, which a load compares before keeping its day.
+    private final Map<Long, CompletableFuture<Day>> loading = new ConcurrentHashMap<>();
+    private long writes;
+    private final LongAdder clear = new LongAdder();
+    private final LongAdder checked = new LongAdder();
+
+    public BusySlots(Repository target, Duration maxAge, int maxDays) {
+        this(target, maxAge, maxDays, null);
+    }
+
+    public BusySlots(Repository target, Duration maxAge, int maxDays, InvalidationBus bus) {
+        this.target = target;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.maxDays = maxDays;
+        this.bus = bus;
+        if (bus != null) {
+            bus.subscribe(this::changed);
+        }
+    }
+
+    // Wrap a Repository so that its overlap checks go through busy slot bitmaps.
+    public static Repository instrument(Repository repository, Duration maxAge, int maxDays) {
+        return instrument(repository, maxAge, maxDays, null);
+    }
+
+    // The same, with days kept up to date by the bus, if not null, instead of expiring after maxAge.
+    public static Repository instrument(Repository repository, Duration maxAge, int maxDays, InvalidationBus bus) {
+        BusySlots slots = new BusySlots(repository, maxAge, maxDays, bus);
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class},
+                slots.new Handler()
+        );
+    }
+
+    // False when nothing of this user's touches start to end, true when something may. Throws if a day couldn't be
+    // loaded, rather than taking it as free.
+    public boolean mayOverlap(int userId, Instant start, Instant end) throws SQLException {
+        checked.increment();
+        for (long epochDay = utcDay(start); epochDay <= utcDay(end.minusNanos(1)); epochDay++) {
+            long dayStart = epochDay * 86_400;
+            int first = (int) Math.max(0, (start.getEpochSecond() - dayStart) / 60 / SLOT_MINUTES);
+            int last = (int) Math.min(SLOTS_PER_DAY, (end.getEpochSecond() - dayStart + SLOT_MINUTES * 60 - 1) / 60 / SLOT_MINUTES);
+            if (anySet(day(userId, epochDay), first, last)) {
+                return true;
+            }
+        }
+        clear.increment();
+        return false;
+    }
+
+    // How many checks there have been, and how many of them the bitmaps answered alone.
+    public long getChecked() {
+        return checked.sum();
+    }
+
+    public long getClear() {
+        return clear.sum();
+    }
+
+    // Appointments booked through this Repository are set in the days already held. Days not held load them anyway.
+    synchronized void booked(int userId, Instant start, Instant end) {
+        writes++;
+        for (long epochDay = utcDay(start); epochDay <= utcDay(end.minusNanos(1)); epochDay++) {
+            Day day = days.get(key(userId, epochDay));
+            if (day != null) {
+                mark(day.slots, epochDay, start, end);
+            }
+        }
+    }
+
+    // Drop the days this appointment was seen on.
+    synchronized void changed(int appointmentId) {
+        writes++;
+        Set<Long> keys = daysByAppointment.get(appointmentId);
+        if (keys != null) {
+            new ArrayList<>(keys).forEach(this::drop);
+        }
+    }
+
+    // Drop every day of this user, for changes whose days aren't known, like a new series.
+    synchronized void changedUser(int userId) {
+        writes++;
+        List<Long> keys = new ArrayList<>();
+        for (long key : days.keySet()) {
+            if ((int) (key >>> 32) == userId) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(this::drop);
+    }
+
+    // Another client's write. A new appointment has no id yet, so its consultant's days all go.
+    synchronized void changed(ChangeEvent event) {
+        writes++;
+        if (event.getEntity() == ChangeEvent.Entity.ALL) {
+            days.clear();
+            daysByAppointment.clear();
+        } else if (event.getEntity() == ChangeEvent.Entity.APPOINTMENT) {
+            if (event.getId() != 0) {
+                changed(event.getId());
+            }
+            if (event.getUserId() != 0) {
+                changedUser(event.getUserId());
+            }
+        }
+    }
+
+    private void drop(long key) {
+        Day day = days.remove(key);
+        if (day != null) {
+            forget(key, day);
+        }
+    }
+
+    // Take the day out of the index of the appointments on it.
+    private void forget(long key, Day day) {
+        for (int appointmentId : day.appointmentIds) {
+            Set<Long> keys = daysByAppointment.get(appointmentId);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                daysByAppointment.remove(appointmentId);
+            }
+        }
+    }
+
+    // The day's bitmap, loaded if it isn't held or has expired.
+    private long[] day(int userId, long epochDay) throws SQLException {
+        long key = key(userId, epochDay);
+        long seenWrites;
+        synchronized (this) {
+            Day day = days.get(key);
+            if (day != null && !expired(day, System.nanoTime())) {
+                return day.slots;
+            }
+            seenWrites = writes;
+        }
+
+        CompletableFuture<Day> load = new CompletableFuture<>();
+        CompletableFuture<Day> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                return running.join().slots;
+            } catch (CompletionException ce) {
+                throw (SQLException) ce.getCause();
+            }
+        }
+
+        try {
+            Day day = load(userId, epochDay);
+            synchronized (this) {
+                if (writes == seenWrites) {
+                    keep(key, day);
+                }
+            }
+            load.complete(day);
+            return day.slots;
+        } catch (SQLException | RuntimeException e) {
+            load.completeExceptionally(e instanceof SQLException ? e : new SQLException(e));
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    // Read the day from the target, outside the lock.
+    private Day load(int userId, long epochDay) throws SQLException {
+        // The local days the UTC day falls on; anything they return outside it sets no bits.
+        Instant from = Instant.ofEpochSecond(epochDay * 86_400);
+        Instant to = from.plusSeconds(86_400);
+        ZoneId zone = ZoneId.systemDefault();
+        List<Appointment> appointments = target.readAppointmentsInRange(
+                from.atZone(zone).toLocalDate(), to.minusNanos(1).atZone(zone).toLocalDate(), userId);
+
+        long[] slots = new long[SLOT_WORDS];
+        Set<Integer> appointmentIds = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            Instant start = appointment.getStart().toInstant();
+            Instant end = appointment.getEnd().toInstant();
+            if (start.isBefore(to) && end.isAfter(from)) {
+                mark(slots, epochDay, start, end);
+                appointmentIds.add(appointment.getId());
+            }
+        }
+
+        return new Day(slots, appointmentIds.stream().mapToInt(Integer::intValue).toArray(), System.nanoTime());
+    }
+
+    private void keep(long key, Day day) {
+        drop(key);
+        days.put(key, day);
+        for (int appointmentId : day.appointmentIds) {
+            daysByAppointment.computeIfAbsent(appointmentId, id -> new HashSet<>()).add(key);
+        }
+        evict(day.loadedNanos);
+    }
+
+    // Drop expired days, then the oldest beyond maxDays. Days are in load order, so both come off the front.
+    private void evict(long now) {
+        Iterator<Map.Entry<Long, Day>> iterator = days.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Day> oldest = iterator.next();
+            if (days.size() <= maxDays && !expired(oldest.getValue(), now)) {
+                break;
+            }
+            iterator.remove();
+            forget(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private boolean expired(Day day, long now) {
+        return now - day.loadedNanos >= maxAgeNanos && (bus == null || !bus.isConnected());
+    }
+
+    private static void mark(long[] slots, long epochDay, Instant start, Instant end) {
+        long dayStart = epochDay * 86_400;
+        int first = (int) Math.max(0, Math.floorDiv(start.getEpochSecond() - dayStart, 60L * SLOT_MINUTES));
+        int last = (int) Math.min(SLOTS_PER_DAY, Math.floorDiv(end.getEpochSecond() - dayStart + 60L * SLOT_MINUTES - 1, 60L * SLOT_MINUTES));
+        for (int slot = first; slot < last; slot++) {
+            slots[slot >>> 6] |= 1L << slot;
+        }
+    }
+
+    // Whether any of slots first (inclusive) to last (exclusive) is set, a word at a time.
+    private static boolean anySet(long[] slots, int first, int last) {
+        for (int word = first >>> 6; first < last && word <= (last - 1) >>> 6; word++) {
+            long mask = -1L;
+            if (word == first >>> 6) {
+                mask &= -1L << first;
+            }
+            if (word == (last - 1) >>> 6) {
+                mask &= -1L >>> (63 - ((last - 1) & 63));
+            }
+            if ((slots[word] & mask) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long utcDay(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 86_400);
+    }
+
+    private static long key(int userId, long epochDay) {
+        return ((long) userId << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    private static Instant instantOf(LocalDateTime local) {
+        return local.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static class Day {
+        private final long[] slots;
+        private final int[] appointmentIds;
+        private final long loadedNanos;
+
+        private Day(long[] slots, int[] appointmentIds, long loadedNanos) {
+            this.slots = slots;
+            this.appointmentIds = appointmentIds;
+            this.loadedNanos = loadedNanos;
+        }
+    }
+
+    // Answers checkForOverlappingAppointment from the bitmaps when it can, and passes every write on before updating
+    // them. Everything else goes straight to the target.
+    private class Handler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("checkForOverlappingAppointment")) {
+                LocalDateTime start = (LocalDateTime) args[0];
+                LocalDateTime end = (LocalDateTime) args[1];
+                try {
+                    if (start.isBefore(end) && !mayOverlap((Integer) args[2], instantOf(start), instantOf(end))) {
+                        return null;
+                    }
+                } catch (SQLException sqle) {
+                    // The query below runs anyway and reports its own failure if the database is still unreachable.
+                    QueryMetrics.failed("readAppointmentsInRange", sqle);
+                }
+                return call(method, args);
+            }
+
+            Object result = call(method, args);
+            switch (method.getName()) {
+                case "insertAppointment":
+                    booked((Integer) args[1], instantOf((LocalDateTime) args[8]), instantOf((LocalDateTime) args[9]));
+                    break;
+                case "insertAppointments":
+                    // Nothing was stored when it returns the appointments in the way.
+                    if (!((List<?>) result).isEmpty()) {
+                        break;
+                    }
+                    for (Object appointment : (List<?>) args[0]) {
+                        Appointment booked = (Appointment) appointment;
+                        booked(booked.getUserId(), booked.getStart().toInstant(), booked.getEnd().toInstant());
+                    }
+                    break;
+                case "insertAppointmentSeries":
+                    changedUser((Integer) args[1]);
+                    break;
+                case "bookAppointment":
+                    // Nothing was booked when it returns the appointment in the way.
+                    if (result == null && args[10] == null) {
+                        booked((Integer) args[1], instantOf((LocalDateTime) args[8]), instantOf((LocalDateTime) args[9]));
+                    } else if (result == null) {
+                        changedUser((Integer) args[1]);
+                    }
+                    break;
+                case "updateAppointment":
+                    changed((Integer) args[0]);
+                    changedUser((Integer) args[2]);
+                    break;
+                case "commit":
+                    for (UnitOfWork.Write write : ((UnitOfWork) args[0]).getWrites()) {
+                        if (write.kind == UnitOfWork.Kind.INSERT_APPOINTMENT && write.appointment().isRecurring()) {
+                            changedUser(write.appointment().getUserId());
+                        } else if (write.kind == UnitOfWork.Kind.INSERT_APPOINTMENT) {
+                            booked(write.appointment().getUserId(), write.appointment().getStart().toInstant(), write.appointment().getEnd().toInstant());
+                        } else if (write.kind != UnitOfWork.Kind.INSERT_CUSTOMER && write.kind != UnitOfWork.Kind.UPDATE_CUSTOMER) {
+                            changed(write.id);
+                        }
+                    }
+                    break;
+                case "deleteAppointment":
+                case "cancelOccurrence":
+                case "endSeriesBefore":
+                    changed((Integer) args[0]);
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
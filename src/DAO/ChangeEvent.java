@@ -0,0 +1,90 @@
+package DAO;
+
+import java.util.Locale;
+
+// One committed write, as the InvalidationBus carries it between clients: which row of which table changed, and the
+// version it is now at. A cache holding the row at that version or later can ignore it; anything else drops the row.
+//
+// On the wire an event is one line, "appointment 12 3 4": the entity, the id, the version and, for appointments, the
+// consultant, which BusySlots keys its days by. A new row has id 0, since MySQL doesn't read back the ids it inserts.
+public class ChangeEvent {
+    // The row is gone.
+    public static final int DELETED = -1;
+    // The table has no version column, or the write doesn't know the version it left the row at.
+    public static final int UNVERSIONED = -2;
+
+    // ALL isn't a table: it means events may have been missed, so everything cached should be dropped.
+    public enum Entity {
+        APPOINTMENT,
+        CUSTOMER,
+        ADDRESS,
+        CITY,
+        COUNTRY,
+        ALL
+    }
+
+    public static final ChangeEvent ALL = new ChangeEvent(Entity.ALL, 0, UNVERSIONED, 0);
+
+    private final Entity entity;
+    private final int id;
+    private final int version;
+    private final int userId;
+
+    public ChangeEvent(Entity entity, int id, int version, int userId) {
+        this.entity = entity;
+        this.id = id;
+        this.version = version;
+        this.userId = userId;
+    }
+
+    public static ChangeEvent appointment(int appointmentId, int version, int userId) {
+        return new ChangeEvent(Entity.APPOINTMENT, appointmentId, version, userId);
+    }
+
+    public static ChangeEvent of(Entity entity, int id, int version) {
+        return new ChangeEvent(entity, id, version, 0);
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    // The row's id, or 0 for a row just inserted.
+    public int getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // The consultant of an appointment, or 0 when unknown or not an appointment.
+    public int getUserId() {
+        return userId;
+    }
+
+    // Whether a cached copy at the version given is out of date.
+    public boolean isNewerThan(int cachedVersion) {
+        return version < 0 || version > cachedVersion;
+    }
+
+    // Null for a line that isn't an event, so a newer client's events can't break an older one.
+    public static ChangeEvent parse(String line) {
+        String[] parts = line.trim().split(" ");
+        if (parts.length != 4) {
+            return null;
+        }
+
+        try {
+            return new ChangeEvent(Entity.valueOf(parts[0].toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException iae) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return entity.name().toLowerCase(Locale.ROOT) + " " + id + " " + version + " " + userId;
+    }
+}
@@ -0,0 +1,32 @@
+package DAO;
+
+// The cascading ids behind a Customer, used to update its address, city and country rows in place.
+public class CustomerIds {
+    private final int customerId;
+    private final int addressId;
+    private final int cityId;
+    private final int countryId;
+
+    public CustomerIds(int customerId, int addressId, int cityId, int countryId) {
+        this.customerId = customerId;
+        this.addressId = addressId;
+        this.cityId = cityId;
+        this.countryId = countryId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public int getAddressId() {
+        return addressId;
+    }
+
+    public int getCityId() {
+        return cityId;
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+}
@@ -0,0 +1,39 @@
+package DAO;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// A Flight Recorder event for one Repository call, emitted by DaoEvents. The stack trace shows which UI handler made
+// the call, so a stall on the FX thread can be traced back to the query behind it.
+@Name("appointmentManager.DaoCall")
+@Label("DAO Call")
+@Category({"Appointment Manager", "DAO"})
+@Description("A call through the Repository interface, with the user and time range it was for and the rows it returned")
+@StackTrace(true)
+public class DaoCallEvent extends Event {
+    @Label("Method")
+    String method;
+
+    @Label("Backend")
+    String backend;
+
+    @Label("User Id")
+    @Description("The consultant the call was for, or 0 when it is not user specific")
+    int userId;
+
+    @Label("Range")
+    @Description("The length of the date or time range queried, if any")
+    @Timespan(Timespan.SECONDS)
+    long range;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+}
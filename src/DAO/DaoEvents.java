@@ -0,0 +1,116 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+// Emits a DaoCallEvent around every Repository call. When no recording is running, or the event is disabled in the
+// recording's settings, a call costs a begin/end pair and a shouldCommit() check, and none of the fields are filled in.
+public class DaoEvents {
+    // Where the userId argument sits for the methods that take one.
+    private static final Map<String, Integer> USER_ID_ARGUMENT = Map.of(
+            "getAppointmentsInRange", 2,
+            "readAppointmentsInRange", 2,
+            "checkForUpcomingAppointment", 0,
+            "checkForOverlappingAppointment", 2,
+            "insertAppointment", 1,
+            "insertAppointmentSeries", 1,
+            "bookAppointment", 1,
+            "checkForOverlappingSeries", 3,
+            "updateAppointment", 2
+    );
+
+    private DaoEvents() {
+    }
+
+    public static Repository instrument(Repository repository) {
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class},
+                new Handler(repository)
+        );
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Repository target;
+        private final String backend;
+
+        private Handler(Repository target) {
+            this.target = target;
+            this.backend = target.getClass().getSimpleName();
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() != Repository.class) {
+                return call(method, args);
+            }
+
+            DaoCallEvent event = new DaoCallEvent();
+            event.begin();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = call(method, args);
+                failed = false;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.method = method.getName();
+                    event.backend = backend;
+                    event.userId = userIdIn(method, args);
+                    event.range = rangeIn(args);
+                    event.rows = rowsIn(result);
+                    event.failed = failed;
+                    event.commit();
+                }
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+
+        private static int userIdIn(Method method, Object[] args) {
+            Integer index = USER_ID_ARGUMENT.get(method.getName());
+            return index == null || args[index] == null ? 0 : (Integer) args[index];
+        }
+
+        // The first date or date-time pair among the arguments, in seconds. Date ranges are inclusive of the last day.
+        private static long rangeIn(Object[] args) {
+            if (args == null) {
+                return 0;
+            }
+
+            for (int i = 0; i + 1 < args.length; i++) {
+                if (args[i] instanceof LocalDate && args[i + 1] instanceof LocalDate) {
+                    return Duration.between(((LocalDate) args[i]).atStartOfDay(), ((LocalDate) args[i + 1]).plusDays(1).atStartOfDay()).getSeconds();
+                }
+                if (args[i] instanceof LocalDateTime && args[i + 1] instanceof LocalDateTime) {
+                    return Duration.between((LocalDateTime) args[i], (LocalDateTime) args[i + 1]).getSeconds();
+                }
+            }
+            return 0;
+        }
+
+        private static long rowsIn(Object result) {
+            if (result instanceof Collection) {
+                return ((Collection<?>) result).size();
+            }
+            if (result instanceof Map) {
+                return ((Map<?, ?>) result).size();
+            }
+            return result == null ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,916 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// An in-process Repository holding the same tables as the MySQL schema in maps, for tests, benchmarks and single
+// user offline installs. Nothing touches the network. Given a file, every write is snapshotted to it so the data
+// survives a restart; without one the data lives as long as the process.
+//
+// Times are stored in UTC exactly as the MySQL columns are, and the queries mirror the SQL in MySQL, so both backends
+// return the same rows for the same data. Every public method is synchronized, which is all a single user needs.
+public class Embedded implements Repository {
+    private final Path file;
+    private Tables tables;
+    // Set while a unit of work is applied, so it is saved once at the end rather than after every write.
+    private boolean deferSave;
+
+    // A store that starts empty, without even a login, and is never written to disk.
+    public Embedded() {
+        this(null);
+    }
+
+    // A store backed by the snapshot file given, which is created on the first write if it doesn't exist yet. A new store
+    // has no logins; insertUser adds them.
+    public Embedded(Path file) {
+        this.file = file;
+
+        if (file != null && Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file); ObjectInputStream ois = new ObjectInputStream(in)) {
+                tables = (Tables) ois.readObject();
+                if (tables.exceptions == null) {
+                    tables.exceptions = new LinkedHashMap<>();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to read the embedded database at " + file, e);
+            }
+        } else {
+            tables = new Tables();
+        }
+    }
+
+    // Add a login, unless there is one with this username already, and return its userId either way.
+    public synchronized int insertUser(String userName, String password) throws SQLException {
+        for (UserRow user : tables.users.values()) {
+            if (user.userName.equals(userName)) {
+                return user.userId;
+            }
+        }
+
+        UserRow user = new UserRow(++tables.lastUserId, userName, password);
+        tables.users.put(user.userId, user);
+        save();
+        return user.userId;
+    }
+
+    public synchronized ObservableList<Customer> getAllCustomers() {
+        ObservableList<Customer> returnList = FXCollections.observableArrayList();
+
+        for (CustomerRow customer : tables.customers.values()) {
+            AddressRow address = tables.addresses.get(customer.addressId);
+            CityRow city = address == null ? null : tables.cities.get(address.cityId);
+            CountryRow country = city == null ? null : tables.countries.get(city.countryId);
+
+            if (country != null) {
+                returnList.add(toCustomer(customer, address, city, country));
+            }
+        }
+
+        return returnList;
+    }
+
+    // The days from start to end inclusive in the local timezone, as a half-open UTC window.
+    public synchronized ObservableList<Appointment> getAppointmentsInRange(LocalDate start, LocalDate end, int userId) {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        LocalDateTime from = toUtc(start.atStartOfDay());
+        LocalDateTime to = toUtc(end.plusDays(1).atStartOfDay());
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (appointment.userId == userId && appointment.recurrence == null && appointment.start.isBefore(to) && appointment.end.isAfter(from)) {
+                addJoined(returnList, appointment);
+            }
+        }
+        returnList.addAll(occurrences(Set.of(userId), from.toInstant(ZoneOffset.UTC), to.toInstant(ZoneOffset.UTC)));
+
+        return returnList;
+    }
+
+    public synchronized ObservableList<Appointment> getAppointmentsForUsers(LocalDate start, LocalDate end, Collection<Integer> userIds) {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        Set<Integer> users = new HashSet<>(userIds);
+        LocalDateTime from = toUtc(start.atStartOfDay());
+        LocalDateTime to = toUtc(end.plusDays(1).atStartOfDay());
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (users.contains(appointment.userId) && appointment.recurrence == null && appointment.start.isBefore(to) && appointment.end.isAfter(from)) {
+                addJoined(returnList, appointment);
+            }
+        }
+        returnList.addAll(occurrences(users, from.toInstant(ZoneOffset.UTC), to.toInstant(ZoneOffset.UTC)));
+
+        return returnList;
+    }
+
+    public synchronized Appointment checkForUpcomingAppointment(Integer userId) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (appointment.userId == userId && appointment.recurrence == null && between(appointment.start, now, now.plusMinutes(15))) {
+                Appointment joined = toAppointment(appointment);
+                if (joined != null) {
+                    return joined;
+                }
+            }
+        }
+
+        Instant instant = now.toInstant(ZoneOffset.UTC);
+        for (Appointment occurrence : occurrences(Set.of(userId), instant, instant.plus(Duration.ofMinutes(15)))) {
+            if (!occurrence.getStart().toInstant().isBefore(instant)) {
+                return occurrence;
+            }
+        }
+
+        return null;
+    }
+
+    public synchronized Appointment checkForOverlappingAppointment(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId) {
+        LocalDateTime start = toUtc(ldtStart);
+        LocalDateTime end = toUtc(ldtEnd);
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (appointment.userId == userId && appointment.recurrence == null && appointment.start.isBefore(end) && appointment.end.isAfter(start)) {
+                Appointment joined = toAppointment(appointment);
+                if (joined != null) {
+                    return joined;
+                }
+            }
+        }
+
+        List<Appointment> occurrences = occurrences(Set.of(userId), start.toInstant(ZoneOffset.UTC), end.toInstant(ZoneOffset.UTC));
+        return occurrences.isEmpty() ? null : occurrences.get(0);
+    }
+
+    public synchronized Integer checkUser(String username, String password) {
+        for (UserRow user : tables.users.values()) {
+            if (user.userName.equals(username) && user.password.equals(password)) {
+                return user.userId;
+            }
+        }
+
+        return null;
+    }
+
+    public synchronized String getUsername(int userId) {
+        UserRow user = tables.users.get(userId);
+        return user == null ? null : user.userName;
+    }
+
+    public synchronized String getAppointmentsByType() {
+        StringBuilder alertBody = new StringBuilder();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        YearMonth month = YearMonth.now();
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (YearMonth.from(appointment.start).equals(month)) {
+                counts.merge(appointment.type, 1, Integer::sum);
+            }
+        }
+
+        counts.forEach((type, count) -> alertBody.append(type).append(":  ").append(count).append("\r\n"));
+        return alertBody.toString();
+    }
+
+    public synchronized int insertCountry(String countryName, String username) throws SQLException {
+        for (CountryRow country : tables.countries.values()) {
+            if (country.country.equals(countryName)) {
+                return country.countryId;
+            }
+        }
+
+        CountryRow country = new CountryRow(++tables.lastCountryId, countryName);
+        tables.countries.put(country.countryId, country);
+        save();
+
+        return country.countryId;
+    }
+
+    public synchronized int insertCity(String cityName, int countryId, String username) throws SQLException {
+        for (CityRow city : tables.cities.values()) {
+            if (city.city.equals(cityName)) {
+                return city.cityId;
+            }
+        }
+
+        CityRow city = new CityRow(++tables.lastCityId, cityName, countryId);
+        tables.cities.put(city.cityId, city);
+        save();
+
+        return city.cityId;
+    }
+
+    public synchronized int insertAddress(String address, String address2, int cityId, String postalCode, String phone, String username) throws SQLException {
+        for (AddressRow row : tables.addresses.values()) {
+            if (row.address.equals(address) && row.address2.equals(address2) && row.cityId == cityId &&
+                    row.postalCode.equals(postalCode) && row.phone.equals(phone)) {
+                return row.addressId;
+            }
+        }
+
+        AddressRow row = new AddressRow(++tables.lastAddressId, address, address2, cityId, postalCode, phone);
+        tables.addresses.put(row.addressId, row);
+        save();
+
+        return row.addressId;
+    }
+
+    public synchronized void insertCustomer(String name, int addressId, String username) throws SQLException {
+        CustomerRow customer = new CustomerRow(++tables.lastCustomerId, name, addressId);
+        tables.customers.put(customer.customerId, customer);
+        save();
+    }
+
+    public synchronized void insertAppointment(String customerName, int userId, String title, String description, String location,
+                                               String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException {
+        AppointmentRow appointment = new AppointmentRow(++tables.lastAppointmentId, customerIdFor(customerName), userId);
+        appointment.set(title, description, location, contact, type, url, toUtc(ldtStart), toUtc(ldtEnd));
+        tables.appointments.put(appointment.appointmentId, appointment);
+        save();
+    }
+
+    public synchronized void insertAppointmentSeries(String customerName, int userId, String title, String description, String location, String contact,
+                                                     String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        AppointmentRow appointment = new AppointmentRow(++tables.lastAppointmentId, customerIdFor(customerName), userId);
+        appointment.set(title, description, location, contact, type, url, toUtc(ldtStart), toUtc(ldtEnd));
+        appointment.recurrence = rule.toString();
+        appointment.recurrenceZone = ZoneId.systemDefault().getId();
+        tables.appointments.put(appointment.appointmentId, appointment);
+        save();
+    }
+
+    // Every method holds the store's lock, so checking and inserting under it is already one step.
+    public synchronized Appointment bookAppointment(String customerName, int userId, String title, String description, String location, String contact,
+                                                    String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        Appointment overlap = rule == null
+                ? checkForOverlappingAppointment(ldtStart, ldtEnd, userId)
+                : checkForOverlappingSeries(ldtStart, ldtEnd, rule, userId, 0);
+        if (overlap != null) {
+            return overlap;
+        }
+
+        if (rule == null) {
+            insertAppointment(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, username);
+        } else {
+            insertAppointmentSeries(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+        }
+        return null;
+    }
+
+    // Every customer is looked up and every calendar checked before anything is added, so an unknown customer or a
+    // clash leaves the store untouched.
+    public synchronized List<Appointment> insertAppointments(List<Appointment> appointments, String username) throws SQLException {
+        if (appointments.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        LocalDate[] span = Repository.span(appointments);
+        Set<Integer> userIds = new LinkedHashSet<>();
+        appointments.forEach(appointment -> userIds.add(appointment.getUserId()));
+        List<Appointment> conflicts = Repository.conflicts(getAppointmentsForUsers(span[0], span[1], userIds), appointments);
+        if (!conflicts.isEmpty()) {
+            return conflicts;
+        }
+
+        List<Integer> customerIds = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            customerIds.add(customerIdFor(appointment.getCustomerName()));
+        }
+
+        for (int i = 0; i < appointments.size(); i++) {
+            Appointment source = appointments.get(i);
+            AppointmentRow appointment = new AppointmentRow(++tables.lastAppointmentId, customerIds.get(i), source.getUserId());
+            appointment.set(source.getTitle(), source.getDescription(), source.getLocation(), source.getContact(), source.getType(),
+                    source.getUrl(), source.getStart().withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime(),
+                    source.getEnd().withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());
+            tables.appointments.put(appointment.appointmentId, appointment);
+        }
+        save();
+        return conflicts;
+    }
+
+    public synchronized void cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        AppointmentRow appointment = tables.appointments.get(appointmentId);
+        if (appointment == null || appointment.version != version) {
+            throw new UpdateConflictException(appointmentId, version, appointment == null ? null : toAppointment(appointment));
+        }
+
+        tables.exceptions.computeIfAbsent(appointmentId, id -> new LinkedHashSet<>()).add(toUtc(occurrenceStart));
+        appointment.version++;
+        save();
+    }
+
+    // As in MySQL: the rule gets an UNTIL the day before the cut, or the series goes if nothing is left before it.
+    public synchronized void endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        AppointmentRow appointment = tables.appointments.get(appointmentId);
+        if (appointment == null || appointment.version != version) {
+            throw new UpdateConflictException(appointmentId, version, appointment == null ? null : toAppointment(appointment));
+        }
+        if (appointment.recurrence == null) {
+            return;
+        }
+
+        ZonedDateTime cut = occurrenceStart.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of(appointment.recurrenceZone));
+        if (!cut.toLocalDateTime().isAfter(firstStart(appointment).toLocalDateTime())) {
+            deleteAppointment(appointmentId);
+            return;
+        }
+
+        appointment.recurrence = RecurrenceRule.parse(appointment.recurrence).withUntil(cut.toLocalDate().minusDays(1)).toString();
+        appointment.version++;
+        Set<LocalDateTime> cancelled = tables.exceptions.get(appointmentId);
+        if (cancelled != null) {
+            LocalDateTime utcCut = cut.withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+            cancelled.removeIf(start -> !start.isBefore(utcCut));
+        }
+        save();
+    }
+
+    // Everything that could refuse a write, a stale customer or series, an unknown customer name or an appointment that
+    // clashes, is checked before anything changes, so a failing unit leaves the store untouched. An appointment is
+    // checked against the calendar without the appointments and series the unit has deleted or cut by then, since
+    // splitting a series puts the new part where the old one was, and against the unit's earlier bookings, which aren't
+    // in the store yet. The writes then reuse the methods above, skipping the
+    // rows of a customer that didn't change, and the store is saved once.
+    public synchronized UnitOfWork.Result commit(UnitOfWork work) throws SQLException {
+        Set<String> customerNames = new HashSet<>();
+        tables.customers.values().forEach(customer -> customerNames.add(customer.customerName));
+        // The version each series will be at by then, since every write to one moves it on.
+        Map<Integer, Integer> seriesVersions = new HashMap<>();
+        Set<Integer> rewritten = new HashSet<>();
+        // The unit's bookings so far, which a later one mustn't overlap any more than a stored appointment.
+        List<Appointment> booked = new ArrayList<>();
+        for (UnitOfWork.Write write : work.getWrites()) {
+            switch (write.kind) {
+                case INSERT_CUSTOMER:
+                    customerNames.add(write.customer().getName());
+                    break;
+                case UPDATE_CUSTOMER: {
+                    CustomerRow customer = tables.customers.get(write.id);
+                    if (customer == null || customer.version != write.before.getVersion()) {
+                        throw new UpdateConflictException(write.id, write.before.getVersion(), customer == null ? null : toCustomer(customer));
+                    }
+                    customerNames.add(write.customer().getName());
+                    break;
+                }
+                case INSERT_APPOINTMENT: {
+                    Appointment appointment = write.appointment();
+                    if (!customerNames.contains(appointment.getCustomerName())) {
+                        throw new SQLException("No customer named " + appointment.getCustomerName() + ".", "23000");
+                    }
+                    LocalDateTime start = appointment.getStart().withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                    LocalDateTime end = appointment.getEnd().withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                    RecurrenceRule rule = appointment.isRecurring() ? RecurrenceRule.parse(appointment.getRecurrence()) : null;
+                    Appointment overlap = findOverlapping(start, end, rule, appointment.getUserId(), rewritten);
+                    if (overlap == null) {
+                        overlap = Repository.firstPendingOverlap(booked, start, end, rule, appointment.getUserId());
+                    }
+                    if (overlap != null) {
+                        throw new OverlapException(overlap);
+                    }
+                    booked.add(appointment);
+                    break;
+                }
+                case DELETE_APPOINTMENT:
+                    rewritten.add(write.id);
+                    break;
+                case DELETE_APPOINTMENT_VERSION:
+                case CANCEL_OCCURRENCE:
+                case END_SERIES_BEFORE: {
+                    AppointmentRow appointment = tables.appointments.get(write.id);
+                    if (appointment == null || seriesVersions.getOrDefault(write.id, appointment.version) != write.version) {
+                        throw new UpdateConflictException(write.id, write.version, appointment == null ? null : toAppointment(appointment));
+                    }
+                    seriesVersions.put(write.id, write.version + 1);
+                    rewritten.add(write.id);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        String username = work.getUsername();
+        int statements = 0;
+        int skipped = 0;
+        int unbatched = 0;
+        deferSave = true;
+        try {
+            for (UnitOfWork.Write write : work.getWrites()) {
+                unbatched += write.unbatchedRoundTrips();
+                switch (write.kind) {
+                    case INSERT_CUSTOMER: {
+                        Customer customer = write.customer();
+                        int countryId = insertCountry(customer.getCountry(), username);
+                        int cityId = insertCity(customer.getCity(), countryId, username);
+                        int addressId = insertAddress(customer.getAddress(), customer.getAddress2(), cityId, customer.getPostalCode(), customer.getPhone(), username);
+                        insertCustomer(customer.getName(), addressId, username);
+                        statements += 4;
+                        break;
+                    }
+                    case UPDATE_CUSTOMER: {
+                        Customer before = write.before;
+                        Customer after = write.customer();
+                        boolean address = UnitOfWork.addressRowChanged(before, after);
+                        boolean city = UnitOfWork.cityRowChanged(before, after);
+                        boolean country = UnitOfWork.countryRowChanged(before, after);
+                        if (!UnitOfWork.customerRowChanged(before, after) && !address && !city && !country) {
+                            skipped += 4;
+                            break;
+                        }
+
+                        updateCustomer(after.getName(), before.getId(), before.getVersion(), username);
+                        statements++;
+                        if (address) {
+                            updateAddress(after.getAddress(), after.getAddress2(), after.getPostalCode(), after.getPhone(), before.getAddressId(), username);
+                            statements++;
+                        } else {
+                            skipped++;
+                        }
+                        if (city) {
+                            updateCity(after.getCity(), before.getCityId(), username);
+                            statements++;
+                        } else {
+                            skipped++;
+                        }
+                        if (country) {
+                            updateCountry(after.getCountry(), before.getCountryId(), username);
+                            statements++;
+                        } else {
+                            skipped++;
+                        }
+                        break;
+                    }
+                    case INSERT_APPOINTMENT: {
+                        Appointment appointment = write.appointment();
+                        LocalDateTime start = appointment.getStart().withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                        LocalDateTime end = appointment.getEnd().withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                        if (appointment.isRecurring()) {
+                            insertAppointmentSeries(appointment.getCustomerName(), appointment.getUserId(), appointment.getTitle(), appointment.getDescription(),
+                                    appointment.getLocation(), appointment.getContact(), appointment.getType(), appointment.getUrl(), start, end,
+                                    RecurrenceRule.parse(appointment.getRecurrence()), username);
+                        } else {
+                            insertAppointment(appointment.getCustomerName(), appointment.getUserId(), appointment.getTitle(), appointment.getDescription(),
+                                    appointment.getLocation(), appointment.getContact(), appointment.getType(), appointment.getUrl(), start, end, username);
+                        }
+                        statements++;
+                        break;
+                    }
+                    case DELETE_APPOINTMENT:
+                    case DELETE_APPOINTMENT_VERSION:
+                        deleteAppointment(write.id);
+                        statements++;
+                        break;
+                    case CANCEL_OCCURRENCE:
+                        cancelOccurrence(write.id, write.occurrenceStart, write.version, username);
+                        statements++;
+                        break;
+                    case END_SERIES_BEFORE:
+                        endSeriesBefore(write.id, write.occurrenceStart, write.version, username);
+                        statements += 3;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown write " + write.kind);
+                }
+            }
+        } finally {
+            deferSave = false;
+        }
+
+        // The one snapshot write is the only trip this store makes.
+        save();
+        return new UnitOfWork.Result(statements, skipped, statements == 0 ? 0 : 1, unbatched);
+    }
+
+    public synchronized void updateCountry(String countryName, int countryId, String username) throws SQLException {
+        CountryRow country = tables.countries.get(countryId);
+        if (country != null) {
+            country.country = countryName;
+            save();
+        }
+    }
+
+    public synchronized void updateCity(String cityName, int cityId, String username) throws SQLException {
+        CityRow city = tables.cities.get(cityId);
+        if (city != null) {
+            city.city = cityName;
+            save();
+        }
+    }
+
+    public synchronized void updateAddress(String address, String address2, String postalCode, String phone, int addressId, String username) throws SQLException {
+        AddressRow row = tables.addresses.get(addressId);
+        if (row != null) {
+            row.address = address;
+            row.address2 = address2;
+            row.postalCode = postalCode;
+            row.phone = phone;
+            save();
+        }
+    }
+
+    public synchronized void updateCustomer(String customerName, int customerId, int version, String username) throws SQLException {
+        CustomerRow customer = tables.customers.get(customerId);
+        if (customer == null || customer.version != version) {
+            throw new UpdateConflictException(customerId, version, customer == null ? null : toCustomer(customer));
+        }
+
+        customer.customerName = customerName;
+        customer.version++;
+        save();
+    }
+
+    public synchronized void updateAppointment(int appointmentId, String customerName, int userId, String title, String description, String location,
+                                               String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException {
+        AppointmentRow appointment = tables.appointments.get(appointmentId);
+        if (appointment == null || appointment.version != version) {
+            throw new UpdateConflictException(appointmentId, version, appointment == null ? null : toAppointment(appointment));
+        }
+
+        RecurrenceRule rule = appointment.recurrence == null ? null : RecurrenceRule.parse(appointment.recurrence);
+        Appointment overlap = findOverlapping(ldtStart, ldtEnd, rule, userId, Set.of(appointmentId));
+        if (overlap != null) {
+            throw new OverlapException(overlap);
+        }
+
+        appointment.customerId = customerIdFor(customerName);
+        appointment.userId = userId;
+        appointment.set(title, description, location, contact, type, url, toUtc(ldtStart), toUtc(ldtEnd));
+        appointment.version++;
+        save();
+    }
+
+    // The first appointment on the consultant's calendar, other than those of the ids given, that a one-off or, when
+    // rule isn't null, a series at the times given would overlap.
+    private Appointment findOverlapping(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId, Set<Integer> ignoreAppointmentIds) {
+        List<Appointment> existing = new ArrayList<>(getAppointmentsInRange(ldtStart.toLocalDate(), Repository.lastDayChecked(ldtStart, ldtEnd, rule), userId));
+        existing.removeIf(appointment -> ignoreAppointmentIds.contains(appointment.getId()));
+        return Repository.firstOverlap(existing, ldtStart, ldtEnd, rule, 0);
+    }
+
+    public synchronized ObservableList<String> getUsernames() {
+        ObservableList<String> returnList = FXCollections.observableArrayList();
+        tables.users.values().forEach(user -> returnList.add(user.userName));
+        return returnList;
+    }
+
+    public synchronized Map<Integer, String> getUserDirectory() {
+        Map<Integer, String> directory = new LinkedHashMap<>();
+        tables.users.values().forEach(user -> directory.put(user.userId, user.userName));
+        return directory;
+    }
+
+    public synchronized ObservableList<Appointment> getConsultantReport(String username) {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+
+        for (UserRow user : tables.users.values()) {
+            if (user.userName.equals(username)) {
+                for (AppointmentRow appointment : tables.appointments.values()) {
+                    if (appointment.userId == user.userId) {
+                        addJoined(returnList, appointment);
+                    }
+                }
+            }
+        }
+
+        return returnList;
+    }
+
+    public synchronized ObservableList<String> getUniqueContacts() {
+        Set<String> contacts = new LinkedHashSet<>();
+        tables.appointments.values().forEach(appointment -> contacts.add(appointment.contact));
+        return FXCollections.observableArrayList(contacts);
+    }
+
+    public synchronized ObservableList<Appointment> getContactReport(String contactName) {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (Objects.equals(appointment.contact, contactName)) {
+                addJoined(returnList, appointment);
+            }
+        }
+
+        return returnList;
+    }
+
+    public synchronized CustomerIds getIdsForCustomer(int customerId) {
+        CustomerRow customer = tables.customers.get(customerId);
+        AddressRow address = customer == null ? null : tables.addresses.get(customer.addressId);
+        CityRow city = address == null ? null : tables.cities.get(address.cityId);
+
+        if (city == null || !tables.countries.containsKey(city.countryId)) {
+            return null;
+        }
+
+        return new CustomerIds(customerId, address.addressId, city.cityId, city.countryId);
+    }
+
+    public synchronized Appointment getAppointment(int appointmentId) {
+        AppointmentRow appointment = tables.appointments.get(appointmentId);
+        Appointment joined = appointment == null ? null : toAppointment(appointment);
+        if (joined != null) {
+            joined.setRecurrence(appointment.recurrence);
+        }
+        return joined;
+    }
+
+    public synchronized List<LocalDateTime> getCancelledOccurrences(int appointmentId) {
+        List<LocalDateTime> cancelled = new ArrayList<>();
+        for (LocalDateTime start : tables.exceptions.getOrDefault(appointmentId, Set.of())) {
+            cancelled.add(start.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime());
+        }
+        cancelled.sort(null);
+        return cancelled;
+    }
+
+    public synchronized void deleteAppointment(int appointmentId) throws SQLException {
+        if (tables.appointments.remove(appointmentId) != null) {
+            tables.exceptions.remove(appointmentId);
+            save();
+        }
+    }
+
+    // The appointment table's foreign key refuses this in MySQL, so it is refused here too.
+    public synchronized void deleteCustomer(int customerId) throws SQLException {
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            if (appointment.customerId == customerId) {
+                throw new SQLException("Cannot delete customer " + customerId + ": it still has appointments.", "23000");
+            }
+        }
+
+        if (tables.customers.remove(customerId) != null) {
+            save();
+        }
+    }
+
+    // Nothing is held open, and every write has already been saved, so the store stays usable after this.
+    public void close() {
+    }
+
+    private void addJoined(ObservableList<Appointment> returnList, AppointmentRow appointment) {
+        Appointment joined = toAppointment(appointment);
+        if (joined != null) {
+            returnList.add(joined);
+        }
+    }
+
+    // The equivalent of joining a customer to its address, city and country, so null when any of them is gone.
+    private Customer toCustomer(CustomerRow customer) {
+        AddressRow address = tables.addresses.get(customer.addressId);
+        CityRow city = address == null ? null : tables.cities.get(address.cityId);
+        CountryRow country = city == null ? null : tables.countries.get(city.countryId);
+        return country == null ? null : toCustomer(customer, address, city, country);
+    }
+
+    private static Customer toCustomer(CustomerRow customer, AddressRow address, CityRow city, CountryRow country) {
+        Customer joined = new Customer(customer.customerId, customer.customerName, address.address, address.address2,
+                city.city, country.country, address.postalCode, address.phone);
+        joined.setVersion(customer.version);
+        joined.setRowIds(address.addressId, city.cityId, country.countryId);
+        return joined;
+    }
+
+    // The equivalent of joining an appointment to its customer, so null when the customer is gone.
+    private Appointment toAppointment(AppointmentRow appointment) {
+        CustomerRow customer = tables.customers.get(appointment.customerId);
+        if (customer == null) {
+            return null;
+        }
+
+        Appointment joined = new Appointment(appointment.appointmentId, customer.customerName, appointment.userId, appointment.title,
+                appointment.description, appointment.location, appointment.contact, appointment.type, appointment.url,
+                appointment.start.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault()),
+                appointment.end.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault()));
+        joined.setVersion(appointment.version);
+        return joined;
+    }
+
+    // The occurrences of these users' series that overlap the window, less the cancelled ones.
+    private List<Appointment> occurrences(Set<Integer> userIds, Instant windowStart, Instant windowEnd) {
+        List<Appointment> occurrences = new ArrayList<>();
+
+        for (AppointmentRow appointment : tables.appointments.values()) {
+            Appointment first = userIds.contains(appointment.userId) && appointment.recurrence != null ? toAppointment(appointment) : null;
+            if (first == null) {
+                continue;
+            }
+
+            Set<LocalDateTime> cancelled = tables.exceptions.getOrDefault(appointment.appointmentId, Set.of());
+            Duration length = Duration.between(appointment.start, appointment.end);
+            for (ZonedDateTime start : RecurrenceRule.parse(appointment.recurrence).occurrences(firstStart(appointment), length, windowStart, windowEnd)) {
+                if (!cancelled.contains(start.withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime())) {
+                    ZonedDateTime localStart = start.withZoneSameInstant(ZoneId.systemDefault());
+                    occurrences.add(first.occurrence(localStart, localStart.plus(length), appointment.recurrence));
+                }
+            }
+        }
+
+        return occurrences;
+    }
+
+    // The first occurrence of a series, in the zone its wall clock times are kept in.
+    private static ZonedDateTime firstStart(AppointmentRow appointment) {
+        return appointment.start.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.of(appointment.recurrenceZone));
+    }
+
+    private int customerIdFor(String customerName) throws SQLException {
+        for (CustomerRow customer : tables.customers.values()) {
+            if (customer.customerName.equals(customerName)) {
+                return customer.customerId;
+            }
+        }
+
+        throw new SQLException("No customer named " + customerName + ".", "23000");
+    }
+
+    // Write the whole store to a temporary file and move it over the old snapshot, so a crash mid-write never leaves
+    // a half written file behind.
+    private void save() throws SQLException {
+        if (file == null || deferSave) {
+            return;
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary); ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(tables);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            throw new SQLException("Unable to save the embedded database to " + file, ioe);
+        }
+    }
+
+    private static LocalDateTime toUtc(LocalDateTime local) {
+        return local.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    // Inclusive at both ends, like SQL's BETWEEN.
+    private static boolean between(LocalDateTime value, LocalDateTime from, LocalDateTime to) {
+        return !value.isBefore(from) && !value.isAfter(to);
+    }
+
+    // The rows, keyed by primary key in insertion order, and the last auto increment value of each table.
+    private static class Tables implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<Integer, CountryRow> countries = new LinkedHashMap<>();
+        private final Map<Integer, CityRow> cities = new LinkedHashMap<>();
+        private final Map<Integer, AddressRow> addresses = new LinkedHashMap<>();
+        private final Map<Integer, CustomerRow> customers = new LinkedHashMap<>();
+        private final Map<Integer, UserRow> users = new LinkedHashMap<>();
+        private final Map<Integer, AppointmentRow> appointments = new LinkedHashMap<>();
+        // The UTC starts of cancelled occurrences, by series. Not final, as snapshots from before series lack it.
+        private Map<Integer, Set<LocalDateTime>> exceptions = new LinkedHashMap<>();
+        private int lastCountryId;
+        private int lastCityId;
+        private int lastAddressId;
+        private int lastCustomerId;
+        private int lastUserId;
+        private int lastAppointmentId;
+    }
+
+    private static class CountryRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int countryId;
+        private String country;
+
+        private CountryRow(int countryId, String country) {
+            this.countryId = countryId;
+            this.country = country;
+        }
+    }
+
+    private static class CityRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int cityId;
+        private final int countryId;
+        private String city;
+
+        private CityRow(int cityId, String city, int countryId) {
+            this.cityId = cityId;
+            this.city = city;
+            this.countryId = countryId;
+        }
+    }
+
+    private static class AddressRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int addressId;
+        private final int cityId;
+        private String address;
+        private String address2;
+        private String postalCode;
+        private String phone;
+
+        private AddressRow(int addressId, String address, String address2, int cityId, String postalCode, String phone) {
+            this.addressId = addressId;
+            this.address = address;
+            this.address2 = address2;
+            this.cityId = cityId;
+            this.postalCode = postalCode;
+            this.phone = phone;
+        }
+    }
+
+    private static class CustomerRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int customerId;
+        private final int addressId;
+        private String customerName;
+        // Snapshots from before versions read this as 0, which is where every row starts.
+        private int version;
+
+        private CustomerRow(int customerId, String customerName, int addressId) {
+            this.customerId = customerId;
+            this.customerName = customerName;
+            this.addressId = addressId;
+        }
+    }
+
+    private static class UserRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int userId;
+        private final String userName;
+        private final String password;
+
+        private UserRow(int userId, String userName, String password) {
+            this.userId = userId;
+            this.userName = userName;
+            this.password = password;
+        }
+    }
+
+    private static class AppointmentRow implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int appointmentId;
+        private int customerId;
+        private int userId;
+        private String title;
+        private String description;
+        private String location;
+        private String contact;
+        private String type;
+        private String url;
+        private LocalDateTime start;
+        private LocalDateTime end;
+        // Set on the first occurrence of a recurring series only.
+        private String recurrence;
+        private String recurrenceZone;
+        private int version;
+
+        private AppointmentRow(int appointmentId, int customerId, int userId) {
+            this.appointmentId = appointmentId;
+            this.customerId = customerId;
+            this.userId = userId;
+        }
+
+        private void set(String title, String description, String location, String contact, String type, String url,
+                         LocalDateTime start, LocalDateTime end) {
+            this.title = title;
+            this.description = description;
+            this.location = location;
+            this.contact = contact;
+            this.type = type;
+            this.url = url;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The Repository of an ApiServer, for clients with backend=http: every call is one POST to the server, which runs it
+// on its pooled backend. Failures come back as the SQLException the backend threw, conflicts and overlaps included, and
+// the methods that report their own failures do so here too, the server being unreachable among them.
+public class HttpRepository implements Repository {
+    private static final Map<String, Method> METHODS = new HashMap<>();
+
+    static {
+        for (Method method : Repository.class.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                // By name, as ApiServer has them; a default overload is never sent, since it runs through commit.
+                METHODS.merge(method.getName(), method, (kept, other) -> kept.isDefault() ? other : kept);
+            }
+        }
+    }
+
+    // Shared, as each client runs a selector thread of its own.
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private final URI base;
+    private final String token;
+
+    // base is the server's root, as in http://localhost:8195.
+    public HttpRepository(URI base) {
+        this(base, null);
+    }
+
+    // For a server started with a server.token: token is sent with every call.
+    public HttpRepository(URI base, String token) {
+        this.base = base;
+        this.token = token == null || token.isBlank() ? null : token.trim();
+    }
+
+    public ObservableList<Customer> getAllCustomers() {
+        return quietly("getAllCustomers");
+    }
+
+    public ObservableList<Appointment> getAppointmentsInRange(LocalDate start, LocalDate end, int userId) {
+        return quietly("getAppointmentsInRange", start, end, userId);
+    }
+
+    public ObservableList<Appointment> readAppointmentsInRange(LocalDate start, LocalDate end, int userId) throws SQLException {
+        return call("readAppointmentsInRange", start, end, userId);
+    }
+
+    public ObservableList<Appointment> getAppointmentsForUsers(LocalDate start, LocalDate end, Collection<Integer> userIds) {
+        return quietly("getAppointmentsForUsers", start, end, userIds);
+    }
+
+    public Appointment checkForUpcomingAppointment(Integer userId) {
+        return quietly("checkForUpcomingAppointment", userId);
+    }
+
+    public Appointment checkForOverlappingAppointment(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId) {
+        return quietly("checkForOverlappingAppointment", ldtStart, ldtEnd, userId);
+    }
+
+    // One call for the server to answer from its own busy slots, rather than fetching a year of appointments here.
+    public Appointment checkForOverlappingSeries(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId, int ignoreAppointmentId) {
+        return quietly("checkForOverlappingSeries", ldtStart, ldtEnd, rule, userId, ignoreAppointmentId);
+    }
+
+    public Integer checkUser(String username, String password) throws SQLException {
+        return call("checkUser", username, password);
+    }
+
+    public String getUsername(int userId) throws SQLException {
+        return call("getUsername", userId);
+    }
+
+    public String getAppointmentsByType() throws SQLException {
+        return call("getAppointmentsByType");
+    }
+
+    public int insertCountry(String countryName, String username) throws SQLException {
+        return call("insertCountry", countryName, username);
+    }
+
+    public int insertCity(String cityName, int countryId, String username) throws SQLException {
+        return call("insertCity", cityName, countryId, username);
+    }
+
+    public int insertAddress(String address, String address2, int cityId, String postalCode, String phone, String username) throws SQLException {
+        return call("insertAddress", address, address2, cityId, postalCode, phone, username);
+    }
+
+    public void insertCustomer(String name, int addressId, String username) throws SQLException {
+        call("insertCustomer", name, addressId, username);
+    }
+
+    public void insertAppointment(String customerName, int userId, String title, String description, String location,
+                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException {
+        call("insertAppointment", customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, username);
+    }
+
+    public void insertAppointmentSeries(String customerName, int userId, String title, String description, String location, String contact,
+                                        String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        call("insertAppointmentSeries", customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+    }
+
+    public Appointment bookAppointment(String customerName, int userId, String title, String description, String location, String contact,
+                                       String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        return call("bookAppointment", customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+    }
+
+    public List<Appointment> insertAppointments(List<Appointment> appointments, String username) throws SQLException {
+        return call("insertAppointments", appointments, username);
+    }
+
+    public void cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        call("cancelOccurrence", appointmentId, occurrenceStart, version, username);
+    }
+
+    public void endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        call("endSeriesBefore", appointmentId, occurrenceStart, version, username);
+    }
+
+    public UnitOfWork.Result commit(UnitOfWork work) throws SQLException {
+        return call("commit", work);
+    }
+
+    public void updateCountry(String countryName, int countryId, String username) throws SQLException {
+        call("updateCountry", countryName, countryId, username);
+    }
+
+    public void updateCity(String cityName, int cityId, String username) throws SQLException {
+        call("updateCity", cityName, cityId, username);
+    }
+
+    public void updateAddress(String address, String address2, String postalCode, String phone, int addressId, String username) throws SQLException {
+        call("updateAddress", address, address2, postalCode, phone, addressId, username);
+    }
+
+    public void updateCustomer(String customerName, int customerId, int version, String username) throws SQLException {
+        call("updateCustomer", customerName, customerId, version, username);
+    }
+
+    public void updateAppointment(int appointmentId, String customerName, int userId, String title, String description, String location,
+                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException {
+        call("updateAppointment", appointmentId, customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, version, username);
+    }
+
+    public ObservableList<String> getUsernames() throws SQLException {
+        return call("getUsernames");
+    }
+
+    public Map<Integer, String> getUserDirectory() throws SQLException {
+        return call("getUserDirectory");
+    }
+
+    public ObservableList<Appointment> getConsultantReport(String username) throws SQLException {
+        return call("getConsultantReport", username);
+    }
+
+    public ObservableList<String> getUniqueContacts() throws SQLException {
+        return call("getUniqueContacts");
+    }
+
+    public ObservableList<Appointment> getContactReport(String contactName) throws SQLException {
+        return call("getContactReport", contactName);
+    }
+
+    public CustomerIds getIdsForCustomer(int customerId) throws SQLException {
+        return call("getIdsForCustomer", customerId);
+    }
+
+    public Appointment getAppointment(int appointmentId) throws SQLException {
+        return call("getAppointment", appointmentId);
+    }
+
+    public List<LocalDateTime> getCancelledOccurrences(int appointmentId) throws SQLException {
+        return call("getCancelledOccurrences", appointmentId);
+    }
+
+    public void deleteAppointment(int appointmentId) throws SQLException {
+        call("deleteAppointment", appointmentId);
+    }
+
+    public void deleteCustomer(int customerId) throws SQLException {
+        call("deleteCustomer", customerId);
+    }
+
+    // The server's connections are its own; the HTTP client holds nothing that needs closing.
+    public void close() {
+    }
+
+    // POST the call and decode its result by the return type the Repository declares.
+    @SuppressWarnings("unchecked")
+    private <T> T call(String name, Object... args) throws SQLException {
+        Method method = METHODS.get(name);
+        List<Object> json = new ArrayList<>();
+        for (Object arg : args) {
+            json.add(ApiCodec.encode(arg));
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve("/api/" + name))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(json), StandardCharsets.UTF_8));
+        if (token != null) {
+            builder.header(ApiServer.TOKEN_HEADER, token);
+        }
+        HttpRequest request = builder.build();
+        HttpResponse<String> response;
+        try {
+            response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException ioe) {
+            throw new SQLException("Unable to reach the API server at " + base, "08S01", ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted calling the API server.", "08S01", ie);
+        }
+
+        Map<String, Object> reply = (Map<String, Object>) Json.parse(response.body());
+        if (response.statusCode() != 200) {
+            throw ApiCodec.decodeError(reply);
+        }
+        return (T) ApiCodec.decode(reply.get("result"), method.getGenericReturnType());
+    }
+
+    // For the methods that don't declare SQLException: report the failure as MySQL does and return nothing.
+    @SuppressWarnings("unchecked")
+    private <T> T quietly(String name, Object... args) {
+        try {
+            return call(name, args);
+        } catch (SQLException sqle) {
+            QueryMetrics.failed(name, sqle);
+            return ObservableList.class.isAssignableFrom(METHODS.get(name).getReturnType()) ? (T) FXCollections.observableArrayList() : null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package DAO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// The hub clients' InvalidationBuses connect to. Every line a client sends is passed on to every other client,
+// unread apart from splitting it into lines; the broker keeps no history, so a client only hears about writes made
+// while it is connected. There is one thread per client, which is plenty for a handful of desktops.
+//
+// Run it on its own with gradle invalidationBroker, or java DAO.InvalidationBroker [port] [bind address]. It listens
+// on loopback unless given an address, and on DEFAULT_PORT unless given a port; port 0 picks a free one.
+public class InvalidationBroker implements AutoCloseable {
+    public static final int DEFAULT_PORT = 4712;
+
+    private final ServerSocket server;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    public InvalidationBroker(InetAddress bindAddress, int port) throws IOException {
+        server = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::accept, "invalidation-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+        InvalidationBroker broker = new InvalidationBroker(bindAddress, port);
+        System.out.println("Invalidation broker listening on " + bindAddress.getHostAddress() + ":" + broker.getPort());
+        Thread.currentThread().join();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    // Stop listening and drop every client, whose buses then reconnect until a broker is back.
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        clients.forEach(Client::close);
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Client client = new Client(socket);
+                clients.add(client);
+                Thread reader = new Thread(client::relay, "invalidation-broker-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException ioe) {
+                if (!server.isClosed()) {
+                    ioe.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private class Client {
+        private final Socket socket;
+        private final Writer out;
+
+        private Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        // Pass each line this client sends to the others until it disconnects.
+        private void relay() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    for (Client other : clients) {
+                        if (other != this) {
+                            other.send(line);
+                        }
+                    }
+                }
+            } catch (IOException ioe) {
+                // Disconnected mid-line; the client's bus reconnects and starts over.
+            } finally {
+                close();
+            }
+        }
+
+        // A client that can't be written to is dropped; its bus reconnects and treats the gap as ChangeEvent.ALL.
+        private synchronized void send(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException ioe) {
+                close();
+            }
+        }
+
+        private void close() {
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                // Already closed.
+            }
+        }
+    }
+}
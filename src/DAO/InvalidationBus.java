@@ -0,0 +1,143 @@
+package DAO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// A client's connection to the InvalidationBroker. MySQL publishes the ChangeEvents of each write here once it has
+// committed, and caches subscribe to hear about the writes of every other client, so they can hold rows until told
+// otherwise instead of expiring them on a short timer.
+//
+// The connection is made and remade in the background. While it is down, publishing does nothing and other clients'
+// writes go unheard, so subscribers are sent ChangeEvent.ALL both when it drops and when it comes back, and should
+// fall back on their own expiry in between; isConnected() says which case they are in. Subscribers are called on the
+// bus's thread, so they must be quick and thread safe.
+public class InvalidationBus implements AutoCloseable {
+    private static final long RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final List<Consumer<ChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private Writer out;
+
+    public InvalidationBus(String host, int port) {
+        this.host = host;
+        this.port = port;
+        Thread reader = new Thread(this::run, "invalidation-bus");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void subscribe(Consumer<ChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public boolean isConnected() {
+        return socket != null;
+    }
+
+    // Send the events of one commit to every other client, in one write. Dropped while disconnected.
+    public synchronized void publish(Collection<ChangeEvent> events) {
+        if (out == null || events.isEmpty()) {
+            return;
+        }
+
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (ChangeEvent event : events) {
+                lines.append(event).append('\n');
+            }
+            out.write(lines.toString());
+            out.flush();
+        } catch (IOException ioe) {
+            // The reader sees the same failure and reconnects.
+            disconnect();
+        }
+    }
+
+    public void close() {
+        closed = true;
+        disconnect();
+    }
+
+    // Connect, read events until the connection drops, and try again with a growing pause until closed.
+    private void run() {
+        long retryMillis = RETRY_MILLIS;
+        while (!closed) {
+            boolean wasConnected = false;
+            try (Socket connected = new Socket()) {
+                connected.connect(new InetSocketAddress(host, port), (int) RETRY_MILLIS);
+                connected.setTcpNoDelay(true);
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    out = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream(), StandardCharsets.UTF_8));
+                    socket = connected;
+                }
+                wasConnected = true;
+                retryMillis = RETRY_MILLIS;
+                deliver(ChangeEvent.ALL);
+
+                BufferedReader in = new BufferedReader(new InputStreamReader(connected.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    ChangeEvent event = ChangeEvent.parse(line);
+                    if (event != null) {
+                        deliver(event);
+                    }
+                }
+            } catch (IOException ioe) {
+                // Not up yet, or gone; either way, retry below.
+            }
+
+            disconnect();
+            if (wasConnected) {
+                deliver(ChangeEvent.ALL);
+            }
+            if (!closed) {
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private synchronized void disconnect() {
+        out = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                // Already closed.
+            }
+            socket = null;
+        }
+    }
+
+    private void deliver(ChangeEvent event) {
+        for (Consumer<ChangeEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException re) {
+                re.printStackTrace();
+            }
+        }
+    }
+}
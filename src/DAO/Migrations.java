@@ -0,0 +1,300 @@
+package DAO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+// Versioned schema migrations. The scripts live in resources/migrations, named V<version>__<description>.sql and listed
+// in order in resources/migrations/index. Each applied script is recorded in schema_version with a SHA-256 checksum of
+// its text; a script that changed after it was applied stops the run rather than leaving environments to drift apart.
+//
+// Repositories.open() runs this once per process before the first MySQL connection (migrations=false in db.properties
+// turns that off), and it can be run by hand:
+//
+//     gradle migrate                  apply anything pending
+//     gradle migrate --args=status    list applied and pending versions without changing anything
+//
+// MySQL commits DDL as it goes, so a script that fails halfway is not rolled back and has to be finished by hand;
+// keep each script to one logical change.
+public class Migrations {
+    private static final String LOCATION = "/resources/migrations/";
+    // Held for the length of a run on MySQL, so two instances starting together don't both apply the same script.
+    private static final String LOCK_NAME = "appointment_manager_schema_migration";
+
+    private Migrations() {
+    }
+
+    // One script from the index.
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        private final String checksum;
+
+        private Migration(int version, String description, String script) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = sha256(script);
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+
+    // Apply every pending migration in order and return how many were applied.
+    public static int migrate(Connection conn) throws SQLException {
+        List<Migration> migrations = load();
+        boolean locked = lock(conn);
+
+        try {
+            createVersionTable(conn);
+            Map<Integer, String> applied = applied(conn);
+            validate(migrations, applied);
+
+            int count = 0;
+            for (Migration migration : migrations) {
+                if (!applied.containsKey(migration.version)) {
+                    apply(conn, migration);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            if (locked) {
+                unlock(conn);
+            }
+        }
+    }
+
+    // One line per known version, applied or pending, without changing anything.
+    public static List<String> status(Connection conn) throws SQLException {
+        List<Migration> migrations = load();
+        createVersionTable(conn);
+        Map<Integer, String> applied = applied(conn);
+        List<String> lines = new ArrayList<>();
+
+        for (Migration migration : migrations) {
+            String state;
+            if (!applied.containsKey(migration.version)) {
+                state = "pending";
+            } else if (applied.get(migration.version).equals(migration.checksum)) {
+                state = "applied";
+            } else {
+                state = "CHANGED since it was applied";
+            }
+            lines.add(String.format("V%-4d %-45s %s", migration.version, migration.description, state));
+        }
+        return lines;
+    }
+
+    // The scripts listed in the index, in order.
+    public static List<Migration> load() {
+        List<Migration> migrations = new ArrayList<>();
+
+        for (String line : read(LOCATION + "index").split("\n")) {
+            String fileName = line.trim();
+            if (fileName.isEmpty() || fileName.startsWith("#")) {
+                continue;
+            }
+            if (!fileName.matches("V\\d+__\\w+\\.sql")) {
+                throw new IllegalStateException("Migration file names must look like V1__description.sql: " + fileName);
+            }
+
+            int version = Integer.parseInt(fileName.substring(1, fileName.indexOf("__")));
+            String description = fileName.substring(fileName.indexOf("__") + 2, fileName.length() - ".sql".length()).replace('_', ' ');
+            if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version >= version) {
+                throw new IllegalStateException("Migrations must be listed in increasing version order: " + fileName);
+            }
+            migrations.add(new Migration(version, description, read(LOCATION + fileName)));
+        }
+        return migrations;
+    }
+
+    // Every applied version must still match its script, and nothing may be applied that this build doesn't know of.
+    private static void validate(List<Migration> migrations, Map<Integer, String> applied) {
+        Map<Integer, Migration> known = migrations.stream().collect(Collectors.toMap(migration -> migration.version, migration -> migration));
+
+        for (Map.Entry<Integer, String> entry : applied.entrySet()) {
+            Migration migration = known.get(entry.getKey());
+            if (migration == null) {
+                throw new IllegalStateException("The database has migration V" + entry.getKey() + " applied, which this build doesn't have.");
+            }
+            if (!migration.checksum.equals(entry.getValue())) {
+                throw new IllegalStateException("Migration V" + migration.version + " (" + migration.description + ") was changed after it was applied.");
+            }
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long started = System.nanoTime();
+
+        try (Statement statement = conn.createStatement()) {
+            for (String sql : statements(migration.script)) {
+                statement.execute(sql);
+            }
+        } catch (SQLException sqle) {
+            throw new SQLException("Migration V" + migration.version + " (" + migration.description + ") failed: " + sqle.getMessage(), sqle.getSQLState(), sqle);
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, checksum, appliedOn, executionMs) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, migration.version);
+            ps.setString(2, migration.description);
+            ps.setString(3, migration.checksum);
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now(ZoneOffset.UTC)));
+            ps.setLong(5, (System.nanoTime() - started) / 1_000_000);
+            ps.execute();
+        }
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS schema_version (" +
+                            "    version INT NOT NULL PRIMARY KEY," +
+                            "    description VARCHAR(200) NOT NULL," +
+                            "    checksum CHAR(64) NOT NULL," +
+                            "    appliedOn DATETIME NOT NULL," +
+                            "    executionMs BIGINT NOT NULL" +
+                            ")"
+            );
+        }
+    }
+
+    private static Map<Integer, String> applied(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new LinkedHashMap<>();
+
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_version ORDER BY version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    // Statements end with a semicolon at the end of a line; whole line -- comments are dropped.
+    static List<String> statements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    // Only MySQL has named locks; other databases are single process here.
+    private static boolean lock(Connection conn) throws SQLException {
+        if (!conn.getMetaData().getDatabaseProductName().equals("MySQL")) {
+            return false;
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another instance to finish migrating the schema.");
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void unlock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    // Line endings are normalised so a checkout on Windows has the same checksums.
+    private static String read(String resource) {
+        try (InputStream in = Migrations.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing migration resource " + resource);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                return reader.lines().collect(Collectors.joining("\n", "", "\n"));
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to read migration resource " + resource, ioe);
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    // The command line entry point behind gradle migrate. Connects with db.properties, as the application does.
+    public static void main(String[] args) throws SQLException {
+        Properties properties = Repositories.readProperties();
+        if (properties == null) {
+            System.out.println("No db.properties, so there is no database to migrate.");
+            return;
+        }
+        if (!properties.getProperty("backend", "mysql").trim().equals("mysql")) {
+            System.out.println("db.properties doesn't point at a MySQL database; the embedded backend needs no migrations.");
+            return;
+        }
+
+        try (Connection conn = MySQL.connect(properties)) {
+            if (args.length > 0 && args[0].equals("status")) {
+                status(conn).forEach(System.out::println);
+            } else {
+                System.out.println("Applied " + migrate(conn) + " migration(s).");
+                status(conn).forEach(System.out::println);
+            }
+        }
+    }
+}
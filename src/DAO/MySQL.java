@@ -2,6 +2,7 @@ package DAO;
 
 import appointmentManager.Appointment;
 import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.FileInputStream;
@@ -10,90 +11,206 @@ import java.io.IOException;
 import java.sql.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
-
-public class MySQL {
+import java.util.function.IntUnaryOperator;
+
+public class MySQL implements Repository {
+    // Half-open interval overlap for one user: starts before the window ends and ends after it starts. The last
+    // condition, start no earlier than the window start less the longest appointment on record, never excludes an
+    // overlapping appointment but gives the (userId, start) index a lower bound to scan from.
+    private static final String OVERLAPS = "a.userId = ? AND a.start < ? AND a.end > ? AND a.start >= ?";
+    // recurrenceUntil of a series that never ends. One-off appointments leave it NULL.
+    private static final String OPEN_ENDED = "9999-12-31 00:00:00";
+    private static final String SELECT_CUSTOMER =
+            "SELECT c.customerId, c.customerName, c.version, c.addressId, a.cityId, ci.countryId, a.address, a.address2, ci.city, co.country, a.postalCode, a.phone" +
+                    "           FROM customer AS c, address AS a, city AS ci, country AS co" +
+                    "               WHERE c.addressId = a.addressId AND" +
+                    "                   a.cityId = ci.cityId AND" +
+                    "                   ci.countryId = co.countryId";
+    // Moves a series on from the version it was read at, for the writes to it that don't rewrite its row.
+    private static final String UPDATE_SERIES_VERSION =
+            "UPDATE appointment SET lastUpdateBy = ?, version = version + 1 WHERE appointmentId = ? AND version = ?";
+    private static final String INSERT_APPOINTMENT =
+            "INSERT INTO appointment (customerId, userId, title, description, location, contact, type, url, start, end, createDate, createdBy, lastUpdateBy, recurrence, recurrenceZone, recurrenceUntil)" +
+                    "    VALUES ((SELECT customerId FROM customer WHERE customerName = ?), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_EXCEPTION =
+            "INSERT INTO appointment_exception (appointmentId, occurrenceStart, createDate, createdBy) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_CUSTOMER =
+            "UPDATE customer SET customerName = ?, lastUpdateBy = ?, version = version + 1 WHERE customerId = ? AND version = ?";
+    private static final String UPDATE_ADDRESS =
+            "UPDATE address SET address = ?, address2 = ?, postalCode = ?, phone = ?, lastUpdateBy = ? WHERE addressId = ?";
+    private static final String UPDATE_CITY = "UPDATE city SET city = ?, lastUpdateBy = ? WHERE cityId = ?";
+    private static final String UPDATE_COUNTRY = "UPDATE country SET country = ?, lastUpdateBy = ? WHERE countryId = ?";
+    // A new customer's lookup-or-insert chain as four statements that need no answers from each other, so nothing has
+    // to be read back between them: each row is only inserted if it isn't there, and the next finds it by its values.
+    // Cities are found by name alone and addresses by every field, as insertCity and insertAddress find them.
+    private static final String CITY_ID = "(SELECT cityId FROM city WHERE city = ? LIMIT 1)";
+    private static final String INSERT_COUNTRY_IF_NEW =
+            "INSERT INTO country (country, createDate, createdBy, lastUpdateBy)" +
+                    "    SELECT ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM country WHERE country = ?)";
+    private static final String INSERT_CITY_IF_NEW =
+            "INSERT INTO city (city, countryId, createDate, createdBy, lastUpdateBy)" +
+                    "    SELECT ?, (SELECT countryId FROM country WHERE country = ? LIMIT 1), ?, ?, ? FROM DUAL" +
+                    "    WHERE NOT EXISTS (SELECT 1 FROM city WHERE city = ?)";
+    private static final String INSERT_ADDRESS_IF_NEW =
+            "INSERT INTO address (address, address2, cityId, postalCode, phone, createDate, createdBy, lastUpdateBy)" +
+                    "    SELECT ?, ?, " + CITY_ID + ", ?, ?, ?, ?, ? FROM DUAL" +
+                    "    WHERE NOT EXISTS (SELECT 1 FROM address WHERE address = ? AND address2 = ? AND cityId = " + CITY_ID + " AND postalCode = ? AND phone = ?)";
+    private static final String INSERT_CUSTOMER_AT_ADDRESS =
+            "INSERT INTO customer (customerName, addressId, active, createDate, createdBy, lastUpdateBy)" +
+                    "    SELECT ?, (SELECT addressId FROM address WHERE address = ? AND address2 = ? AND cityId = " + CITY_ID + " AND postalCode = ? AND phone = ? LIMIT 1)," +
+                    "    1, ?, ?, ? FROM DUAL";
     private final String DB_CONN_PATH = "src/resources/db.properties";
     private Connection conn;
     private PreparedStatement ps;
     private ResultSet rs;
+    // Where the ChangeEvents of committed writes go, if anywhere, and those of the transaction in progress.
+    private InvalidationBus changes;
+    private IntUnaryOperator publishedIds = IntUnaryOperator.identity();
+    private List<ChangeEvent> uncommitted;
 
     // A no arg Constructor that opens a connection to the database.
     public MySQL() {
         try {
-            Properties connectionProps = readPropertiesFile(DB_CONN_PATH);
-            conn = DriverManager.getConnection(
-                    "jdbc:mysql://" + connectionProps.getProperty("server") + "/" + connectionProps.getProperty("database"),
-                    connectionProps.getProperty("username"), connectionProps.getProperty("password")
-            );
-        } catch(SQLException e) {
-            System.out.println("Unable to connect to Database.");
+            open(readPropertiesFile(DB_CONN_PATH));
         } catch (IOException ioe) {
             ioe.printStackTrace();
         }
     }
 
+    // Open a connection using settings already read from db.properties.
+    public MySQL(Properties connectionProps) {
+        open(connectionProps);
+    }
+
+    // Wrap an already open connection, e.g. an embedded database used by benchmarks and tooling.
+    public MySQL(Connection conn) {
+        this.conn = conn;
+    }
+
+    // Publish a ChangeEvent to the bus given for every write from now on, once it has committed.
+    public void publishTo(InvalidationBus bus) {
+        publishTo(bus, IntUnaryOperator.identity());
+    }
+
+    // Likewise, with appointment ids as appointmentIds gives them: a shard's ids as ShardedRepository hands them out.
+    public void publishTo(InvalidationBus bus, IntUnaryOperator appointmentIds) {
+        this.changes = bus;
+        this.publishedIds = appointmentIds;
+    }
+
     // Get all customers from the database, parsing each into a Customer object.
     public ObservableList<Customer> getAllCustomers() {
         ObservableList<Customer> returnList = FXCollections.observableArrayList();
 
         try {
-            ps = conn.prepareStatement(
-                    "SELECT c.customerId, c.customerName, a.address, a.address2, ci.city, co.country, a.postalCode, a.phone" +
-                    "           FROM customer AS c, address AS a, city AS ci, country AS co" +
-                    "               WHERE c.addressId = a.addressId AND" +
-                    "                   a.cityId = ci.cityId AND" +
-                    "                   ci.countryId = co.countryId"
-            );
+            ps = conn.prepareStatement(SELECT_CUSTOMER);
 
             rs = ps.executeQuery();
 
             while (rs.next()) {
-                returnList.add(
-                        new Customer(
-                                rs.getInt("customerId"),
-                                rs.getString("customerName"),
-                                rs.getString("address"),
-                                rs.getString("address2"),
-                                rs.getString("city"),
-                                rs.getString("country"),
-                                rs.getString("postalCode"),
-                                rs.getString("phone")
-                        )
-                );
+                returnList.add(resultSetToCustomer(rs));
             }
         } catch (SQLException sqle) {
-            sqle.printStackTrace();
+            QueryMetrics.failed("getAllCustomers", sqle);
         }
 
         return returnList;
     }
 
-    // Get all appointments from the database, within the date range specified, and parse each into an Appointment object.
+    // Get all appointments that overlap the days from start to end inclusive, in the user's timezone, and parse each into
+    // an Appointment object. The days become a half-open UTC window, so an appointment spanning the whole window is
+    // found too, and the query is bounded on start so the (userId, start) index is range scanned. Recurring series are
+    // expanded into their occurrences within the window.
     public ObservableList<Appointment> getAppointmentsInRange(LocalDate start, LocalDate end, int userId) {
-        DateTimeFormatter dtfSqlDate = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         ObservableList<Appointment> returnList = FXCollections.observableArrayList();
 
         try {
+            readAppointmentsInRange(returnList, start, end, userId);
+        } catch (SQLException sqle) {
+            QueryMetrics.failed("getAppointmentsInRange", sqle);
+        }
+
+        return returnList;
+    }
+
+    public ObservableList<Appointment> readAppointmentsInRange(LocalDate start, LocalDate end, int userId) throws SQLException {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        readAppointmentsInRange(returnList, start, end, userId);
+        return returnList;
+    }
+
+    // getAppointmentsInRange, passing failures on rather than returning what was read before them.
+    private void readAppointmentsInRange(List<Appointment> returnList, LocalDate start, LocalDate end, int userId) throws SQLException {
+        ZonedDateTime windowStart = start.atStartOfDay(TimeZone.getDefault().toZoneId());
+        ZonedDateTime windowEnd = end.plusDays(1).atStartOfDay(TimeZone.getDefault().toZoneId());
+        int longest = getLongestAppointmentMinutes();
+
+        bindOverlapping(
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                        "   FROM appointment AS a, customer AS c" +
+                        "   WHERE a.customerId = c.customerId AND a.recurrenceUntil IS NULL AND " + OVERLAPS,
+                userId, windowStart.toLocalDateTime(), windowEnd.toLocalDateTime(), TimeZone.getDefault().toZoneId(), longest
+        );
+
+        rs = ps.executeQuery();
+
+        while (rs.next()) {
+            returnList.add(resultSetToAppointment(rs));
+        }
+
+        returnList.addAll(getOccurrences(userId, windowStart.toInstant(), windowEnd.toInstant(), longest));
+    }
+
+    // Get the appointments of every user given that overlap the days from start to end inclusive, series occurrences
+    // included, in one query rather than one per user. The window is read by time alone through the start index added
+    // by migration V5, pinned so the join isn't driven from customer, and other users' rows are dropped here.
+    public ObservableList<Appointment> getAppointmentsForUsers(LocalDate start, LocalDate end, Collection<Integer> userIds) {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        Set<Integer> users = new HashSet<>(userIds);
+        if (users.isEmpty()) {
+            return returnList;
+        }
+
+        DateTimeFormatter dtfSqlDateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ZonedDateTime windowStart = start.atStartOfDay(TimeZone.getDefault().toZoneId()).withZoneSameInstant(ZoneOffset.UTC);
+        ZonedDateTime windowEnd = end.plusDays(1).atStartOfDay(TimeZone.getDefault().toZoneId()).withZoneSameInstant(ZoneOffset.UTC);
+
+        try {
+            int longest = getLongestAppointmentMinutes();
             ps = conn.prepareStatement(
-                    "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end" +
-                            "   FROM appointment AS a, customer AS c" +
-                            "   WHERE a.customerId = c.customerId AND ((a.start BETWEEN ? AND ?) OR (a.end BETWEEN ? AND ?)) AND a.userId = ?"
+                    "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                            "   FROM appointment AS a USE INDEX (idx_appointment_start), customer AS c" +
+                            "   WHERE a.customerId = c.customerId AND a.recurrenceUntil IS NULL AND a.start < ? AND a.end > ? AND a.start >= ?"
             );
-            ps.setString(1, start.format(dtfSqlDate));
-            ps.setString(2, end.format(dtfSqlDate));
-            ps.setString(3, start.format(dtfSqlDate));
-            ps.setString(4, end.format(dtfSqlDate));
-            ps.setInt(5, userId);
+            ps.setString(1, windowEnd.format(dtfSqlDateTime));
+            ps.setString(2, windowStart.format(dtfSqlDateTime));
+            ps.setString(3, windowStart.minusMinutes(longest).format(dtfSqlDateTime));
 
             rs = ps.executeQuery();
 
             while (rs.next()) {
-                returnList.add(resultSetToAppointment(rs));
+                if (users.contains(rs.getInt("userId"))) {
+                    returnList.add(resultSetToAppointment(rs));
+                }
+            }
+
+            for (Appointment occurrence : getOccurrences(null, windowStart.toInstant(), windowEnd.toInstant(), longest)) {
+                if (users.contains(occurrence.getUserId())) {
+                    returnList.add(occurrence);
+                }
             }
         } catch (SQLException sqle) {
-            sqle.printStackTrace();
+            QueryMetrics.failed("getAppointmentsForUsers", sqle);
         }
 
         return returnList;
@@ -104,85 +221,147 @@ public class MySQL {
         Appointment appointment = null;
         try {
             ps = conn.prepareStatement(
-                    "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end " +
+                    "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version " +
                             "FROM appointment AS a, customer AS c " +
-                            "WHERE (a.start BETWEEN NOW() AND DATE_ADD(NOW(), INTERVAL 15 MINUTE)) AND a.userId = ?"
+                            "WHERE a.customerId = c.customerId AND a.recurrenceUntil IS NULL " +
+                            "AND (a.start BETWEEN NOW() AND DATE_ADD(NOW(), INTERVAL 15 MINUTE)) AND a.userId = ?"
             );
             ps.setInt(1, userId);
 
             rs = ps.executeQuery();
             if(rs.next()) {
                 appointment = resultSetToAppointment(rs);
+            } else {
+                Instant now = Instant.now();
+                for (Appointment occurrence : getOccurrences(userId, now, now.plus(Duration.ofMinutes(15)), getLongestAppointmentMinutes())) {
+                    if (!occurrence.getStart().toInstant().isBefore(now)) {
+                        appointment = occurrence;
+                        break;
+                    }
+                }
             }
         } catch (SQLException sqle) {
-            sqle.printStackTrace();
+            QueryMetrics.failed("checkForUpcomingAppointment", sqle);
         }
 
         return appointment;
     }
 
+    // Find an appointment of this user that overlaps the times given, using the same interval query as
+    // getAppointmentsInRange.
     public Appointment checkForOverlappingAppointment(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId) {
         Appointment returnAppointment = null;
         try {
-            ps = conn.prepareStatement(
-                    "SELECT  a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end \n" +
-                            "\tFROM appointment AS a, customer AS c \n" +
-                            "\tWHERE (a.customerId = c.customerId) \n" +
-                            "    AND (userId = ?) \n" +
-                            "    AND (\n" +
-                            "\t\tstart < ?\n" +
-                            "\t\tAND end > ?\n" +
-                            "\t) \n" +
-                            "    OR \n" +
-                            "    (\n" +
-                            "\t\t(start between ? AND ?) \n" +
-                            "        OR \n" +
-                            "        (end between ? AND ?)\n" +
-                            "\t)\n" +
-                            "    LIMIT 1;"
-            );
+            returnAppointment = findOverlapping(ldtStart, ldtEnd, userId);
+        } catch (SQLException sqle) {
+            QueryMetrics.failed("checkForOverlappingAppointment", sqle);
+        }
 
-            ps.setInt(1, userId);
-            ps.setString(2,
-                convertTimeZone(ldtStart, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
-            ps.setString(3,
-                    convertTimeZone(ldtEnd, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
-            ps.setString(4,
-                    convertTimeZone(ldtStart, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
-            ps.setString(5,
-                    convertTimeZone(ldtEnd, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
+        return returnAppointment;
+    }
 
-            ps.setString(6,
-                    convertTimeZone(ldtStart, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
-            ps.setString(7,
-                    convertTimeZone(ldtEnd, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
-                            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
-            );
+    // checkForOverlappingAppointment, passing failures on rather than reading them as "no overlap".
+    private Appointment findOverlapping(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId) throws SQLException {
+        int longest = getLongestAppointmentMinutes();
+        bindOverlapping(
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version" +
+                        "   FROM appointment AS a, customer AS c" +
+                        "   WHERE a.customerId = c.customerId AND a.recurrenceUntil IS NULL AND " + OVERLAPS +
+                        "   LIMIT 1",
+                userId, ldtStart, ldtEnd, TimeZone.getDefault().toZoneId(), longest
+        );
 
-            System.out.println(ps);
+        rs = ps.executeQuery();
 
-            rs = ps.executeQuery();
+        if (rs.next()) {
+            return resultSetToAppointment(rs);
+        }
+
+        List<Appointment> occurrences = getOccurrences(userId,
+                convertTimeZone(ldtStart, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC).toInstant(),
+                convertTimeZone(ldtEnd, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC).toInstant(), longest);
+        return occurrences.isEmpty() ? null : occurrences.get(0);
+    }
+
+    // Prepare a query ending in OVERLAPS and bind it to the window given, converted from the zone given to UTC, with
+    // longest as read by getLongestAppointmentMinutes.
+    private void bindOverlapping(String sql, int userId, LocalDateTime windowStart, LocalDateTime windowEnd, ZoneId zone, int longest) throws SQLException {
+        DateTimeFormatter dtfSqlDateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ZonedDateTime utcStart = convertTimeZone(windowStart, zone, ZoneOffset.UTC);
+        ZonedDateTime utcEnd = convertTimeZone(windowEnd, zone, ZoneOffset.UTC);
+
+        ps = conn.prepareStatement(sql);
+        ps.setInt(1, userId);
+        ps.setString(2, utcEnd.format(dtfSqlDateTime));
+        ps.setString(3, utcStart.format(dtfSqlDateTime));
+        ps.setString(4, utcStart.minusMinutes(longest).format(dtfSqlDateTime));
+    }
 
-            if (rs.next()) {
-                do {
-                    returnAppointment = resultSetToAppointment(rs);
-                } while (rs.next());
+    // The occurrences of this user's recurring series that overlap the window, or every user's when userId is null,
+    // computed from each series' rule, less the ones that were cancelled. Only series that have started before the
+    // window ends and have not ended before it starts are read, through the (userId, recurrenceUntil) index. longest
+    // is the caller's reading of getLongestAppointmentMinutes, so a range read asks for it once rather than twice.
+    private List<Appointment> getOccurrences(Integer userId, Instant windowStart, Instant windowEnd, int longest) throws SQLException {
+        String userFilter = userId == null ? "" : " AND a.userId = ?";
+        // Without a user the join order has to be pinned, or a planner that can't see the bound window scans every
+        // customer's appointments instead.
+        String seriesIndex = userId == null ? " USE INDEX (idx_appointment_until)" : "";
+        DateTimeFormatter dtfSqlDateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        List<Appointment> occurrences = new ArrayList<>();
+        Set<String> cancelled = new HashSet<>();
+
+        try (PreparedStatement exceptions = conn.prepareStatement(
+                "SELECT e.appointmentId, e.occurrenceStart FROM appointment_exception AS e, appointment AS a" +
+                        "   WHERE e.appointmentId = a.appointmentId AND e.occurrenceStart < ? AND e.occurrenceStart >= ?" + userFilter)) {
+            exceptions.setString(1, windowEnd.atOffset(ZoneOffset.UTC).format(dtfSqlDateTime));
+            exceptions.setString(2, windowStart.minus(Duration.ofMinutes(longest)).atOffset(ZoneOffset.UTC).format(dtfSqlDateTime));
+            if (userId != null) {
+                exceptions.setInt(3, userId);
+            }
+
+            try (ResultSet result = exceptions.executeQuery()) {
+                while (result.next()) {
+                    cancelled.add(result.getInt("appointmentId") + "@" + result.getTimestamp("occurrenceStart").toLocalDateTime().toInstant(ZoneOffset.UTC));
+                }
             }
-        } catch (SQLException sqle) {
-            sqle.printStackTrace();
         }
 
-        return returnAppointment;
+        try (PreparedStatement series = conn.prepareStatement(
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version, a.recurrence, a.recurrenceZone" +
+                        "   FROM appointment AS a" + seriesIndex + ", customer AS c" +
+                        "   WHERE a.customerId = c.customerId AND a.recurrenceUntil > ? AND a.start < ?" + userFilter)) {
+            series.setString(1, windowStart.atOffset(ZoneOffset.UTC).format(dtfSqlDateTime));
+            series.setString(2, windowEnd.atOffset(ZoneOffset.UTC).format(dtfSqlDateTime));
+            if (userId != null) {
+                series.setInt(3, userId);
+            }
+
+            try (ResultSet result = series.executeQuery()) {
+                while (result.next()) {
+                    Appointment first = resultSetToAppointment(result);
+                    String recurrence = result.getString("recurrence");
+                    ZonedDateTime firstStart = first.getStart().withZoneSameInstant(ZoneId.of(result.getString("recurrenceZone")));
+                    Duration length = Duration.between(first.getStart(), first.getEnd());
+
+                    for (ZonedDateTime start : RecurrenceRule.parse(recurrence).occurrences(firstStart, length, windowStart, windowEnd)) {
+                        if (!cancelled.contains(first.getId() + "@" + start.toInstant())) {
+                            ZonedDateTime localStart = start.withZoneSameInstant(TimeZone.getDefault().toZoneId());
+                            occurrences.add(first.occurrence(localStart, localStart.plus(length), recurrence));
+                        }
+                    }
+                }
+            }
+        }
+
+        return occurrences;
+    }
+
+    // The length of the longest appointment, read from the durationMinutes index added by migration V3.
+    private int getLongestAppointmentMinutes() throws SQLException {
+        try (PreparedStatement longest = conn.prepareStatement("SELECT MAX(durationMinutes) FROM appointment");
+             ResultSet result = longest.executeQuery()) {
+            return result.next() ? result.getInt(1) : 0;
+        }
     }
 
     // Check if the username and password combo exist in the database.
@@ -216,16 +395,17 @@ public class MySQL {
         return username;
     }
 
-    // Get all Appointments and group them by type. This is used for the "Appointments By Type report."
+    // Get this month's Appointments and group them by type. This is used for the "Appointments By Type report."
+    // startYearMonth is the indexed yyyymm column added by migration V2.
     public String getAppointmentsByType() throws SQLException {
         StringBuilder alertBody = new StringBuilder();
         ps = conn.prepareStatement(
                 "SELECT type, COUNT(type) AS Count from appointment" +
-                        "   WHERE MONTH(start) = ?" +
+                        "   WHERE startYearMonth = ?" +
                         "   GROUP BY type;"
         );
 
-        ps.setInt(1, LocalDate.now().getMonth().getValue());
+        ps.setInt(1, LocalDate.now().getYear() * 100 + LocalDate.now().getMonthValue());
         rs = ps.executeQuery();
 
         while (rs.next()) {
@@ -304,7 +484,7 @@ public class MySQL {
                         "    LIMIT 1"
         );
         ps.setString(1, address);
-        ps.setString(2, address);
+        ps.setString(2, address2);
         ps.setInt(3, cityId);
         ps.setString(4, postalCode);
         ps.setString(5, phone);
@@ -359,16 +539,151 @@ public class MySQL {
         ps.setString(5, username);
         ps.setString(6, username);
         ps.execute();
+        changed(ChangeEvent.of(ChangeEvent.Entity.CUSTOMER, 0, 0));
     }
 
     // Create a new Appointment in the database.
     public void insertAppointment(String customerName, int userId, String title, String description, String location,
                                   String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException {
-        ps = conn.prepareStatement(
-                "INSERT INTO appointment (customerId, userId, title, description, location, contact, type, url, start, end, createDate, createdBy, lastUpdateBy)" +
-                        "    VALUES ((SELECT customerId FROM customer WHERE customerName = ?), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
-        );
+        insertAppointmentRow(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, null, username);
+    }
 
+    // Create a recurring series: a single row holding the first occurrence and the rule, however many occurrences follow.
+    public void insertAppointmentSeries(String customerName, int userId, String title, String description, String location, String contact,
+                                        String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        insertAppointmentRow(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+    }
+
+    // Book in one transaction that first locks the consultant's user row with SELECT ... FOR UPDATE. Every booking for
+    // this consultant takes the same lock, so the overlap check runs only once earlier bookings have committed or
+    // rolled back, and nothing can be inserted for them until this one is done. Bookings for other consultants lock
+    // other rows and go ahead in parallel. Locks are only taken by lockConsultants, first and in userId order, so they
+    // can't deadlock.
+    public Appointment bookAppointment(String customerName, int userId, String title, String description, String location, String contact,
+                                       String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        uncommitted = new ArrayList<>();
+
+        try {
+            lockConsultants(List.of(userId));
+
+            Appointment overlap = rule == null
+                    ? findOverlapping(ldtStart, ldtEnd, userId)
+                    : findOverlapping(ldtStart, ldtEnd, rule, userId, 0);
+
+            if (overlap == null) {
+                insertAppointmentRow(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+            }
+            conn.commit();
+            publishCommitted();
+            return overlap;
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            uncommitted = null;
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Create every appointment given as one batch in one transaction. The consultants are locked as bookAppointment
+    // locks them, and each one's calendar over the schedule is read once under the lock to check the rows against. If
+    // any row clashes, with that calendar or another row of the batch, or fails, say for an unknown customer, the whole
+    // batch is rolled back and nothing is stored.
+    public List<Appointment> insertAppointments(List<Appointment> appointments, String username) throws SQLException {
+        if (appointments.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        Set<Integer> userIds = new TreeSet<>();
+        appointments.forEach(appointment -> userIds.add(appointment.getUserId()));
+        try (PreparedStatement batch = conn.prepareStatement(INSERT_APPOINTMENT)) {
+            lockConsultants(userIds);
+            LocalDate[] span = Repository.span(appointments);
+            List<Appointment> existing = new ArrayList<>();
+            for (int userId : userIds) {
+                readAppointmentsInRange(existing, span[0], span[1], userId);
+            }
+            List<Appointment> conflicts = Repository.conflicts(existing, appointments);
+            if (!conflicts.isEmpty()) {
+                conn.rollback();
+                return conflicts;
+            }
+
+            for (Appointment appointment : appointments) {
+                bindAppointmentRow(batch, appointment.getCustomerName(), appointment.getUserId(), appointment.getTitle(),
+                        appointment.getDescription(), appointment.getLocation(), appointment.getContact(), appointment.getType(),
+                        appointment.getUrl(), appointment.getStart().withZoneSameInstant(TimeZone.getDefault().toZoneId()).toLocalDateTime(),
+                        appointment.getEnd().withZoneSameInstant(TimeZone.getDefault().toZoneId()).toLocalDateTime(), null, username);
+                batch.addBatch();
+            }
+            batch.executeBatch();
+            conn.commit();
+            userIds.forEach(userId -> changed(ChangeEvent.appointment(0, 0, userId)));
+            return conflicts;
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Lock the user rows of the consultants given with SELECT ... FOR UPDATE, in ascending userId order, so that two
+    // transactions after some of the same consultants queue behind each other instead of deadlocking.
+    private void lockConsultants(Collection<Integer> userIds) throws SQLException {
+        try (PreparedStatement lock = conn.prepareStatement("SELECT userId FROM user WHERE userId = ? FOR UPDATE")) {
+            for (int userId : new TreeSet<>(userIds)) {
+                lock.setInt(1, userId);
+                try (ResultSet locked = lock.executeQuery()) {
+                    if (!locked.next()) {
+                        throw new SQLException("No user " + userId + ".", "23000");
+                    }
+                }
+            }
+        }
+    }
+
+    // The first appointment on the consultant's calendar, other than those of ignoreAppointmentId, that a one-off or,
+    // when rule isn't null, a series at the times given would overlap. Callers hold the consultant's lock.
+    private Appointment findOverlapping(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId, int ignoreAppointmentId) throws SQLException {
+        List<Appointment> existing = new ArrayList<>();
+        readAppointmentsInRange(existing, ldtStart.toLocalDate(), Repository.lastDayChecked(ldtStart, ldtEnd, rule), userId);
+        return Repository.firstOverlap(existing, ldtStart, ldtEnd, rule, ignoreAppointmentId);
+    }
+
+    // Throw OverlapException if the appointment a unit of work inserts would overlap the consultant's calendar as the
+    // unit has left it so far, or one of the unit's earlier bookings, which may still be waiting in the same batch.
+    private void checkBooking(Appointment booking, List<Appointment> booked) throws SQLException {
+        ZoneId zone = TimeZone.getDefault().toZoneId();
+        LocalDateTime ldtStart = booking.getStart().withZoneSameInstant(zone).toLocalDateTime();
+        LocalDateTime ldtEnd = booking.getEnd().withZoneSameInstant(zone).toLocalDateTime();
+        RecurrenceRule rule = booking.isRecurring() ? RecurrenceRule.parse(booking.getRecurrence()) : null;
+        Appointment overlap = findOverlapping(ldtStart, ldtEnd, rule, booking.getUserId(), 0);
+        if (overlap == null) {
+            overlap = Repository.firstPendingOverlap(booked, ldtStart, ldtEnd, rule, booking.getUserId());
+        }
+        if (overlap != null) {
+            throw new OverlapException(overlap);
+        }
+    }
+
+    // A one-off appointment when rule is null, otherwise the first occurrence of a series.
+    private void insertAppointmentRow(String customerName, int userId, String title, String description, String location, String contact,
+                                      String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        ps = conn.prepareStatement(INSERT_APPOINTMENT);
+        bindAppointmentRow(ps, customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+        ps.execute();
+        changed(ChangeEvent.appointment(0, 0, userId));
+    }
+
+    // Fill in the parameters of INSERT_APPOINTMENT.
+    private void bindAppointmentRow(PreparedStatement ps, String customerName, int userId, String title, String description, String location, String contact,
+                                    String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
         ps.setString(1, customerName);
         ps.setInt(2, userId);
         ps.setString(3, title);
@@ -388,30 +703,405 @@ public class MySQL {
         ps.setString(11, LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
         ps.setString(12, username);
         ps.setString(13, username);
+        if (rule == null) {
+            ps.setNull(14, Types.VARCHAR);
+            ps.setNull(15, Types.VARCHAR);
+            ps.setNull(16, Types.VARCHAR);
+        } else {
+            ps.setString(14, rule.toString());
+            ps.setString(15, TimeZone.getDefault().getID());
+            ps.setString(16, seriesUntil(rule, ldtStart.atZone(TimeZone.getDefault().toZoneId()), Duration.between(ldtStart, ldtEnd)));
+        }
+    }
+
+    // Take one occurrence out of its series, first moving the series on from the version given. No row updated means
+    // the series moved on or is gone, and it is read back to say which. Both go in one transaction, so an exception row
+    // that fails to go in doesn't leave the series at a version nobody's form has.
+    public void cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        uncommitted = new ArrayList<>();
+
+        try {
+            ps = conn.prepareStatement(UPDATE_SERIES_VERSION);
+            bindSeriesVersion(ps, appointmentId, version, username);
+            if (ps.executeUpdate() == 0) {
+                throw new UpdateConflictException(appointmentId, version, getAppointment(appointmentId));
+            }
+
+            ps = conn.prepareStatement(INSERT_EXCEPTION);
+            bindException(ps, appointmentId, occurrenceStart, username);
+            ps.execute();
+            changed(ChangeEvent.appointment(appointmentId, version + 1, 0));
+            conn.commit();
+            publishCommitted();
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            uncommitted = null;
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void bindSeriesVersion(PreparedStatement ps, int appointmentId, int version, String username) throws SQLException {
+        ps.setString(1, username);
+        ps.setInt(2, appointmentId);
+        ps.setInt(3, version);
+    }
+
+    private void bindException(PreparedStatement ps, int appointmentId, LocalDateTime occurrenceStart, String username) throws SQLException {
+        ps.setInt(1, appointmentId);
+        ps.setString(2,
+                convertTimeZone(occurrenceStart, TimeZone.getDefault().toZoneId(), ZoneOffset.UTC)
+                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
+        );
+        ps.setString(3, LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        ps.setString(4, username);
+    }
+
+    // End a series the day before the occurrence given by rewriting its rule with UNTIL. Cut at or before its first
+    // occurrence, nothing is left of the series and the row is deleted. Both are conditional on the version given, as
+    // updateAppointment is, and made in one transaction, so the rule isn't rewritten without the later exceptions
+    // cleared. Inside a unit of work's commit the transaction is already open and the unit's.
+    public void endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            endSeriesRow(appointmentId, occurrenceStart, version, username);
+            return;
+        }
+
+        conn.setAutoCommit(false);
+        uncommitted = new ArrayList<>();
+
+        try {
+            endSeriesRow(appointmentId, occurrenceStart, version, username);
+            conn.commit();
+            publishCommitted();
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            uncommitted = null;
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void endSeriesRow(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        ps = conn.prepareStatement("SELECT start, end, recurrence, recurrenceZone FROM appointment WHERE appointmentId = ? AND version = ?");
+        ps.setInt(1, appointmentId);
+        ps.setInt(2, version);
+        rs = ps.executeQuery();
+        if (!rs.next()) {
+            throw new UpdateConflictException(appointmentId, version, getAppointment(appointmentId));
+        }
+        if (rs.getString("recurrence") == null) {
+            return;
+        }
+
+        ZoneId zone = ZoneId.of(rs.getString("recurrenceZone"));
+        ZonedDateTime first = convertTimeZone(rs.getTimestamp("start").toLocalDateTime(), ZoneOffset.UTC, zone);
+        Duration length = Duration.between(rs.getTimestamp("start").toLocalDateTime(), rs.getTimestamp("end").toLocalDateTime());
+        ZonedDateTime cut = convertTimeZone(occurrenceStart, TimeZone.getDefault().toZoneId(), zone);
+        if (!cut.isAfter(first)) {
+            ps = conn.prepareStatement("DELETE FROM appointment WHERE appointmentId = ? AND version = ?");
+            ps.setInt(1, appointmentId);
+            ps.setInt(2, version);
+            if (ps.executeUpdate() == 0) {
+                throw new UpdateConflictException(appointmentId, version, getAppointment(appointmentId));
+            }
+            changed(ChangeEvent.appointment(appointmentId, ChangeEvent.DELETED, 0));
+            return;
+        }
+
+        RecurrenceRule ended = RecurrenceRule.parse(rs.getString("recurrence")).withUntil(cut.toLocalDate().minusDays(1));
+        ps = conn.prepareStatement("UPDATE appointment SET recurrence = ?, recurrenceUntil = ?, lastUpdateBy = ?, version = version + 1 WHERE appointmentId = ? AND version = ?");
+        ps.setString(1, ended.toString());
+        ps.setString(2, seriesUntil(ended, first, length));
+        ps.setString(3, username);
+        ps.setInt(4, appointmentId);
+        ps.setInt(5, version);
+        if (ps.executeUpdate() == 0) {
+            throw new UpdateConflictException(appointmentId, version, getAppointment(appointmentId));
+        }
+
+        ps = conn.prepareStatement("DELETE FROM appointment_exception WHERE appointmentId = ? AND occurrenceStart >= ?");
+        ps.setInt(1, appointmentId);
+        ps.setString(2, cut.withZoneSameInstant(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
         ps.execute();
+        changed(ChangeEvent.appointment(appointmentId, version + 1, 0));
+    }
+
+    // recurrenceUntil for a series: the UTC end of its last occurrence.
+    private String seriesUntil(RecurrenceRule rule, ZonedDateTime first, Duration length) {
+        ZonedDateTime last = rule.lastStart(first);
+        if (last == null) {
+            return OPEN_ENDED;
+        }
+        return last.plus(length).withZoneSameInstant(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    // Apply a unit of work as planned statements in one transaction. Runs of the same statement go out as one batch,
+    // except conditional customer updates, which go alone so their row count tells whether the version still matched.
+    // Ending a series reads the series first, so it runs on its own at its place in the order. A unit that inserts
+    // appointments first locks their consultants, as bookAppointment does, and checks each one against the calendar as
+    // the unit has left it just before it goes in, and against the unit's earlier bookings, which a batch holds back.
+    // A unit that comes down to one statement needs no transaction and runs autocommitted.
+    public UnitOfWork.Result commit(UnitOfWork work) throws SQLException {
+        List<Planned> plan = new ArrayList<>();
+        List<ChangeEvent> events = new ArrayList<>();
+        int skipped = 0;
+        int unbatched = 0;
+        for (UnitOfWork.Write write : work.getWrites()) {
+            unbatched += write.unbatchedRoundTrips();
+            skipped += plan(plan, events, write, work.getUsername());
+        }
+        if (plan.isEmpty()) {
+            return new UnitOfWork.Result(0, skipped, 0, unbatched);
+        }
+
+        Set<Integer> consultants = new TreeSet<>();
+        for (Planned planned : plan) {
+            if (planned.booking != null) {
+                consultants.add(planned.booking.getUserId());
+            }
+        }
+
+        boolean transaction = plan.size() > 1 || plan.get(0).sql == null || !consultants.isEmpty();
+        boolean autoCommit = conn.getAutoCommit();
+        // Turning autocommit off and back on are a round trip each, and turning it back on commits, so an explicit
+        // commit only costs a third when autocommit was already off.
+        int roundTrips = transaction ? (autoCommit ? 2 : 3) : 0;
+        int statements = 0;
+        if (transaction) {
+            conn.setAutoCommit(false);
+        }
+        uncommitted = events;
+        List<Appointment> booked = new ArrayList<>();
+
+        try {
+            lockConsultants(consultants);
+            statements += consultants.size();
+            roundTrips += consultants.size();
+
+            for (int i = 0; i < plan.size(); ) {
+                Planned first = plan.get(i);
+                if (first.sql == null) {
+                    first.binder.bind(null);
+                    statements += 3;
+                    roundTrips += 3;
+                    i++;
+                    continue;
+                }
+
+                int end = i;
+                try (PreparedStatement batch = conn.prepareStatement(first.sql)) {
+                    do {
+                        if (plan.get(end).booking != null) {
+                            // The longest appointment, the one-offs and the series occurrences over its days.
+                            checkBooking(plan.get(end).booking, booked);
+                            booked.add(plan.get(end).booking);
+                            statements += 3;
+                            roundTrips += 3;
+                        }
+                        plan.get(end).binder.bind(batch);
+                        batch.addBatch();
+                        end++;
+                    } while (first.conflict == null && end < plan.size() && first.sql.equals(plan.get(end).sql) && plan.get(end).conflict == null);
+
+                    int[] counts = batch.executeBatch();
+                    roundTrips++;
+                    statements += end - i;
+                    if (first.conflict != null && counts[0] == 0) {
+                        throw first.conflict.get();
+                    }
+                }
+                i = end;
+            }
+
+            if (transaction && !autoCommit) {
+                conn.commit();
+            }
+        } catch (SQLException sqle) {
+            if (transaction) {
+                conn.rollback();
+            }
+            throw sqle;
+        } finally {
+            uncommitted = null;
+            if (transaction) {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Restoring autocommit is what commits when it was on, so the events only go out now.
+        publish(events);
+        return new UnitOfWork.Result(statements, skipped, roundTrips, unbatched);
+    }
+
+    // Add the statements one write takes to the plan and the events it will publish, and return how many unchanged rows
+    // it left out.
+    private int plan(List<Planned> plan, List<ChangeEvent> events, UnitOfWork.Write write, String username) {
+        String now = LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        switch (write.kind) {
+            case INSERT_CUSTOMER: {
+                Customer customer = write.customer();
+                plan.add(new Planned(INSERT_COUNTRY_IF_NEW, batch -> {
+                    batch.setString(1, customer.getCountry());
+                    batch.setString(2, now);
+                    batch.setString(3, username);
+                    batch.setString(4, username);
+                    batch.setString(5, customer.getCountry());
+                }));
+                plan.add(new Planned(INSERT_CITY_IF_NEW, batch -> {
+                    batch.setString(1, customer.getCity());
+                    batch.setString(2, customer.getCountry());
+                    batch.setString(3, now);
+                    batch.setString(4, username);
+                    batch.setString(5, username);
+                    batch.setString(6, customer.getCity());
+                }));
+                plan.add(new Planned(INSERT_ADDRESS_IF_NEW, batch -> {
+                    batch.setString(1, customer.getAddress());
+                    batch.setString(2, customer.getAddress2());
+                    batch.setString(3, customer.getCity());
+                    batch.setString(4, customer.getPostalCode());
+                    batch.setString(5, customer.getPhone());
+                    batch.setString(6, now);
+                    batch.setString(7, username);
+                    batch.setString(8, username);
+                    batch.setString(9, customer.getAddress());
+                    batch.setString(10, customer.getAddress2());
+                    batch.setString(11, customer.getCity());
+                    batch.setString(12, customer.getPostalCode());
+                    batch.setString(13, customer.getPhone());
+                }));
+                plan.add(new Planned(INSERT_CUSTOMER_AT_ADDRESS, batch -> {
+                    batch.setString(1, customer.getName());
+                    batch.setString(2, customer.getAddress());
+                    batch.setString(3, customer.getAddress2());
+                    batch.setString(4, customer.getCity());
+                    batch.setString(5, customer.getPostalCode());
+                    batch.setString(6, customer.getPhone());
+                    batch.setString(7, now);
+                    batch.setString(8, username);
+                    batch.setString(9, username);
+                }));
+                events.add(ChangeEvent.of(ChangeEvent.Entity.CUSTOMER, 0, 0));
+                return 0;
+            }
+            case UPDATE_CUSTOMER: {
+                Customer before = write.before;
+                Customer after = write.customer();
+                int skipped = 0;
+                boolean address = UnitOfWork.addressRowChanged(before, after);
+                boolean city = UnitOfWork.cityRowChanged(before, after);
+                boolean country = UnitOfWork.countryRowChanged(before, after);
+                if (!UnitOfWork.customerRowChanged(before, after) && !address && !city && !country) {
+                    return 4;
+                }
+
+                // The customer row goes first and is always written, as it carries the version for the whole form.
+                plan.add(new Planned(UPDATE_CUSTOMER, batch -> {
+                    batch.setString(1, after.getName());
+                    batch.setString(2, username);
+                    batch.setInt(3, before.getId());
+                    batch.setInt(4, before.getVersion());
+                }, () -> new UpdateConflictException(before.getId(), before.getVersion(), getCustomer(before.getId()))));
+                events.add(ChangeEvent.of(ChangeEvent.Entity.CUSTOMER, before.getId(), before.getVersion() + 1));
+                if (address) {
+                    events.add(ChangeEvent.of(ChangeEvent.Entity.ADDRESS, before.getAddressId(), ChangeEvent.UNVERSIONED));
+                    plan.add(new Planned(UPDATE_ADDRESS, batch -> {
+                        batch.setString(1, after.getAddress());
+                        batch.setString(2, after.getAddress2());
+                        batch.setString(3, after.getPostalCode());
+                        batch.setString(4, after.getPhone());
+                        batch.setString(5, username);
+                        batch.setInt(6, before.getAddressId());
+                    }));
+                } else {
+                    skipped++;
+                }
+                if (city) {
+                    events.add(ChangeEvent.of(ChangeEvent.Entity.CITY, before.getCityId(), ChangeEvent.UNVERSIONED));
+                    plan.add(new Planned(UPDATE_CITY, batch -> {
+                        batch.setString(1, after.getCity());
+                        batch.setString(2, username);
+                        batch.setInt(3, before.getCityId());
+                    }));
+                } else {
+                    skipped++;
+                }
+                if (country) {
+                    events.add(ChangeEvent.of(ChangeEvent.Entity.COUNTRY, before.getCountryId(), ChangeEvent.UNVERSIONED));
+                    plan.add(new Planned(UPDATE_COUNTRY, batch -> {
+                        batch.setString(1, after.getCountry());
+                        batch.setString(2, username);
+                        batch.setInt(3, before.getCountryId());
+                    }));
+                } else {
+                    skipped++;
+                }
+                return skipped;
+            }
+            case INSERT_APPOINTMENT: {
+                Appointment appointment = write.appointment();
+                RecurrenceRule rule = appointment.isRecurring() ? RecurrenceRule.parse(appointment.getRecurrence()) : null;
+                plan.add(new Planned(INSERT_APPOINTMENT, batch -> bindAppointmentRow(batch, appointment.getCustomerName(), appointment.getUserId(),
+                        appointment.getTitle(), appointment.getDescription(), appointment.getLocation(), appointment.getContact(), appointment.getType(),
+                        appointment.getUrl(), appointment.getStart().withZoneSameInstant(TimeZone.getDefault().toZoneId()).toLocalDateTime(),
+                        appointment.getEnd().withZoneSameInstant(TimeZone.getDefault().toZoneId()).toLocalDateTime(), rule, username), appointment));
+                events.add(ChangeEvent.appointment(0, 0, appointment.getUserId()));
+                return 0;
+            }
+            case DELETE_APPOINTMENT:
+                plan.add(new Planned("DELETE FROM appointment WHERE appointmentId = ?", batch -> batch.setInt(1, write.id)));
+                events.add(ChangeEvent.appointment(write.id, ChangeEvent.DELETED, 0));
+                return 0;
+            case DELETE_APPOINTMENT_VERSION:
+                plan.add(new Planned("DELETE FROM appointment WHERE appointmentId = ? AND version = ?", batch -> {
+                    batch.setInt(1, write.id);
+                    batch.setInt(2, write.version);
+                }, () -> new UpdateConflictException(write.id, write.version, getAppointment(write.id))));
+                events.add(ChangeEvent.appointment(write.id, ChangeEvent.DELETED, 0));
+                return 0;
+            case CANCEL_OCCURRENCE:
+                plan.add(new Planned(UPDATE_SERIES_VERSION, batch -> bindSeriesVersion(batch, write.id, write.version, username),
+                        () -> new UpdateConflictException(write.id, write.version, getAppointment(write.id))));
+                plan.add(new Planned(INSERT_EXCEPTION, batch -> bindException(batch, write.id, write.occurrenceStart, username)));
+                events.add(ChangeEvent.appointment(write.id, write.version + 1, 0));
+                return 0;
+            case END_SERIES_BEFORE:
+                // Publishes its own events, into the unit's.
+                plan.add(new Planned(null, unused -> endSeriesBefore(write.id, write.occurrenceStart, write.version, username)));
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown write " + write.kind);
+        }
     }
 
     // Update the countryName for the id provided.
     public void updateCountry(String countryName, int countryId, String username) throws SQLException {
-        ps = conn.prepareStatement("UPDATE country SET country = ?, lastUpdateBy = ? WHERE countryId = ?");
+        ps = conn.prepareStatement(UPDATE_COUNTRY);
         ps.setString(1, countryName);
         ps.setString(2, username);
         ps.setInt(3, countryId);
         ps.execute();
+        changed(ChangeEvent.of(ChangeEvent.Entity.COUNTRY, countryId, ChangeEvent.UNVERSIONED));
     }
 
     // Update the cityName for the id provided.
     public void updateCity(String cityName, int cityId, String username) throws SQLException {
-        ps = conn.prepareStatement("UPDATE city SET city = ?, lastUpdateBy = ? WHERE cityId = ?");
+        ps = conn.prepareStatement(UPDATE_CITY);
         ps.setString(1, cityName);
         ps.setString(2, username);
         ps.setInt(3, cityId);
         ps.execute();
+        changed(ChangeEvent.of(ChangeEvent.Entity.CITY, cityId, ChangeEvent.UNVERSIONED));
     }
 
     // Update the address details for the id provided.
     public void updateAddress(String address, String address2, String postalCode, String phone, int addressId, String username) throws SQLException {
-        ps = conn.prepareStatement("UPDATE address SET address = ?, address2 = ?, postalCode = ?, phone = ?, lastUpdateBy = ? WHERE addressId = ?");
+        ps = conn.prepareStatement(UPDATE_ADDRESS);
         ps.setString(1, address);
         ps.setString(2, address2);
         ps.setString(3, postalCode);
@@ -419,20 +1109,65 @@ public class MySQL {
         ps.setString(5, username);
         ps.setInt(6, addressId);
         ps.execute();
+        changed(ChangeEvent.of(ChangeEvent.Entity.ADDRESS, addressId, ChangeEvent.UNVERSIONED));
     }
 
-    // Update the Customer details for the id provided.
-    public void updateCustomer(String customerName, int customerId, String username) throws SQLException {
-        ps = conn.prepareStatement("UPDATE customer SET customerName = ?, lastUpdateBy = ? WHERE customerId = ?");
+    // Update the Customer details for the id provided if it is still at the version given. No row updated means the
+    // version moved on or the customer is gone, and the customer is read back to say which.
+    public void updateCustomer(String customerName, int customerId, int version, String username) throws SQLException {
+        ps = conn.prepareStatement(UPDATE_CUSTOMER);
         ps.setString(1, customerName);
         ps.setString(2, username);
         ps.setInt(3, customerId);
-        ps.execute();
+        ps.setInt(4, version);
+        if (ps.executeUpdate() == 0) {
+            throw new UpdateConflictException(customerId, version, getCustomer(customerId));
+        }
+        changed(ChangeEvent.of(ChangeEvent.Entity.CUSTOMER, customerId, version + 1));
     }
 
-    // Update the Appointment details for the id provided.
+    // Update the Appointment details for the id provided if it is still at the version given, as updateCustomer does.
+    // Runs as bookAppointment does: the consultants it is taken from and given to are locked first, in userId order,
+    // and the new times are checked against the calendar under the lock, so an edit can't double-book anyone either.
     public void updateAppointment(int appointmentId, String customerName, int userId, String title, String description, String location,
-                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException {
+                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException {
+        // Read before the transaction, so that under REPEATABLE READ its snapshot is only taken once the locks are held.
+        // If the row moves on in between, the version check below fails.
+        Set<Integer> consultants = new TreeSet<>(List.of(userId));
+        RecurrenceRule rule = null;
+        ps = conn.prepareStatement("SELECT userId, recurrence FROM appointment WHERE appointmentId = ?");
+        ps.setInt(1, appointmentId);
+        rs = ps.executeQuery();
+        if (rs.next()) {
+            consultants.add(rs.getInt("userId"));
+            rule = rs.getString("recurrence") == null ? null : RecurrenceRule.parse(rs.getString("recurrence"));
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        uncommitted = new ArrayList<>();
+
+        try {
+            lockConsultants(consultants);
+
+            Appointment overlap = findOverlapping(ldtStart, ldtEnd, rule, userId, appointmentId);
+            if (overlap != null) {
+                throw new OverlapException(overlap);
+            }
+            updateAppointmentRow(appointmentId, customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, version, username);
+            conn.commit();
+            publishCommitted();
+        } catch (SQLException sqle) {
+            conn.rollback();
+            throw sqle;
+        } finally {
+            uncommitted = null;
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void updateAppointmentRow(int appointmentId, String customerName, int userId, String title, String description, String location,
+                                      String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException {
         ps = conn.prepareStatement(
                 "UPDATE appointment " +
                         "    SET customerId = (SELECT customerId FROM customer WHERE customerName = ?)," +
@@ -445,8 +1180,9 @@ public class MySQL {
                         "    url = ?," +
                         "    start = ?," +
                         "    end = ?," +
-                        "    lastUpdateBy = ?" +
-                        "        WHERE appointmentId = ?"
+                        "    lastUpdateBy = ?," +
+                        "    version = version + 1" +
+                        "        WHERE appointmentId = ? AND version = ?"
         );
         ps.setString(1, customerName);
         ps.setInt(2, userId);
@@ -466,7 +1202,50 @@ public class MySQL {
         );
         ps.setString(11, username);
         ps.setInt(12, appointmentId);
-        ps.execute();
+        ps.setInt(13, version);
+        if (ps.executeUpdate() == 0) {
+            throw new UpdateConflictException(appointmentId, version, getAppointment(appointmentId));
+        }
+        changed(ChangeEvent.appointment(appointmentId, version + 1, userId));
+    }
+
+    // The customer as it now stands, or null if it is gone.
+    private Customer getCustomer(int customerId) throws SQLException {
+        ps = conn.prepareStatement(SELECT_CUSTOMER + " AND c.customerId = ?");
+        ps.setInt(1, customerId);
+        rs = ps.executeQuery();
+        return rs.next() ? resultSetToCustomer(rs) : null;
+    }
+
+    // The appointment row as it now stands, or null if it is gone. A series comes back as its first occurrence.
+    public Appointment getAppointment(int appointmentId) throws SQLException {
+        ps = conn.prepareStatement(
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version, a.recurrence" +
+                        "   FROM appointment AS a, customer AS c" +
+                        "   WHERE a.customerId = c.customerId AND a.appointmentId = ?"
+        );
+        ps.setInt(1, appointmentId);
+        rs = ps.executeQuery();
+        if (!rs.next()) {
+            return null;
+        }
+
+        Appointment appointment = resultSetToAppointment(rs);
+        appointment.setRecurrence(rs.getString("recurrence"));
+        return appointment;
+    }
+
+    public List<LocalDateTime> getCancelledOccurrences(int appointmentId) throws SQLException {
+        List<LocalDateTime> cancelled = new ArrayList<>();
+
+        ps = conn.prepareStatement("SELECT occurrenceStart FROM appointment_exception WHERE appointmentId = ? ORDER BY occurrenceStart");
+        ps.setInt(1, appointmentId);
+        rs = ps.executeQuery();
+        while (rs.next()) {
+            cancelled.add(convertTimeZone(rs.getTimestamp("occurrenceStart").toLocalDateTime(), ZoneOffset.UTC, TimeZone.getDefault().toZoneId()).toLocalDateTime());
+        }
+
+        return cancelled;
     }
 
     // Get a list of all usernames in the database.
@@ -481,12 +1260,24 @@ public class MySQL {
         return returnList;
     }
 
+    // Get every userId with its username, so the UI can translate ids without a query per table cell.
+    public Map<Integer, String> getUserDirectory() throws SQLException {
+        Map<Integer, String> directory = new LinkedHashMap<>();
+
+        rs = conn.prepareStatement("SELECT userId, userName FROM user").executeQuery();
+        while (rs.next()) {
+            directory.put(rs.getInt("userId"), rs.getString("userName"));
+        }
+
+        return directory;
+    }
+
     // Get all appointments that are assigned to the username provided.
     public ObservableList<Appointment> getConsultantReport(String username) throws SQLException {
         ObservableList<Appointment> returnList = FXCollections.observableArrayList();
 
         ps = conn.prepareStatement(
-                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end " +
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version " +
                         "FROM appointment AS a, customer AS c, user AS u " +
                         "WHERE u.userName = ? AND a.userId = u.userId AND a.customerId = c.customerId"
         );
@@ -516,7 +1307,7 @@ public class MySQL {
     public ObservableList<Appointment> getContactReport(String contactName) throws SQLException {
         ObservableList<Appointment> returnList = FXCollections.observableArrayList();
         ps = conn.prepareStatement(
-                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end " +
+                "SELECT a.appointmentId, c.customerName, a.userId, a.title, a.description, a.location, a.contact, a.type, a.url, a.start, end, a.version " +
                         "FROM appointment AS a, customer AS c " +
                         "WHERE a.contact = ? AND a.customerId = c.customerId"
         );
@@ -531,7 +1322,7 @@ public class MySQL {
     }
 
     // Get a cascading list of all IDs associated to a Customer.
-    public ResultSet getIdsForCustomer(int customerId) throws SQLException{
+    public CustomerIds getIdsForCustomer(int customerId) throws SQLException{
         ps = conn.prepareStatement(
                 "SELECT cs.customerId, ad.addressId, ci.cityId, co.countryId" +
                         "    FROM customer AS cs, address AS ad, city AS ci, country AS co " +
@@ -539,7 +1330,13 @@ public class MySQL {
                         "    LIMIT 1"
         );
         ps.setInt(1, customerId);
-        return ps.executeQuery();
+        rs = ps.executeQuery();
+
+        if (!rs.next()) {
+            return null;
+        }
+
+        return new CustomerIds(rs.getInt("customerId"), rs.getInt("addressId"), rs.getInt("cityId"), rs.getInt("countryId"));
     }
 
     // Delete the referenced Appointment.
@@ -547,6 +1344,7 @@ public class MySQL {
         ps = conn.prepareStatement("DELETE FROM appointment WHERE appointmentId = ?");
         ps.setInt(1, appointmentId);
         ps.execute();
+        changed(ChangeEvent.appointment(appointmentId, ChangeEvent.DELETED, 0));
     }
 
     // Delete the referenced Customer.
@@ -554,6 +1352,25 @@ public class MySQL {
         ps = conn.prepareStatement("DELETE FROM customer WHERE customerId = ?");
         ps.setInt(1, customerId);
         ps.execute();
+        changed(ChangeEvent.of(ChangeEvent.Entity.CUSTOMER, customerId, ChangeEvent.DELETED));
+    }
+
+    // Every transaction this server has applied, its own and those replicated to it, as a GTID set. Empty unless the
+    // server runs with gtid_mode=ON.
+    String executedGtids() throws SQLException {
+        ps = conn.prepareStatement("SELECT @@GLOBAL.gtid_executed");
+        rs = ps.executeQuery();
+        rs.next();
+        return rs.getString(1).replace("\n", "");
+    }
+
+    // Whether this server has applied every transaction in the GTID set given.
+    boolean hasExecuted(String gtids) throws SQLException {
+        ps = conn.prepareStatement("SELECT GTID_SUBSET(?, @@GLOBAL.gtid_executed)");
+        ps.setString(1, gtids);
+        rs = ps.executeQuery();
+        rs.next();
+        return rs.getInt(1) == 1;
     }
 
     // Close all open connections, if any.
@@ -575,6 +1392,29 @@ public class MySQL {
         }
     }
 
+    // Connect, and route the connection through the slow query log unless db.properties turns it off.
+    private void open(Properties connectionProps) {
+        try {
+            conn = connect(connectionProps);
+
+            SlowQueryLog slowQueries = SlowQueryLog.get(connectionProps, () -> connect(connectionProps));
+            if (slowQueries != null) {
+                conn = slowQueries.wrap(conn);
+            }
+        } catch(SQLException e) {
+            System.out.println("Unable to connect to Database.");
+        }
+    }
+
+    // A plain connection to the database db.properties names, for the slow query log and the migration runner.
+    // Batches are rewritten into multi-row statements by the driver, so a batch of inserts is one round trip.
+    static Connection connect(Properties connectionProps) throws SQLException {
+        return DriverManager.getConnection(
+                "jdbc:mysql://" + connectionProps.getProperty("server") + "/" + connectionProps.getProperty("database") + "?rewriteBatchedStatements=true",
+                connectionProps.getProperty("username"), connectionProps.getProperty("password")
+        );
+    }
+
     // This is used to get the contents of the db.properties file.
     private Properties readPropertiesFile(String fileName) throws IOException {
         FileInputStream fis = null;
@@ -591,9 +1431,10 @@ public class MySQL {
         return prop;
     }
 
-    // Used to parse a Result Set into a useable Appointment object.
-    private Appointment resultSetToAppointment(ResultSet rs) throws SQLException {
-        return new Appointment(
+    // Used to parse a Result Set into a useable Appointment object. The DATETIME columns are read as timestamps rather
+    // than parsed from the driver's string rendering, which differs between drivers.
+    Appointment resultSetToAppointment(ResultSet rs) throws SQLException {
+        Appointment appointment = new Appointment(
                 rs.getInt("appointmentId"),
                 rs.getString("customerName"),
                 rs.getInt("userId"),
@@ -603,9 +1444,96 @@ public class MySQL {
                 rs.getString("contact"),
                 rs.getString("type"),
                 rs.getString("url"),
-                convertTimeZone(LocalDateTime.parse(rs.getString("start") , DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.0")), ZoneOffset.UTC, TimeZone.getDefault().toZoneId()),
-                convertTimeZone(LocalDateTime.parse(rs.getString("end") , DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.0")), ZoneOffset.UTC, TimeZone.getDefault().toZoneId())
+                convertTimeZone(rs.getTimestamp("start").toLocalDateTime(), ZoneOffset.UTC, TimeZone.getDefault().toZoneId()),
+                convertTimeZone(rs.getTimestamp("end").toLocalDateTime(), ZoneOffset.UTC, TimeZone.getDefault().toZoneId())
         );
+        appointment.setVersion(rs.getInt("version"));
+        return appointment;
+    }
+
+    private Customer resultSetToCustomer(ResultSet rs) throws SQLException {
+        Customer customer = new Customer(
+                rs.getInt("customerId"),
+                rs.getString("customerName"),
+                rs.getString("address"),
+                rs.getString("address2"),
+                rs.getString("city"),
+                rs.getString("country"),
+                rs.getString("postalCode"),
+                rs.getString("phone")
+        );
+        customer.setVersion(rs.getInt("version"));
+        customer.setRowIds(rs.getInt("addressId"), rs.getInt("cityId"), rs.getInt("countryId"));
+        return customer;
+    }
+
+    // Publish an event now, or hold it until the transaction in progress has committed.
+    private void changed(ChangeEvent event) {
+        if (uncommitted != null) {
+            uncommitted.add(event);
+        } else {
+            publish(List.of(event));
+        }
+    }
+
+    // Publish what the transaction just committed held back.
+    private void publishCommitted() {
+        List<ChangeEvent> events = uncommitted;
+        uncommitted = null;
+        if (events != null) {
+            publish(events);
+        }
+    }
+
+    private void publish(List<ChangeEvent> events) {
+        if (changes == null) {
+            return;
+        }
+        List<ChangeEvent> published = new ArrayList<>(events.size());
+        for (ChangeEvent event : events) {
+            // A new row's id of 0 stays 0.
+            published.add(event.getEntity() == ChangeEvent.Entity.APPOINTMENT && event.getId() != 0
+                    ? ChangeEvent.appointment(publishedIds.applyAsInt(event.getId()), event.getVersion(), event.getUserId())
+                    : event);
+        }
+        changes.publish(published);
+    }
+
+    // One statement of a unit of work: its SQL and how to bind it, or no SQL for a step that runs its own statements.
+    // A conditional statement has the conflict to throw when it updates nothing, and an appointment insert has the
+    // appointment it books, to check against the consultant's calendar.
+    private static class Planned {
+        private final String sql;
+        private final Binder binder;
+        private final ConflictSupplier conflict;
+        private final Appointment booking;
+
+        private Planned(String sql, Binder binder) {
+            this(sql, binder, null, null);
+        }
+
+        private Planned(String sql, Binder binder, ConflictSupplier conflict) {
+            this(sql, binder, conflict, null);
+        }
+
+        private Planned(String sql, Binder binder, Appointment booking) {
+            this(sql, binder, null, booking);
+        }
+
+        private Planned(String sql, Binder binder, ConflictSupplier conflict, Appointment booking) {
+            this.sql = sql;
+            this.binder = binder;
+            this.conflict = conflict;
+            this.booking = booking;
+        }
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement batch) throws SQLException;
+    }
+
+    private interface ConflictSupplier {
+        UpdateConflictException get() throws SQLException;
     }
 
     // Used to convert between two timezones.
@@ -0,0 +1,23 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import java.sql.SQLException;
+
+// Thrown by a write that would double-book a consultant: checked again under the consultant's lock, the appointment
+// it stores overlaps one booked since the caller last looked. Nothing is written. It carries the appointment in the
+// way, as bookAppointment returns it.
+public class OverlapException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final Appointment overlap;
+
+    public OverlapException(Appointment overlap) {
+        super("Appointment " + overlap.getId() + " already takes that time on user " + overlap.getUserId() + "'s calendar.", "23000");
+        this.overlap = overlap;
+    }
+
+    // The appointment already booked in the way.
+    public Appointment getOverlap() {
+        return overlap;
+    }
+}
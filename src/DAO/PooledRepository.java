@@ -0,0 +1,105 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A fixed pool of Repositories, each with its own connection, shared by many callers: every call borrows one for
+// its duration and hands it back, so a transaction inside a call keeps to one connection. A MySQL isn't safe to use
+// from two threads at once, which is why the pool hands out whole Repositories rather than Connections. Callers past
+// the pool size wait for one to come back, up to the timeout, and then fail.
+public class PooledRepository {
+    private final BlockingQueue<Repository> idle;
+    private final int size;
+    private final long timeoutMillis;
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    private PooledRepository(List<Repository> members, long timeoutMillis) {
+        this.idle = new ArrayBlockingQueue<>(members.size(), false, members);
+        this.size = members.size();
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Pool the Repositories given, which the pool then owns and closes.
+    public static Repository of(List<Repository> members, long timeoutMillis) {
+        PooledRepository pool = new PooledRepository(members, timeoutMillis);
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class, Stats.class},
+                pool.new Handler()
+        );
+    }
+
+    // What a pooled Repository reports about its pool, for ApiServer's /stats.
+    public interface Stats {
+        int getPoolSize();
+
+        int getPoolIdle();
+
+        long getPoolBorrowed();
+
+        long getPoolWaited();
+
+        long getPoolWaitNanos();
+    }
+
+    private class Handler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getPoolSize":
+                    return size;
+                case "getPoolIdle":
+                    return idle.size();
+                case "getPoolBorrowed":
+                    return borrowed.get();
+                case "getPoolWaited":
+                    return waited.get();
+                case "getPoolWaitNanos":
+                    return waitNanos.get();
+                case "close":
+                    Repository member;
+                    while ((member = idle.poll()) != null) {
+                        member.close();
+                    }
+                    return null;
+                default:
+                    break;
+            }
+
+            Repository member = idle.poll();
+            if (member == null) {
+                long started = System.nanoTime();
+                member = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+                waited.incrementAndGet();
+                waitNanos.addAndGet(System.nanoTime() - started);
+                if (member == null) {
+                    String message = "No connection came free within " + timeoutMillis + " ms.";
+                    // The methods that report their own failures don't declare SQLException.
+                    if (Arrays.asList(method.getExceptionTypes()).contains(SQLException.class)) {
+                        throw new SQLException(message, "08001");
+                    }
+                    throw new IllegalStateException(message);
+                }
+            }
+
+            borrowed.incrementAndGet();
+            try {
+                return method.invoke(member, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            } finally {
+                idle.offer(member);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package DAO;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per method latency, call, row and error counts for every Repository call, published as one MXBean per method and
+// periodically written to a snapshot file. Repositories.open() wraps whichever backend it opens with instrument().
+public class QueryMetrics {
+    private static final Map<String, QueryStats> STATS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService snapshots;
+
+    private QueryMetrics() {
+    }
+
+    // Wrap a Repository so that every call through it is timed and counted under the method's name.
+    public static Repository instrument(Repository repository) {
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class},
+                new Handler(repository)
+        );
+    }
+
+    // Count an error a Repository method handled itself instead of throwing, and report it as before.
+    public static void failed(String method, Exception e) {
+        stats(method).errors.increment();
+        e.printStackTrace();
+    }
+
+    // Count a call under a name of the caller's choosing, as instrument() counts a Repository method, for decorators
+    // that want part of the traffic through them shown on its own.
+    static void record(String name, long nanos, Object result) {
+        QueryStats stats = stats(name);
+        stats.latency.record(nanos);
+        stats.rows.add(Handler.rowsIn(result));
+    }
+
+    public static QueryStats stats(String method) {
+        return STATS.computeIfAbsent(method, QueryStats::register);
+    }
+
+    // Rewrite the snapshot file every period from now on. Only the first call starts the writer.
+    public static synchronized void startSnapshots(Path file, long period, TimeUnit unit) {
+        if (snapshots != null) {
+            return;
+        }
+
+        snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "query-metrics-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots.scheduleAtFixedRate(() -> {
+            try {
+                writeSnapshot(file);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }, period, period, unit);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writeSnapshot(file);
+            } catch (IOException ignored) {
+                // Nothing useful can be done about this on the way out.
+            }
+        }, "query-metrics-final-snapshot"));
+    }
+
+    // Write every method's numbers as one JSON document, replacing the previous snapshot in a single move so readers
+    // never see a partial file.
+    public static void writeSnapshot(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"timestamp\": \"" + Instant.now() + "\",\n  \"methods\": {");
+            String separator = "\n";
+            for (Map.Entry<String, QueryStats> entry : new TreeMap<>(STATS).entrySet()) {
+                QueryStats stats = entry.getValue();
+                writer.write(separator);
+                writer.write(String.format(Locale.ROOT,
+                        "    \"%s\": {\"calls\": %d, \"rows\": %d, \"errors\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, " +
+                                "\"p90Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+                        entry.getKey(), stats.getCalls(), stats.getRows(), stats.getErrors(), stats.getMeanMillis(),
+                        stats.getP50Millis(), stats.getP90Millis(), stats.getP99Millis(), stats.getMaxMillis()));
+                separator = ",\n";
+            }
+            writer.write("\n  }\n}\n");
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The numbers for one method.
+    public static class QueryStats implements QueryStatsMXBean {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private static QueryStats register(String method) {
+            QueryStats stats = new QueryStats();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName("DAO:type=QueryStats,name=" + method));
+            } catch (JMException jme) {
+                // Still counted and written to the snapshot, just not visible over JMX.
+                jme.printStackTrace();
+            }
+            return stats;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public double getMeanMillis() {
+            return latency.getMean() / 1e6;
+        }
+
+        public double getP50Millis() {
+            return latency.getValueAtPercentile(0.50) / 1e6;
+        }
+
+        public double getP90Millis() {
+            return latency.getValueAtPercentile(0.90) / 1e6;
+        }
+
+        public double getP99Millis() {
+            return latency.getValueAtPercentile(0.99) / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return latency.getMax() / 1e6;
+        }
+    }
+
+    // Times the call, then counts what came back: the size of a list or map, one for any other result and none for
+    // null or void. Anything thrown is counted as an error and rethrown unchanged.
+    private static class Handler implements InvocationHandler {
+        private final Repository target;
+        private final Map<Method, QueryStats> statsByMethod = new ConcurrentHashMap<>();
+
+        private Handler(Repository target) {
+            this.target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() != Repository.class || method.getName().equals("close")) {
+                return invokeTarget(method, args);
+            }
+
+            QueryStats stats = statsByMethod.computeIfAbsent(method, m -> stats(m.getName()));
+            long started = System.nanoTime();
+            try {
+                Object result = invokeTarget(method, args);
+                stats.latency.record(System.nanoTime() - started);
+                stats.rows.add(rowsIn(result));
+                return result;
+            } catch (Throwable t) {
+                stats.latency.record(System.nanoTime() - started);
+                stats.errors.increment();
+                throw t;
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+
+        private static long rowsIn(Object result) {
+            if (result instanceof Collection) {
+                return ((Collection<?>) result).size();
+            }
+            if (result instanceof Map) {
+                return ((Map<?, ?>) result).size();
+            }
+            return result == null ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package DAO;
+
+// What JConsole and other JMX clients see for one Repository method, under DAO:type=QueryStats,name=<method>.
+// Latencies are in milliseconds and cover every call since the application started.
+public interface QueryStatsMXBean {
+    long getCalls();
+
+    long getRows();
+
+    long getErrors();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
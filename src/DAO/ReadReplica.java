@@ -0,0 +1,163 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Sends the reports, the heavy scans behind the report windows, to a replica of the database, so they stop queuing
+// behind interactive saves on the primary. Everything else, writes and the reads after them included, stays on the
+// primary.
+//
+// A session still reads its own writes. After it writes, the next report first asks the primary where it now is, a
+// freshness token, and reads from the replica only once the replica has applied everything up to that token; until
+// then the report falls back to the primary. Once the replica has caught up the token is dropped, so a session that
+// doesn't write costs no checks at all. A replica that fails, or was never reached, also falls back to the primary,
+// which goes on serving every report until the replica answers again. The reports served by the replica are counted
+// in QueryMetrics as replica.<method>, and those that fell back for lag as fallback.<method>.
+//
+// With MySQL the token is the primary's executed GTID set, which needs gtid_mode=ON; without it every report after a
+// write falls back to the primary, and a report with no write before it in the session still reads the replica.
+public class ReadReplica {
+    private static final Set<String> REPORTS = Set.of("getAppointmentsByType", "getConsultantReport", "getUniqueContacts", "getContactReport");
+
+    private final Repository primary;
+    private final Repository replica;
+    private final Freshness freshness;
+    private final Session session;
+
+    private ReadReplica(Repository primary, Repository replica, Freshness freshness, Session session) {
+        this.primary = primary;
+        this.replica = replica;
+        this.freshness = freshness;
+        this.session = session;
+    }
+
+    // Route the reports of primary to replica, as fresh as session needs. Both are then closed with the result.
+    public static Repository route(Repository primary, Repository replica, Freshness freshness, Session session) {
+        ReadReplica router = new ReadReplica(primary, replica, freshness, session);
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class},
+                router.new Handler()
+        );
+    }
+
+    // Freshness by GTID: where the primary is, and whether the replica has got there.
+    public static Freshness gtids(MySQL primary, MySQL replica) {
+        return new Freshness() {
+            public String position() throws SQLException {
+                String gtids = primary.executedGtids();
+                if (gtids.isEmpty()) {
+                    throw new SQLException("The primary has no GTIDs to compare the replica against; it needs gtid_mode=ON.");
+                }
+                return gtids;
+            }
+
+            public boolean applied(String position) throws SQLException {
+                return replica.hasExecuted(position);
+            }
+        };
+    }
+
+    // The primary behind a routed Repository, or the Repository itself if it isn't one.
+    static Repository primaryOf(Repository repository) {
+        if (Proxy.isProxyClass(repository.getClass()) && Proxy.getInvocationHandler(repository) instanceof Handler) {
+            return ((Handler) Proxy.getInvocationHandler(repository)).router().primary;
+        }
+        return repository;
+    }
+
+    // How far the primary has got, and how far the replica has followed it.
+    public interface Freshness {
+        // A token for everything the primary has committed so far.
+        String position() throws SQLException;
+
+        // Whether the replica has applied everything up to the token given.
+        boolean applied(String position) throws SQLException;
+    }
+
+    // What one session has written that the replica may not have yet. Every Repository opened in a process shares
+    // one, so an ApiServer's pooled connections read their clients' writes whichever connection made them.
+    public static class Session {
+        // Set by a write; the token is only read when a report comes, since any later position serves as well.
+        private final AtomicBoolean wrote = new AtomicBoolean();
+        private final AtomicReference<String> token = new AtomicReference<>();
+    }
+
+    private class Handler implements InvocationHandler {
+        private ReadReplica router() {
+            return ReadReplica.this;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() != Repository.class) {
+                return call(primary, method, args);
+            } else if (name.equals("close")) {
+                primary.close();
+                replica.close();
+                return null;
+            } else if (REPORTS.contains(name)) {
+                return report(method, args);
+            } else if (name.startsWith("get") || name.startsWith("read") || name.startsWith("check")) {
+                return call(primary, method, args);
+            }
+
+            try {
+                return call(primary, method, args);
+            } finally {
+                // A failed write may still have written something, so it counts too.
+                session.wrote.set(true);
+            }
+        }
+
+        private Object report(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            String token;
+            try {
+                // Cleared first, so a write while the position is read still marks the session.
+                if (session.wrote.getAndSet(false)) {
+                    session.token.set(freshness.position());
+                }
+                token = session.token.get();
+                if (token != null && !freshness.applied(token)) {
+                    long started = System.nanoTime();
+                    Object result = call(primary, method, args);
+                    QueryMetrics.record("fallback." + name, System.nanoTime() - started, result);
+                    return result;
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Unable to tell how fresh the replica is, so it isn't used this time; the next report asks again. A
+                // MySQL whose server couldn't be reached has no connection at all and fails with a RuntimeException.
+                session.wrote.set(true);
+                QueryMetrics.failed("fallback." + name, e);
+                return call(primary, method, args);
+            }
+
+            long started = System.nanoTime();
+            try {
+                Object result = call(replica, method, args);
+                QueryMetrics.record("replica." + name, System.nanoTime() - started, result);
+                // Caught up, and replicas don't go back, so there is nothing more to check until the next write.
+                session.token.compareAndSet(token, null);
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                QueryMetrics.failed("replica." + name, e);
+                return call(primary, method, args);
+            }
+        }
+
+        private Object call(Repository target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
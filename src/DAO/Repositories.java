@@ -0,0 +1,259 @@
+package DAO;
+
+import appointmentManager.UiActionEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Opens the Repository db.properties asks for:
+//
+//     backend=mysql              server, database, username and password as before (the default)
+//     backend=embedded           in-process, optionally persisted with embedded.file=appointments.db; a new store has
+//                                no logins, so set embedded.username and embedded.password to the one it should get
+//     backend=http               through an ApiServer at http.url (http://localhost:8195), which holds the database
+//                                connections and the busy slots, so this client has neither; http.token is the
+//                                server's server.token, if it has one
+//     replica.server             send the reports to this MySQL replica of the primary, which needs gtid_mode=ON so
+//                                a session still sees its own writes; replica.database, .username and .password
+//                                default to the primary's. See ReadReplica
+//     backend=sharded            appointments spread by consultant over the databases shard.0 to shard.<shards - 1>,
+//                                each configured by its own shard.<i>.server, .database, .username and .password, which
+//                                default to the unprefixed ones; shard.<i>.backend=embedded makes a shard an in-process
+//                                store, for trying it out. See ShardedRepository
+//     migrations=false           don't apply pending schema Migrations before the first MySQL connection
+//     metrics=false              turns off the per method QueryMetrics, which are on by default
+//     metrics.file, metrics.seconds   where and how often the metrics snapshot is written (QueryMetrics.json, 60)
+//     busyslots=false            check overlaps with a query every time instead of through BusySlots bitmaps
+//     busyslots.seconds, busyslots.days   how long a cached day is trusted and how many are held (30, 20000)
+//     invalidation=host:port     publish MySQL writes to, and hear other clients' from, an InvalidationBroker; while
+//                                connected, BusySlots keeps days until they change rather than for busyslots.seconds
+//
+// db.properties is read from the working directory as it always was, then from the classpath, so a packaged build
+// can ship one. Without one, open() fails rather than guess: the embedded store is only used when asked for by name.
+public class Repositories {
+    private static final String DB_CONN_PATH = "src/resources/db.properties";
+    private static final String DB_CONN_RESOURCE = "/resources/db.properties";
+
+    // Every caller shares one embedded store, the same way they would share one MySQL database.
+    private static Embedded embedded;
+    // The MySQL databases migrated so far, by server and database.
+    private static final Set<String> migrated = new HashSet<>();
+    // One connection to the broker per process, shared by every Repository opened.
+    private static InvalidationBus bus;
+    // Likewise one read-your-writes session, so whichever connection wrote, the next report sees it.
+    private static final ReadReplica.Session session = new ReadReplica.Session();
+
+    private Repositories() {
+    }
+
+    public static Repository open() {
+        return open(1);
+    }
+
+    // Like open(), with size connections pooled behind the one Repository, for callers on several threads at once.
+    // The embedded store and the API server are shared already, so those are opened once whatever the size.
+    public static Repository open(int size) {
+        Properties properties = readProperties();
+        if (properties == null) {
+            throw new IllegalStateException("No db.properties at " + DB_CONN_PATH + " or on the classpath. Set backend and its connection details there, " +
+                    "or backend=embedded for an in-process store.");
+        }
+
+        List<Repository> members = new ArrayList<>();
+        String backend = properties.getProperty("backend", "mysql").trim();
+        int connections = backend.equals("mysql") || backend.equals("sharded") ? size : 1;
+        for (int i = 0; i < connections; i++) {
+            members.add(openBackend(properties));
+        }
+        // The embedded store lives in this process, so there is nobody to hear from.
+        InvalidationBus invalidations = null;
+        for (Repository member : members) {
+            Repository primary = ReadReplica.primaryOf(member);
+            if (primary instanceof MySQL) {
+                invalidations = bus(properties);
+                ((MySQL) primary).publishTo(invalidations);
+            } else if (primary instanceof ShardedRepository && ((ShardedRepository) primary).publishTo(bus(properties))) {
+                invalidations = bus(properties);
+            }
+        }
+        Repository repository = members.size() == 1 ? members.get(0) : PooledRepository.of(members, 30_000);
+        // An API server keeps busy slots for all its clients, and only it sees their writes as they happen.
+        return decorate(repository, properties, invalidations, !(members.get(0) instanceof HttpRepository));
+    }
+
+    // Wrap a backend in the decorators db.properties asks for.
+    static Repository decorate(Repository repository, Properties properties, InvalidationBus invalidations, boolean busySlots) {
+        if (busySlots && Boolean.parseBoolean(properties.getProperty("busyslots", "true").trim())) {
+            repository = BusySlots.instrument(
+                    repository,
+                    Duration.ofSeconds(Long.parseLong(properties.getProperty("busyslots.seconds", "30").trim())),
+                    Integer.parseInt(properties.getProperty("busyslots.days", "20000").trim()),
+                    invalidations
+            );
+        }
+        // Flight Recorder events cost next to nothing unless a recording is running, so they are always on.
+        repository = DaoEvents.instrument(repository);
+
+        if (!Boolean.parseBoolean(properties.getProperty("metrics", "true").trim())) {
+            return repository;
+        }
+
+        QueryMetrics.startSnapshots(
+                Paths.get(properties.getProperty("metrics.file", "QueryMetrics.json").trim()),
+                Long.parseLong(properties.getProperty("metrics.seconds", "60").trim()),
+                TimeUnit.SECONDS
+        );
+        return QueryMetrics.instrument(repository);
+    }
+
+    static Repository openBackend(Properties properties) {
+        String backend = properties.getProperty("backend", "mysql").trim();
+        switch (backend) {
+            case "mysql":
+                migrateOnce(properties);
+                MySQL mySQL = new MySQL(properties);
+                if (properties.getProperty("replica.server", "").isBlank()) {
+                    return mySQL;
+                }
+                // The replica gets its schema from the primary, so it is never migrated itself.
+                MySQL replica = new MySQL(prefixed(properties, "replica."));
+                return ReadReplica.route(mySQL, replica, ReadReplica.gtids(mySQL, replica), session);
+            case "http":
+                return new HttpRepository(URI.create(properties.getProperty("http.url", "http://localhost:" + ApiServer.DEFAULT_PORT).trim()),
+                        properties.getProperty("http.token"));
+            case "embedded":
+                return openEmbedded(properties);
+            case "sharded":
+                return openSharded(properties);
+            default:
+                throw new IllegalArgumentException("Unknown backend in db.properties: " + backend);
+        }
+    }
+
+    private static ShardedRepository openSharded(Properties properties) {
+        int count = Integer.parseInt(properties.getProperty("shards", "2").trim());
+        List<Repository> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String prefix = "shard." + i + ".";
+            Properties shard = prefixed(properties, prefix);
+
+            String backend = properties.getProperty(prefix + "backend", "mysql").trim();
+            switch (backend) {
+                case "mysql":
+                    migrateOnce(shard);
+                    shards.add(new MySQL(shard));
+                    break;
+                case "embedded":
+                    // Each shard a store of its own, unlike backend=embedded.
+                    shards.add(newEmbedded(shard));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown backend for shard " + i + " in db.properties: " + backend);
+            }
+        }
+        return new ShardedRepository(shards);
+    }
+
+    // The properties with those under the prefix given in place of the unprefixed ones.
+    private static Properties prefixed(Properties properties, String prefix) {
+        Properties prefixed = new Properties();
+        prefixed.putAll(properties);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                prefixed.setProperty(name.substring(prefix.length()), properties.getProperty(name));
+            }
+        }
+        return prefixed;
+    }
+
+    // The first caller applies any pending migrations; the rest wait for it, so no connection sees an older schema.
+    // The run is a migrateSchema UiAction event, with the migrations applied as its rows; only the gradle migrate
+    // command prints them.
+    static synchronized void migrateOnce(Properties properties) {
+        String database = properties.getProperty("server") + "/" + properties.getProperty("database");
+        if (migrated.contains(database) || !Boolean.parseBoolean(properties.getProperty("migrations", "true").trim())) {
+            return;
+        }
+
+        UiActionEvent event = UiActionEvent.begin("migrateSchema", 0);
+        try (Connection conn = MySQL.connect(properties)) {
+            event.finish(Migrations.migrate(conn));
+            migrated.add(database);
+        } catch (SQLException sqle) {
+            // Leave it to the MySQL constructor to report the database being unreachable.
+            sqle.printStackTrace();
+        }
+    }
+
+    static synchronized InvalidationBus bus(Properties properties) {
+        String address = properties.getProperty("invalidation", "").trim();
+        if (bus == null && !address.isEmpty()) {
+            int colon = address.lastIndexOf(':');
+            bus = colon < 0
+                    ? new InvalidationBus(address, InvalidationBroker.DEFAULT_PORT)
+                    : new InvalidationBus(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        }
+        return bus;
+    }
+
+    private static synchronized Embedded openEmbedded(Properties properties) {
+        if (embedded == null) {
+            embedded = newEmbedded(properties);
+        }
+        return embedded;
+    }
+
+    // An embedded store with the login db.properties names added, if it names one.
+    private static Embedded newEmbedded(Properties properties) {
+        String file = properties.getProperty("embedded.file", "").trim();
+        Embedded store = new Embedded(file.isEmpty() ? null : Paths.get(file));
+        String username = properties.getProperty("embedded.username", "").trim();
+        String password = properties.getProperty("embedded.password", "");
+        if (!username.isEmpty() && !password.isEmpty()) {
+            try {
+                store.insertUser(username, password);
+            } catch (SQLException sqle) {
+                throw new IllegalStateException("Unable to add the embedded login " + username, sqle);
+            }
+        }
+        return store;
+    }
+
+    // db.properties, or null if there is none. One that is there but can't be read is an error, not a missing file.
+    static Properties readProperties() {
+        Properties properties = new Properties();
+
+        try {
+            Path path = Paths.get(DB_CONN_PATH);
+            if (Files.exists(path)) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    properties.load(in);
+                }
+                return properties;
+            }
+
+            try (InputStream in = Repositories.class.getResourceAsStream(DB_CONN_RESOURCE)) {
+                if (in != null) {
+                    properties.load(in);
+                    return properties;
+                }
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to read db.properties", ioe);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,300 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
+import javafx.collections.ObservableList;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// Everything the application reads from or writes to storage. MySQL is the networked implementation and Embedded
+// keeps the same tables in process; Repositories.open() picks one from db.properties. Implementations that have no
+// database underneath still report failures as SQLException so callers handle both the same way.
+//
+// Recurring series are stored as one definition and expanded per query: getAppointmentsInRange and the overlap checks
+// return each occurrence in the window as its own Appointment, carrying the series' id and rule. The reports list a
+// series once, by its first occurrence.
+public interface Repository {
+    // How far ahead a series without an end is checked for clashes when it is saved.
+    Period SERIES_OVERLAP_HORIZON = Period.ofYears(1);
+
+    // Get all customers, parsing each into a Customer object.
+    ObservableList<Customer> getAllCustomers();
+
+    // Get all appointments within the date range specified, and parse each into an Appointment object.
+    ObservableList<Appointment> getAppointmentsInRange(LocalDate start, LocalDate end, int userId);
+
+    // getAppointmentsInRange, throwing when the read fails instead of returning an empty list, for callers that keep
+    // what they read and mustn't take a failure for a free calendar.
+    default ObservableList<Appointment> readAppointmentsInRange(LocalDate start, LocalDate end, int userId) throws SQLException {
+        return getAppointmentsInRange(start, end, userId);
+    }
+
+    // Get the appointments of all the users given that overlap the days from start to end inclusive, in one call.
+    ObservableList<Appointment> getAppointmentsForUsers(LocalDate start, LocalDate end, Collection<Integer> userIds);
+
+    // Check if this user has any Appointments occurring within the next 15 minutes.
+    Appointment checkForUpcomingAppointment(Integer userId);
+
+    // Find an Appointment of this user that overlaps the times given, if any.
+    Appointment checkForOverlappingAppointment(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId);
+
+    // Find an Appointment of this user, other than those of ignoreAppointmentId, that overlaps any occurrence of the
+    // series given within its first SERIES_OVERLAP_HORIZON. One range query covers the whole horizon, so a weekly series
+    // costs one round trip rather than one per occurrence.
+    default Appointment checkForOverlappingSeries(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId, int ignoreAppointmentId) {
+        List<Appointment> existing = getAppointmentsInRange(ldtStart.toLocalDate(), seriesHorizon(ldtStart, ldtEnd, rule).toLocalDate(), userId);
+        return firstSeriesOverlap(existing, ldtStart, ldtEnd, rule, ignoreAppointmentId);
+    }
+
+    // How far a series starting at the times given is checked for clashes: SERIES_OVERLAP_HORIZON, or the end of its
+    // last occurrence if that comes sooner.
+    static ZonedDateTime seriesHorizon(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule) {
+        ZonedDateTime first = ldtStart.atZone(ZoneId.systemDefault());
+        ZonedDateTime horizon = first.plus(SERIES_OVERLAP_HORIZON);
+        ZonedDateTime last = rule.lastStart(first);
+        if (last != null && last.isBefore(horizon)) {
+            horizon = last.plus(Duration.between(ldtStart, ldtEnd));
+        }
+        return horizon;
+    }
+
+    // The first of the existing appointments, other than those of ignoreAppointmentId, that overlaps an occurrence of
+    // the series before its seriesHorizon.
+    static Appointment firstSeriesOverlap(List<Appointment> existing, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int ignoreAppointmentId) {
+        ZonedDateTime first = ldtStart.atZone(ZoneId.systemDefault());
+        Duration length = Duration.between(ldtStart, ldtEnd);
+        ZonedDateTime horizon = seriesHorizon(ldtStart, ldtEnd, rule);
+        for (ZonedDateTime start : rule.occurrences(first, length, first.toInstant(), horizon.toInstant())) {
+            ZonedDateTime end = start.plus(length);
+            for (Appointment appointment : existing) {
+                if (appointment.getId() != ignoreAppointmentId && appointment.getStart().isBefore(end) && appointment.getEnd().isAfter(start)) {
+                    return appointment;
+                }
+            }
+        }
+        return null;
+    }
+
+    // The last day a one-off, or a series when rule isn't null, starting at the times given is checked for clashes on.
+    static LocalDate lastDayChecked(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule) {
+        return rule == null ? ldtEnd.toLocalDate() : seriesHorizon(ldtStart, ldtEnd, rule).toLocalDate();
+    }
+
+    // As firstSeriesOverlap, for a one-off when rule is null.
+    static Appointment firstOverlap(List<Appointment> existing, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int ignoreAppointmentId) {
+        if (rule != null) {
+            return firstSeriesOverlap(existing, ldtStart, ldtEnd, rule, ignoreAppointmentId);
+        }
+
+        ZonedDateTime start = ldtStart.atZone(ZoneId.systemDefault());
+        ZonedDateTime end = ldtEnd.atZone(ZoneId.systemDefault());
+        for (Appointment appointment : existing) {
+            if (appointment.getId() != ignoreAppointmentId && appointment.getStart().isBefore(end) && appointment.getEnd().isAfter(start)) {
+                return appointment;
+            }
+        }
+        return null;
+    }
+
+    // As firstOverlap, against appointments of this user that aren't stored yet, such as the earlier bookings of a unit
+    // of work. A series among them is expanded over the days checked, as getAppointmentsInRange would expand it stored.
+    static Appointment firstPendingOverlap(List<Appointment> pending, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId) {
+        Instant windowStart = ldtStart.toLocalDate().atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant windowEnd = lastDayChecked(ldtStart, ldtEnd, rule).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        List<Appointment> occurrences = new ArrayList<>();
+        for (Appointment appointment : pending) {
+            if (appointment.getUserId() != userId) {
+                continue;
+            }
+            if (!appointment.isRecurring()) {
+                occurrences.add(appointment);
+                continue;
+            }
+
+            Duration length = Duration.between(appointment.getStart(), appointment.getEnd());
+            ZonedDateTime first = appointment.getStart().withZoneSameInstant(ZoneId.systemDefault());
+            for (ZonedDateTime start : RecurrenceRule.parse(appointment.getRecurrence()).occurrences(first, length, windowStart, windowEnd)) {
+                occurrences.add(appointment.occurrence(start, start.plus(length), appointment.getRecurrence()));
+            }
+        }
+        // Appointments not stored yet all have id 0, so none of them is ignored.
+        return firstOverlap(occurrences, ldtStart, ldtEnd, rule, -1);
+    }
+
+    // The existing appointments that overlap one of the appointments given for the same consultant, each listed once,
+    // then each of the appointments given that a later starting one of them for the same consultant overlaps.
+    static List<Appointment> conflicts(List<Appointment> existing, List<Appointment> appointments) {
+        List<Appointment> conflicts = new ArrayList<>();
+        for (Appointment appointment : existing) {
+            for (Appointment wanted : appointments) {
+                if (wanted.getUserId() == appointment.getUserId() && appointment.getStart().isBefore(wanted.getEnd()) && appointment.getEnd().isAfter(wanted.getStart())) {
+                    conflicts.add(appointment);
+                    break;
+                }
+            }
+        }
+
+        // Sorted by consultant and start, an appointment overlaps an earlier one exactly when it starts before the
+        // latest end so far, so one pass finds them rather than comparing every pair.
+        List<Appointment> sorted = new ArrayList<>(appointments);
+        sorted.sort(Comparator.comparingInt(Appointment::getUserId).thenComparing(Appointment::getStart));
+        Appointment latest = null;
+        for (Appointment wanted : sorted) {
+            boolean sameConsultant = latest != null && latest.getUserId() == wanted.getUserId();
+            if (sameConsultant && wanted.getStart().isBefore(latest.getEnd()) && !conflicts.contains(latest)) {
+                conflicts.add(latest);
+            }
+            if (!sameConsultant || wanted.getEnd().isAfter(latest.getEnd())) {
+                latest = wanted;
+            }
+        }
+        return conflicts;
+    }
+
+    // The days, in the system zone, from the first start to the last end of the appointments given.
+    static LocalDate[] span(List<Appointment> appointments) {
+        LocalDate first = null;
+        LocalDate last = null;
+        for (Appointment appointment : appointments) {
+            LocalDate start = appointment.getStart().withZoneSameInstant(ZoneId.systemDefault()).toLocalDate();
+            LocalDate end = appointment.getEnd().withZoneSameInstant(ZoneId.systemDefault()).toLocalDate();
+            first = first == null || start.isBefore(first) ? start : first;
+            last = last == null || end.isAfter(last) ? end : last;
+        }
+        return new LocalDate[] {first, last};
+    }
+
+    // Check if the username and password combo exist, returning the userId if so.
+    Integer checkUser(String username, String password) throws SQLException;
+
+    // Get the username associated to the referenced userId
+    String getUsername(int userId) throws SQLException;
+
+    // Count this month's Appointments by type. This is used for the "Appointments By Type report."
+    String getAppointmentsByType() throws SQLException;
+
+    // If a country with this name already exists, grab it's ID, else create it and return the newly created ID
+    int insertCountry(String countryName, String username) throws SQLException;
+
+    // If a city with this name already exists, grab it's ID, else create it and return the newly created ID
+    int insertCity(String cityName, int countryId, String username) throws SQLException;
+
+    // If an address with these details already exists, grab it's ID, else create it and return the newly created ID
+    int insertAddress(String address, String address2, int cityId, String postalCode, String phone, String username) throws SQLException;
+
+    // Create a new Customer using the data passed.
+    void insertCustomer(String name, int addressId, String username) throws SQLException;
+
+    // Create a new Appointment.
+    void insertAppointment(String customerName, int userId, String title, String description, String location,
+                           String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException;
+
+    // Create a recurring series whose first occurrence is at the times given, in the user's timezone.
+    void insertAppointmentSeries(String customerName, int userId, String title, String description, String location, String contact,
+                                 String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException;
+
+    // Check for a clash and create the appointment, or the series when rule isn't null, as one step: no other booking
+    // for this user can land between the check and the insert. Returns the appointment in the way, having created
+    // nothing, or null once it is booked. Bookings for different users don't wait on each other.
+    Appointment bookAppointment(String customerName, int userId, String title, String description, String location, String contact,
+                                String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException;
+
+    // Create every Appointment given in one transaction: either all of them are stored or, if any fails, none are.
+    // Ids on the Appointments are ignored. The consultants' calendars are checked again as they are stored, and if any
+    // of the appointments overlaps one booked in the meantime, nothing is stored and the appointments in the way are
+    // returned, so the schedule can be planned again around them. So are any of the appointments given that another of
+    // them for the same consultant overlaps. An empty list means every appointment was stored.
+    List<Appointment> insertAppointments(List<Appointment> appointments, String username) throws SQLException;
+
+    // Take the occurrence starting at the time given out of its series, leaving the rest of the series as it is. Like
+    // updateAppointment, only if the series is still at the version given, which it then moves on; otherwise throws
+    // UpdateConflictException with the series as it now stands.
+    void cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException;
+
+    // End the series before the occurrence starting at the time given, so that occurrence and every later one go away.
+    // Editing "this and following" is this plus a new series; either way it is one row changed, however long the series.
+    // Conditional on the version as cancelOccurrence is.
+    void endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException;
+
+    // Apply every write of the unit in one transaction: all of them or, if any fails, none. Consecutive writes of the
+    // same statement go out as one batch, and customer rows whose fields didn't change aren't written at all. Throws
+    // UpdateConflictException, having written nothing, when a customer it updates has moved on from its version, and
+    // OverlapException when an appointment it inserts overlaps one on the consultant's calendar by then.
+    UnitOfWork.Result commit(UnitOfWork work) throws SQLException;
+
+    // Update the countryName for the id provided.
+    void updateCountry(String countryName, int countryId, String username) throws SQLException;
+
+    // Update the cityName for the id provided.
+    void updateCity(String cityName, int cityId, String username) throws SQLException;
+
+    // Update the address details for the id provided.
+    void updateAddress(String address, String address2, String postalCode, String phone, int addressId, String username) throws SQLException;
+
+    // Update the Customer details for the id provided, if it is still at the version given, and move it to the next
+    // version. A customer edit calls this before updating its address, city and country, so a stale form writes none of
+    // them. Throws UpdateConflictException, carrying the customer as it now stands, when the version has moved on.
+    void updateCustomer(String customerName, int customerId, int version, String username) throws SQLException;
+
+    // Update the Appointment details for the id provided, if it is still at the version given, and move it to the next
+    // version. Throws UpdateConflictException, carrying the appointment as it now stands, when the version has moved on.
+    // The new times are checked against the consultant's calendar as bookAppointment checks them, and a clash throws
+    // OverlapException with the appointment in the way, having changed nothing.
+    void updateAppointment(int appointmentId, String customerName, int userId, String title, String description, String location,
+                           String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException;
+
+    // Get a list of all usernames.
+    ObservableList<String> getUsernames() throws SQLException;
+
+    // Get every userId with its username, so the UI can translate ids without a query per table cell.
+    Map<Integer, String> getUserDirectory() throws SQLException;
+
+    // Get all appointments that are assigned to the username provided.
+    ObservableList<Appointment> getConsultantReport(String username) throws SQLException;
+
+    // Get a unique list of all contacts that appear on Appointments.
+    ObservableList<String> getUniqueContacts() throws SQLException;
+
+    // Get all Appointments that have the passed contact.
+    ObservableList<Appointment> getContactReport(String contactName) throws SQLException;
+
+    // Get the address, city and country ids a Customer hangs off, or null if there is no such Customer.
+    CustomerIds getIdsForCustomer(int customerId) throws SQLException;
+
+    // Get the Appointment row with this id as it now stands, its recurrence and version included, or null if it is
+    // gone. A series comes back as its first occurrence.
+    Appointment getAppointment(int appointmentId) throws SQLException;
+
+    // Get the starts, in the user's timezone and earliest first, of the occurrences cancelled out of the series with
+    // this id. Empty for a one-off or an appointment that is gone.
+    List<LocalDateTime> getCancelledOccurrences(int appointmentId) throws SQLException;
+
+    // Delete the referenced Appointment.
+    void deleteAppointment(int appointmentId) throws SQLException;
+
+    // Delete the referenced Appointment, or the whole series it belongs to, only if it is still at the version given.
+    // Throws UpdateConflictException, carrying the appointment as it now stands, when the version has moved on. It is
+    // the unit of work's conditional delete, so every backend runs it as one statement.
+    default void deleteAppointment(int appointmentId, int version) throws SQLException {
+        // A delete records no username.
+        commit(new UnitOfWork(null).deleteAppointment(appointmentId, version));
+    }
+
+    // Delete the referenced Customer.
+    void deleteCustomer(int customerId) throws SQLException;
+
+    // Release whatever the implementation holds open.
+    void close();
+}
@@ -0,0 +1,210 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// The ApiServer's read cache. Every client's reads go through one server, so the customer list, the directories, a
+// consultant's month and the reports are each read once and then served to everyone until a write changes them.
+//
+// Writes don't search the cache. Each entry remembers the generation of what it was read from: the customers, the
+// appointments of its consultant, or those of every consultant. A write moves on the generations it touches, and an
+// entry from an older generation is a miss. A booking for one consultant therefore only costs that consultant's
+// cached months and the cross-consultant reports, while a write whose consultant isn't known costs every appointment
+// read. Writes by clients that don't go through this server are only seen through the InvalidationBus, if there is
+// one, or after maxAge, which also bounds the reports that depend on today's date.
+//
+// Cached results are shared between callers and must not be changed; the server only serializes them.
+public class ServerCache {
+    // Reads and whether they depend on customers, on appointments, and which argument is their consultant (-1 for
+    // reads across consultants).
+    private static final Map<String, Read> READS = Map.ofEntries(
+            Map.entry("getAllCustomers", new Read(true, false, -1)),
+            Map.entry("getIdsForCustomer", new Read(true, false, -1)),
+            Map.entry("getUsernames", new Read(false, false, -1)),
+            Map.entry("getUserDirectory", new Read(false, false, -1)),
+            Map.entry("getAppointmentsInRange", new Read(true, true, 2)),
+            Map.entry("readAppointmentsInRange", new Read(true, true, 2)),
+            Map.entry("getAppointmentsForUsers", new Read(true, true, -1)),
+            Map.entry("getConsultantReport", new Read(true, true, -1)),
+            Map.entry("getContactReport", new Read(true, true, -1)),
+            Map.entry("getUniqueContacts", new Read(false, true, -1)),
+            Map.entry("getAppointmentsByType", new Read(false, true, -1))
+    );
+    // Writes to one consultant's appointments, by where that consultant's id is.
+    private static final Map<String, Integer> USER_WRITES = Map.of(
+            "insertAppointment", 1,
+            "insertAppointmentSeries", 1,
+            "bookAppointment", 1
+    );
+    // Writes to appointments whose consultants aren't known here.
+    private static final List<String> APPOINTMENT_WRITES = List.of(
+            "updateAppointment", "insertAppointments", "cancelOccurrence", "endSeriesBefore", "deleteAppointment", "commit"
+    );
+    private static final List<String> CUSTOMER_WRITES = List.of(
+            "insertCountry", "insertCity", "insertAddress", "insertCustomer", "updateCountry", "updateCity", "updateAddress",
+            "updateCustomer", "deleteCustomer", "commit"
+    );
+
+    private final Repository target;
+    private final long maxAgeNanos;
+    private final int maxEntries;
+    private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong customers = new AtomicLong();
+    private final AtomicLong appointments = new AtomicLong();
+    private final AtomicLong anyUser = new AtomicLong();
+    private final Map<Integer, AtomicLong> users = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ServerCache(Repository target, Duration maxAge, int maxEntries, InvalidationBus bus) {
+        this.target = target;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.maxEntries = maxEntries;
+        if (bus != null) {
+            bus.subscribe(this::changed);
+        }
+    }
+
+    // The target with its reads cached.
+    public Repository repository() {
+        return (Repository) Proxy.newProxyInstance(
+                Repository.class.getClassLoader(),
+                new Class<?>[] {Repository.class},
+                new Handler()
+        );
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Another client's write, or ChangeEvent.ALL when some may have been missed.
+    void changed(ChangeEvent event) {
+        switch (event.getEntity()) {
+            case APPOINTMENT:
+                if (event.getId() == 0 && event.getUserId() != 0) {
+                    userChanged(event.getUserId());
+                } else {
+                    appointments.incrementAndGet();
+                }
+                break;
+            case ALL:
+                appointments.incrementAndGet();
+                customers.incrementAndGet();
+                entries.clear();
+                break;
+            default:
+                customers.incrementAndGet();
+                break;
+        }
+    }
+
+    private void userChanged(int userId) {
+        users.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        anyUser.incrementAndGet();
+    }
+
+    private long userGeneration(int userId) {
+        AtomicLong generation = users.get(userId);
+        return generation == null ? 0 : generation.get();
+    }
+
+    private static class Read {
+        private final boolean customers;
+        private final boolean appointments;
+        private final int userArgument;
+
+        private Read(boolean customers, boolean appointments, int userArgument) {
+            this.customers = customers;
+            this.appointments = appointments;
+            this.userArgument = userArgument;
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long loadedNanos;
+        private final long[] generations;
+
+        private Entry(Object value, long loadedNanos, long[] generations) {
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+            this.generations = generations;
+        }
+    }
+
+    private class Handler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Read read = READS.get(method.getName());
+            if (read == null || method.getDeclaringClass() != Repository.class) {
+                try {
+                    return call(method, args);
+                } finally {
+                    // Failed writes count too, which at worst costs a few misses.
+                    wrote(method.getName(), args);
+                }
+            }
+
+            List<Object> key = args == null ? List.of(method.getName()) : List.of(method.getName(), Arrays.asList(args));
+            long now = System.nanoTime();
+            // Taken before reading, so a write that lands during the read leaves the entry already out of date.
+            long[] generations = generations(read, args);
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.loadedNanos < maxAgeNanos && Arrays.equals(entry.generations, generations)) {
+                hits.increment();
+                return entry.value;
+            }
+
+            misses.increment();
+            Object value = call(method, args);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+            entries.put(key, new Entry(value, now, generations));
+            return value;
+        }
+
+        private long[] generations(Read read, Object[] args) {
+            long user = !read.appointments ? 0 : read.userArgument < 0 ? anyUser.get() : userGeneration((Integer) args[read.userArgument]);
+            return new long[] {read.customers ? customers.get() : 0, read.appointments ? appointments.get() : 0, user};
+        }
+
+        private void wrote(String method, Object[] args) {
+            Integer userArgument = USER_WRITES.get(method);
+            if (userArgument != null) {
+                userChanged((Integer) args[userArgument]);
+            }
+            if (APPOINTMENT_WRITES.contains(method)) {
+                appointments.incrementAndGet();
+            }
+            if (CUSTOMER_WRITES.contains(method)) {
+                customers.incrementAndGet();
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
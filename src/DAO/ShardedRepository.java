@@ -0,0 +1,615 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import appointmentManager.RecurrenceRule;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Appointments spread over several databases by consultant. Each userId is placed on a shard by a consistent hash,
+// so a consultant's calendar, overlap checks and bookings are one query on one shard, and adding a shard moves only
+// the consultants the new one takes over. The reports across consultants ask every shard at once and merge.
+//
+// Customers, their addresses and the users are reference data every shard holds in full, since the appointment
+// queries join them: reads of it go to shard 0 and writes go to every shard in turn, under one lock per process so
+// their ids come out the same everywhere. Clients writing reference data from several processes at once can still
+// make the shards' ids diverge, which is reported rather than repaired; run those clients through one ApiServer.
+//
+// Appointment ids are local to a shard, so they are handed out with the shard folded in (local * SHARD_SLOTS +
+// shard) and every id coming back is unfolded to find its shard. That allows SHARD_SLOTS shards of up to
+// Integer.MAX_VALUE / SHARD_SLOTS appointments each. What spans shards isn't atomic across them: a unit of work or
+// insertAppointments touching several is one transaction per shard, and moving an appointment to a consultant on
+// another shard books it there, checked as any booking is, and copies a series' cancelled occurrences to it before
+// deleting the original. Should the original not go, the copy is deleted again; a failure in between leaves a copy
+// rather than losing it.
+public class ShardedRepository implements Repository {
+    public static final int SHARD_SLOTS = 16;
+    // Points per shard on the ring; enough that each shard's share of the users is within a few percent of even.
+    private static final int VIRTUAL_NODES = 160;
+    private static final Object REFERENCE_WRITES = new Object();
+
+    private final List<Repository> shards;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final ExecutorService scatter;
+    private volatile Map<String, Integer> userIds = Map.of();
+
+    // Shard i is the i-th Repository given; the shards are then owned, and closed, by this one.
+    public ShardedRepository(List<Repository> shards) {
+        if (shards.isEmpty() || shards.size() > SHARD_SLOTS) {
+            throw new IllegalArgumentException("Between 1 and " + SHARD_SLOTS + " shards are supported, not " + shards.size() + ".");
+        }
+        this.shards = List.copyOf(shards);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                // Above every int, so no point lands exactly where a userId hashes to.
+                ring.put(mix(((long) (shard + 1) << 32) | node), shard);
+            }
+        }
+        scatter = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The shard holding this consultant's appointments.
+    public int shardFor(int userId) {
+        Map.Entry<Long, Integer> point = ring.ceilingEntry(mix(userId));
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    // The shard holding the appointment with this id.
+    public static int shardOf(int appointmentId) {
+        return appointmentId % SHARD_SLOTS;
+    }
+
+    // Have every MySQL shard publish its writes to the bus, with the appointment ids handed out here. Whether any does.
+    public boolean publishTo(InvalidationBus bus) {
+        boolean publishing = false;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (shards.get(shard) instanceof MySQL) {
+                int index = shard;
+                ((MySQL) shards.get(shard)).publishTo(bus, localId -> global(index, localId));
+                publishing = true;
+            }
+        }
+        return publishing;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ObservableList<Customer> getAllCustomers() {
+        return shards.get(0).getAllCustomers();
+    }
+
+    public ObservableList<Appointment> getAppointmentsInRange(LocalDate start, LocalDate end, int userId) {
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).getAppointmentsInRange(start, end, userId));
+    }
+
+    public ObservableList<Appointment> readAppointmentsInRange(LocalDate start, LocalDate end, int userId) throws SQLException {
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).readAppointmentsInRange(start, end, userId));
+    }
+
+    public ObservableList<Appointment> getAppointmentsForUsers(LocalDate start, LocalDate end, Collection<Integer> userIds) {
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (Integer userId : userIds) {
+            byShard.computeIfAbsent(shardFor(userId), shard -> new ArrayList<>()).add(userId);
+        }
+
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        try {
+            for (List<Appointment> appointments : gather(byShard.keySet(),
+                    shard -> global(shard, shards.get(shard).getAppointmentsForUsers(start, end, byShard.get(shard))))) {
+                returnList.addAll(appointments);
+            }
+        } catch (SQLException sqle) {
+            QueryMetrics.failed("getAppointmentsForUsers", sqle);
+        }
+        return returnList;
+    }
+
+    public Appointment checkForUpcomingAppointment(Integer userId) {
+        int shard = userId == null ? 0 : shardFor(userId);
+        return global(shard, shards.get(shard).checkForUpcomingAppointment(userId));
+    }
+
+    public Appointment checkForOverlappingAppointment(LocalDateTime ldtStart, LocalDateTime ldtEnd, int userId) {
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).checkForOverlappingAppointment(ldtStart, ldtEnd, userId));
+    }
+
+    public Appointment checkForOverlappingSeries(LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, int userId, int ignoreAppointmentId) {
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).checkForOverlappingSeries(ldtStart, ldtEnd, rule, userId, localOn(shard, ignoreAppointmentId)));
+    }
+
+    public Integer checkUser(String username, String password) throws SQLException {
+        return shards.get(0).checkUser(username, password);
+    }
+
+    public String getUsername(int userId) throws SQLException {
+        return shards.get(0).getUsername(userId);
+    }
+
+    // Each shard counts its own consultants' appointments; the counts are added up by type.
+    public String getAppointmentsByType() throws SQLException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String report : gather(allShards(), shard -> shards.get(shard).getAppointmentsByType())) {
+            for (String line : report.split("\r\n")) {
+                int colon = line.lastIndexOf(":  ");
+                if (colon >= 0) {
+                    counts.merge(line.substring(0, colon), Integer.parseInt(line.substring(colon + 3).trim()), Integer::sum);
+                }
+            }
+        }
+
+        StringBuilder alertBody = new StringBuilder();
+        counts.forEach((type, count) -> alertBody.append(type).append(":  ").append(count).append("\r\n"));
+        return alertBody.toString();
+    }
+
+    public int insertCountry(String countryName, String username) throws SQLException {
+        return everywhere("country", shard -> shard.insertCountry(countryName, username));
+    }
+
+    public int insertCity(String cityName, int countryId, String username) throws SQLException {
+        return everywhere("city", shard -> shard.insertCity(cityName, countryId, username));
+    }
+
+    public int insertAddress(String address, String address2, int cityId, String postalCode, String phone, String username) throws SQLException {
+        return everywhere("address", shard -> shard.insertAddress(address, address2, cityId, postalCode, phone, username));
+    }
+
+    public void insertCustomer(String name, int addressId, String username) throws SQLException {
+        everywhere(null, shard -> {
+            shard.insertCustomer(name, addressId, username);
+            return 0;
+        });
+    }
+
+    public void insertAppointment(String customerName, int userId, String title, String description, String location,
+                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, String username) throws SQLException {
+        shards.get(shardFor(userId)).insertAppointment(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, username);
+    }
+
+    public void insertAppointmentSeries(String customerName, int userId, String title, String description, String location, String contact,
+                                        String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        shards.get(shardFor(userId)).insertAppointmentSeries(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username);
+    }
+
+    public Appointment bookAppointment(String customerName, int userId, String title, String description, String location, String contact,
+                                       String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule, String username) throws SQLException {
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).bookAppointment(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, rule, username));
+    }
+
+    // All or nothing on each shard, one shard after another. Every shard's calendars are checked before any shard
+    // stores anything, so a clash found then stores nothing anywhere; one booked on a later shard between that check
+    // and its own locked check still leaves the earlier shards' appointments stored.
+    public List<Appointment> insertAppointments(List<Appointment> appointments, String username) throws SQLException {
+        Map<Integer, List<Appointment>> byShard = new TreeMap<>();
+        for (Appointment appointment : appointments) {
+            byShard.computeIfAbsent(shardFor(appointment.getUserId()), shard -> new ArrayList<>()).add(appointment);
+        }
+
+        List<Appointment> conflicts = new ArrayList<>();
+        for (Map.Entry<Integer, List<Appointment>> entry : byShard.entrySet()) {
+            LocalDate[] span = Repository.span(entry.getValue());
+            Collection<Integer> userIds = new LinkedHashSet<>();
+            entry.getValue().forEach(appointment -> userIds.add(appointment.getUserId()));
+            List<Appointment> existing = shards.get(entry.getKey()).getAppointmentsForUsers(span[0], span[1], userIds);
+            for (Appointment conflict : Repository.conflicts(existing, entry.getValue())) {
+                conflicts.add(global(entry.getKey(), conflict));
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            return conflicts;
+        }
+
+        for (Map.Entry<Integer, List<Appointment>> entry : byShard.entrySet()) {
+            for (Appointment conflict : shards.get(entry.getKey()).insertAppointments(entry.getValue(), username)) {
+                conflicts.add(global(entry.getKey(), conflict));
+            }
+            if (!conflicts.isEmpty()) {
+                break;
+            }
+        }
+        return conflicts;
+    }
+
+    public void cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        int shard = shardOf(appointmentId);
+        try {
+            shards.get(shard).cancelOccurrence(local(appointmentId), occurrenceStart, version, username);
+        } catch (UpdateConflictException uce) {
+            throw global(shard, uce);
+        }
+    }
+
+    public void endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version, String username) throws SQLException {
+        int shard = shardOf(appointmentId);
+        try {
+            shards.get(shard).endSeriesBefore(local(appointmentId), occurrenceStart, version, username);
+        } catch (UpdateConflictException uce) {
+            throw global(shard, uce);
+        }
+    }
+
+    // Customer writes go to every shard first, then the appointment writes to their own shards, those with inserts
+    // before those that only remove, so a unit that replaces an appointment across shards can't fail having done
+    // nothing but the removal.
+    public UnitOfWork.Result commit(UnitOfWork work) throws SQLException {
+        UnitOfWork customers = new UnitOfWork(work.getUsername());
+        Map<Integer, UnitOfWork> byShard = new TreeMap<>();
+        List<Integer> inserting = new ArrayList<>();
+        for (UnitOfWork.Write write : work.getWrites()) {
+            switch (write.kind) {
+                case INSERT_CUSTOMER:
+                    customers.insertCustomer(write.customer());
+                    break;
+                case UPDATE_CUSTOMER:
+                    customers.updateCustomer(write.before, write.customer());
+                    break;
+                case INSERT_APPOINTMENT:
+                    int shard = shardFor(write.appointment().getUserId());
+                    unit(byShard, shard, work).insertAppointment(write.appointment());
+                    if (!inserting.contains(shard)) {
+                        inserting.add(shard);
+                    }
+                    break;
+                case DELETE_APPOINTMENT:
+                    unit(byShard, shardOf(write.id), work).deleteAppointment(local(write.id));
+                    break;
+                case DELETE_APPOINTMENT_VERSION:
+                    unit(byShard, shardOf(write.id), work).deleteAppointment(local(write.id), write.version);
+                    break;
+                case CANCEL_OCCURRENCE:
+                    unit(byShard, shardOf(write.id), work).cancelOccurrence(local(write.id), write.occurrenceStart, write.version);
+                    break;
+                case END_SERIES_BEFORE:
+                    unit(byShard, shardOf(write.id), work).endSeriesBefore(local(write.id), write.occurrenceStart, write.version);
+                    break;
+            }
+        }
+
+        List<UnitOfWork.Result> results = new ArrayList<>();
+        if (!customers.isEmpty()) {
+            synchronized (REFERENCE_WRITES) {
+                for (Repository shard : shards) {
+                    results.add(shard.commit(customers));
+                }
+            }
+        }
+        List<Integer> order = new ArrayList<>(inserting);
+        for (Integer shard : byShard.keySet()) {
+            if (!order.contains(shard)) {
+                order.add(shard);
+            }
+        }
+        for (Integer shard : order) {
+            try {
+                results.add(shards.get(shard).commit(byShard.get(shard)));
+            } catch (UpdateConflictException uce) {
+                throw global(shard, uce);
+            } catch (OverlapException oe) {
+                throw global(shard, oe);
+            }
+        }
+
+        int statements = 0, skipped = 0, roundTrips = 0, unbatchedRoundTrips = 0;
+        for (UnitOfWork.Result result : results) {
+            statements += result.getStatements();
+            skipped += result.getSkipped();
+            roundTrips += result.getRoundTrips();
+            unbatchedRoundTrips += result.getUnbatchedRoundTrips();
+        }
+        return new UnitOfWork.Result(statements, skipped, roundTrips, unbatchedRoundTrips);
+    }
+
+    public void updateCountry(String countryName, int countryId, String username) throws SQLException {
+        everywhere(null, shard -> {
+            shard.updateCountry(countryName, countryId, username);
+            return 0;
+        });
+    }
+
+    public void updateCity(String cityName, int cityId, String username) throws SQLException {
+        everywhere(null, shard -> {
+            shard.updateCity(cityName, cityId, username);
+            return 0;
+        });
+    }
+
+    public void updateAddress(String address, String address2, String postalCode, String phone, int addressId, String username) throws SQLException {
+        everywhere(null, shard -> {
+            shard.updateAddress(address, address2, postalCode, phone, addressId, username);
+            return 0;
+        });
+    }
+
+    // Shard 0 goes first, so a stale version fails there having written nothing anywhere.
+    public void updateCustomer(String customerName, int customerId, int version, String username) throws SQLException {
+        everywhere(null, shard -> {
+            shard.updateCustomer(customerName, customerId, version, username);
+            return 0;
+        });
+    }
+
+    public void updateAppointment(int appointmentId, String customerName, int userId, String title, String description, String location,
+                                  String contact, String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, int version, String username) throws SQLException {
+        int from = shardOf(appointmentId);
+        int to = shardFor(userId);
+        Repository source = shards.get(from);
+        if (from == to) {
+            try {
+                source.updateAppointment(local(appointmentId), customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd, version, username);
+            } catch (UpdateConflictException uce) {
+                throw global(from, uce);
+            } catch (OverlapException oe) {
+                throw global(from, oe);
+            }
+            return;
+        }
+
+        // Given to a consultant on another shard: it moves there, series rule and all, booked under that consultant's
+        // lock like any other booking, so a clash leaves the original as it was.
+        Appointment before = source.getAppointment(local(appointmentId));
+        if (before == null || before.getVersion() != version) {
+            throw global(from, new UpdateConflictException(local(appointmentId), version, before));
+        }
+        List<LocalDateTime> cancelled = before.isRecurring() ? source.getCancelledOccurrences(local(appointmentId)) : List.of();
+        Repository target = shards.get(to);
+        Appointment clash = target.bookAppointment(customerName, userId, title, description, location, contact, type, url, ldtStart, ldtEnd,
+                before.getRecurrence() == null ? null : RecurrenceRule.parse(before.getRecurrence()), username);
+        if (clash != null) {
+            throw global(to, new OverlapException(clash));
+        }
+
+        // The copy gets the series' cancelled occurrences, as the same series edited in place keeps them, and then the
+        // original goes, only if still at the version read. An edit or a cancellation since then moved the version on,
+        // so nothing it did is deleted unseen: the copy goes instead and the original stays where it was.
+        try {
+            if (!cancelled.isEmpty()) {
+                Appointment copy = newest(target, userId, title, ldtStart);
+                UnitOfWork exceptions = new UnitOfWork(username);
+                for (int i = 0; i < cancelled.size(); i++) {
+                    exceptions.cancelOccurrence(copy.getId(), cancelled.get(i), copy.getVersion() + i);
+                }
+                target.commit(exceptions);
+            }
+            source.deleteAppointment(local(appointmentId), version);
+        } catch (SQLException sqle) {
+            Appointment copy = newest(target, userId, title, ldtStart);
+            if (copy != null) {
+                target.deleteAppointment(copy.getId());
+            }
+            if (sqle instanceof UpdateConflictException) {
+                throw global(from, (UpdateConflictException) sqle);
+            } else if (sqle instanceof OverlapException) {
+                throw global(from, (OverlapException) sqle);
+            }
+            throw sqle;
+        }
+    }
+
+    public ObservableList<String> getUsernames() throws SQLException {
+        return shards.get(0).getUsernames();
+    }
+
+    public Map<Integer, String> getUserDirectory() throws SQLException {
+        return shards.get(0).getUserDirectory();
+    }
+
+    public ObservableList<Appointment> getConsultantReport(String username) throws SQLException {
+        Integer userId = userIds.get(username);
+        if (userId == null) {
+            Map<String, Integer> byName = new LinkedHashMap<>();
+            getUserDirectory().forEach((id, name) -> byName.put(name, id));
+            userIds = byName;
+            userId = byName.get(username);
+        }
+        if (userId == null) {
+            return FXCollections.observableArrayList();
+        }
+
+        int shard = shardFor(userId);
+        return global(shard, shards.get(shard).getConsultantReport(username));
+    }
+
+    public ObservableList<String> getUniqueContacts() throws SQLException {
+        LinkedHashSet<String> contacts = new LinkedHashSet<>();
+        for (List<String> shardContacts : gather(allShards(), shard -> shards.get(shard).getUniqueContacts())) {
+            contacts.addAll(shardContacts);
+        }
+        return FXCollections.observableArrayList(contacts);
+    }
+
+    public ObservableList<Appointment> getContactReport(String contactName) throws SQLException {
+        ObservableList<Appointment> returnList = FXCollections.observableArrayList();
+        for (List<Appointment> appointments : gather(allShards(), shard -> global(shard, shards.get(shard).getContactReport(contactName)))) {
+            returnList.addAll(appointments);
+        }
+        return returnList;
+    }
+
+    public CustomerIds getIdsForCustomer(int customerId) throws SQLException {
+        return shards.get(0).getIdsForCustomer(customerId);
+    }
+
+    public Appointment getAppointment(int appointmentId) throws SQLException {
+        int shard = shardOf(appointmentId);
+        return global(shard, shards.get(shard).getAppointment(local(appointmentId)));
+    }
+
+    public List<LocalDateTime> getCancelledOccurrences(int appointmentId) throws SQLException {
+        return shards.get(shardOf(appointmentId)).getCancelledOccurrences(local(appointmentId));
+    }
+
+    public void deleteAppointment(int appointmentId) throws SQLException {
+        shards.get(shardOf(appointmentId)).deleteAppointment(local(appointmentId));
+    }
+
+    public void deleteCustomer(int customerId) throws SQLException {
+        everywhere(null, shard -> {
+            shard.deleteCustomer(customerId);
+            return 0;
+        });
+    }
+
+    public void close() {
+        scatter.shutdown();
+        for (Repository shard : shards) {
+            shard.close();
+        }
+    }
+
+    private interface ShardCall<T> {
+        T call(int shard) throws SQLException;
+    }
+
+    private interface ReferenceWrite {
+        int write(Repository shard) throws SQLException;
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            all.add(shard);
+        }
+        return all;
+    }
+
+    // Run the call on each shard given at once and return the results in the same order. The first failure is
+    // rethrown once every shard has answered.
+    private <T> List<T> gather(Collection<Integer> targets, ShardCall<T> call) throws SQLException {
+        if (targets.size() == 1) {
+            return List.of(call.call(targets.iterator().next()));
+        }
+
+        List<Future<T>> futures = new ArrayList<>();
+        for (Integer shard : targets) {
+            futures.add(scatter.submit((Callable<T>) () -> call.call(shard)));
+        }
+        List<T> results = new ArrayList<>();
+        SQLException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ee) {
+                if (failure == null) {
+                    failure = ee.getCause() instanceof SQLException ? (SQLException) ee.getCause() : new SQLException(ee.getCause());
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for the shards.", ie);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    // Write reference data to every shard in order. When the write hands out an id (what names it), every shard must
+    // have handed out the same one.
+    private int everywhere(String what, ReferenceWrite write) throws SQLException {
+        synchronized (REFERENCE_WRITES) {
+            Integer id = null;
+            for (int shard = 0; shard < shards.size(); shard++) {
+                int shardId = write.write(shards.get(shard));
+                if (id != null && what != null && id != shardId) {
+                    throw new SQLException("Shard " + shard + " gave the new " + what + " id " + shardId + " where shard 0 gave " + id +
+                            "; the shards' reference data has diverged.");
+                }
+                id = id == null ? shardId : id;
+            }
+            return id;
+        }
+    }
+
+    private static UnitOfWork unit(Map<Integer, UnitOfWork> byShard, int shard, UnitOfWork work) {
+        return byShard.computeIfAbsent(shard, s -> new UnitOfWork(work.getUsername()));
+    }
+
+    private static int local(int appointmentId) {
+        return appointmentId / SHARD_SLOTS;
+    }
+
+    // The shard's own id for an appointment, or -1 (no appointment) when the id is another shard's.
+    private static int localOn(int shard, int appointmentId) {
+        return appointmentId > 0 && shardOf(appointmentId) == shard ? local(appointmentId) : -1;
+    }
+
+    // The newest appointment on the consultant's calendar with this title and start: what bookAppointment just stored.
+    private static Appointment newest(Repository shard, int userId, String title, LocalDateTime ldtStart) throws SQLException {
+        Appointment newest = null;
+        for (Appointment appointment : shard.readAppointmentsInRange(ldtStart.toLocalDate(), ldtStart.toLocalDate(), userId)) {
+            if (Objects.equals(appointment.getTitle(), title) && localTime(appointment.getStart()).equals(ldtStart)
+                    && (newest == null || appointment.getId() > newest.getId())) {
+                newest = appointment;
+            }
+        }
+        return newest;
+    }
+
+    private static LocalDateTime localTime(ZonedDateTime time) {
+        return time.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    private static int global(int shard, int localId) {
+        return Math.addExact(Math.multiplyExact(localId, SHARD_SLOTS), shard);
+    }
+
+    private static Appointment global(int shard, Appointment appointment) {
+        if (appointment != null) {
+            appointment.setId(global(shard, appointment.getId()));
+        }
+        return appointment;
+    }
+
+    private static ObservableList<Appointment> global(int shard, ObservableList<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            global(shard, appointment);
+        }
+        return appointments;
+    }
+
+    private static UpdateConflictException global(int shard, UpdateConflictException conflict) {
+        return conflict.isCustomer() ? conflict : new UpdateConflictException(global(shard, conflict.getId()), conflict.getExpectedVersion(),
+                global(shard, conflict.getCurrentAppointment()));
+    }
+
+    private static OverlapException global(int shard, OverlapException overlap) {
+        return new OverlapException(global(shard, overlap.getOverlap()));
+    }
+
+    // SplitMix64's finalizer: spreads consecutive userIds, and the ring's points, evenly over the ring, the same on
+    // every client.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
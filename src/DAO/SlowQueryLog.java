@@ -0,0 +1,407 @@
+package DAO;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Logs every statement that takes longer than a threshold, with its bound parameters, duration, row count and the
+// EXPLAIN plan MySQL would use for it, one JSON object per line in a rotating file. It works underneath the DAO by
+// wrapping the JDBC Connection, so every query MySQL runs is covered without touching the query code.
+//
+// The duration is the time spent inside execute plus the time spent fetching rows with next(), not the time the DAO
+// spends mapping them. Plans are captured afterwards on a connection of their own by a single background thread, which
+// also writes the log, so a slow query costs its caller nothing extra. Parameters bound to a column whose name looks
+// like a password or secret are written as "***".
+//
+// Configured from db.properties:
+//
+//     slowQuery=false                  turns the log off (it is on by default)
+//     slowQuery.thresholdMs=250        statements at least this slow are logged
+//     slowQuery.file=SlowQueries.%g.log    FileHandler pattern; 5 files of 10 MB are kept
+//     slowQuery.explain=false          skip the EXPLAIN capture
+public class SlowQueryLog {
+    private static final Pattern SENSITIVE = Pattern.compile("(?i).*(pass|pwd|secret|token).*");
+    private static final Pattern COMPARED_COLUMN = Pattern.compile("(?i)([\\w.`]+)\\s*(=|<>|!=|<=|>=|<|>|LIKE)\\s*$");
+    private static final Pattern INSERT_COLUMNS = Pattern.compile("(?is)^\\s*(INSERT|REPLACE)\\s+INTO\\s+[\\w`.]+\\s*\\(([^)]*)\\)");
+    private static final Pattern EXPLAINABLE = Pattern.compile("(?is)^\\s*(SELECT|INSERT|UPDATE|DELETE|REPLACE)\\b.*");
+
+    private static SlowQueryLog instance;
+
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final ConnectionFactory explainConnections;
+    private final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+    // Slow queries should be rare; if they ever arrive faster than they can be explained, later ones are dropped
+    // rather than queued without bound.
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256),
+            runnable -> {
+                Thread thread = new Thread(runnable, "slow-query-log");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+    private Connection explainConnection;
+
+    // Opens the connections EXPLAIN runs on.
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private SlowQueryLog(Properties properties, ConnectionFactory explainConnections) throws IOException {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(properties.getProperty("slowQuery.thresholdMs", "250").trim()));
+        this.explain = Boolean.parseBoolean(properties.getProperty("slowQuery.explain", "true").trim());
+        this.explainConnections = explainConnections;
+
+        FileHandler handler = new FileHandler(properties.getProperty("slowQuery.file", "SlowQueries.%g.log").trim(), 10 * 1024 * 1024, 5, true);
+        handler.setFormatter(new Formatter() {
+            public String format(LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+    }
+
+    // The process wide log, created by the first call, or null when db.properties turns it off. Every connection
+    // shares it so there is only ever one writer per log file.
+    public static synchronized SlowQueryLog get(Properties properties, ConnectionFactory explainConnections) {
+        if (!Boolean.parseBoolean(properties.getProperty("slowQuery", "true").trim())) {
+            return null;
+        }
+
+        if (instance == null) {
+            try {
+                instance = new SlowQueryLog(properties, explainConnections);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                return null;
+            }
+        }
+        return instance;
+    }
+
+    public Connection wrap(Connection conn) {
+        return proxy(Connection.class, conn, new ConnectionHandler(conn));
+    }
+
+    private void finished(Execution execution) {
+        if (execution.nanos < thresholdNanos) {
+            return;
+        }
+        writer.execute(() -> logger.info(toJson(execution, explain ? explain(execution) : null)));
+    }
+
+    // Runs on the writer thread, so the one explain connection is never shared.
+    private String explain(Execution execution) {
+        if (!EXPLAINABLE.matcher(execution.sql).matches()) {
+            return null;
+        }
+
+        try {
+            if (explainConnection == null || explainConnection.isClosed()) {
+                explainConnection = explainConnections.open();
+            }
+
+            try (PreparedStatement ps = explainConnection.prepareStatement("EXPLAIN " + execution.sql)) {
+                for (Map.Entry<Integer, Object> parameter : execution.parameters.entrySet()) {
+                    ps.setObject(parameter.getKey(), parameter.getValue());
+                }
+
+                StringBuilder plan = new StringBuilder("[");
+                try (ResultSet rs = ps.executeQuery()) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    while (rs.next()) {
+                        plan.append(plan.length() == 1 ? "{" : ", {");
+                        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                            plan.append(column == 1 ? "" : ", ")
+                                    .append(quote(metaData.getColumnLabel(column))).append(": ")
+                                    .append(quote(rs.getString(column)));
+                        }
+                        plan.append("}");
+                    }
+                }
+                return plan.append("]").toString();
+            }
+        } catch (SQLException sqle) {
+            return "{\"error\": " + quote(sqle.getMessage()) + "}";
+        }
+    }
+
+    private static String toJson(Execution execution, String plan) {
+        StringBuilder json = new StringBuilder("{\"timestamp\": ").append(quote(execution.started.toString()))
+                .append(", \"durationMs\": ").append(String.format(Locale.ROOT, "%.3f", execution.nanos / 1e6))
+                .append(", \"rows\": ").append(execution.rows)
+                .append(", \"sql\": ").append(quote(execution.sql))
+                .append(", \"parameters\": [");
+
+        Set<Integer> sensitive = sensitiveParameters(execution.sql);
+        String separator = "";
+        for (Map.Entry<Integer, Object> parameter : execution.parameters.entrySet()) {
+            json.append(separator);
+            if (sensitive.contains(parameter.getKey())) {
+                json.append("\"***\"");
+            } else {
+                json.append(parameter.getValue() == null ? "null" : quote(String.valueOf(parameter.getValue())));
+            }
+            separator = ", ";
+        }
+        json.append("]");
+
+        if (plan != null) {
+            json.append(", \"plan\": ").append(plan);
+        }
+        return json.append("}").toString();
+    }
+
+    // The 1-based indexes of the placeholders bound to a sensitive looking column, found from "column = ?" style
+    // comparisons and from the column list of an INSERT.
+    private static Set<Integer> sensitiveParameters(String sql) {
+        Set<Integer> sensitive = new HashSet<>();
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        String[] insertColumns = insert.find() ? insert.group(2).split(",") : new String[0];
+
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) != '?') {
+                continue;
+            }
+            index++;
+
+            String column = null;
+            Matcher compared = COMPARED_COLUMN.matcher(sql.substring(0, i));
+            if (compared.find()) {
+                column = compared.group(1);
+            } else if (index <= insertColumns.length) {
+                column = insertColumns[index - 1].trim();
+            }
+
+            if (column != null && SENSITIVE.matcher(column).matches()) {
+                sensitive.add(index);
+            }
+        }
+        return sensitive;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append("\"").toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ite) {
+            throw ite.getCause();
+        }
+    }
+
+    // One run of a statement. It is finished when its rows have all been read, or its result set or statement is
+    // closed, or the connection moves on to another statement, whichever comes first.
+    private class Execution {
+        private final Instant started = Instant.now();
+        private final String sql;
+        private final Map<Integer, Object> parameters;
+        private final ConnectionHandler connection;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        private Execution(String sql, Map<Integer, Object> parameters, ConnectionHandler connection) {
+            this.sql = sql;
+            this.parameters = new TreeMap<>(parameters);
+            this.connection = connection;
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                connection.pending.remove(this);
+                finished(this);
+            }
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final List<Execution> pending = new ArrayList<>();
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("close")) {
+                new ArrayList<>(pending).forEach(Execution::finish);
+            }
+
+            Object result = call(target, method, args);
+            if (name.equals("prepareStatement")) {
+                return proxy(PreparedStatement.class, result, new StatementHandler((Statement) result, ((String) args[0]).replaceAll("\\s+", " ").trim(), this));
+            }
+            if (name.equals("createStatement")) {
+                return proxy(Statement.class, result, new StatementHandler((Statement) result, null, this));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final ConnectionHandler connection;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private Execution current;
+
+        private StatementHandler(Statement target, String sql, ConnectionHandler connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer && target instanceof PreparedStatement) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return call(target, method, args);
+            }
+            if (name.equals("clearParameters")) {
+                parameters.clear();
+                return call(target, method, args);
+            }
+            if (name.equals("getResultSet")) {
+                ResultSet rs = (ResultSet) call(target, method, args);
+                return rs == null || current == null ? rs : proxy(ResultSet.class, rs, new ResultSetHandler(rs, current));
+            }
+            if (name.equals("close")) {
+                finishCurrent();
+                return call(target, method, args);
+            }
+            if (!name.startsWith("execute")) {
+                return call(target, method, args);
+            }
+
+            finishCurrent();
+            Execution execution = new Execution(args != null && args.length > 0 && args[0] instanceof String ? ((String) args[0]).replaceAll("\\s+", " ").trim() : sql,
+                    parameters, connection);
+            long started = System.nanoTime();
+            Object result;
+            try {
+                result = call(target, method, args);
+            } finally {
+                execution.nanos += System.nanoTime() - started;
+            }
+
+            if (result instanceof ResultSet) {
+                current = execution;
+                connection.pending.add(execution);
+                return proxy(ResultSet.class, result, new ResultSetHandler((ResultSet) result, execution));
+            }
+            if (Boolean.TRUE.equals(result)) {
+                // execute() produced a result set; its rows are counted once it is fetched with getResultSet().
+                current = execution;
+                connection.pending.add(execution);
+                return result;
+            }
+
+            if (result instanceof Integer || result instanceof Long) {
+                execution.rows = ((Number) result).longValue();
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    execution.rows += Math.max(0, count);
+                }
+            } else {
+                execution.rows = Math.max(0, target.getUpdateCount());
+            }
+            execution.finish();
+            return result;
+        }
+
+        private void finishCurrent() {
+            if (current != null) {
+                current.finish();
+                current = null;
+            }
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Execution execution;
+
+        private ResultSetHandler(ResultSet target, Execution execution) {
+            this.target = target;
+            this.execution = execution;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("next")) {
+                long started = System.nanoTime();
+                boolean hasRow = (Boolean) call(target, method, args);
+                execution.nanos += System.nanoTime() - started;
+                if (hasRow) {
+                    execution.rows++;
+                } else {
+                    execution.finish();
+                }
+                return hasRow;
+            }
+            if (method.getName().equals("close")) {
+                execution.finish();
+            }
+            return call(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+// The writes of one save, collected and handed to Repository.commit() to be applied together in one transaction:
+// all of them or, if any fails, none. The backend sends consecutive writes of the same statement as one JDBC batch,
+// and a customer update only writes the rows whose fields actually changed.
+//
+//     conn.commit(new UnitOfWork(username)
+//             .cancelOccurrence(seriesId, occurrenceStart, seriesVersion)
+//             .insertAppointment(moved));
+//
+// The Result says how many statements that took and how many round trips it saved over making the same writes one
+// Repository call at a time.
+public class UnitOfWork {
+    enum Kind {
+        INSERT_CUSTOMER,
+        UPDATE_CUSTOMER,
+        INSERT_APPOINTMENT,
+        DELETE_APPOINTMENT,
+        DELETE_APPOINTMENT_VERSION,
+        CANCEL_OCCURRENCE,
+        END_SERIES_BEFORE
+    }
+
+    private final String username;
+    private final List<Write> writes = new ArrayList<>();
+
+    public UnitOfWork(String username) {
+        this.username = username;
+    }
+
+    // A new customer, with its country, city and address looked up or created as insertCountry, insertCity and
+    // insertAddress do. The Customer's id and version are ignored.
+    public UnitOfWork insertCustomer(Customer customer) {
+        writes.add(new Write(Kind.INSERT_CUSTOMER, customer, null, 0, 0, null));
+        return this;
+    }
+
+    // Change the stored customer before, as read with its row ids and version, to the fields of after. Only the rows
+    // whose fields differ are written, plus the customer row itself, which is conditional on before's version as in
+    // Repository.updateCustomer. Nothing at all is written when no field changed.
+    public UnitOfWork updateCustomer(Customer before, Customer after) {
+        writes.add(new Write(Kind.UPDATE_CUSTOMER, after, before, before.getId(), before.getVersion(), null));
+        return this;
+    }
+
+    // A new appointment, or a series when it has a recurrence. Its id is ignored.
+    public UnitOfWork insertAppointment(Appointment appointment) {
+        writes.add(new Write(Kind.INSERT_APPOINTMENT, appointment, null, 0, 0, null));
+        return this;
+    }
+
+    public UnitOfWork deleteAppointment(int appointmentId) {
+        writes.add(new Write(Kind.DELETE_APPOINTMENT, null, null, appointmentId, 0, null));
+        return this;
+    }
+
+    // Only if the appointment is still at the version given, as in Repository.updateAppointment; otherwise the unit
+    // throws UpdateConflictException with the appointment as it now stands.
+    public UnitOfWork deleteAppointment(int appointmentId, int version) {
+        writes.add(new Write(Kind.DELETE_APPOINTMENT_VERSION, null, null, appointmentId, version, null));
+        return this;
+    }
+
+    // Conditional on the series' version, as in Repository.cancelOccurrence and endSeriesBefore.
+    public UnitOfWork cancelOccurrence(int appointmentId, LocalDateTime occurrenceStart, int version) {
+        writes.add(new Write(Kind.CANCEL_OCCURRENCE, null, null, appointmentId, version, occurrenceStart));
+        return this;
+    }
+
+    public UnitOfWork endSeriesBefore(int appointmentId, LocalDateTime occurrenceStart, int version) {
+        writes.add(new Write(Kind.END_SERIES_BEFORE, null, null, appointmentId, version, occurrenceStart));
+        return this;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    List<Write> getWrites() {
+        return Collections.unmodifiableList(writes);
+    }
+
+    // Whether each of a customer's rows has to be written to go from before to after.
+    static boolean customerRowChanged(Customer before, Customer after) {
+        return !Objects.equals(before.getName(), after.getName());
+    }
+
+    static boolean addressRowChanged(Customer before, Customer after) {
+        return !Objects.equals(before.getAddress(), after.getAddress()) ||
+                !Objects.equals(before.getAddress2(), after.getAddress2()) ||
+                !Objects.equals(before.getPostalCode(), after.getPostalCode()) ||
+                !Objects.equals(before.getPhone(), after.getPhone());
+    }
+
+    static boolean cityRowChanged(Customer before, Customer after) {
+        return !Objects.equals(before.getCity(), after.getCity());
+    }
+
+    static boolean countryRowChanged(Customer before, Customer after) {
+        return !Objects.equals(before.getCountry(), after.getCountry());
+    }
+
+    // One write. Which fields mean anything depends on the kind.
+    static class Write {
+        final Kind kind;
+        final Object value;
+        final Customer before;
+        final int id;
+        final int version;
+        final LocalDateTime occurrenceStart;
+
+        private Write(Kind kind, Object value, Customer before, int id, int version, LocalDateTime occurrenceStart) {
+            this.kind = kind;
+            this.value = value;
+            this.before = before;
+            this.id = id;
+            this.version = version;
+            this.occurrenceStart = occurrenceStart;
+        }
+
+        Customer customer() {
+            return (Customer) value;
+        }
+
+        Appointment appointment() {
+            return (Appointment) value;
+        }
+
+        // What the same write costs made as its own Repository call with autocommit on: a customer update is
+        // getIdsForCustomer plus the four updates, a new customer at least the four lookups, and ending a series
+        // reads it, rewrites it and clears its later exceptions, and cancelling an occurrence moves the series'
+        // version on before adding the exception. A new appointment is booked as bookAppointment books it: autocommit
+        // off and on, the consultant's lock, three reads to check the calendar and the insert.
+        int unbatchedRoundTrips() {
+            switch (kind) {
+                case INSERT_APPOINTMENT:
+                    return 7;
+                case UPDATE_CUSTOMER:
+                    return 5;
+                case INSERT_CUSTOMER:
+                    return 4;
+                case END_SERIES_BEFORE:
+                    return 3;
+                case CANCEL_OCCURRENCE:
+                    return 2;
+                default:
+                    return 1;
+            }
+        }
+    }
+
+    // What a commit took.
+    public static class Result {
+        private final int statements;
+        private final int skipped;
+        private final int roundTrips;
+        private final int unbatchedRoundTrips;
+
+        public Result(int statements, int skipped, int roundTrips, int unbatchedRoundTrips) {
+            this.statements = statements;
+            this.skipped = skipped;
+            this.roundTrips = roundTrips;
+            this.unbatchedRoundTrips = unbatchedRoundTrips;
+        }
+
+        // Statements executed.
+        public int getStatements() {
+            return statements;
+        }
+
+        // Row updates left out because nothing in the row changed.
+        public int getSkipped() {
+            return skipped;
+        }
+
+        // Round trips the commit took, transaction control included.
+        public int getRoundTrips() {
+            return roundTrips;
+        }
+
+        // Round trips the same writes take made one Repository call at a time.
+        public int getUnbatchedRoundTrips() {
+            return unbatchedRoundTrips;
+        }
+
+        // Can be negative: two writes of different statements take a round trip each, plus two for the transaction.
+        public int getRoundTripsSaved() {
+            return unbatchedRoundTrips - roundTrips;
+        }
+
+        @Override
+        public String toString() {
+            return statements + " statements (" + skipped + " unchanged rows skipped) in " + roundTrips + " round trips, saving " +
+                    getRoundTripsSaved() + " over one call per write";
+        }
+    }
+}
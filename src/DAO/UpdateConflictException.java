@@ -0,0 +1,63 @@
+package DAO;
+
+import appointmentManager.Appointment;
+import appointmentManager.Customer;
+import java.sql.SQLException;
+
+// Thrown by a conditional update whose row has moved on since the version it was given: someone else saved it in
+// between, or deleted it. It carries the row as it now stands, new version included, so the caller can merge its
+// edits into that and try again. The current row is null when it was deleted.
+public class UpdateConflictException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean customer;
+    private final int id;
+    private final int expectedVersion;
+    private final Appointment currentAppointment;
+    private final Customer currentCustomer;
+
+    public UpdateConflictException(int appointmentId, int expectedVersion, Appointment current) {
+        super("Appointment " + appointmentId + " is no longer at version " + expectedVersion + ".");
+        this.customer = false;
+        this.id = appointmentId;
+        this.expectedVersion = expectedVersion;
+        this.currentAppointment = current;
+        this.currentCustomer = null;
+    }
+
+    public UpdateConflictException(int customerId, int expectedVersion, Customer current) {
+        super("Customer " + customerId + " is no longer at version " + expectedVersion + ".");
+        this.customer = true;
+        this.id = customerId;
+        this.expectedVersion = expectedVersion;
+        this.currentAppointment = null;
+        this.currentCustomer = current;
+    }
+
+    // Whether the conflict was on a customer rather than an appointment.
+    public boolean isCustomer() {
+        return customer;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    // The appointment as it now stands, or null if the conflict was on a customer or the appointment is gone.
+    public Appointment getCurrentAppointment() {
+        return currentAppointment;
+    }
+
+    // The customer as it now stands, or null if the conflict was on an appointment or the customer is gone.
+    public Customer getCurrentCustomer() {
+        return currentCustomer;
+    }
+
+    public boolean isDeleted() {
+        return currentAppointment == null && currentCustomer == null;
+    }
+}
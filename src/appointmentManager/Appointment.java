@@ -1,121 +1,265 @@
 package appointmentManager;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
 
 public class Appointment {
-    private int id;
-    private String customerName;
-    private int userId;
-    private String title;
-    private String description;
-    private String location;
-    private String contact;
-    private String type;
-    private String url;
-    private ZonedDateTime start;
-    private ZonedDateTime end;
+    // The format used anywhere an appointment's start or end is shown to the user.
+    public static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("MM/d/yyyy h:mm a");
+
+    private final IntegerProperty id = new SimpleIntegerProperty(this, "id");
+    private final StringProperty customerName = new SimpleStringProperty(this, "customerName");
+    private final IntegerProperty userId = new SimpleIntegerProperty(this, "userId");
+    private final StringProperty title = new SimpleStringProperty(this, "title");
+    private final StringProperty description = new SimpleStringProperty(this, "description");
+    private final StringProperty location = new SimpleStringProperty(this, "location");
+    private final StringProperty contact = new SimpleStringProperty(this, "contact");
+    private final StringProperty type = new SimpleStringProperty(this, "type");
+    private final StringProperty url = new SimpleStringProperty(this, "url");
+    private final ObjectProperty<ZonedDateTime> start = new SimpleObjectProperty<>(this, "start");
+    private final ObjectProperty<ZonedDateTime> end = new SimpleObjectProperty<>(this, "end");
+    // The repeat rule when this is one occurrence of a recurring series, which all share the series' id; null otherwise.
+    private final StringProperty recurrence = new SimpleStringProperty(this, "recurrence");
+    // The stored row's version when this was read, which an update has to name to be applied.
+    private final IntegerProperty version = new SimpleIntegerProperty(this, "version");
+    // Formatted once when start/end change, so table cells never format dates while scrolling.
+    private final ReadOnlyStringWrapper startDisplay = new ReadOnlyStringWrapper(this, "startDisplay");
+    private final ReadOnlyStringWrapper endDisplay = new ReadOnlyStringWrapper(this, "endDisplay");
 
     public Appointment(int id, String customerName, int userId, String title, String description, String location, String contact, String type, String url, ZonedDateTime start, ZonedDateTime end) {
-        this.id = id;
-        this.customerName = customerName;
-        this.userId = userId;
-        this.title = title;
-        this.description = description;
-        this.location = location;
-        this.contact = contact;
-        this.type = type;
-        this.url = url;
-        this.start = start;
-        this.end = end;
+        this.start.addListener((observable, oldValue, newValue) -> startDisplay.set(format(newValue)));
+        this.end.addListener((observable, oldValue, newValue) -> endDisplay.set(format(newValue)));
+
+        this.id.set(id);
+        this.customerName.set(customerName);
+        this.userId.set(userId);
+        this.title.set(title);
+        this.description.set(description);
+        this.location.set(location);
+        this.contact.set(contact);
+        this.type.set(type);
+        this.url.set(url);
+        this.start.set(start);
+        this.end.set(end);
     }
 
     public int getId() {
-        return id;
+        return id.get();
     }
 
     public void setId(int id) {
-        this.id = id;
+        this.id.set(id);
+    }
+
+    public IntegerProperty idProperty() {
+        return id;
     }
 
     public String getCustomerName() {
-        return customerName;
+        return customerName.get();
     }
 
     public void setCustomerName(String customerName) {
-        this.customerName = customerName;
+        this.customerName.set(customerName);
+    }
+
+    public StringProperty customerNameProperty() {
+        return customerName;
     }
 
     public int getUserId() {
-        return userId;
+        return userId.get();
     }
 
     public void setUserId(int userId) {
-        this.userId = userId;
+        this.userId.set(userId);
+    }
+
+    public IntegerProperty userIdProperty() {
+        return userId;
     }
 
     public String getTitle() {
-        return title;
+        return title.get();
     }
 
     public void setTitle(String title) {
-        this.title = title;
+        this.title.set(title);
+    }
+
+    public StringProperty titleProperty() {
+        return title;
     }
 
     public String getDescription() {
-        return description;
+        return description.get();
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        this.description.set(description);
+    }
+
+    public StringProperty descriptionProperty() {
+        return description;
     }
 
     public String getLocation() {
-        return location;
+        return location.get();
     }
 
     public void setLocation(String location) {
-        this.location = location;
+        this.location.set(location);
+    }
+
+    public StringProperty locationProperty() {
+        return location;
     }
 
     public String getContact() {
-        return contact;
+        return contact.get();
     }
 
     public void setContact(String contact) {
-        this.contact = contact;
+        this.contact.set(contact);
+    }
+
+    public StringProperty contactProperty() {
+        return contact;
     }
 
     public String getType() {
-        return type;
+        return type.get();
     }
 
     public void setType(String type) {
-        this.type = type;
+        this.type.set(type);
+    }
+
+    public StringProperty typeProperty() {
+        return type;
     }
 
     public String getUrl() {
-        return url;
+        return url.get();
     }
 
     public void setUrl(String url) {
-        this.url = url;
+        this.url.set(url);
+    }
+
+    public StringProperty urlProperty() {
+        return url;
     }
 
     public ZonedDateTime getStart() {
-        return start;
+        return start.get();
     }
 
     public void setStart(ZonedDateTime start) {
-        this.start = start;
+        this.start.set(start);
+    }
+
+    public ObjectProperty<ZonedDateTime> startProperty() {
+        return start;
     }
 
     public ZonedDateTime getEnd() {
-        return end;
+        return end.get();
     }
 
     public void setEnd(ZonedDateTime end) {
-        this.end = end;
+        this.end.set(end);
+    }
+
+    public ObjectProperty<ZonedDateTime> endProperty() {
+        return end;
+    }
+
+    public String getRecurrence() {
+        return recurrence.get();
+    }
+
+    public void setRecurrence(String recurrence) {
+        this.recurrence.set(recurrence);
+    }
+
+    public StringProperty recurrenceProperty() {
+        return recurrence;
+    }
+
+    public int getVersion() {
+        return version.get();
+    }
+
+    public void setVersion(int version) {
+        this.version.set(version);
+    }
+
+    public IntegerProperty versionProperty() {
+        return version;
+    }
+
+    public boolean isRecurring() {
+        return recurrence.get() != null;
+    }
+
+    // Identifies the row among a query's results. Occurrences of one series share its id, so they add their start.
+    public String getKey() {
+        return isRecurring() ? getId() + "@" + getStart().toInstant() : String.valueOf(getId());
+    }
+
+    public String getStartDisplay() {
+        return startDisplay.get();
+    }
+
+    public ReadOnlyStringProperty startDisplayProperty() {
+        return startDisplay.getReadOnlyProperty();
+    }
+
+    public String getEndDisplay() {
+        return endDisplay.get();
+    }
+
+    public ReadOnlyStringProperty endDisplayProperty() {
+        return endDisplay.getReadOnlyProperty();
+    }
+
+    // One occurrence of this appointment's series: a copy with the times given and the rule attached.
+    public Appointment occurrence(ZonedDateTime start, ZonedDateTime end, String recurrence) {
+        Appointment occurrence = new Appointment(getId(), getCustomerName(), getUserId(), getTitle(), getDescription(),
+                getLocation(), getContact(), getType(), getUrl(), start, end);
+        occurrence.setRecurrence(recurrence);
+        occurrence.setVersion(getVersion());
+        return occurrence;
+    }
+
+    // Used when diffing a fresh query result against the rows already in a table.
+    public boolean sameContent(Appointment other) {
+        return getId() == other.getId() &&
+                getVersion() == other.getVersion() &&
+                getUserId() == other.getUserId() &&
+                Objects.equals(getCustomerName(), other.getCustomerName()) &&
+                Objects.equals(getTitle(), other.getTitle()) &&
+                Objects.equals(getDescription(), other.getDescription()) &&
+                Objects.equals(getLocation(), other.getLocation()) &&
+                Objects.equals(getContact(), other.getContact()) &&
+                Objects.equals(getType(), other.getType()) &&
+                Objects.equals(getUrl(), other.getUrl()) &&
+                Objects.equals(getRecurrence(), other.getRecurrence()) &&
+                Objects.equals(getStart(), other.getStart()) &&
+                Objects.equals(getEnd(), other.getEnd());
+    }
+
+    private static String format(ZonedDateTime dateTime) {
+        return dateTime == null ? null : dateTime.format(DISPLAY_FORMAT);
     }
 }
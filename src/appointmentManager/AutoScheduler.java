@@ -0,0 +1,529 @@
+package appointmentManager;
+
+import DAO.Repository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// Places a batch of appointment requests at once. Each request has a length, a window it has to fall in and the
+// consultants allowed to take it; every placement keeps to the consultant's business calendar and clashes with nothing already booked
+// or placed. Among the consultants that can take a request, the one with the fewest minutes booked over the batch's
+// whole range gets it, so the batch evens out the load rather than piling onto whoever is first in the list.
+//
+// Solving is two passes. The greedy pass places the most constrained requests first, each on the least loaded
+// consultant at the earliest start that fits. Local search then runs until the time budget is spent or it stops
+// finding anything: it moves placed appointments to less loaded consultants, and frees room for requests the greedy
+// pass couldn't place by moving a batch appointment that is in the way somewhere else. Appointments that were already
+// booked are never moved. Reading the calendars is one query and the search itself touches no database, so the
+// whole batch is read, solved and then written as one transaction.
+public class AutoScheduler {
+    private static final DateTimeFormatter WINDOW_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    // Ejections tried per attempt to place a request, so one hopeless request can't eat the budget.
+    private static final int MAX_EJECTIONS = 16;
+
+    private final Function<Integer, BusinessCalendar> calendars;
+    private final long stepSeconds;
+    private final Duration budget;
+    private final long seed;
+
+    // Appointments fall in the open hours of each consultant's calendar, looked up by userId, and start on multiples of
+    // step from the opening. Local search stops after budget; a zero budget is the greedy pass alone. The same seed and
+    // budget give the same result unless the budget runs out first.
+    public AutoScheduler(Function<Integer, BusinessCalendar> calendars, Duration step, Duration budget, long seed) {
+        this.calendars = calendars;
+        this.stepSeconds = step.getSeconds();
+        this.budget = budget;
+        this.seed = seed;
+    }
+
+    // One appointment to place: what it is for, how long it lasts, the window it has to fall in and who may take it.
+    public static class Request {
+        private final String customerName;
+        private final String title;
+        private final String type;
+        private final Duration length;
+        private final ZonedDateTime windowStart;
+        private final ZonedDateTime windowEnd;
+        private final Set<Integer> consultants;
+
+        public Request(String customerName, String title, String type, Duration length, ZonedDateTime windowStart, ZonedDateTime windowEnd, Collection<Integer> consultants) {
+            this.customerName = customerName;
+            this.title = title;
+            this.type = type;
+            this.length = length;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.consultants = new LinkedHashSet<>(consultants);
+        }
+
+        // One line of an intake list:
+        //
+        //     customer, title, type, minutes, window start, window end, consultants
+        //
+        // with the window as yyyy-MM-dd HH:mm in the zone given and the consultants as usernames separated by ';', or
+        // left empty for anyone in the directory. Throws IllegalArgumentException with a message fit to show the user.
+        public static Request parse(String line, ZoneId zone, Map<Integer, String> usernameDirectory) {
+            String[] fields = line.split(",", -1);
+            if (fields.length != 7) {
+                throw new IllegalArgumentException("Expected 7 comma separated fields, found " + fields.length + ".");
+            }
+
+            Duration length;
+            ZonedDateTime windowStart;
+            ZonedDateTime windowEnd;
+            try {
+                length = Duration.ofMinutes(Integer.parseInt(fields[3].trim()));
+                windowStart = LocalDateTime.parse(fields[4].trim(), WINDOW_FORMAT).atZone(zone);
+                windowEnd = LocalDateTime.parse(fields[5].trim(), WINDOW_FORMAT).atZone(zone);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Minutes must be a number and the window yyyy-MM-dd HH:mm.");
+            }
+            if (length.isZero() || length.isNegative() || windowEnd.isBefore(windowStart.plus(length))) {
+                throw new IllegalArgumentException("The window must be at least as long as the appointment.");
+            }
+
+            Set<Integer> consultants = new LinkedHashSet<>();
+            for (String username : fields[6].split(";")) {
+                if (username.trim().isEmpty()) {
+                    continue;
+                }
+                Integer userId = null;
+                for (Map.Entry<Integer, String> entry : usernameDirectory.entrySet()) {
+                    if (entry.getValue().equals(username.trim())) {
+                        userId = entry.getKey();
+                    }
+                }
+                if (userId == null) {
+                    throw new IllegalArgumentException("No consultant named " + username.trim() + ".");
+                }
+                consultants.add(userId);
+            }
+            if (consultants.isEmpty()) {
+                consultants.addAll(usernameDirectory.keySet());
+            }
+
+            return new Request(fields[0].trim(), fields[1].trim(), fields[2].trim(), length, windowStart, windowEnd, consultants);
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Duration getLength() {
+            return length;
+        }
+
+        public ZonedDateTime getWindowStart() {
+            return windowStart;
+        }
+
+        public ZonedDateTime getWindowEnd() {
+            return windowEnd;
+        }
+
+        public Set<Integer> getConsultants() {
+            return consultants;
+        }
+    }
+
+    // Where a request was placed.
+    public static class Assignment {
+        private final Request request;
+        private final int userId;
+        private final ZonedDateTime start;
+
+        private Assignment(Request request, int userId, ZonedDateTime start) {
+            this.request = request;
+            this.userId = userId;
+            this.start = start;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public ZonedDateTime getStart() {
+            return start;
+        }
+
+        public ZonedDateTime getEnd() {
+            return start.plus(request.length);
+        }
+
+        // The Appointment to store for it.
+        public Appointment toAppointment() {
+            return new Appointment(0, request.customerName, userId, request.title, "", "", "", request.type, "", getStart(), getEnd());
+        }
+    }
+
+    // The outcome of one run: what was placed, what couldn't be, and how the search went.
+    public static class Schedule {
+        private final List<Assignment> assignments;
+        private final List<Request> unplaced;
+        private final Map<Integer, Long> loadMinutes;
+        private final int greedyPlaced;
+        private final long moves;
+        private final long improvements;
+        private final Duration elapsed;
+
+        private Schedule(List<Assignment> assignments, List<Request> unplaced, Map<Integer, Long> loadMinutes, int greedyPlaced, long moves, long improvements, Duration elapsed) {
+            this.assignments = assignments;
+            this.unplaced = unplaced;
+            this.loadMinutes = loadMinutes;
+            this.greedyPlaced = greedyPlaced;
+            this.moves = moves;
+            this.improvements = improvements;
+            this.elapsed = elapsed;
+        }
+
+        // Ordered by start and then consultant.
+        public List<Assignment> getAssignments() {
+            return assignments;
+        }
+
+        public List<Request> getUnplaced() {
+            return unplaced;
+        }
+
+        // Minutes booked over the batch's range for every consultant any request allows, existing appointments included.
+        public Map<Integer, Long> getLoadMinutes() {
+            return loadMinutes;
+        }
+
+        // The standard deviation of those loads in minutes; lower is more even.
+        public long getLoadDeviation() {
+            double mean = loadMinutes.values().stream().mapToLong(Long::longValue).average().orElse(0);
+            double variance = loadMinutes.values().stream().mapToDouble(minutes -> (minutes - mean) * (minutes - mean)).average().orElse(0);
+            return Math.round(Math.sqrt(variance));
+        }
+
+        // How many requests the greedy pass placed before local search.
+        public int getGreedyPlaced() {
+            return greedyPlaced;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public long getImprovements() {
+            return improvements;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+    }
+
+    // Read every allowed consultant's calendar over the batch's range in one query, then solve.
+    public Schedule schedule(Repository repository, List<Request> requests) {
+        return solve(requests, busyFor(repository, requests));
+    }
+
+    // The appointments already booked that the batch has to fit around, by consultant.
+    public Map<Integer, List<Appointment>> busyFor(Repository repository, List<Request> requests) {
+        Map<Integer, List<Appointment>> busy = new HashMap<>();
+        if (requests.isEmpty()) {
+            return busy;
+        }
+
+        Set<Integer> userIds = new LinkedHashSet<>();
+        requests.forEach(request -> userIds.addAll(request.consultants));
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate first = requests.stream().map(request -> request.windowStart.withZoneSameInstant(zone).toLocalDate()).min(Comparator.naturalOrder()).get();
+        LocalDate last = requests.stream().map(request -> request.windowEnd.withZoneSameInstant(zone).toLocalDate()).max(Comparator.naturalOrder()).get();
+
+        for (Appointment appointment : repository.getAppointmentsForUsers(first, last, userIds)) {
+            busy.computeIfAbsent(appointment.getUserId(), userId -> new ArrayList<>()).add(appointment);
+        }
+        return busy;
+    }
+
+    // Place the requests around the busy appointments given. Touches no database.
+    public Schedule solve(List<Request> requests, Map<Integer, List<Appointment>> busy) {
+        long started = System.nanoTime();
+        long deadline = started + budget.toNanos();
+        Search search = new Search(requests, busy);
+
+        // Fewest choices first: a request one consultant can take in a two hour window goes before one anybody can
+        // take any time that week.
+        List<Request> order = new ArrayList<>(requests);
+        order.sort(Comparator.comparingDouble(this::flexibility).thenComparing(Request::getLength, Comparator.reverseOrder()));
+        List<Request> unplaced = new ArrayList<>();
+        for (Request request : order) {
+            if (!search.placeBest(request, null)) {
+                unplaced.add(request);
+            }
+        }
+        int greedyPlaced = search.placed.size();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        // Give up once this many moves in a row have found nothing.
+        long staleLimit = 20L * Math.max(1, requests.size());
+        long stale = 0;
+        long moves = 0;
+        long improvements = 0;
+        while (stale < staleLimit && System.nanoTime() < deadline && !search.placed.isEmpty()) {
+            moves++;
+            boolean improved;
+            if (!unplaced.isEmpty() && random.nextBoolean()) {
+                int index = random.nextInt(unplaced.size());
+                improved = search.placeByEjection(unplaced.get(index), random);
+                if (improved) {
+                    unplaced.remove(index);
+                }
+            } else {
+                improved = search.relocate(search.placed.get(random.nextInt(search.placed.size())));
+            }
+            if (improved) {
+                improvements++;
+                stale = 0;
+            } else {
+                stale++;
+            }
+        }
+
+        List<Assignment> assignments = new ArrayList<>(search.placed);
+        assignments.sort(Comparator.comparing(Assignment::getStart).thenComparingInt(Assignment::getUserId));
+        return new Schedule(assignments, unplaced, new HashMap<>(search.load), greedyPlaced, moves, improvements, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    // Roughly how many places a request could go: consultants times the starts its window allows.
+    private double flexibility(Request request) {
+        return request.consultants.size() * (double) Duration.between(request.windowStart, request.windowEnd).getSeconds() / request.length.getSeconds();
+    }
+
+    // The working state of one solve: every consultant's booked intervals and load, and what the batch has placed.
+    private class Search {
+        // Per consultant, booked intervals by start. Existing appointments are merged where they overlap so the
+        // intervals never do; their value has no Assignment.
+        private final Map<Integer, NavigableMap<Instant, Interval>> timelines = new HashMap<>();
+        private final Map<Integer, Long> load = new HashMap<>();
+        private final Map<Integer, BusinessCalendar> calendars = new HashMap<>();
+        private final List<Assignment> placed = new ArrayList<>();
+
+        private Search(List<Request> requests, Map<Integer, List<Appointment>> busy) {
+            if (requests.isEmpty()) {
+                return;
+            }
+            Instant rangeStart = requests.stream().map(request -> request.windowStart.toInstant()).min(Comparator.naturalOrder()).get();
+            Instant rangeEnd = requests.stream().map(request -> request.windowEnd.toInstant()).max(Comparator.naturalOrder()).get();
+
+            for (Request request : requests) {
+                for (int userId : request.consultants) {
+                    if (timelines.containsKey(userId)) {
+                        continue;
+                    }
+
+                    NavigableMap<Instant, Interval> timeline = new TreeMap<>();
+                    List<Appointment> appointments = new ArrayList<>(busy.getOrDefault(userId, new ArrayList<>()));
+                    appointments.sort(Comparator.comparing(Appointment::getStart));
+                    Interval current = null;
+                    for (Appointment appointment : appointments) {
+                        Instant start = appointment.getStart().toInstant();
+                        Instant end = appointment.getEnd().toInstant();
+                        if (current != null && start.isBefore(current.end)) {
+                            if (end.isAfter(current.end)) {
+                                current.end = end;
+                            }
+                        } else {
+                            current = new Interval(start, end, null);
+                            timeline.put(start, current);
+                        }
+                    }
+
+                    long minutes = 0;
+                    for (Interval interval : timeline.values()) {
+                        Instant from = interval.start.isAfter(rangeStart) ? interval.start : rangeStart;
+                        Instant to = interval.end.isBefore(rangeEnd) ? interval.end : rangeEnd;
+                        if (from.isBefore(to)) {
+                            minutes += Duration.between(from, to).toMinutes();
+                        }
+                    }
+                    timelines.put(userId, timeline);
+                    load.put(userId, minutes);
+                    calendars.put(userId, AutoScheduler.this.calendars.apply(userId));
+                }
+            }
+        }
+
+        // Place the request on its least loaded consultant that has room, skipping the one excluded, if any.
+        private boolean placeBest(Request request, Integer excluded) {
+            Integer bestUser = null;
+            ZonedDateTime bestStart = null;
+            for (int userId : request.consultants) {
+                if (excluded != null && userId == excluded) {
+                    continue;
+                }
+                ZonedDateTime start = earliestStart(userId, request);
+                if (start != null && (bestUser == null || load.get(userId) < load.get(bestUser))) {
+                    bestUser = userId;
+                    bestStart = start;
+                }
+            }
+
+            if (bestUser == null) {
+                return false;
+            }
+            add(new Assignment(request, bestUser, bestStart));
+            return true;
+        }
+
+        // Move an assignment to another consultant if that lowers the sum of squared loads, which it does exactly when
+        // the new consultant has less booked than the old one would have without it.
+        private boolean relocate(Assignment assignment) {
+            remove(assignment);
+            long oldLoad = load.get(assignment.userId);
+
+            Integer bestUser = null;
+            ZonedDateTime bestStart = null;
+            for (int userId : assignment.request.consultants) {
+                if (userId == assignment.userId || load.get(userId) >= oldLoad) {
+                    continue;
+                }
+                ZonedDateTime start = earliestStart(userId, assignment.request);
+                if (start != null && (bestUser == null || load.get(userId) < load.get(bestUser))) {
+                    bestUser = userId;
+                    bestStart = start;
+                }
+            }
+
+            if (bestUser == null) {
+                add(assignment);
+                return false;
+            }
+            add(new Assignment(assignment.request, bestUser, bestStart));
+            return true;
+        }
+
+        // Place a request that doesn't fit anywhere by taking a batch appointment out of its way and placing that one
+        // elsewhere. Either both end up placed or nothing changes.
+        private boolean placeByEjection(Request request, SplittableRandom random) {
+            List<Integer> consultants = new ArrayList<>(request.consultants);
+            int tried = 0;
+            for (int i = 0; i < consultants.size() && tried < MAX_EJECTIONS; i++) {
+                int userId = consultants.get((i + random.nextInt(consultants.size())) % consultants.size());
+                for (Interval blocker : blockers(userId, request)) {
+                    if (tried++ == MAX_EJECTIONS) {
+                        break;
+                    }
+
+                    Assignment ejected = blocker.assignment;
+                    remove(ejected);
+                    ZonedDateTime start = earliestStart(userId, request);
+                    if (start != null) {
+                        Assignment assignment = new Assignment(request, userId, start);
+                        add(assignment);
+                        if (placeBest(ejected.request, null)) {
+                            return true;
+                        }
+                        remove(assignment);
+                    }
+                    add(ejected);
+                }
+            }
+            return false;
+        }
+
+        // The batch appointments of this consultant inside the request's window.
+        private List<Interval> blockers(int userId, Request request) {
+            List<Interval> blockers = new ArrayList<>();
+            for (Interval interval : timelines.get(userId).subMap(request.windowStart.toInstant(), true, request.windowEnd.toInstant(), false).values()) {
+                if (interval.assignment != null) {
+                    blockers.add(interval);
+                }
+            }
+            return blockers;
+        }
+
+        // The earliest start on the step grid where the request fits this consultant's calendar, within their open
+        // hours and its window, or null if there is none.
+        private ZonedDateTime earliestStart(int userId, Request request) {
+            NavigableMap<Instant, Interval> timeline = timelines.get(userId);
+            BusinessCalendar calendar = calendars.get(userId);
+            long length = request.length.getSeconds();
+            ZonedDateTime windowStart = request.windowStart.withZoneSameInstant(calendar.getZone());
+            ZonedDateTime windowEnd = request.windowEnd.withZoneSameInstant(calendar.getZone());
+
+            for (LocalDate day = windowStart.toLocalDate(); !day.isAfter(windowEnd.toLocalDate()); day = day.plusDays(1)) {
+                for (BusinessCalendar.OpenHours hours : calendar.openHours(day)) {
+                    long open = hours.getStart().toEpochSecond();
+                    long from = Math.max(open, windowStart.toEpochSecond());
+                    long to = Math.min(hours.getEnd().toEpochSecond(), windowEnd.toEpochSecond());
+
+                    long cursor = onGrid(from, open);
+                    while (cursor + length <= to) {
+                        // Intervals never overlap, so the last one starting before the candidate ends is the only one
+                        // that can clash with it.
+                        Map.Entry<Instant, Interval> clash = timeline.lowerEntry(Instant.ofEpochSecond(cursor + length));
+                        if (clash == null || clash.getValue().end.getEpochSecond() <= cursor) {
+                            return Instant.ofEpochSecond(cursor).atZone(request.windowStart.getZone());
+                        }
+                        cursor = onGrid(clash.getValue().end.getEpochSecond(), open);
+                    }
+                }
+            }
+            return null;
+        }
+
+        // The first grid point at or after the second given, counting steps from the opening.
+        private long onGrid(long epochSecond, long open) {
+            return open + Math.max(0, Math.floorDiv(epochSecond - open + stepSeconds - 1, stepSeconds)) * stepSeconds;
+        }
+
+        private void add(Assignment assignment) {
+            Instant start = assignment.start.toInstant();
+            timelines.get(assignment.userId).put(start, new Interval(start, assignment.getEnd().toInstant(), assignment));
+            load.merge(assignment.userId, assignment.request.length.toMinutes(), Long::sum);
+            placed.add(assignment);
+        }
+
+        private void remove(Assignment assignment) {
+            timelines.get(assignment.userId).remove(assignment.start.toInstant());
+            load.merge(assignment.userId, -assignment.request.length.toMinutes(), Long::sum);
+            placed.remove(assignment);
+        }
+    }
+
+    // A booked stretch of a consultant's calendar; assignment is null for appointments that were already booked.
+    private static class Interval {
+        private final Instant start;
+        private Instant end;
+        private final Assignment assignment;
+
+        private Interval(Instant start, Instant end, Assignment assignment) {
+            this.start = start;
+            this.end = end;
+            this.assignment = assignment;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package appointmentManager;
+
+import DAO.Repository;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Finds when consultants are free. Every consultant's appointments for the whole range come back in one query, then
+// each consultant's day is swept once: busy intervals sorted by start are walked against the open hours of their
+// business calendar, and every gap at least as long as the duration asked for is a free slot. The sweeps are independent, so they run in
+// parallel across consultants; a week across a few hundred consultants takes milliseconds, nearly all of it the query.
+public class AvailabilityFinder {
+    private final Function<Integer, BusinessCalendar> calendars;
+
+    // Slots fall in the open hours of each consultant's calendar, looked up by userId.
+    public AvailabilityFinder(Function<Integer, BusinessCalendar> calendars) {
+        this.calendars = calendars;
+    }
+
+    // A stretch of one consultant's business hours with nothing booked in it.
+    public static class FreeSlot {
+        private final int userId;
+        private final ZonedDateTime start;
+        private final ZonedDateTime end;
+
+        public FreeSlot(int userId, ZonedDateTime start, ZonedDateTime end) {
+            this.userId = userId;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public ZonedDateTime getStart() {
+            return start;
+        }
+
+        public ZonedDateTime getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "user " + userId + " " + start + " to " + end;
+        }
+    }
+
+    // The free slots of at least length for each consultant, on every day from first to last inclusive and not before
+    // notBefore, ordered by start and then consultant.
+    public List<FreeSlot> find(Repository repository, Collection<Integer> userIds, LocalDate first, LocalDate last, Duration length, ZonedDateTime notBefore) {
+        Map<Integer, List<Appointment>> busy = new HashMap<>();
+        for (Appointment appointment : repository.getAppointmentsForUsers(first, last, userIds)) {
+            busy.computeIfAbsent(appointment.getUserId(), userId -> new ArrayList<>()).add(appointment);
+        }
+
+        return userIds.parallelStream()
+                .flatMap(userId -> sweep(userId, busy.getOrDefault(userId, new ArrayList<>()), first, last, length, notBefore).stream())
+                .sorted(Comparator.comparing(FreeSlot::getStart).thenComparingInt(FreeSlot::getUserId))
+                .collect(Collectors.toList());
+    }
+
+    // One consultant's free slots, on the days first to last of their calendar. busy may be in any order and is sorted
+    // in place.
+    public List<FreeSlot> sweep(int userId, List<Appointment> busy, LocalDate first, LocalDate last, Duration length, ZonedDateTime notBefore) {
+        List<FreeSlot> slots = new ArrayList<>();
+        BusinessCalendar calendar = calendars.apply(userId);
+        busy.sort(Comparator.comparing(Appointment::getStart));
+        // Every interval before this one ended before the current open stretch began, so later ones never look at
+        // them again.
+        int earliest = 0;
+
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            for (BusinessCalendar.OpenHours hours : calendar.openHours(day)) {
+                earliest = sweep(userId, busy, earliest, hours.getStart(), hours.getEnd(), length, notBefore, slots);
+            }
+        }
+
+        return slots;
+    }
+
+    // Add the free slots between open and close to slots, and return the new earliest interval.
+    private int sweep(int userId, List<Appointment> busy, int earliest, ZonedDateTime open, ZonedDateTime close, Duration length,
+                      ZonedDateTime notBefore, List<FreeSlot> slots) {
+        ZonedDateTime cursor = notBefore != null && notBefore.isAfter(open) ? notBefore : open;
+
+        while (earliest < busy.size() && !busy.get(earliest).getEnd().isAfter(open)) {
+            earliest++;
+        }
+
+        for (int i = earliest; i < busy.size() && busy.get(i).getStart().isBefore(close); i++) {
+            Appointment appointment = busy.get(i);
+            if (!appointment.getEnd().isAfter(cursor)) {
+                continue;
+            }
+            if (Duration.between(cursor, appointment.getStart()).compareTo(length) >= 0) {
+                slots.add(new FreeSlot(userId, cursor, appointment.getStart()));
+            }
+            cursor = appointment.getEnd();
+        }
+
+        if (cursor.isBefore(close) && Duration.between(cursor, close).compareTo(length) >= 0) {
+            slots.add(new FreeSlot(userId, cursor, close));
+        }
+
+        return earliest;
+    }
+}
@@ -0,0 +1,314 @@
+package appointmentManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// When a location or consultant is open for business: weekly hours, holidays closed all day and closures for part of
+// a day, all in wall clock time in the calendar's zone.
+//
+// Each day is compiled once into a bitmap of five minute slots, bit i set when the slot starting i * 5 minutes after
+// midnight is open, and cached. Checking a booking is then a mask test over the slots it covers rather than a walk
+// over the rules, and two calendars combine with a bitwise AND. A day is SLOT_WORDS longs, so even years of cached
+// days are a few hundred kilobytes.
+public class BusinessCalendar {
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final int SLOT_WORDS = (SLOTS_PER_DAY + 63) / 64;
+
+    private static final String[] DAY_CODES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    private final ZoneId zone;
+    private final Function<LocalDate, long[]> compiler;
+    private final Map<LocalDate, long[]> compiled = new ConcurrentHashMap<>();
+
+    private BusinessCalendar(ZoneId zone, Function<LocalDate, long[]> compiler) {
+        this.zone = zone;
+        this.compiler = compiler;
+    }
+
+    // Build a calendar from its text form, the values of a calendars.properties entry:
+    //
+    //     hours      MON-FRI 09:00-12:00,13:00-18:00; SAT 10:00-14:00    days not listed are closed
+    //     holidays   2020-12-25, 2021-01-01                               closed all day (may be null)
+    //     closures   2020-07-03 12:00-18:00, 2020-11-25 15:00-18:00       closed part of a day (may be null)
+    //
+    // Times are HH:mm on the five minute grid, and 24:00 is the end of the day. Throws IllegalArgumentException
+    // describing the first thing it can't read.
+    public static BusinessCalendar parse(String hours, String holidays, String closures, ZoneId zone) {
+        Map<DayOfWeek, long[]> weekly = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            weekly.put(day, new long[SLOT_WORDS]);
+        }
+        for (String entry : hours.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("\\s+", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected days and hours, e.g. MON-FRI 09:00-18:00, found \"" + entry.trim() + "\".");
+            }
+            for (DayOfWeek day : daysOf(parts[0])) {
+                for (String range : parts[1].split(",")) {
+                    int[] slots = slotRange(range);
+                    setSlots(weekly.get(day), slots[0], slots[1], true);
+                }
+            }
+        }
+
+        Set<LocalDate> closedDays = new HashSet<>();
+        if (holidays != null) {
+            for (String holiday : holidays.split(",")) {
+                if (!holiday.isBlank()) {
+                    closedDays.add(dateOf(holiday));
+                }
+            }
+        }
+
+        Map<LocalDate, List<int[]>> closedSlots = new HashMap<>();
+        if (closures != null) {
+            for (String closure : closures.split(",")) {
+                if (closure.isBlank()) {
+                    continue;
+                }
+                String[] parts = closure.trim().split("\\s+", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected a date and hours, e.g. 2020-07-03 12:00-18:00, found \"" + closure.trim() + "\".");
+                }
+                closedSlots.computeIfAbsent(dateOf(parts[0]), date -> new ArrayList<>()).add(slotRange(parts[1]));
+            }
+        }
+
+        return new BusinessCalendar(zone, date -> {
+            long[] slots = weekly.get(date.getDayOfWeek()).clone();
+            if (closedDays.contains(date)) {
+                return new long[SLOT_WORDS];
+            }
+            for (int[] closed : closedSlots.getOrDefault(date, List.of())) {
+                setSlots(slots, closed[0], closed[1], false);
+            }
+            return slots;
+        });
+    }
+
+    // Open the same hours every day of the week.
+    public static BusinessCalendar daily(LocalTime open, LocalTime close, ZoneId zone) {
+        return parse("MON-SUN " + open + "-" + close, null, null, zone);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // The open slots of the day given. The array is shared with the cache and must not be changed.
+    public long[] openSlots(LocalDate day) {
+        return compiled.computeIfAbsent(day, compiler);
+    }
+
+    // Whether every slot from start to end is open. Slots the times fall part way into count, so a booking must not
+    // so much as touch a closed slot. A booking may run over midnight if both days are open there.
+    public boolean isOpen(ZonedDateTime start, ZonedDateTime end) {
+        LocalDateTime from = start.withZoneSameInstant(zone).toLocalDateTime();
+        LocalDateTime to = end.withZoneSameInstant(zone).toLocalDateTime();
+        if (!from.isBefore(to)) {
+            return false;
+        }
+
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            int first = day.equals(from.toLocalDate()) ? from.toLocalTime().toSecondOfDay() / 60 / SLOT_MINUTES : 0;
+            int last = day.equals(to.toLocalDate()) ? (to.toLocalTime().toSecondOfDay() / 60 + SLOT_MINUTES - 1) / SLOT_MINUTES : SLOTS_PER_DAY;
+            if (!allSet(openSlots(day), first, last)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The stretches of the day given that are open, in order, each from its first open slot to the end of its last.
+    public List<OpenHours> openHours(LocalDate day) {
+        List<OpenHours> hours = new ArrayList<>();
+        long[] slots = openSlots(day);
+        int slot = nextSet(slots, 0);
+        while (slot < SLOTS_PER_DAY) {
+            int end = nextClear(slots, slot);
+            hours.add(new OpenHours(timeOf(day, slot), timeOf(day, end)));
+            slot = nextSet(slots, end);
+        }
+        return hours;
+    }
+
+    // Open only where both calendars are, in this calendar's zone. The other calendar's slots are mapped through the
+    // instant they start at, so the two may be in different zones.
+    public BusinessCalendar and(BusinessCalendar other) {
+        if (other.zone.equals(zone)) {
+            return new BusinessCalendar(zone, day -> {
+                long[] slots = openSlots(day).clone();
+                long[] others = other.openSlots(day);
+                for (int i = 0; i < SLOT_WORDS; i++) {
+                    slots[i] &= others[i];
+                }
+                return slots;
+            });
+        }
+
+        return new BusinessCalendar(zone, day -> {
+            long[] slots = openSlots(day).clone();
+            for (int slot = nextSet(slots, 0); slot < SLOTS_PER_DAY; slot = nextSet(slots, slot + 1)) {
+                LocalDateTime there = timeOf(day, slot).withZoneSameInstant(other.zone).toLocalDateTime();
+                int otherSlot = there.toLocalTime().toSecondOfDay() / 60 / SLOT_MINUTES;
+                if ((other.openSlots(there.toLocalDate())[otherSlot >>> 6] & (1L << otherSlot)) == 0) {
+                    slots[slot >>> 6] &= ~(1L << slot);
+                }
+            }
+            return slots;
+        });
+    }
+
+    // One open stretch of a day.
+    public static class OpenHours {
+        private final ZonedDateTime start;
+        private final ZonedDateTime end;
+
+        private OpenHours(ZonedDateTime start, ZonedDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public ZonedDateTime getStart() {
+            return start;
+        }
+
+        public ZonedDateTime getEnd() {
+            return end;
+        }
+    }
+
+    private ZonedDateTime timeOf(LocalDate day, int slot) {
+        return slot == SLOTS_PER_DAY
+                ? day.plusDays(1).atStartOfDay(zone)
+                : day.atStartOfDay().plusMinutes((long) slot * SLOT_MINUTES).atZone(zone);
+    }
+
+    // Whether slots first (inclusive) to last (exclusive) are all set, a word at a time.
+    private static boolean allSet(long[] slots, int first, int last) {
+        for (int word = first >>> 6; word <= (last - 1) >>> 6 && first < last; word++) {
+            long mask = -1L;
+            if (word == first >>> 6) {
+                mask &= -1L << first;
+            }
+            if (word == (last - 1) >>> 6) {
+                mask &= -1L >>> (63 - ((last - 1) & 63));
+            }
+            if ((slots[word] & mask) != mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setSlots(long[] slots, int first, int last, boolean open) {
+        for (int slot = first; slot < last; slot++) {
+            if (open) {
+                slots[slot >>> 6] |= 1L << slot;
+            } else {
+                slots[slot >>> 6] &= ~(1L << slot);
+            }
+        }
+    }
+
+    // The first set slot at or after from, or SLOTS_PER_DAY if there is none.
+    private static int nextSet(long[] slots, int from) {
+        for (int word = from >>> 6; word < SLOT_WORDS && from < SLOTS_PER_DAY; word++) {
+            long bits = slots[word] & (word == from >>> 6 ? -1L << from : -1L);
+            if (bits != 0) {
+                return Math.min(SLOTS_PER_DAY, word * 64 + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return SLOTS_PER_DAY;
+    }
+
+    // The first clear slot at or after from, or SLOTS_PER_DAY if there is none.
+    private static int nextClear(long[] slots, int from) {
+        for (int word = from >>> 6; word < SLOT_WORDS && from < SLOTS_PER_DAY; word++) {
+            long bits = ~slots[word] & (word == from >>> 6 ? -1L << from : -1L);
+            if (bits != 0) {
+                return Math.min(SLOTS_PER_DAY, word * 64 + Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return SLOTS_PER_DAY;
+    }
+
+    // Slots first (inclusive) to last (exclusive) of a range like 09:00-18:00.
+    private static int[] slotRange(String range) {
+        String[] times = range.trim().split("-");
+        if (times.length != 2) {
+            throw new IllegalArgumentException("Expected hours like 09:00-18:00, found \"" + range.trim() + "\".");
+        }
+        int first = slotOf(times[0]);
+        int last = slotOf(times[1]);
+        if (first >= last) {
+            throw new IllegalArgumentException("Hours must end after they start: " + range.trim() + ".");
+        }
+        return new int[] {first, last};
+    }
+
+    private static int slotOf(String time) {
+        int minutes;
+        try {
+            minutes = time.trim().equals("24:00") ? 24 * 60 : LocalTime.parse(time.trim()).toSecondOfDay() / 60;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected a time like 09:00, found \"" + time.trim() + "\".");
+        }
+        if (minutes % SLOT_MINUTES != 0) {
+            throw new IllegalArgumentException("Times must be on a " + SLOT_MINUTES + " minute boundary: " + time.trim() + ".");
+        }
+        return minutes / SLOT_MINUTES;
+    }
+
+    // MON, MON-FRI or MON,WED,FRI.
+    private static Set<DayOfWeek> daysOf(String days) {
+        Set<DayOfWeek> result = new HashSet<>();
+        for (String part : days.split(",")) {
+            String[] range = part.trim().toUpperCase().split("-");
+            int first = dayIndex(range[0]);
+            int last = range.length > 1 ? dayIndex(range[1]) : first;
+            for (int i = first; ; i = (i + 1) % 7) {
+                result.add(DayOfWeek.of(i + 1));
+                if (i == last) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int dayIndex(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day: " + code + ". Use MON, TUE, WED, THU, FRI, SAT or SUN.");
+    }
+
+    private static LocalDate dateOf(String date) {
+        try {
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected a date like 2020-12-25, found \"" + date.trim() + "\".");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package appointmentManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The business calendars calendars.properties defines, one per scope:
+//
+//     default.hours=MON-SUN 09:00-18:00                   used where nothing more specific is set
+//     location.Phoenix.hours=MON-FRI 08:00-17:00          a location, as typed on the appointment
+//     location.Phoenix.zone=America/Phoenix               the zone a scope's hours are in (the system zone)
+//     consultant.test.holidays=2020-12-24                 a consultant, by username
+//
+// with .hours, .holidays, .closures and .zone as BusinessCalendar.parse() reads them. A scope that sets anything but
+// hours keeps the default hours. An appointment has to fall in the open hours of its location and of its consultant,
+// whichever of the two have a calendar, or the default's if neither does. calendars.properties is read from the
+// working directory and then the classpath, like db.properties; without one every day is open from 9:00 AM to
+// 6:00 PM, as it always was.
+public class BusinessCalendars {
+    private static final String CALENDARS_PATH = "src/resources/calendars.properties";
+    private static final String CALENDARS_RESOURCE = "/resources/calendars.properties";
+    private static final String DEFAULT_HOURS = "MON-SUN 09:00-18:00";
+
+    private final BusinessCalendar defaultCalendar;
+    private final Map<String, BusinessCalendar> locations = new HashMap<>();
+    private final Map<String, BusinessCalendar> consultants = new HashMap<>();
+    // Combined calendars by location and consultant, so each pair compiles its days once.
+    private final Map<String, BusinessCalendar> combined = new ConcurrentHashMap<>();
+
+    // Throws IllegalArgumentException naming the entry it can't read.
+    public BusinessCalendars(Properties properties) {
+        defaultCalendar = calendar(properties, "default", DEFAULT_HOURS);
+        String defaultHours = properties.getProperty("default.hours", DEFAULT_HOURS);
+
+        for (String key : properties.stringPropertyNames()) {
+            int scopeEnd = key.lastIndexOf('.');
+            if (key.startsWith("location.") && scopeEnd > "location.".length()) {
+                locations.computeIfAbsent(key.substring("location.".length(), scopeEnd),
+                        location -> calendar(properties, "location." + location, defaultHours));
+            } else if (key.startsWith("consultant.") && scopeEnd > "consultant.".length()) {
+                consultants.computeIfAbsent(key.substring("consultant.".length(), scopeEnd),
+                        username -> calendar(properties, "consultant." + username, defaultHours));
+            }
+        }
+    }
+
+    // calendars.properties as described above, or the default hours alone if there is none.
+    public static BusinessCalendars load() {
+        Properties properties = new Properties();
+
+        try {
+            Path path = Paths.get(CALENDARS_PATH);
+            if (Files.exists(path)) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    properties.load(in);
+                }
+            } else {
+                try (InputStream in = BusinessCalendars.class.getResourceAsStream(CALENDARS_RESOURCE)) {
+                    if (in != null) {
+                        properties.load(in);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+
+        return new BusinessCalendars(properties);
+    }
+
+    public BusinessCalendar getDefault() {
+        return defaultCalendar;
+    }
+
+    // The consultant's own calendar, or the default.
+    public BusinessCalendar forConsultant(String username) {
+        return username == null ? defaultCalendar : consultants.getOrDefault(username, defaultCalendar);
+    }
+
+    // The hours an appointment at this location with this consultant can be booked in.
+    public BusinessCalendar forAppointment(String location, String username) {
+        BusinessCalendar place = location == null ? null : locations.get(location.trim());
+        BusinessCalendar person = username == null ? null : consultants.get(username);
+        if (place == null) {
+            return person == null ? defaultCalendar : person;
+        }
+        if (person == null) {
+            return place;
+        }
+        return combined.computeIfAbsent(location.trim() + "\n" + username, key -> place.and(person));
+    }
+
+    private static BusinessCalendar calendar(Properties properties, String scope, String defaultHours) {
+        try {
+            String zone = properties.getProperty(scope + ".zone");
+            return BusinessCalendar.parse(
+                    properties.getProperty(scope + ".hours", defaultHours),
+                    properties.getProperty(scope + ".holidays"),
+                    properties.getProperty(scope + ".closures"),
+                    zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone.trim())
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("calendars.properties, " + scope + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package appointmentManager;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+// A week/month calendar with one column per day and one row per minute of the day. Appointments are packed into
+// side-by-side lanes where they overlap, and only the blocks inside the visible viewport get a node; those nodes are
+// recycled from a pool as the user scrolls, so a month with thousands of appointments costs the same to draw as a
+// quiet week.
+public class CalendarGrid extends Region {
+    private static final double HEADER_HEIGHT = 24;
+    private static final double GUTTER_WIDTH = 60;
+    private static final double MIN_DAY_WIDTH = 110;
+    private static final double PIXELS_PER_MINUTE = 1;
+    private static final double MIN_BLOCK_HEIGHT = 14;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE M/d");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("h:mm a");
+
+    private final ObservableList<Appointment> appointments;
+    private final ObjectProperty<Appointment> selectedAppointment = new SimpleObjectProperty<>(this, "selectedAppointment");
+    private final ScrollBar vbar = new ScrollBar();
+    private final ScrollBar hbar = new ScrollBar();
+    private final Pane header = new Pane();
+    private final Pane gutter = new Pane();
+    private final Pane body = new Pane();
+    private final Rectangle headerClip = new Rectangle();
+    private final Rectangle gutterClip = new Rectangle();
+    private final Rectangle bodyClip = new Rectangle();
+    private final List<Label> blockPool = new ArrayList<>();
+    private final List<Label> dayLabelPool = new ArrayList<>();
+    private final List<Region> dayColumnPool = new ArrayList<>();
+    private final List<Label> hourLabels = new ArrayList<>();
+    private final List<Region> hourLines = new ArrayList<>();
+
+    private LocalDate rangeStart = LocalDate.now();
+    private int dayCount = 1;
+    private boolean packingDirty = true;
+
+    // The packed layout, stored as parallel arrays sorted by day then start minute. Blocks for day d occupy
+    // [dayOffsets[d], dayOffsets[d + 1]). runningMaxEnd lets us binary search for the first block that can reach the
+    // top of the viewport.
+    private int[] dayOffsets = new int[2];
+    private int[] blockStart = new int[0];
+    private int[] blockEnd = new int[0];
+    private int[] blockLane = new int[0];
+    private int[] blockLanes = new int[0];
+    private int[] runningMaxEnd = new int[0];
+    private Appointment[] blockAppointment = new Appointment[0];
+
+    public CalendarGrid(ObservableList<Appointment> appointments) {
+        this.appointments = appointments;
+        getStyleClass().add("calendarGrid");
+
+        header.setClip(headerClip);
+        gutter.setClip(gutterClip);
+        body.setClip(bodyClip);
+        body.getStyleClass().add("calendarBody");
+        vbar.setOrientation(Orientation.VERTICAL);
+        getChildren().addAll(body, header, gutter, vbar, hbar);
+
+        for (int hour = 0; hour < 24; hour++) {
+            Label hourLabel = unmanaged(new Label(LocalTime.of(hour, 0).format(TIME_FORMAT)), "calendarHourLabel");
+            Region hourLine = unmanaged(new Region(), "calendarHourLine");
+            hourLabels.add(hourLabel);
+            hourLines.add(hourLine);
+            gutter.getChildren().add(hourLabel);
+            body.getChildren().add(hourLine);
+        }
+
+        // Any scroll or data change only re-runs the layout pass; no nodes are created unless the viewport grows.
+        vbar.valueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        hbar.valueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        appointments.addListener((ListChangeListener<Appointment>) change -> {
+            packingDirty = true;
+            requestLayout();
+        });
+        setOnScroll(e -> {
+            if (e.isShiftDown() || Math.abs(e.getDeltaX()) > Math.abs(e.getDeltaY())) {
+                hbar.setValue(clamp(hbar.getValue() - (e.isShiftDown() ? e.getDeltaY() : e.getDeltaX()), hbar.getMin(), hbar.getMax()));
+            } else {
+                vbar.setValue(clamp(vbar.getValue() - e.getDeltaY(), vbar.getMin(), vbar.getMax()));
+            }
+            e.consume();
+        });
+
+        // Open on the start of a normal working day rather than midnight.
+        vbar.setValue(8 * 60 * PIXELS_PER_MINUTE);
+        setPrefSize(525, 250);
+    }
+
+    // Show the days from start to end, inclusive.
+    public void setRange(LocalDate start, LocalDate end) {
+        rangeStart = start;
+        dayCount = (int) Math.max(1, ChronoUnit.DAYS.between(start, end) + 1);
+        hbar.setValue(0);
+        packingDirty = true;
+        requestLayout();
+    }
+
+    public ObjectProperty<Appointment> selectedAppointmentProperty() {
+        return selectedAppointment;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        if (packingDirty) {
+            pack();
+            packingDirty = false;
+        }
+
+        double width = getWidth();
+        double height = getHeight();
+        double vbarWidth = vbar.prefWidth(-1);
+        double hbarHeight = hbar.prefHeight(-1);
+        double viewportWidth = Math.max(0, width - GUTTER_WIDTH - vbarWidth);
+        double viewportHeight = Math.max(0, height - HEADER_HEIGHT - hbarHeight);
+        double dayWidth = Math.max(MIN_DAY_WIDTH, viewportWidth / dayCount);
+        double contentWidth = dayWidth * dayCount;
+        double contentHeight = MINUTES_PER_DAY * PIXELS_PER_MINUTE;
+
+        configureScrollBar(vbar, contentHeight, viewportHeight);
+        configureScrollBar(hbar, contentWidth, viewportWidth);
+        vbar.resizeRelocate(width - vbarWidth, HEADER_HEIGHT, vbarWidth, viewportHeight);
+        hbar.resizeRelocate(GUTTER_WIDTH, height - hbarHeight, viewportWidth, hbarHeight);
+
+        header.resizeRelocate(GUTTER_WIDTH, 0, viewportWidth, HEADER_HEIGHT);
+        gutter.resizeRelocate(0, HEADER_HEIGHT, GUTTER_WIDTH, viewportHeight);
+        body.resizeRelocate(GUTTER_WIDTH, HEADER_HEIGHT, viewportWidth, viewportHeight);
+        headerClip.setWidth(viewportWidth);
+        headerClip.setHeight(HEADER_HEIGHT);
+        gutterClip.setWidth(GUTTER_WIDTH);
+        gutterClip.setHeight(viewportHeight);
+        bodyClip.setWidth(viewportWidth);
+        bodyClip.setHeight(viewportHeight);
+
+        double scrollX = hbar.getValue();
+        double scrollY = vbar.getValue();
+        int firstDay = (int) Math.max(0, Math.floor(scrollX / dayWidth));
+        int lastDay = (int) Math.min(dayCount - 1, Math.floor((scrollX + viewportWidth) / dayWidth));
+        int viewTop = (int) Math.floor(scrollY / PIXELS_PER_MINUTE);
+        int viewBottom = (int) Math.ceil((scrollY + viewportHeight) / PIXELS_PER_MINUTE);
+
+        // Hour rows are fixed in number, so they are simply repositioned.
+        for (int hour = 0; hour < 24; hour++) {
+            double y = hour * 60 * PIXELS_PER_MINUTE - scrollY;
+            hourLabels.get(hour).resizeRelocate(4, y, GUTTER_WIDTH - 8, 16);
+            hourLines.get(hour).resizeRelocate(0, y, viewportWidth, 1);
+        }
+
+        // Day headers and column backgrounds exist only for visible days.
+        int visibleDays = 0;
+        for (int day = firstDay; day <= lastDay; day++, visibleDays++) {
+            double x = day * dayWidth - scrollX;
+            Label dayLabel = pooled(dayLabelPool, visibleDays, this::newDayLabel);
+            dayLabel.setText(rangeStart.plusDays(day).format(DAY_FORMAT));
+            dayLabel.resizeRelocate(x, 0, dayWidth, HEADER_HEIGHT);
+            pooled(dayColumnPool, visibleDays, this::newDayColumn).resizeRelocate(x, 0, dayWidth, viewportHeight);
+        }
+        hideFrom(dayLabelPool, visibleDays);
+        hideFrom(dayColumnPool, visibleDays);
+
+        // Blocks: per visible day, jump straight to the first block that can reach the viewport and stop at the first
+        // block that starts below it.
+        int usedBlocks = 0;
+        for (int day = firstDay; day <= lastDay; day++) {
+            int from = firstReaching(dayOffsets[day], dayOffsets[day + 1], viewTop);
+            for (int i = from; i < dayOffsets[day + 1] && blockStart[i] < viewBottom; i++) {
+                if (blockEnd[i] <= viewTop) {
+                    continue;
+                }
+
+                double laneWidth = dayWidth / blockLanes[i];
+                double x = day * dayWidth - scrollX + blockLane[i] * laneWidth;
+                double y = blockStart[i] * PIXELS_PER_MINUTE - scrollY;
+                double blockHeight = Math.max(MIN_BLOCK_HEIGHT, (blockEnd[i] - blockStart[i]) * PIXELS_PER_MINUTE);
+
+                Label block = pooled(blockPool, usedBlocks++, this::newBlock);
+                if (block.getUserData() != blockAppointment[i]) {
+                    block.setUserData(blockAppointment[i]);
+                    block.setText(blockAppointment[i].getTitle() + "\n" + blockAppointment[i].getStart().format(TIME_FORMAT));
+                }
+                block.resizeRelocate(x + 1, y + 1, Math.max(1, laneWidth - 2), blockHeight - 2);
+            }
+        }
+        hideFrom(blockPool, usedBlocks);
+    }
+
+    // Split appointments into per-day pieces and assign each piece a lane inside its cluster of overlapping pieces.
+    private void pack() {
+        LocalDateTime rangeStartTime = rangeStart.atStartOfDay();
+        List<Piece> pieces = new ArrayList<>();
+
+        for (Appointment appointment : appointments) {
+            long startMinute = ChronoUnit.MINUTES.between(rangeStartTime, appointment.getStart().toLocalDateTime());
+            long endMinute = ChronoUnit.MINUTES.between(rangeStartTime, appointment.getEnd().toLocalDateTime());
+            startMinute = Math.max(0, startMinute);
+            endMinute = Math.min((long) dayCount * MINUTES_PER_DAY, endMinute);
+
+            while (startMinute < endMinute) {
+                int day = (int) (startMinute / MINUTES_PER_DAY);
+                long dayEnd = Math.min(endMinute, (long) (day + 1) * MINUTES_PER_DAY);
+                pieces.add(new Piece(day, (int) (startMinute % MINUTES_PER_DAY), (int) (dayEnd - (long) day * MINUTES_PER_DAY), appointment));
+                startMinute = dayEnd;
+            }
+        }
+
+        pieces.sort(Comparator.comparingInt((Piece piece) -> piece.day).thenComparingInt(piece -> piece.start).thenComparingInt(piece -> piece.end));
+
+        int count = pieces.size();
+        dayOffsets = new int[dayCount + 1];
+        blockStart = new int[count];
+        blockEnd = new int[count];
+        blockLane = new int[count];
+        blockLanes = new int[count];
+        runningMaxEnd = new int[count];
+        blockAppointment = new Appointment[count];
+
+        int[] laneEnds = new int[8];
+        int clusterFirst = 0;
+        int clusterEnd = -1;
+        int clusterLanes = 0;
+        int currentDay = -1;
+
+        for (int i = 0; i < count; i++) {
+            Piece piece = pieces.get(i);
+
+            // A new day or a gap after the current cluster closes the cluster; every member shares its lane count.
+            if (piece.day != currentDay || piece.start >= clusterEnd) {
+                Arrays.fill(blockLanes, clusterFirst, i, clusterLanes);
+                clusterFirst = i;
+                clusterEnd = piece.end;
+                clusterLanes = 0;
+            }
+            if (piece.day != currentDay) {
+                for (int day = currentDay + 1; day <= piece.day; day++) {
+                    dayOffsets[day] = i;
+                }
+                currentDay = piece.day;
+            }
+
+            // First-fit: reuse the lowest lane that is already free at this piece's start.
+            int lane = 0;
+            while (lane < clusterLanes && laneEnds[lane] > piece.start) {
+                lane++;
+            }
+            if (lane == clusterLanes) {
+                if (clusterLanes == laneEnds.length) {
+                    laneEnds = Arrays.copyOf(laneEnds, clusterLanes * 2);
+                }
+                clusterLanes++;
+            }
+            laneEnds[lane] = piece.end;
+            clusterEnd = Math.max(clusterEnd, piece.end);
+
+            blockStart[i] = piece.start;
+            blockEnd[i] = piece.end;
+            blockLane[i] = lane;
+            blockAppointment[i] = piece.appointment;
+            runningMaxEnd[i] = (i == dayOffsets[piece.day]) ? piece.end : Math.max(runningMaxEnd[i - 1], piece.end);
+        }
+
+        Arrays.fill(blockLanes, clusterFirst, count, clusterLanes);
+        for (int day = currentDay + 1; day <= dayCount; day++) {
+            dayOffsets[day] = count;
+        }
+    }
+
+    // Binary search for the first block in [from, to) such that it, or an earlier block that day, ends after viewTop.
+    private int firstReaching(int from, int to, int viewTop) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (runningMaxEnd[middle] > viewTop) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // Fetch the node at index from the pool, creating it only the first time the viewport needs that many.
+    private <T extends Region> T pooled(List<T> pool, int index, Supplier<T> factory) {
+        if (index == pool.size()) {
+            pool.add(factory.get());
+        }
+
+        T node = pool.get(index);
+        node.setVisible(true);
+        return node;
+    }
+
+    private Label newBlock() {
+        Label block = unmanaged(new Label(), "calendarBlock");
+        block.setOnMouseClicked(e -> selectedAppointment.set((Appointment) block.getUserData()));
+        body.getChildren().add(block);
+        return block;
+    }
+
+    private Label newDayLabel() {
+        Label dayLabel = unmanaged(new Label(), "calendarDayLabel");
+        header.getChildren().add(dayLabel);
+        return dayLabel;
+    }
+
+    // Day columns sit behind the hour lines and blocks.
+    private Region newDayColumn() {
+        Region dayColumn = unmanaged(new Region(), "calendarDayColumn");
+        body.getChildren().add(0, dayColumn);
+        return dayColumn;
+    }
+
+    private static void hideFrom(List<? extends Node> pool, int firstUnused) {
+        for (int i = firstUnused; i < pool.size() && pool.get(i).isVisible(); i++) {
+            pool.get(i).setVisible(false);
+        }
+    }
+
+    private static <T extends Region> T unmanaged(T node, String styleClass) {
+        node.setManaged(false);
+        node.getStyleClass().add(styleClass);
+        return node;
+    }
+
+    private static void configureScrollBar(ScrollBar bar, double content, double viewport) {
+        double max = Math.max(0, content - viewport);
+        bar.setMin(0);
+        bar.setMax(max);
+        bar.setVisibleAmount(viewport);
+        bar.setUnitIncrement(15 * PIXELS_PER_MINUTE);
+        bar.setBlockIncrement(viewport);
+        if (bar.getValue() > max) {
+            bar.setValue(max);
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // One day's slice of an appointment, in minutes from that day's midnight.
+    private static class Piece {
+        private final int day;
+        private final int start;
+        private final int end;
+        private final Appointment appointment;
+
+        private Piece(int day, int start, int end, Appointment appointment) {
+            this.day = day;
+            this.start = start;
+            this.end = end;
+            this.appointment = appointment;
+        }
+    }
+}
@@ -1,101 +1,189 @@
 package appointmentManager;
 
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import java.util.Objects;
+
 public class Customer {
-    private int id;
-    private String name;
-    private String address;
-    private String address2;
-    private String city;
-    private String country;
-    private String postalCode;
-    private String phone;
+    private final IntegerProperty id = new SimpleIntegerProperty(this, "id");
+    private final StringProperty name = new SimpleStringProperty(this, "name");
+    private final StringProperty address = new SimpleStringProperty(this, "address");
+    private final StringProperty address2 = new SimpleStringProperty(this, "address2");
+    private final StringProperty city = new SimpleStringProperty(this, "city");
+    private final StringProperty country = new SimpleStringProperty(this, "country");
+    private final StringProperty postalCode = new SimpleStringProperty(this, "postalCode");
+    private final StringProperty phone = new SimpleStringProperty(this, "phone");
+    // The stored row's version when this was read, which an update has to name to be applied.
+    private final IntegerProperty version = new SimpleIntegerProperty(this, "version");
+    // The rows the address, city and country were read from, so an edit can update them without looking them up again.
+    // 0 on a Customer that hasn't been stored.
+    private int addressId;
+    private int cityId;
+    private int countryId;
 
     public Customer(int id, String name, String address, String address2, String city, String country, String postalCode, String phone) {
-        this.id = id;
-        this.name = name;
-        this.address = address;
-        this.address2 = address2;
-        this.city = city;
-        this.country = country;
-        this.postalCode = postalCode;
-        this.phone = phone;
+        this.id.set(id);
+        this.name.set(name);
+        this.address.set(address);
+        this.address2.set(address2);
+        this.city.set(city);
+        this.country.set(country);
+        this.postalCode.set(postalCode);
+        this.phone.set(phone);
     }
 
     public int getId() {
-        return id;
+        return id.get();
     }
 
     public void setId(int id) {
-        this.id = id;
+        this.id.set(id);
+    }
+
+    public IntegerProperty idProperty() {
+        return id;
     }
 
     public String getName() {
-        return name;
+        return name.get();
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name.set(name);
+    }
+
+    public StringProperty nameProperty() {
+        return name;
     }
 
     public String getAddress() {
-        return address;
+        return address.get();
     }
 
     public void setAddress(String address) {
-        this.address = address;
+        this.address.set(address);
+    }
+
+    public StringProperty addressProperty() {
+        return address;
     }
 
     public String getAddress2() {
-        return address2;
+        return address2.get();
     }
 
     public void setAddress2(String address2) {
-        this.address2 = address2;
+        this.address2.set(address2);
+    }
+
+    public StringProperty address2Property() {
+        return address2;
     }
 
     public String getCity() {
-        return city;
+        return city.get();
     }
 
     public void setCity(String city) {
-        this.city = city;
+        this.city.set(city);
+    }
+
+    public StringProperty cityProperty() {
+        return city;
     }
 
     public String getCountry() {
-        return country;
+        return country.get();
     }
 
     public void setCountry(String country) {
-        this.country = country;
+        this.country.set(country);
+    }
+
+    public StringProperty countryProperty() {
+        return country;
     }
 
     public String getPostalCode() {
-        return postalCode;
+        return postalCode.get();
     }
 
     public void setPostalCode(String postalCode) {
-        this.postalCode = postalCode;
+        this.postalCode.set(postalCode);
+    }
+
+    public StringProperty postalCodeProperty() {
+        return postalCode;
     }
 
     public String getPhone() {
-        return phone;
+        return phone.get();
     }
 
     public void setPhone(String phone) {
-        this.phone = phone;
+        this.phone.set(phone);
+    }
+
+    public StringProperty phoneProperty() {
+        return phone;
+    }
+
+    public int getVersion() {
+        return version.get();
+    }
+
+    public void setVersion(int version) {
+        this.version.set(version);
+    }
+
+    public IntegerProperty versionProperty() {
+        return version;
+    }
+
+    public int getAddressId() {
+        return addressId;
+    }
+
+    public int getCityId() {
+        return cityId;
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+
+    public void setRowIds(int addressId, int cityId, int countryId) {
+        this.addressId = addressId;
+        this.cityId = cityId;
+        this.countryId = countryId;
+    }
+
+    // Used when diffing a fresh query result against the rows already in a table.
+    public boolean sameContent(Customer other) {
+        return getId() == other.getId() &&
+                getVersion() == other.getVersion() &&
+                Objects.equals(getName(), other.getName()) &&
+                Objects.equals(getAddress(), other.getAddress()) &&
+                Objects.equals(getAddress2(), other.getAddress2()) &&
+                Objects.equals(getCity(), other.getCity()) &&
+                Objects.equals(getCountry(), other.getCountry()) &&
+                Objects.equals(getPostalCode(), other.getPostalCode()) &&
+                Objects.equals(getPhone(), other.getPhone());
     }
 
     @Override
     public String toString() {
         return "Customer{" +
-                "id=" + id +
-                ", name='" + name + '\'' +
-                ", address='" + address + '\'' +
-                ", address2='" + address2 + '\'' +
-                ", city='" + city + '\'' +
-                ", country='" + country + '\'' +
-                ", postalCode=" + postalCode +
-                ", phone='" + phone + '\'' +
+                "id=" + getId() +
+                ", name='" + getName() + '\'' +
+                ", address='" + getAddress() + '\'' +
+                ", address2='" + getAddress2() + '\'' +
+                ", city='" + getCity() + '\'' +
+                ", country='" + getCountry() + '\'' +
+                ", postalCode=" + getPostalCode() +
+                ", phone='" + getPhone() + '\'' +
                 '}';
     }
 }
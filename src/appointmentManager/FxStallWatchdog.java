@@ -0,0 +1,221 @@
+package appointmentManager;
+
+import DAO.LatencyHistogram;
+import javafx.application.Platform;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Watches the JavaFX Application Thread from the outside. A background thread keeps one heartbeat queued with
+// Platform.runLater and measures how long it waits to run, which is how long any input or repaint would have waited.
+// When a heartbeat is still waiting after the threshold, the FX thread is blocked: its stack is captured right then,
+// and once it recovers the stall is charged to the call site it was stuck in, such as
+// "MySQL.getUsername in Main$1.updateItem". The sites with the most stalled time are written to a report file
+// periodically and on stop().
+public class FxStallWatchdog {
+    // How often the watchdog thread looks at the heartbeat.
+    private static final long CHECK_INTERVAL_MILLIS = 20;
+    // Frames from these packages are the platform, not our code, and never name a call site.
+    private static final String[] PLATFORM_PACKAGES = {"java.", "javax.", "javafx.", "com.sun.", "sun.", "jdk.", "com.mysql.", "org.h2."};
+    // Our own wrappers around the Repository, which sit between the UI and the real DAO method on every call.
+    private static final String[] INSTRUMENTATION_CLASSES = {"DAO.QueryMetrics", "DAO.DaoEvents", "DAO.SlowQueryLog", "appointmentManager.FxStallWatchdog"};
+
+    private final long thresholdNanos;
+    private final long reportIntervalNanos;
+    private final Path reportFile;
+    private final LatencyHistogram pulseLatency = new LatencyHistogram();
+    private final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+    private final Instant started = Instant.now();
+    private volatile Thread fxThread;
+    private volatile long heartbeatPostedNanos;
+    private volatile StackTraceElement[] stalledStack;
+    private volatile boolean running;
+    private Thread watcher;
+
+    public FxStallWatchdog(Duration threshold, Duration reportInterval, Path reportFile) {
+        this.thresholdNanos = threshold.toNanos();
+        this.reportIntervalNanos = reportInterval.toNanos();
+        this.reportFile = reportFile;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        watcher = new Thread(this::watch, "fx-stall-watchdog");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Stop watching and write the final report.
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        watcher.interrupt();
+        writeReport();
+    }
+
+    private void watch() {
+        long nextReport = System.nanoTime() + reportIntervalNanos;
+
+        while (running) {
+            long now = System.nanoTime();
+            long posted = heartbeatPostedNanos;
+
+            if (posted == 0) {
+                heartbeatPostedNanos = now;
+                Platform.runLater(this::heartbeat);
+            } else if (stalledStack == null && now - posted >= thresholdNanos && fxThread != null) {
+                // Still blocked; this is what the FX thread is stuck in.
+                stalledStack = fxThread.getStackTrace();
+            }
+
+            if (now >= nextReport) {
+                writeReport();
+                nextReport = now + reportIntervalNanos;
+            }
+
+            try {
+                Thread.sleep(CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    // Runs on the FX thread.
+    private void heartbeat() {
+        long latency = System.nanoTime() - heartbeatPostedNanos;
+        fxThread = Thread.currentThread();
+        pulseLatency.record(latency);
+
+        StackTraceElement[] stack = stalledStack;
+        if (stack != null) {
+            callSites.computeIfAbsent(describe(stack), site -> new CallSite(stack)).record(latency);
+        }
+
+        stalledStack = null;
+        heartbeatPostedNanos = 0;
+    }
+
+    // "blocking call in handler": the innermost frame of our own code, and the innermost frame of the UI code that
+    // led to it when that is a different frame. A stall entirely inside JavaFX, such as layout, is named by its top frame.
+    static String describe(StackTraceElement[] stack) {
+        int blocking = -1;
+        for (int i = 0; i < stack.length && blocking < 0; i++) {
+            if (isOurs(stack[i])) {
+                blocking = i;
+            }
+        }
+        if (blocking < 0) {
+            return stack.length == 0 ? "(no stack)" : shortName(stack[0]) + " (JavaFX)";
+        }
+
+        String site = shortName(stack[blocking]);
+        if (!stack[blocking].getClassName().startsWith("appointmentManager.")) {
+            for (int i = blocking + 1; i < stack.length; i++) {
+                if (stack[i].getClassName().startsWith("appointmentManager.") && isOurs(stack[i])) {
+                    return site + " in " + shortName(stack[i]) + " (line " + stack[i].getLineNumber() + ")";
+                }
+            }
+        }
+        return site + " (line " + stack[blocking].getLineNumber() + ")";
+    }
+
+    private static boolean isOurs(StackTraceElement frame) {
+        String className = frame.getClassName();
+        if (className.contains("$Proxy")) {
+            return false;
+        }
+        for (String prefix : PLATFORM_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        for (String instrumentation : INSTRUMENTATION_CLASSES) {
+            if (className.startsWith(instrumentation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String shortName(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+    }
+
+    // Replace the report file in one move, so it can be tailed or opened at any time.
+    private synchronized void writeReport() {
+        if (reportFile == null) {
+            return;
+        }
+
+        List<Map.Entry<String, CallSite>> sites = new ArrayList<>(callSites.entrySet());
+        sites.sort(Comparator.comparingLong((Map.Entry<String, CallSite> entry) -> entry.getValue().totalNanos).reversed());
+        Path temporary = reportFile.resolveSibling(reportFile.getFileName() + ".tmp");
+
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(String.format(Locale.ROOT,
+                        "FX thread stalls over %d ms, %s to %s%n" +
+                        "Heartbeats %d: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n%n",
+                        Duration.ofNanos(thresholdNanos).toMillis(), started, Instant.now(), pulseLatency.getCount(),
+                        pulseLatency.getValueAtPercentile(0.50) / 1e6, pulseLatency.getValueAtPercentile(0.99) / 1e6,
+                        pulseLatency.getMax() / 1e6));
+                writer.write(String.format(Locale.ROOT, "%8s %12s %10s  %s%n", "stalls", "total ms", "max ms", "call site"));
+
+                for (Map.Entry<String, CallSite> entry : sites) {
+                    CallSite site = entry.getValue();
+                    writer.write(String.format(Locale.ROOT, "%8d %12.1f %10.1f  %s%n",
+                            site.stalls, site.totalNanos / 1e6, site.maxNanos / 1e6, entry.getKey()));
+                }
+
+                for (Map.Entry<String, CallSite> entry : sites) {
+                    writer.write(System.lineSeparator() + entry.getKey() + System.lineSeparator());
+                    for (StackTraceElement frame : entry.getValue().exampleStack) {
+                        writer.write("    at " + frame + System.lineSeparator());
+                    }
+                }
+            }
+            Files.move(temporary, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    // Every stall charged to one call site, and the first stack seen there, trimmed to the frames worth reading.
+    private static class CallSite {
+        private final List<StackTraceElement> exampleStack;
+        private long stalls;
+        private long totalNanos;
+        private long maxNanos;
+
+        private CallSite(StackTraceElement[] stack) {
+            this.exampleStack = Arrays.asList(Arrays.copyOf(stack, Math.min(stack.length, 25)));
+        }
+
+        private synchronized void record(long nanos) {
+            stalls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
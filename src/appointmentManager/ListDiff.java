@@ -0,0 +1,133 @@
+package appointmentManager;
+
+import javafx.collections.ObservableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+// Brings an ObservableList in line with a fresh query result using the fewest add/remove/set operations, so a
+// TableView bound to it keeps its selection and scroll position and only re-renders the rows that actually changed.
+public class ListDiff {
+    // Past this many row changes, one setAll costs the TableView less than a change event for each of them.
+    private static final int MAX_CHANGES = 64;
+
+    private ListDiff() {}
+
+    // Apply the latest rows to target. Rows are matched by key, and a matched row is only replaced when sameContent
+    // reports a difference. When more than MAX_CHANGES rows would change, as when paging to another week, the rows
+    // are swapped in one setAll instead. Returns the number of list operations performed.
+    public static <T, K> int apply(ObservableList<T> target, List<T> latest, Function<T, K> key, BiPredicate<T, T> sameContent) {
+        if (target == latest) {
+            return 0;
+        }
+
+        Set<K> latestKeys = new HashSet<>();
+        for (T item : latest) {
+            latestKeys.add(key.apply(item));
+        }
+
+        // Index the rows being kept by key, and set aside the rows that no longer exist.
+        Map<K, T> existing = new HashMap<>();
+        Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T item : target) {
+            K itemKey = key.apply(item);
+            if (latestKeys.contains(itemKey)) {
+                existing.put(itemKey, item);
+            } else {
+                removed.add(item);
+            }
+        }
+
+        // Pick each row to end up with, the existing one where nothing changed, and count the rows that would be
+        // inserted, replaced or moved. A kept row counts as moved when it is out of step with the rows kept before it.
+        List<T> merged = new ArrayList<>(latest.size());
+        int changes = latest.size() - existing.size();
+        Iterator<T> kept = target.iterator();
+        for (T fresh : latest) {
+            K freshKey = key.apply(fresh);
+            T current = existing.get(freshKey);
+            if (current == null) {
+                merged.add(fresh);
+                continue;
+            }
+
+            T next = null;
+            while (kept.hasNext() && next == null) {
+                next = kept.next();
+                if (removed.contains(next)) {
+                    next = null;
+                }
+            }
+            if (next != current) {
+                changes++;
+            }
+            if (sameContent.test(current, fresh)) {
+                merged.add(current);
+            } else {
+                merged.add(fresh);
+                changes++;
+            }
+        }
+
+        if (changes > MAX_CHANGES) {
+            target.setAll(merged);
+            return 1;
+        }
+
+        int operations = 0;
+        // Drop rows that no longer exist in one batched change.
+        if (!removed.isEmpty()) {
+            target.removeAll(removed);
+            operations++;
+        }
+
+        // Walk the merged rows in order, reusing rows already in place and inserting or moving the rest. There are at
+        // most MAX_CHANGES of the latter, so only they pay for a search or a shift.
+        for (int i = 0; i < merged.size(); i++) {
+            T wanted = merged.get(i);
+            K wantedKey = key.apply(wanted);
+
+            if (i < target.size() && wantedKey.equals(key.apply(target.get(i)))) {
+                if (target.get(i) != wanted) {
+                    target.set(i, wanted);
+                    operations++;
+                }
+                continue;
+            }
+
+            int existingIndex = existing.containsKey(wantedKey) ? indexOfKey(target, key, wantedKey, i + 1) : -1;
+            if (existingIndex >= 0) {
+                target.remove(existingIndex);
+                target.add(i, wanted);
+                operations += 2;
+            } else {
+                target.add(i, wanted);
+                operations++;
+            }
+        }
+
+        if (target.size() > merged.size()) {
+            target.remove(merged.size(), target.size());
+            operations++;
+        }
+
+        return operations;
+    }
+
+    private static <T, K> int indexOfKey(List<T> list, Function<T, K> key, K wanted, int from) {
+        for (int i = from; i < list.size(); i++) {
+            if (wanted.equals(key.apply(list.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
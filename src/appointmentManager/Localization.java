@@ -0,0 +1,82 @@
+package appointmentManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+// Loads every supported ResourceBundle once at startup and flattens it into immutable lookup tables, so fetching a
+// label is a pair of HashMap lookups and switching languages is a single reference swap.
+public class Localization {
+    // The languages offered on the login form, in the order they appear in the combobox.
+    public static final String[] SUPPORTED_LANGUAGES = {"en", "es"};
+    private static final String[] BUNDLE_BASE_NAMES = {"Login", "Customer", "Appointment", "Calendar"};
+
+    // Language code -> bundle base name -> key -> translated string.
+    private final Map<String, Map<String, Map<String, String>>> tables;
+    // Used whenever a Locale outside SUPPORTED_LANGUAGES is requested.
+    private final Map<String, Map<String, String>> fallbackTable;
+    private volatile Map<String, Map<String, String>> currentTable;
+
+    // Preload all bundles for all supported languages and select the table matching the provided Locale. The preload
+    // is timed as a UiAction event, with the tables loaded as its rows.
+    public Localization(Locale initialLocale) {
+        UiActionEvent event = UiActionEvent.begin("preloadLocalization", 0);
+        Map<String, Map<String, Map<String, String>>> loadedTables = new HashMap<>();
+
+        for (String language : SUPPORTED_LANGUAGES) {
+            Map<String, Map<String, String>> languageTable = new HashMap<>();
+            for (String bundleBaseName : BUNDLE_BASE_NAMES) {
+                languageTable.put(bundleBaseName, flatten(ResourceBundle.getBundle("resources/" + bundleBaseName, new Locale(language))));
+            }
+            loadedTables.put(language, Collections.unmodifiableMap(languageTable));
+        }
+
+        tables = Collections.unmodifiableMap(loadedTables);
+        fallbackTable = tables.getOrDefault(Locale.getDefault().getLanguage(), tables.get(SUPPORTED_LANGUAGES[0]));
+        currentTable = tableFor(initialLocale);
+        event.finish((long) SUPPORTED_LANGUAGES.length * BUNDLE_BASE_NAMES.length);
+    }
+
+    // Swap the active table. Every subsequent get(bundle, key) call resolves against the new language.
+    public void setLocale(Locale locale) {
+        currentTable = tableFor(locale);
+    }
+
+    // Fetch the translation of a key from the specified bundle for the active language.
+    public String get(String bundleBaseName, String key) {
+        return lookup(currentTable, bundleBaseName, key);
+    }
+
+    // Fetch the translation of a key from the specified bundle for an explicit Locale.
+    public String get(Locale locale, String bundleBaseName, String key) {
+        return lookup(tableFor(locale), bundleBaseName, key);
+    }
+
+    private Map<String, Map<String, String>> tableFor(Locale locale) {
+        return tables.getOrDefault(locale.getLanguage(), fallbackTable);
+    }
+
+    // Mirror ResourceBundle.getString() semantics so a missing key still fails loudly.
+    private String lookup(Map<String, Map<String, String>> table, String bundleBaseName, String key) {
+        Map<String, String> bundle = table.get(bundleBaseName);
+        String value = bundle == null ? null : bundle.get(key);
+
+        if (value == null) {
+            throw new MissingResourceException("Can't find resource for bundle " + bundleBaseName + ", key " + key, bundleBaseName, key);
+        }
+
+        return value;
+    }
+
+    // keySet() includes keys inherited from parent bundles, so the flattened table already has the base-bundle fallbacks.
+    private static Map<String, String> flatten(ResourceBundle rb) {
+        Map<String, String> flattened = new HashMap<>();
+        for (String key : rb.keySet()) {
+            flattened.put(key, rb.getString(key));
+        }
+        return Collections.unmodifiableMap(flattened);
+    }
+}
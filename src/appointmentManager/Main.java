@@ -1,7 +1,12 @@
 package appointmentManager;
 
-import DAO.MySQL;
+import DAO.OverlapException;
+import DAO.Repository;
+import DAO.UnitOfWork;
+import DAO.UpdateConflictException;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.Scene;
@@ -9,10 +14,10 @@ import javafx.scene.control.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import java.io.*;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
@@ -20,6 +25,8 @@ import java.time.format.DateTimeParseException;
 import java.time.format.TextStyle;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /*
     Author: Jonathan Knight
@@ -65,13 +72,32 @@ import java.util.*;
  */
 
 public class Main extends Application {
-    // Define the business hours. No appointments can be created outside these hours.
-    final LocalTime BUSINESS_HOURS_START = LocalTime.parse("09:00 AM", DateTimeFormatter.ofPattern("HH:mm a"));
-    final LocalTime BUSINESS_HOURS_END = LocalTime.parse("06:00 PM", DateTimeFormatter.ofPattern("hh:mm a"));
-    // This is the DAO object that will allow us to interact with the database.
-    MySQL conn = new MySQL();
+    // The business hours of each location and consultant, from calendars.properties. No appointments can be created
+    // outside them.
+    final BusinessCalendars calendars = BusinessCalendars.load();
+    // The choices offered when changing one occurrence of a recurring series.
+    final ButtonType THIS_OCCURRENCE = new ButtonType("This occurrence");
+    final ButtonType THIS_AND_FOLLOWING = new ButtonType("This and following");
+    final ButtonType WHOLE_SERIES = new ButtonType("Whole series");
+    // The fields of each edit form, in the order they are merged when someone else saved the record first.
+    static final List<String> CUSTOMER_FIELDS = List.of("Name", "Address", "Address 2", "City", "Country", "Postal Code", "Phone");
+    static final List<String> APPOINTMENT_FIELDS = List.of("Customer", "Title", "Description", "Location", "Contact", "Type", "URL", "Start", "End");
+    // Opens the database in the background while the login form is shown, and preloads reference data after login.
+    StartupOrchestrator startup = new StartupOrchestrator();
+    // This is the DAO object that will allow us to interact with the database. It is handed over by the startup
+    // orchestrator once the background connection has been established.
+    Repository conn;
+    // Reports every time the FX thread is blocked for more than 250 ms, and what it was blocked in, to FxStalls.txt.
+    FxStallWatchdog watchdog = new FxStallWatchdog(Duration.ofMillis(250), Duration.ofMinutes(5), Paths.get("FxStalls.txt"));
+    // All translated strings, preloaded once so labels and language switches never go back to ResourceBundle.
+    Localization localization = new Localization(Locale.getDefault());
     // This object allows us easy access to the currently logged in user's data everywhere in the program.
     User currentUser;
+    // Reference data hydrated in parallel right after login. The customer and contact lists are kept current by the
+    // forms that change them, and the username directory saves a query per rendered table cell.
+    Map<Integer, String> usernameDirectory = Collections.emptyMap();
+    ObservableList<String> contacts = FXCollections.observableArrayList();
+    ObservableList<Customer> customers = FXCollections.observableArrayList();
     // As mutiple alerts are used throughout the program, it became more efficient to define a global object and customize
     // the message as necessary.
     Alert alert = new Alert(Alert.AlertType.NONE);
@@ -83,11 +109,19 @@ public class Main extends Application {
 
     @Override
     public void start(Stage primaryStage) {
+        watchdog.start();
+
         // Display the login form and store the resulting user in the global variable for easy access later.
         currentUser = displayLogin();
 
         // This if statement prevents the main form from loading if the login form is manually closed prior to login.
         if(null != currentUser.getUsername()) {
+            // Fetch the month view, username directory, contacts and customers in parallel.
+            StartupOrchestrator.ReferenceData referenceData = startup.hydrate(currentUser.getId(), startDate[0], endDate[0]);
+            usernameDirectory = referenceData.getUsernames();
+            contacts = referenceData.getContacts();
+            customers = referenceData.getCustomers();
+
             // Define/initialize controls and necessary variables for the main form
             GridPane gpRoot = new GridPane();
             Scene scene = new Scene(gpRoot, 775, 500);
@@ -95,7 +129,7 @@ public class Main extends Application {
                     "Month",
                     "Week"
             );
-            Button btnViewCustomers = new Button(getLocaleString(Locale.getDefault(), "Calendar", "btnViewCustomers"));
+            Button btnViewCustomers = new Button(localization.get("Calendar", "btnViewCustomers"));
             Label lblViewAppointments = new Label("View Appointments By:");
             ComboBox<String> cbViewAppointments = new ComboBox<>(olViewAppointments);
             Button btnNext = new Button("Next");
@@ -103,6 +137,8 @@ public class Main extends Application {
             Button btnNewAppointment = new Button("New Appointment");
             Button btnModifyAppointment = new Button("Modify Appointment");
             Button btnDeleteAppointment = new Button("Delete Appointment");
+            Button btnFindFreeTime = new Button("Find Free Time");
+            Button btnAutoSchedule = new Button("Schedule Requests");
             Label lblReports = new Label("Reports:");
             Button btnReportType = new Button("Appointments By Month");
             Button btnConsultantReport = new Button("Appointments By Consultant");
@@ -114,32 +150,47 @@ public class Main extends Application {
 
             // Set layout and style for the main GridPane
             gpRoot.getStyleClass().add("gridpane");
-            gpRoot.add(new VBox(20, btnNewAppointment, btnModifyAppointment, btnDeleteAppointment, btnViewCustomers, new VBox(10, lblViewAppointments, cbViewAppointments)), 0, 0);
+            gpRoot.add(new VBox(20, btnNewAppointment, btnModifyAppointment, btnDeleteAppointment, btnFindFreeTime, btnAutoSchedule, btnViewCustomers, new VBox(10, lblViewAppointments, cbViewAppointments)), 0, 0);
             gpRoot.add(new VBox(20, lblReports, btnReportType, btnConsultantReport, btnContactReport), 0, 1);
-            gpRoot.add(new VBox(10, tvAppointment, new HBox(10, btnLast, lblDateRange, btnNext)), 1, 0);
 
             // Initialize the Appointments TableView to the default timespan.
-            tvAppointment.setItems(conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+            tvAppointment.setItems(referenceData.getAppointments());
             tvAppointment.setMaxHeight(250);
 
+            // The calendar grid renders the same backing list as the table, so every refresh reaches both views.
+            CalendarGrid cgAppointment = new CalendarGrid(tvAppointment.getItems());
+            cgAppointment.setRange(startDate[0], endDate[0]);
+            cgAppointment.setMaxHeight(250);
+            // Selecting a block in the grid selects the same appointment in the table, so Modify/Delete work from either view.
+            cgAppointment.selectedAppointmentProperty().addListener((observable, oldValue, newValue) -> {
+                tvAppointment.getSelectionModel().select(newValue);
+            });
+            TabPane tpAppointments = new TabPane(new Tab("Table", tvAppointment), new Tab("Calendar", cgAppointment));
+            tpAppointments.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+            gpRoot.add(new VBox(10, tpAppointments, new HBox(10, btnLast, lblDateRange, btnNext)), 1, 0);
+
             // Auto select the first option in the combobox to avoid blanks.
             cbViewAppointments.getSelectionModel().select(0);
             // When the appointments view is changed, update the timespan and view accordingly.
             cbViewAppointments.getSelectionModel().selectedItemProperty().addListener((options, oldValue, newValue) -> {
+                UiActionEvent event = UiActionEvent.begin("changeView", currentUser.getId());
                 if (newValue.equals("Month")) {
                     startDate[0] = LocalDate.now().withDayOfMonth(1);
                     endDate[0] = startDate[0].with(TemporalAdjusters.lastDayOfMonth());
                 } else if (newValue.equals("Week")) {
                     startDate[0] = LocalDate.now().with(DayOfWeek.MONDAY);
-                    endDate[0] = startDate[0].plusDays(7);
+                    endDate[0] = startDate[0].plusDays(6);
                 }
 
                 lblDateRange.setText(startDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")) + " - " + endDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")));
-                tvAppointment.setItems(conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                cgAppointment.setRange(startDate[0], endDate[0]);
+                applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                event.finish(startDate[0], endDate[0], tvAppointment.getItems().size());
             });
 
             // When the "Last" button is clicked, decrease the timespan by the currently desired amount.
             btnLast.setOnAction(e -> {
+                UiActionEvent event = UiActionEvent.begin("pageLast", currentUser.getId());
                 if (cbViewAppointments.getValue().equals("Month")) {
                     startDate[0] = startDate[0].minusMonths(1);
                     endDate[0] = endDate[0].minusMonths(1);
@@ -149,11 +200,14 @@ public class Main extends Application {
                 }
 
                 lblDateRange.setText(startDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")) + " - " + endDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")));
-                tvAppointment.setItems(conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                cgAppointment.setRange(startDate[0], endDate[0]);
+                applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                event.finish(startDate[0], endDate[0], tvAppointment.getItems().size());
             });
 
             // When the "Next" button is clicked, increase the timespan by the currently desired amount.
             btnNext.setOnAction(e -> {
+                UiActionEvent event = UiActionEvent.begin("pageNext", currentUser.getId());
                 if (cbViewAppointments.getValue().equals("Month")) {
                     startDate[0] = startDate[0].plusMonths(1);
                     endDate[0] = endDate[0].plusMonths(1);
@@ -163,18 +217,20 @@ public class Main extends Application {
                 }
 
                 lblDateRange.setText(startDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")) + " - " + endDate[0].format(DateTimeFormatter.ofPattern("MM/d/yyyy")));
-                tvAppointment.setItems(conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                cgAppointment.setRange(startDate[0], endDate[0]);
+                applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                event.finish(startDate[0], endDate[0], tvAppointment.getItems().size());
             });
 
             // Display the new appointment form.
             btnNewAppointment.setOnAction(e -> {
-                tvAppointment.setItems(displayAppointment(null));
+                applyAppointments(tvAppointment, displayAppointment(null));
             });
 
             // If user has selected an appointment from the TableView, display the edit appointment form.
             btnModifyAppointment.setOnAction(e -> {
                 if (tvAppointment.getSelectionModel().getSelectedItem() != null) {
-                    tvAppointment.setItems(displayAppointment(tvAppointment.getSelectionModel().getSelectedItem()));
+                    applyAppointments(tvAppointment, displayAppointment(tvAppointment.getSelectionModel().getSelectedItem()));
                 } else {
                     Alert alert = new Alert(Alert.AlertType.INFORMATION);
                     alert.setTitle("No Selection");
@@ -191,11 +247,35 @@ public class Main extends Application {
                     alert.setTitle("Confirm Deletion");
                     alert.setHeaderText("Are you sure you wish to delete this appointment?");
 
+                    Appointment selected = tvAppointment.getSelectionModel().getSelectedItem();
+                    // For an occurrence of a series, the answer is how much of the series to delete.
+                    if (selected.isRecurring()) {
+                        alert.setContentText("This appointment is one occurrence of a recurring series.");
+                        alert.getButtonTypes().setAll(THIS_OCCURRENCE, THIS_AND_FOLLOWING, WHOLE_SERIES, ButtonType.CANCEL);
+                    }
+
                     Optional<ButtonType> result = alert.showAndWait();
-                    if (result.get() == ButtonType.OK) {
+                    if (result.isPresent() && result.get() != ButtonType.CANCEL) {
                         try {
-                            conn.deleteAppointment(tvAppointment.getSelectionModel().getSelectedItem().getId());
-                            tvAppointment.setItems(conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                            if (result.get() == THIS_OCCURRENCE) {
+                                conn.cancelOccurrence(selected.getId(), selected.getStart().toLocalDateTime(), selected.getVersion(), currentUser.getUsername());
+                            } else if (result.get() == THIS_AND_FOLLOWING) {
+                                conn.endSeriesBefore(selected.getId(), selected.getStart().toLocalDateTime(), selected.getVersion(), currentUser.getUsername());
+                            } else {
+                                // A one-off or the whole series, only as the calendar showed it.
+                                conn.deleteAppointment(selected.getId(), selected.getVersion());
+                            }
+                            applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+                        } catch (UpdateConflictException uce) {
+                            // The series changed since the calendar was read; show it as it now is and let the user decide again.
+                            Alert conflict = new Alert(Alert.AlertType.ERROR);
+                            conflict.setTitle(uce.isDeleted() ? "Deleted" : "Changed");
+                            conflict.setHeaderText(uce.isDeleted()
+                                    ? "This appointment was deleted by someone else."
+                                    : "This appointment was changed by someone else since the calendar was shown.");
+                            conflict.setContentText("Nothing was deleted. The calendar has been refreshed.");
+                            conflict.showAndWait();
+                            applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
                         } catch (SQLException sqle) {
                             sqle.printStackTrace();
                         }
@@ -211,12 +291,14 @@ public class Main extends Application {
 
             // Display an Alert box that details the number appointments by type for the current month.
             btnReportType.setOnAction(e -> {
+                UiActionEvent event = UiActionEvent.begin("typeReport", currentUser.getId());
                 String alertBody = null;
                 try {
                     alertBody = conn.getAppointmentsByType();
                 } catch (SQLException sqle) {
                     sqle.printStackTrace();
                 }
+                event.finish(alertBody == null ? 0 : alertBody.lines().count());
 
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Appointment Types By Month");
@@ -228,6 +310,18 @@ public class Main extends Application {
                 alert.showAndWait();
             });
 
+            // Search for open slots across consultants; anything booked from there shows up in the table afterwards.
+            btnFindFreeTime.setOnAction(e -> {
+                displayAvailability();
+                applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+            });
+
+            // Place a whole list of requests across consultants at once.
+            btnAutoSchedule.setOnAction(e -> {
+                displayAutoSchedule();
+                applyAppointments(tvAppointment, conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId()));
+            });
+
             // Display a report form that details the appointments for each user in the database.
             btnConsultantReport.setOnAction(e -> {
                 displayConsultantReport();
@@ -247,32 +341,33 @@ public class Main extends Application {
             primaryStage.setTitle("Appointment Manager");
             primaryStage.setScene(scene);
             primaryStage.show();
+            startup.markInteractive();
         }
     }
 
     // We override the stop() method of the Application class so we can clean up any residual connections when the app closes
     @Override
     public void stop(){
-        conn.close();
+        watchdog.stop();
+        startup.shutdown();
     }
 
     // The login form. This is the first page seen by the user.
     public User displayLogin() {
         // Define necssary controls and variables.
-        final String[] ACCEPTED_LANGUAGES = {"en", "es"};
         User userToReturn = new User();
         Stage loginStage = new Stage();
         GridPane gpRoot = new GridPane();
         Scene scene = new Scene(gpRoot, 350, 275);
-        Label lblLoginHeading = new Label(getLocaleString(Locale.getDefault(), "Login", "heading"));
-        Label lblUsername = new Label(getLocaleString(Locale.getDefault(), "Login", "username"));
+        Label lblLoginHeading = new Label(localization.get("Login", "heading"));
+        Label lblUsername = new Label(localization.get("Login", "username"));
         TextField tfUsername = new TextField();
-        Label lblPassword = new Label(getLocaleString(Locale.getDefault(), "Login", "password"));
+        Label lblPassword = new Label(localization.get("Login", "password"));
         PasswordField tfPassword = new PasswordField();
-        Label lblLanguage = new Label(getLocaleString(Locale.getDefault(), "Login", "language"));
-        ComboBox<String> cbLanguage = new ComboBox(FXCollections.observableArrayList(ACCEPTED_LANGUAGES));
-        Button btnSubmit = new Button(getLocaleString(Locale.getDefault(), "Login", "btnSubmit"));
-        DateTimeFormatter dtfDisplayDates = DateTimeFormatter.ofPattern("MM/d/yyyy h:mm a");
+        Label lblLanguage = new Label(localization.get("Login", "language"));
+        ComboBox<String> cbLanguage = new ComboBox(FXCollections.observableArrayList(Localization.SUPPORTED_LANGUAGES));
+        Button btnSubmit = new Button(localization.get("Login", "btnSubmit"));
+        DateTimeFormatter dtfDisplayDates = Appointment.DISPLAY_FORMAT;
 
         // Bring in the stylesheet
         scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
@@ -298,11 +393,12 @@ public class Main extends Application {
         // Update the default Locale and update labels to reflect new language when combobox selection changes.
         cbLanguage.getSelectionModel().selectedItemProperty().addListener((options, oldValue, newValue) -> {
             Locale.setDefault(Locale.forLanguageTag(newValue));
-            lblLoginHeading.setText(getLocaleString(new Locale(newValue), "Login", "heading"));
-            lblUsername.setText(getLocaleString(new Locale(newValue), "Login", "username"));
-            lblPassword.setText(getLocaleString(new Locale(newValue), "Login", "password"));
-            lblLanguage.setText(getLocaleString(new Locale(newValue), "Login", "language"));
-            btnSubmit.setText(getLocaleString(new Locale(newValue), "Login", "btnSubmit"));
+            localization.setLocale(Locale.forLanguageTag(newValue));
+            lblLoginHeading.setText(localization.get("Login", "heading"));
+            lblUsername.setText(localization.get("Login", "username"));
+            lblPassword.setText(localization.get("Login", "password"));
+            lblLanguage.setText(localization.get("Login", "language"));
+            btnSubmit.setText(localization.get("Login", "btnSubmit"));
         });
 
         btnSubmit.setPrefSize(300, 50);
@@ -315,6 +411,8 @@ public class Main extends Application {
             // If the user actually entered data...
             if(!username.isEmpty() && !password.isEmpty()) {
                 try {
+                    // The connection has been opening in the background while the form was shown.
+                    conn = startup.awaitConnection();
                     // Determine if a user account exists for the credentials provided.
                     Integer userId = conn.checkUser(username, password);
 
@@ -334,11 +432,11 @@ public class Main extends Application {
                         if(null != upcomingAppointment) {
                             alert.setAlertType(Alert.AlertType.INFORMATION);
                             alert.setTitle("Info");
-                            alert.setHeaderText(getLocaleString(Locale.getDefault(), "Login", "infoAppointment1"));
+                            alert.setHeaderText(localization.get("Login", "infoAppointment1"));
                             alert.setContentText(
-                                getLocaleString(Locale.getDefault(), "Login", "infoAppointment2") + ":    " + upcomingAppointment.getTitle() + "\n" +
-                                getLocaleString(Locale.getDefault(), "Login", "infoAppointment3") + ":    " + upcomingAppointment.getStart().format(dtfDisplayDates) + "\n" +
-                                getLocaleString(Locale.getDefault(), "Login", "infoAppointment4") + ":    " + upcomingAppointment.getEnd().format(dtfDisplayDates) + "\n"
+                                localization.get("Login", "infoAppointment2") + ":    " + upcomingAppointment.getTitle() + "\n" +
+                                localization.get("Login", "infoAppointment3") + ":    " + upcomingAppointment.getStart().format(dtfDisplayDates) + "\n" +
+                                localization.get("Login", "infoAppointment4") + ":    " + upcomingAppointment.getEnd().format(dtfDisplayDates) + "\n"
                             );
                             alert.showAndWait();
                         }
@@ -348,20 +446,30 @@ public class Main extends Application {
                         alert.setAlertType(Alert.AlertType.ERROR);
                         alert.setTitle("Error");
                         alert.setHeaderText(null);
-                        alert.setContentText(getLocaleString(Locale.getDefault(), "Login", "errNoMatch"));
+                        alert.setContentText(localization.get("Login", "errNoMatch"));
                         alert.showAndWait();
                     }
                 } catch (SQLException sqle) {
                     sqle.printStackTrace();
+                } catch (CompletionException ce) {
+                    // The backend couldn't be opened at all, say with no db.properties, so say why.
+                    alert.setAlertType(Alert.AlertType.ERROR);
+                    alert.setTitle("Error");
+                    alert.setHeaderText(null);
+                    alert.setContentText(ce.getCause().getMessage());
+                    alert.showAndWait();
                 }
             } else {
                 alert.setAlertType(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
-                alert.setContentText(getLocaleString(Locale.getDefault(), "Login", "errBlank"));
+                alert.setContentText(localization.get("Login", "errBlank"));
                 alert.showAndWait();
             }
         });
 
+        // Record when the first frame is actually on screen for the startup report.
+        loginStage.setOnShown(e -> startup.markFirstFrame());
+
         loginStage.setTitle("Login");
         loginStage.setScene(scene);
         loginStage.showAndWait();
@@ -373,21 +481,22 @@ public class Main extends Application {
     public TableView<Customer> buildCustomerTable() {
         TableView<Customer> tvCustomers = new TableView<>();
 
-        TableColumn<Customer, String> column1 = new TableColumn<>("Id");
-        column1.setCellValueFactory(new PropertyValueFactory<>("id"));
+        // Lambdas hand the cells each Customer's own property, avoiding reflective lookups per cell.
+        TableColumn<Customer, Number> column1 = new TableColumn<>("Id");
+        column1.setCellValueFactory(cell -> cell.getValue().idProperty());
 
         TableColumn<Customer, String> column2 = new TableColumn<>("Name");
-        column2.setCellValueFactory(new PropertyValueFactory<>("name"));
+        column2.setCellValueFactory(cell -> cell.getValue().nameProperty());
 
         TableColumn<Customer, String> column3 = new TableColumn<>("Address");
-        column3.setCellValueFactory(new PropertyValueFactory<>("address"));
+        column3.setCellValueFactory(cell -> cell.getValue().addressProperty());
 
         TableColumn<Customer, String> column4 = new TableColumn<>("Phone Number");
-        column4.setCellValueFactory(new PropertyValueFactory<>("phone"));
+        column4.setCellValueFactory(cell -> cell.getValue().phoneProperty());
 
         tvCustomers.getColumns().addAll(column1,column2,column3,column4);
 
-        tvCustomers.setItems(conn.getAllCustomers());
+        tvCustomers.setItems(customers);
 
         return tvCustomers;
     }
@@ -395,68 +504,48 @@ public class Main extends Application {
     // Builds and formats the appointment table as needed, including formatting readable datetimes.
     public TableView<Appointment> buildAppointmentTable() {
         TableView<Appointment> tvAppointment = new TableView<Appointment>();
-        DateTimeFormatter dtfDisplayDates = DateTimeFormatter.ofPattern("MM/d/yyyy h:mm a");
 
-        TableColumn<Appointment, String> column1 = new TableColumn<>("Id");
-        column1.setCellValueFactory(new PropertyValueFactory<>("id"));
+        // Lambdas hand the cells each Appointment's own property, avoiding reflective lookups per cell.
+        TableColumn<Appointment, Number> column1 = new TableColumn<>("Id");
+        column1.setCellValueFactory(cell -> cell.getValue().idProperty());
 
-        TableColumn<Appointment, Integer> column2 = new TableColumn<>("User");
-        column2.setCellValueFactory(new PropertyValueFactory<>("userId"));
+        TableColumn<Appointment, Number> column2 = new TableColumn<>("User");
+        column2.setCellValueFactory(cell -> cell.getValue().userIdProperty());
         // Custom Lambda expression that translates the userId into a human readable username
         column2.setCellFactory(column -> new TableCell<>() {
             @Override
-            protected void updateItem(Integer item, boolean empty) {
+            protected void updateItem(Number item, boolean empty) {
                 super.updateItem(item, empty);
 
                 if (item == null || empty) {
                     setText(null);
                 } else {
-                    try {
-                        setText(conn.getUsername(item));
-                    } catch (SQLException sqle) {
-                        sqle.printStackTrace();
+                    String username = usernameDirectory.get(item.intValue());
+                    // Only users created after login are missing from the directory.
+                    if (username == null) {
+                        try {
+                            username = conn.getUsername(item.intValue());
+                        } catch (SQLException sqle) {
+                            sqle.printStackTrace();
+                        }
                     }
+                    setText(username);
                 }
             }
         });
 
         TableColumn<Appointment, String> column3 = new TableColumn<>("Title");
-        column3.setCellValueFactory(new PropertyValueFactory<>("title"));
+        column3.setCellValueFactory(cell -> cell.getValue().titleProperty());
 
         TableColumn<Appointment, String> column4 = new TableColumn<>("Type");
-        column4.setCellValueFactory(new PropertyValueFactory<>("type"));
+        column4.setCellValueFactory(cell -> cell.getValue().typeProperty());
 
-        TableColumn<Appointment, ZonedDateTime> column5 = new TableColumn<>("Start");
-        column5.setCellValueFactory(new PropertyValueFactory<>("start"));
-        // Custom Lambda that formats the date columns to be human readable.
-        column5.setCellFactory(column -> new TableCell<>() {
-            @Override
-            protected void updateItem(ZonedDateTime item, boolean empty) {
-                super.updateItem(item, empty);
-
-                if (item == null || empty) {
-                    setText(null);
-                } else {
-                    setText(item.format(dtfDisplayDates));
-                }
-            }
-        });
-
-        TableColumn<Appointment, ZonedDateTime> column6 = new TableColumn<>("End");
-        column6.setCellValueFactory(new PropertyValueFactory<>("end"));
-        // Custom Lambda that formats the date columns to be human readable.
-        column6.setCellFactory(column -> new TableCell<>() {
-            @Override
-            protected void updateItem(ZonedDateTime item, boolean empty) {
-                super.updateItem(item, empty);
+        // The date columns use the human readable strings each Appointment precomputes when its times change.
+        TableColumn<Appointment, String> column5 = new TableColumn<>("Start");
+        column5.setCellValueFactory(cell -> cell.getValue().startDisplayProperty());
 
-                if (item == null || empty) {
-                    setText(null);
-                } else {
-                    setText(item.format(dtfDisplayDates));
-                }
-            }
-        });
+        TableColumn<Appointment, String> column6 = new TableColumn<>("End");
+        column6.setCellValueFactory(cell -> cell.getValue().endDisplayProperty());
 
         tvAppointment.getColumns().addAll(column1, column2, column3, column4, column5, column6);
         tvAppointment.setMinWidth(525);
@@ -464,6 +553,17 @@ public class Main extends Application {
         return tvAppointment;
     }
 
+    // Apply a fresh appointment query to the table's existing backing list, so only changed rows are re-rendered and
+    // the selection and scroll position survive the refresh.
+    public void applyAppointments(TableView<Appointment> tvAppointment, List<Appointment> latest) {
+        ListDiff.apply(tvAppointment.getItems(), latest, Appointment::getKey, Appointment::sameContent);
+    }
+
+    // Apply a fresh customer query to the shared customer list that every customer table is bound to.
+    public void applyCustomers(List<Customer> latest) {
+        ListDiff.apply(customers, latest, Customer::getId, Customer::sameContent);
+    }
+
     // Display a pop-up window containing a TableView of all customers in the database.
     public void displayCustomers() {
         // Define necessary controls and variables.
@@ -485,13 +585,13 @@ public class Main extends Application {
 
         // Display the form to add a new customer.
         btnAdd.setOnAction(e -> {
-            tvCustomer.setItems(displayViewCustomer(null));
+            displayViewCustomer(null);
         });
 
         // If a customer is selected in the TableView, launch the form to edit that customer.
         btnEdit.setOnAction(e -> {
             if(tvCustomer.getSelectionModel().getSelectedItem() != null) {
-                tvCustomer.setItems(displayViewCustomer(tvCustomer.getSelectionModel().getSelectedItem()));
+                displayViewCustomer(tvCustomer.getSelectionModel().getSelectedItem());
             }  else {
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("No Selection");
@@ -513,7 +613,7 @@ public class Main extends Application {
                 if (result.get() == ButtonType.OK){
                     try {
                         conn.deleteCustomer(tvCustomer.getSelectionModel().getSelectedItem().getId());
-                        tvCustomer.setItems(conn.getAllCustomers());
+                        applyCustomers(conn.getAllCustomers());
                     } catch (SQLException sqle) {
                         sqle.printStackTrace();
                     }
@@ -537,22 +637,24 @@ public class Main extends Application {
         Stage customersStage = new Stage();
         GridPane gpRoot = new GridPane();
         Scene scene = new Scene(gpRoot, 450, 500);
-        Label lblName = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblName"));
+        Label lblName = new Label(localization.get("Customer", "lblName"));
         TextField tfName = new TextField();
-        Label lblAddress = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblAddress"));
+        Label lblAddress = new Label(localization.get("Customer", "lblAddress"));
         TextField tfAddress = new TextField();
-        Label lblAddress2 = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblAddress2"));
+        Label lblAddress2 = new Label(localization.get("Customer", "lblAddress2"));
         TextField tfAddress2 = new TextField();
-        Label lblCity = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblCity"));
+        Label lblCity = new Label(localization.get("Customer", "lblCity"));
         TextField tfCity = new TextField();
-        Label lblCountry = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblCountry"));
+        Label lblCountry = new Label(localization.get("Customer", "lblCountry"));
         TextField tfCountry = new TextField();
-        Label lblPostalCode = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblPostalCode"));
+        Label lblPostalCode = new Label(localization.get("Customer", "lblPostalCode"));
         TextField tfPostalCode = new TextField();
-        Label lblPhone = new Label(getLocaleString(Locale.getDefault(), "Customer", "lblPhone"));
+        Label lblPhone = new Label(localization.get("Customer", "lblPhone"));
         TextField tfPhone = new TextField();
-        Button btnSave = new Button(getLocaleString(Locale.getDefault(), "Customer", "btnSave"));
-        Button btnCancel = new Button(getLocaleString(Locale.getDefault(), "Customer", "btnCancel"));
+        Button btnSave = new Button(localization.get("Customer", "btnSave"));
+        Button btnCancel = new Button(localization.get("Customer", "btnCancel"));
+        // The stored customer these edits apply to. A merge after a conflicting save moves it on to that save.
+        Customer[] base = {currentCustomer};
 
         // Bring in the stylesheet
         scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
@@ -604,41 +706,53 @@ public class Main extends Application {
                     !tfPhone.getText().isEmpty()
             ) {
                 if(tfPhone.getText().matches("^\\([0-9]{3}\\) [0-9]{3}-[0-9]{4}$")) {
+                    UiActionEvent event = UiActionEvent.begin("saveCustomer", currentUser.getId());
                     // If a Customer wasn't passed in...
                     if (currentCustomer == null) {
                         try {
-                            // If a country with this name already exists, grab it's ID, else create it and return the newly created ID
-                            int countryId = conn.insertCountry(tfCountry.getText(), currentUser.getUsername());
-                            // If a city with this name already exists, grab it's ID, else create it and return the newly created ID
-                            int cityId = conn.insertCity(tfCity.getText(), countryId, currentUser.getUsername());
-                            // If an address with these details already exists, grab it's ID, else create it and return the newly created ID
-                            int addressId = conn.insertAddress(tfAddress.getText(), tfAddress2.getText(), cityId, tfPostalCode.getText(), tfPhone.getText(), currentUser.getUsername());
-                            // Create a new Customer using the data provided in the form.
-                            conn.insertCustomer(tfName.getText(), addressId, currentUser.getUsername());
+                            // The country, city and address are looked up or created along with the Customer, in one
+                            // transaction.
+                            conn.commit(new UnitOfWork(currentUser.getUsername()).insertCustomer(customerFromForm(0, tfName, tfAddress,
+                                    tfAddress2, tfCity, tfCountry, tfPostalCode, tfPhone)));
                         } catch (SQLException sqle) {
                             sqle.printStackTrace();
                         }
                     } else {
                         try {
-                            // In order to do a cascading update, we query all the IDs associated to the customer either directly,
-                            // or indirectly.
-                            ResultSet rsCustomer = conn.getIdsForCustomer(currentCustomer.getId());
-                            // Move ResultSet pointer to index that actually contains data.
-                            rsCustomer.next();
-                            // Initialize all id variables.
-                            int countryId = rsCustomer.getInt("countryId");
-                            int cityId = rsCustomer.getInt("cityId");
-                            int addressId = rsCustomer.getInt("addressId");
-
-                            // Update all data in the database.
-                            conn.updateCountry(tfCountry.getText(), countryId, currentUser.getUsername());
-                            conn.updateCity(tfCity.getText(), cityId, currentUser.getUsername());
-                            conn.updateAddress(tfAddress.getText(), tfAddress2.getText(), tfPostalCode.getText(), tfPhone.getText(), addressId, currentUser.getUsername());
-                            conn.updateCustomer(tfName.getText(), currentCustomer.getId(), currentUser.getUsername());
+                            // base carries the address, city and country ids the form was opened with, so the rows that
+                            // changed are written in one transaction without looking the ids up again. The customer row
+                            // only updates if nobody else saved it since, and otherwise nothing is written.
+                            conn.commit(new UnitOfWork(currentUser.getUsername()).updateCustomer(base[0], customerFromForm(currentCustomer.getId(),
+                                    tfName, tfAddress, tfAddress2, tfCity, tfCountry, tfPostalCode, tfPhone)));
+                        } catch (UpdateConflictException uce) {
+                            event.finish(0);
+                            if (uce.isDeleted()) {
+                                showDeleted("customer");
+                                customersStage.close();
+                                return;
+                            }
+
+                            Customer current = uce.getCurrentCustomer();
+                            List<String> mine = Arrays.asList(tfName.getText(), tfAddress.getText(), tfAddress2.getText(), tfCity.getText(),
+                                    tfCountry.getText(), tfPostalCode.getText(), tfPhone.getText());
+                            List<String> merged = displayMerge("customer",
+                                    new ThreeWayMerge(CUSTOMER_FIELDS, customerFields(base[0]), mine, customerFields(current)));
+                            if (merged != null) {
+                                base[0] = current;
+                                tfName.setText(merged.get(0));
+                                tfAddress.setText(merged.get(1));
+                                tfAddress2.setText(merged.get(2));
+                                tfCity.setText(merged.get(3));
+                                tfCountry.setText(merged.get(4));
+                                tfPostalCode.setText(merged.get(5));
+                                tfPhone.setText(merged.get(6));
+                            }
+                            return;
                         } catch (SQLException sqle) {
                             sqle.printStackTrace();
                         }
                     }
+                    event.finish(1);
 
                     alert.setAlertType(Alert.AlertType.INFORMATION);
                     alert.setTitle("Saved");
@@ -663,41 +777,56 @@ public class Main extends Application {
         customersStage.setScene(scene);
         customersStage.showAndWait();
 
-        return conn.getAllCustomers();
+        applyCustomers(conn.getAllCustomers());
+        return customers;
     }
 
     // Display a form which can be used to either edit or create appointment(s) depending upon the data passed.
     public ObservableList<Appointment> displayAppointment(Appointment currentAppointment) {
-        ObservableList<Customer> olCustomer = conn.getAllCustomers();
+        return displayAppointment(currentAppointment, null, null);
+    }
+
+    // The same form, with a new appointment's times filled in from slotStart and slotEnd when they are given.
+    public ObservableList<Appointment> displayAppointment(Appointment currentAppointment, LocalDateTime slotStart, LocalDateTime slotEnd) {
+        ObservableList<Customer> olCustomer = customers;
         DateTimeFormatter dfTime = DateTimeFormatter.ofPattern("h:mm a");
-        DateTimeFormatter dtfDisplayDates = DateTimeFormatter.ofPattern("MM/d/yyyy h:mm a");
+        DateTimeFormatter dtfDisplayDates = Appointment.DISPLAY_FORMAT;
         Stage appointmentStage = new Stage();
         GridPane gpRoot = new GridPane();
         Scene scene = new Scene(gpRoot, 450, 600);
-        Label lblCustomer = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblCustomer"));
+        Label lblCustomer = new Label(localization.get("Appointment", "lblCustomer"));
         ComboBox<String> cbCustomer = new ComboBox<>();
-        Label lblTitle = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblTitle"));
+        Label lblTitle = new Label(localization.get("Appointment", "lblTitle"));
         TextField tfTitle = new TextField();
-        Label lblDescription = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblDescription"));
+        Label lblDescription = new Label(localization.get("Appointment", "lblDescription"));
         TextField tfDescription = new TextField();
-        Label lblLocation = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblLocation"));
+        Label lblLocation = new Label(localization.get("Appointment", "lblLocation"));
         TextField tfLocation = new TextField();
-        Label lblContact = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblContact"));
+        Label lblContact = new Label(localization.get("Appointment", "lblContact"));
         TextField tfContact = new TextField();
-        Label lblType = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblType"));
+        Label lblType = new Label(localization.get("Appointment", "lblType"));
         TextField tfType = new TextField();
-        Label lblUrl = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblUrl"));
+        Label lblUrl = new Label(localization.get("Appointment", "lblUrl"));
         TextField tfUrl = new TextField();
-        Label lblStart = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblStartDate"));
+        Label lblStart = new Label(localization.get("Appointment", "lblStartDate"));
         DatePicker dpStartDate = new DatePicker(LocalDate.now());
-        Label lblStartTime = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblStartTime"));
-        TextField tfStartTime = new TextField(BUSINESS_HOURS_START.format(dfTime));
-        Label lblEnd = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblEndDate"));
+        Label lblStartTime = new Label(localization.get("Appointment", "lblStartTime"));
+        // Offer the user's first open stretch of today, as the form always offered the business day.
+        List<BusinessCalendar.OpenHours> openToday = calendars.forConsultant(currentUser.getUsername()).openHours(LocalDate.now());
+        TextField tfStartTime = new TextField(openToday.isEmpty() ? "9:00 AM" : openToday.get(0).getStart().withZoneSameInstant(ZoneId.systemDefault()).format(dfTime));
+        Label lblEnd = new Label(localization.get("Appointment", "lblEndDate"));
         DatePicker dpEndDate = new DatePicker(LocalDate.now());
-        Label lblEndTime = new Label(getLocaleString(Locale.getDefault(), "Appointment", "lblEndTime"));
-        TextField tfEndTime = new TextField(BUSINESS_HOURS_END.format(dfTime));
-        Button btnSave = new Button(getLocaleString(Locale.getDefault(), "Appointment", "btnSave"));
-        Button btnCancel = new Button(getLocaleString(Locale.getDefault(), "Appointment", "btnCancel"));
+        Label lblEndTime = new Label(localization.get("Appointment", "lblEndTime"));
+        TextField tfEndTime = new TextField(openToday.isEmpty() ? "6:00 PM" : openToday.get(0).getEnd().withZoneSameInstant(ZoneId.systemDefault()).format(dfTime));
+        Label lblRecurrence = new Label(localization.get("Appointment", "lblRecurrence"));
+        TextField tfRecurrence = new TextField();
+        tfRecurrence.setPromptText("FREQ=WEEKLY;BYDAY=MO;COUNT=10");
+        Button btnSave = new Button(localization.get("Appointment", "btnSave"));
+        Button btnCancel = new Button(localization.get("Appointment", "btnCancel"));
+        // Single item array so the save lambda can report back whether anything was written.
+        boolean[] saved = {false};
+        // The stored appointment these edits apply to. A merge after a conflicting save moves it on to that save.
+        Appointment[] base = {currentAppointment};
 
         // Bring in the stylesheet
         scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
@@ -726,8 +855,10 @@ public class Main extends Application {
         gpRoot.add(dpEndDate, 1, 9);
         gpRoot.add(lblEndTime, 0, 10);
         gpRoot.add(tfEndTime, 1, 10);
-        gpRoot.add(btnSave, 0, 11);
-        gpRoot.add(btnCancel, 2, 11);
+        gpRoot.add(lblRecurrence, 0, 11);
+        gpRoot.add(tfRecurrence, 1, 11);
+        gpRoot.add(btnSave, 0, 12);
+        gpRoot.add(btnCancel, 2, 12);
 
         // We use a lambda in the foreach() method to populate the Customer combobox with all customer names.
         // This is more efficient and readable than simply using a for loop.
@@ -748,6 +879,12 @@ public class Main extends Application {
             tfStartTime.setText(currentAppointment.getStart().format(dfTime));
             dpEndDate.setValue(currentAppointment.getEnd().toLocalDate());
             tfEndTime.setText(currentAppointment.getEnd().format(dfTime));
+            tfRecurrence.setText(currentAppointment.getRecurrence());
+        } else if (null != slotStart) {
+            dpStartDate.setValue(slotStart.toLocalDate());
+            tfStartTime.setText(slotStart.format(dfTime));
+            dpEndDate.setValue(slotEnd.toLocalDate());
+            tfEndTime.setText(slotEnd.format(dfTime));
         }
 
         // Close the stage.
@@ -779,26 +916,32 @@ public class Main extends Application {
                             LocalDateTime ldtEnd = LocalDateTime.parse(dpEndDate.getValue().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + " " + tfEndTime.getText(), DateTimeFormatter.ofPattern("yyyy-MM-dd h:mm a"));
                             // If the start time is before the end time.
                             if (ldtStart.isBefore(ldtEnd)) {
-                                // If time-slot begins on or after BUSINESS_HOURS_START and ends on or before BUSINESS_HOURS_END...
-                                if (!ldtStart.toLocalTime().isBefore(BUSINESS_HOURS_START) && !ldtEnd.toLocalTime().isAfter(BUSINESS_HOURS_END)) {
-                                    Appointment overlapAppointment = conn.checkForOverlappingAppointment(ldtStart, ldtEnd, currentUser.getId());
+                                // If the time-slot is open on both the location's and the consultant's calendar...
+                                BusinessCalendar calendar = calendars.forAppointment(tfLocation.getText(), currentUser.getUsername());
+                                if (calendar.isOpen(ldtStart.atZone(ZoneId.systemDefault()), ldtEnd.atZone(ZoneId.systemDefault()))) {
+                                    RecurrenceRule rule = tfRecurrence.getText() == null || tfRecurrence.getText().isBlank() ? null : RecurrenceRule.parse(tfRecurrence.getText());
+                                    UiActionEvent event = UiActionEvent.begin("saveAppointment", currentUser.getId());
                                     try {
-                                        // If an Appointment wasn't passed in, insert a new Appointment into the database.
+                                        // If an Appointment wasn't passed in, book a new Appointment: the clash check and the insert
+                                        // are one step, so another client can't take the slot in between.
                                         if (null == currentAppointment) {
+                                            Appointment overlapAppointment = conn.bookAppointment(
+                                                    cbCustomer.getValue(),
+                                                    currentUser.getId(),
+                                                    tfTitle.getText(),
+                                                    tfDescription.getText(),
+                                                    tfLocation.getText(),
+                                                    tfContact.getText(),
+                                                    tfType.getText(),
+                                                    tfUrl.getText(),
+                                                    ldtStart,
+                                                    ldtEnd,
+                                                    rule,
+                                                    currentUser.getUsername()
+                                            );
                                             if (null == overlapAppointment) {
-                                                conn.insertAppointment(
-                                                        cbCustomer.getValue(),
-                                                        currentUser.getId(),
-                                                        tfTitle.getText(),
-                                                        tfDescription.getText(),
-                                                        tfLocation.getText(),
-                                                        tfContact.getText(),
-                                                        tfType.getText(),
-                                                        tfUrl.getText(),
-                                                        ldtStart,
-                                                        ldtEnd,
-                                                        currentUser.getUsername()
-                                                );
+                                                saved[0] = true;
+                                                event.finish(ldtStart, ldtEnd, 1);
 
                                                 alert.setAlertType(Alert.AlertType.INFORMATION);
                                                 alert.setTitle("Saved");
@@ -807,23 +950,19 @@ public class Main extends Application {
                                                 alert.showAndWait();
                                                 appointmentStage.close();
                                             } else {
-                                                alert.setAlertType(Alert.AlertType.ERROR);
-                                                alert.setTitle("Error");
-                                                alert.setHeaderText("An existing appointment overlaps with the selected time slot.");
-                                                alert.setContentText(
-                                                        "Title:    " + overlapAppointment.getTitle() + "\n" +
-                                                                "Start:    " + overlapAppointment.getStart().format(dtfDisplayDates) + "\n" +
-                                                                "End:    " + overlapAppointment.getEnd().format(dtfDisplayDates) + "\n"
-                                                );
-                                                alert.showAndWait();
+                                                event.finish(ldtStart, ldtEnd, 0);
+                                                showOverlap(overlapAppointment);
                                             }
                                         } else {
+                                            // A series is checked against everything in its first year, rather than occurrence by occurrence.
+                                            Appointment overlapAppointment = null == rule
+                                                    ? conn.checkForOverlappingAppointment(ldtStart, ldtEnd, currentUser.getId())
+                                                    : conn.checkForOverlappingSeries(ldtStart, ldtEnd, rule, currentUser.getId(), currentAppointment.getId());
                                             // If an Appointment was passed in, update that Appointment in the database.
                                             if (null == overlapAppointment || overlapAppointment.getId() == currentAppointment.getId()) {
-                                                conn.updateAppointment(
-                                                        currentAppointment.getId(),
+                                                if (!updateAppointment(
+                                                        base[0],
                                                         cbCustomer.getValue(),
-                                                        currentUser.getId(),
                                                         tfTitle.getText(),
                                                         tfDescription.getText(),
                                                         tfLocation.getText(),
@@ -832,8 +971,13 @@ public class Main extends Application {
                                                         tfUrl.getText(),
                                                         ldtStart,
                                                         ldtEnd,
-                                                        currentUser.getUsername()
-                                                );
+                                                        rule
+                                                )) {
+                                                    event.finish(ldtStart, ldtEnd, 0);
+                                                    return;
+                                                }
+                                                saved[0] = true;
+                                                event.finish(ldtStart, ldtEnd, 1);
 
                                                 alert.setAlertType(Alert.AlertType.INFORMATION);
                                                 alert.setTitle("Saved");
@@ -842,17 +986,47 @@ public class Main extends Application {
                                                 alert.showAndWait();
                                                 appointmentStage.close();
                                             } else {
-                                                alert.setAlertType(Alert.AlertType.ERROR);
-                                                alert.setTitle("Error");
-                                                alert.setHeaderText("An existing appointment overlaps with the selected time slot.");
-                                                alert.setContentText(
-                                                        "Title:    " + overlapAppointment.getTitle() + "\n" +
-                                                                "Start:    " + overlapAppointment.getStart().format(dtfDisplayDates) + "\n" +
-                                                                "End:    " + overlapAppointment.getEnd().format(dtfDisplayDates) + "\n"
-                                                );
-                                                alert.showAndWait();
+                                                event.finish(ldtStart, ldtEnd, 0);
+                                                showOverlap(overlapAppointment);
                                             }
                                         }
+                                    } catch (OverlapException oe) {
+                                        // Booked by someone else since the check above; the calendar is checked again as the edit is saved.
+                                        event.finish(ldtStart, ldtEnd, 0);
+                                        showOverlap(oe.getOverlap());
+                                    } catch (UpdateConflictException uce) {
+                                        event.finish(ldtStart, ldtEnd, 0);
+                                        if (uce.isDeleted()) {
+                                            showDeleted("appointment");
+                                            appointmentStage.close();
+                                            return;
+                                        }
+
+                                        Appointment current = uce.getCurrentAppointment();
+                                        if (base[0].isRecurring() && current.isRecurring()) {
+                                            // A series comes back as its first occurrence; the form is still on the one being edited.
+                                            current = current.occurrence(base[0].getStart(), base[0].getEnd(), current.getRecurrence());
+                                        }
+                                        List<String> mine = Arrays.asList(cbCustomer.getValue(), tfTitle.getText(), tfDescription.getText(), tfLocation.getText(),
+                                                tfContact.getText(), tfType.getText(), tfUrl.getText(), ldtStart.format(dtfDisplayDates), ldtEnd.format(dtfDisplayDates));
+                                        List<String> merged = displayMerge("appointment",
+                                                new ThreeWayMerge(APPOINTMENT_FIELDS, appointmentFields(base[0]), mine, appointmentFields(current)));
+                                        if (merged != null) {
+                                            base[0] = current;
+                                            LocalDateTime mergedStart = LocalDateTime.parse(merged.get(7), dtfDisplayDates);
+                                            LocalDateTime mergedEnd = LocalDateTime.parse(merged.get(8), dtfDisplayDates);
+                                            cbCustomer.getSelectionModel().select(merged.get(0));
+                                            tfTitle.setText(merged.get(1));
+                                            tfDescription.setText(merged.get(2));
+                                            tfLocation.setText(merged.get(3));
+                                            tfContact.setText(merged.get(4));
+                                            tfType.setText(merged.get(5));
+                                            tfUrl.setText(merged.get(6));
+                                            dpStartDate.setValue(mergedStart.toLocalDate());
+                                            tfStartTime.setText(mergedStart.format(dfTime));
+                                            dpEndDate.setValue(mergedEnd.toLocalDate());
+                                            tfEndTime.setText(mergedEnd.format(dfTime));
+                                        }
                                     } catch (SQLException sqle) {
                                         sqle.printStackTrace();
                                     }
@@ -860,9 +1034,14 @@ public class Main extends Application {
                                     alert.setAlertType(Alert.AlertType.ERROR);
                                     alert.setTitle("Error");
                                     alert.setHeaderText(null);
+                                    StringJoiner openHours = new StringJoiner(", ");
+                                    for (BusinessCalendar.OpenHours hours : calendar.openHours(ldtStart.atZone(ZoneId.systemDefault()).withZoneSameInstant(calendar.getZone()).toLocalDate())) {
+                                        openHours.add(hours.getStart().withZoneSameInstant(ZoneId.systemDefault()).format(DateTimeFormatter.ofPattern("h:mm a")) + " - " +
+                                                hours.getEnd().withZoneSameInstant(ZoneId.systemDefault()).format(DateTimeFormatter.ofPattern("h:mm a")));
+                                    }
                                     alert.setContentText(
-                                            "You have selected a time slot outside of business hours. Please select a time slot between" +
-                                                    BUSINESS_HOURS_START.format(DateTimeFormatter.ofPattern("h:mm a")) + " and " + BUSINESS_HOURS_END.format(DateTimeFormatter.ofPattern("h:mm a")) + "."
+                                            "You have selected a time slot outside of business hours for this location and consultant. " +
+                                                    (openHours.length() == 0 ? "They are closed that day." : "That day they are open " + openHours + ".")
                                     );
                                     alert.showAndWait();
                                 }
@@ -879,6 +1058,13 @@ public class Main extends Application {
                             alert.setHeaderText(null);
                             alert.setContentText("Please ensure that the start and/or end times you input are in the format \"9:00 AM\".");
                             alert.showAndWait();
+                        } catch (IllegalArgumentException iae) {
+                            // The repeat rule didn't parse; the message says which part.
+                            alert.setAlertType(Alert.AlertType.ERROR);
+                            alert.setTitle("Error");
+                            alert.setHeaderText(null);
+                            alert.setContentText(iae.getMessage());
+                            alert.showAndWait();
                         }
                     } else {
                         alert.setAlertType(Alert.AlertType.ERROR);
@@ -907,17 +1093,437 @@ public class Main extends Application {
         appointmentStage.setScene(scene);
         appointmentStage.showAndWait();
 
+        // Keep the preloaded contact list in step with any contact introduced by this form.
+        if (saved[0] && !contacts.contains(tfContact.getText())) {
+            contacts.add(tfContact.getText());
+        }
+
         return conn.getAppointmentsInRange(startDate[0], endDate[0], currentUser.getId());
     }
 
-    // This is used to fetch the translation of a string from the specified ResourceBundle, for the specified Locale.
-    public String getLocaleString(Locale locale, String bundleBaseName, String key) {
-        ResourceBundle rb = ResourceBundle.getBundle("resources/"+bundleBaseName, locale);
-        return rb.getString(key);
+    // The appointment form as a new one-off appointment, or as a series when a repeat rule was given.
+    private Appointment newAppointment(String customerName, String title, String description, String location, String contact, String type,
+                                       String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule) {
+        Appointment appointment = new Appointment(0, customerName, currentUser.getId(), title, description, location, contact, type, url,
+                ldtStart.atZone(ZoneId.systemDefault()), ldtEnd.atZone(ZoneId.systemDefault()));
+        if (null != rule) {
+            appointment.setRecurrence(rule.toString());
+        }
+        return appointment;
+    }
+
+    // The customer form's fields as a Customer with the id given.
+    private static Customer customerFromForm(int id, TextField tfName, TextField tfAddress, TextField tfAddress2, TextField tfCity,
+                                             TextField tfCountry, TextField tfPostalCode, TextField tfPhone) {
+        return new Customer(id, tfName.getText(), tfAddress.getText(), tfAddress2.getText(), tfCity.getText(), tfCountry.getText(),
+                tfPostalCode.getText(), tfPhone.getText());
+    }
+
+    // Save the appointment form over currentAppointment. An occurrence of a series asks whether the change is to that
+    // occurrence alone or to it and every later one; either way the series is split, never rewritten row by row, and
+    // the split is committed as one unit so it can't stop halfway. Returns false if the user backed out.
+    private boolean updateAppointment(Appointment currentAppointment, String customerName, String title, String description, String location, String contact,
+                                      String type, String url, LocalDateTime ldtStart, LocalDateTime ldtEnd, RecurrenceRule rule) throws SQLException {
+        if (!currentAppointment.isRecurring()) {
+            if (null == rule) {
+                conn.updateAppointment(currentAppointment.getId(), customerName, currentUser.getId(), title, description, location, contact,
+                        type, url, ldtStart, ldtEnd, currentAppointment.getVersion(), currentUser.getUsername());
+            } else {
+                // A one-off becoming a series is replaced by the series.
+                conn.commit(new UnitOfWork(currentUser.getUsername())
+                        .deleteAppointment(currentAppointment.getId())
+                        .insertAppointment(newAppointment(customerName, title, description, location, contact, type, url, ldtStart, ldtEnd, rule)));
+            }
+            return true;
+        }
+
+        Alert scope = new Alert(Alert.AlertType.CONFIRMATION, "Apply these changes to:", THIS_OCCURRENCE, THIS_AND_FOLLOWING, ButtonType.CANCEL);
+        scope.setTitle("Recurring Appointment");
+        scope.setHeaderText("This appointment is one occurrence of a recurring series.");
+        Optional<ButtonType> result = scope.showAndWait();
+        if (!result.isPresent() || result.get() == ButtonType.CANCEL) {
+            return false;
+        }
+
+        // The occurrence edited alone becomes a one-off; the following ones become a new series.
+        LocalDateTime occurrenceStart = currentAppointment.getStart().toLocalDateTime();
+        UnitOfWork split = new UnitOfWork(currentUser.getUsername());
+        if (result.get() == THIS_OCCURRENCE) {
+            split.cancelOccurrence(currentAppointment.getId(), occurrenceStart, currentAppointment.getVersion())
+                    .insertAppointment(newAppointment(customerName, title, description, location, contact, type, url, ldtStart, ldtEnd, null));
+        } else {
+            split.endSeriesBefore(currentAppointment.getId(), occurrenceStart, currentAppointment.getVersion())
+                    .insertAppointment(newAppointment(customerName, title, description, location, contact, type, url, ldtStart, ldtEnd, rule));
+        }
+        conn.commit(split);
+        return true;
+    }
+
+    // A customer's fields in CUSTOMER_FIELDS order.
+    private static List<String> customerFields(Customer customer) {
+        return Arrays.asList(customer.getName(), customer.getAddress(), customer.getAddress2(), customer.getCity(),
+                customer.getCountry(), customer.getPostalCode(), customer.getPhone());
+    }
+
+    // An appointment's fields in APPOINTMENT_FIELDS order, with the times as the form's merge shows them.
+    private static List<String> appointmentFields(Appointment appointment) {
+        return Arrays.asList(appointment.getCustomerName(), appointment.getTitle(), appointment.getDescription(), appointment.getLocation(),
+                appointment.getContact(), appointment.getType(), appointment.getUrl(),
+                appointment.getStart().format(Appointment.DISPLAY_FORMAT), appointment.getEnd().format(Appointment.DISPLAY_FORMAT));
+    }
+
+    private void showOverlap(Appointment overlapAppointment) {
+        alert.setAlertType(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText("An existing appointment overlaps with the selected time slot.");
+        alert.setContentText(
+                "Title:    " + overlapAppointment.getTitle() + "\n" +
+                        "Start:    " + overlapAppointment.getStart().format(Appointment.DISPLAY_FORMAT) + "\n" +
+                        "End:    " + overlapAppointment.getEnd().format(Appointment.DISPLAY_FORMAT) + "\n"
+        );
+        alert.showAndWait();
+    }
+
+    private void showDeleted(String record) {
+        alert.setAlertType(Alert.AlertType.ERROR);
+        alert.setTitle("Deleted");
+        alert.setHeaderText("This " + record + " was deleted by someone else while you were editing it.");
+        alert.setContentText("Your changes were not saved.");
+        alert.showAndWait();
+    }
+
+    // Someone else saved the record while this user was editing it. Show both sides of every field the other save
+    // changed, let the user settle the ones they both changed, and return the values to carry on editing from: the
+    // merge, or the other save as it stands. Nothing is written here; the form is saved again against the new version,
+    // so every check it makes runs on the merged values. Returns null if the user closes the window.
+    private List<String> displayMerge(String record, ThreeWayMerge merge) {
+        Stage mergeStage = new Stage();
+        GridPane gpRoot = new GridPane();
+        Scene scene = new Scene(gpRoot, 750, 550);
+        Label lblSummary = new Label(merge.getConflicts().isEmpty()
+                ? "Someone else saved this " + record + " while you were editing it. Their changes and yours have been combined."
+                : "Someone else saved this " + record + " while you were editing it. Choose which value to keep where you both changed a field (*).");
+        lblSummary.setWrapText(true);
+        Button btnMerge = new Button("Keep Merged");
+        Button btnTheirs = new Button("Discard My Changes");
+        // Filled in by whichever button is pressed, and left empty if the window is closed instead.
+        List<String> result = new ArrayList<>();
+
+        // Bring in the stylesheet
+        scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
+
+        gpRoot.getStyleClass().add("gridpane");
+        gpRoot.add(lblSummary, 0, 0, 4, 1);
+        gpRoot.add(new Label("Field"), 0, 1);
+        gpRoot.add(new Label("Saved By Them"), 1, 1);
+        gpRoot.add(new Label("Yours"), 2, 1);
+        gpRoot.add(new Label("Result"), 3, 1);
+        for (int field = 0; field < merge.size(); field++) {
+            int row = field + 2;
+            gpRoot.add(new Label(merge.getLabel(field) + (merge.isConflict(field) ? " *" : "")), 0, row);
+            gpRoot.add(new Label(merge.getTheirs(field)), 1, row);
+            gpRoot.add(new Label(merge.getMine(field)), 2, row);
+            if (merge.isConflict(field)) {
+                ComboBox<String> cbChoice = new ComboBox<>(FXCollections.observableArrayList(merge.getTheirs(field), merge.getMine(field)));
+                cbChoice.getSelectionModel().select(0);
+                int conflict = field;
+                cbChoice.setOnAction(e -> merge.resolve(conflict, cbChoice.getValue()));
+                gpRoot.add(cbChoice, 3, row);
+            } else {
+                gpRoot.add(new Label(merge.getMerged().get(field)), 3, row);
+            }
+        }
+        gpRoot.add(new HBox(25, btnMerge, btnTheirs), 0, merge.size() + 2, 4, 1);
+
+        btnMerge.setOnAction(e -> {
+            result.addAll(merge.getMerged());
+            mergeStage.close();
+        });
+
+        btnTheirs.setOnAction(e -> {
+            for (int field = 0; field < merge.size(); field++) {
+                result.add(merge.getTheirs(field));
+            }
+            mergeStage.close();
+        });
+
+        mergeStage.setTitle("Changed By Someone Else");
+        mergeStage.setScene(scene);
+        mergeStage.showAndWait();
+
+        if (result.isEmpty()) {
+            return null;
+        }
+
+        alert.setAlertType(Alert.AlertType.INFORMATION);
+        alert.setTitle("Merged");
+        alert.setHeaderText("The form now holds the merged " + record + ".");
+        alert.setContentText("Review it and save again.");
+        alert.showAndWait();
+        return result;
+    }
+
+    // Display a form that finds the open slots of a given length within business hours, for one consultant or all of
+    // them. A slot on the current user's own calendar can be booked straight from the results.
+    public void displayAvailability() {
+        Stage availabilityStage = new Stage();
+        GridPane gpRoot = new GridPane();
+        Scene scene = new Scene(gpRoot, 550, 650);
+        Label lblDuration = new Label("Minutes: ");
+        TextField tfDuration = new TextField("45");
+        Label lblFrom = new Label("From: ");
+        DatePicker dpFrom = new DatePicker(LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY)));
+        Label lblTo = new Label("To: ");
+        DatePicker dpTo = new DatePicker(dpFrom.getValue().plusDays(4));
+        Label lblConsultant = new Label("Consultant: ");
+        ComboBox<String> cbConsultant = new ComboBox<>();
+        Button btnFind = new Button("Find");
+        Button btnBook = new Button("Book Selected Slot");
+        Label lblSummary = new Label();
+        TableView<AvailabilityFinder.FreeSlot> tvSlots = new TableView<>();
+        AvailabilityFinder finder = new AvailabilityFinder(userId -> calendars.forConsultant(usernameDirectory.get(userId)));
+        // The length the current results were found for, which is what a booking from them gets.
+        int[] searchedMinutes = {0};
+
+        // Bring in the stylesheet
+        scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
+
+        // Set layout and style for gridpane, and position controls inside.
+        gpRoot.getStyleClass().add("gridpane");
+        gpRoot.add(new HBox(10, lblDuration, tfDuration, lblConsultant, cbConsultant), 0, 0);
+        gpRoot.add(new HBox(10, lblFrom, dpFrom, lblTo, dpTo), 0, 1);
+        gpRoot.add(new HBox(10, btnFind, btnBook, lblSummary), 0, 2);
+        gpRoot.add(tvSlots, 0, 3);
+
+        TableColumn<AvailabilityFinder.FreeSlot, String> column1 = new TableColumn<>("Consultant");
+        column1.setCellValueFactory(cell -> new ReadOnlyStringWrapper(usernameDirectory.get(cell.getValue().getUserId())));
+        TableColumn<AvailabilityFinder.FreeSlot, String> column2 = new TableColumn<>("Free From");
+        column2.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getStart().format(Appointment.DISPLAY_FORMAT)));
+        TableColumn<AvailabilityFinder.FreeSlot, String> column3 = new TableColumn<>("Until");
+        column3.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getEnd().format(Appointment.DISPLAY_FORMAT)));
+        tvSlots.getColumns().addAll(List.of(column1, column2, column3));
+        tvSlots.setMinWidth(500);
+
+        // The username directory was preloaded at login.
+        cbConsultant.getItems().add("All consultants");
+        cbConsultant.getItems().addAll(usernameDirectory.values());
+        cbConsultant.getSelectionModel().select(currentUser.getUsername());
+
+        btnFind.setOnAction(e -> {
+            int minutes;
+            try {
+                minutes = Integer.parseInt(tfDuration.getText().trim());
+            } catch (NumberFormatException nfe) {
+                minutes = 0;
+            }
+            if (minutes <= 0 || dpFrom.getValue() == null || dpTo.getValue() == null || dpTo.getValue().isBefore(dpFrom.getValue())) {
+                alert.setAlertType(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText(null);
+                alert.setContentText("Please enter a length in minutes and a date range that ends on or after it starts.");
+                alert.showAndWait();
+                return;
+            }
+
+            List<Integer> userIds = new ArrayList<>();
+            usernameDirectory.forEach((userId, username) -> {
+                if (cbConsultant.getSelectionModel().getSelectedIndex() <= 0 || username.equals(cbConsultant.getValue())) {
+                    userIds.add(userId);
+                }
+            });
+
+            searchedMinutes[0] = minutes;
+            UiActionEvent event = UiActionEvent.begin("findAvailability", currentUser.getId());
+            long started = System.nanoTime();
+            List<AvailabilityFinder.FreeSlot> slots = finder.find(conn, userIds, dpFrom.getValue(), dpTo.getValue(), Duration.ofMinutes(minutes), ZonedDateTime.now());
+            tvSlots.setItems(FXCollections.observableArrayList(slots));
+            lblSummary.setText(slots.size() + " slots across " + userIds.size() + " consultant(s) in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+            event.finish(dpFrom.getValue(), dpTo.getValue(), slots.size());
+        });
+
+        // Appointments are always booked on the current user's calendar, so only their own slots can be booked here.
+        btnBook.setOnAction(e -> {
+            AvailabilityFinder.FreeSlot slot = tvSlots.getSelectionModel().getSelectedItem();
+            if (slot == null || slot.getUserId() != currentUser.getId()) {
+                alert.setAlertType(Alert.AlertType.INFORMATION);
+                alert.setTitle("No Selection");
+                alert.setHeaderText(null);
+                alert.setContentText("Please select one of your own free slots to book.");
+                alert.showAndWait();
+                return;
+            }
+
+            // Slots are in the calendar's zone; the appointment form works in the system zone.
+            ZonedDateTime start = slot.getStart().withZoneSameInstant(ZoneId.systemDefault());
+            displayAppointment(null, start.toLocalDateTime(), start.plusMinutes(searchedMinutes[0]).toLocalDateTime());
+            btnFind.fire();
+        });
+
+        availabilityStage.setTitle("Find Free Time");
+        availabilityStage.setScene(scene);
+        availabilityStage.showAndWait();
+    }
+
+    // Display a form that places a list of appointment requests across consultants in one go. The calendars are read
+    // once, the search runs off the FX thread for the number of seconds given, and the proposed schedule is stored in
+    // one transaction only when the user saves it.
+    public void displayAutoSchedule() {
+        Stage scheduleStage = new Stage();
+        GridPane gpRoot = new GridPane();
+        Scene scene = new Scene(gpRoot, 650, 700);
+        Label lblRequests = new Label("One request per line: customer, title, type, minutes, window start, window end, consultants\n" +
+                "Windows are yyyy-MM-dd HH:mm; consultants are usernames separated by ';', or blank for anyone.");
+        TextArea taRequests = new TextArea();
+        Label lblBudget = new Label("Seconds to search: ");
+        TextField tfBudget = new TextField("2");
+        Button btnSchedule = new Button("Schedule");
+        Button btnSave = new Button("Save Schedule");
+        Label lblSummary = new Label();
+        TableView<AutoScheduler.Assignment> tvAssignments = new TableView<>();
+
+        // Bring in the stylesheet
+        scene.getStylesheets().add(getClass().getResource("root.css").toExternalForm());
+
+        // Set layout and style for gridpane, and position controls inside.
+        gpRoot.getStyleClass().add("gridpane");
+        gpRoot.add(lblRequests, 0, 0);
+        gpRoot.add(taRequests, 0, 1);
+        gpRoot.add(new HBox(10, lblBudget, tfBudget, btnSchedule, btnSave), 0, 2);
+        gpRoot.add(lblSummary, 0, 3);
+        gpRoot.add(tvAssignments, 0, 4);
+
+        TableColumn<AutoScheduler.Assignment, String> column1 = new TableColumn<>("Customer");
+        column1.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getRequest().getCustomerName()));
+        TableColumn<AutoScheduler.Assignment, String> column2 = new TableColumn<>("Consultant");
+        column2.setCellValueFactory(cell -> new ReadOnlyStringWrapper(usernameDirectory.get(cell.getValue().getUserId())));
+        TableColumn<AutoScheduler.Assignment, String> column3 = new TableColumn<>("Start");
+        column3.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getStart().format(Appointment.DISPLAY_FORMAT)));
+        TableColumn<AutoScheduler.Assignment, String> column4 = new TableColumn<>("End");
+        column4.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getEnd().format(Appointment.DISPLAY_FORMAT)));
+        tvAssignments.getColumns().addAll(List.of(column1, column2, column3, column4));
+        tvAssignments.setMinWidth(600);
+        taRequests.setPrefRowCount(10);
+        btnSave.setDisable(true);
+
+        btnSchedule.setOnAction(e -> {
+            List<AutoScheduler.Request> requests = new ArrayList<>();
+            String[] lines = taRequests.getText().split("\\R");
+            try {
+                for (int i = 0; i < lines.length; i++) {
+                    if (lines[i].isBlank()) {
+                        continue;
+                    }
+                    try {
+                        requests.add(AutoScheduler.Request.parse(lines[i], ZoneId.systemDefault(), usernameDirectory));
+                    } catch (IllegalArgumentException iae) {
+                        throw new IllegalArgumentException("Line " + (i + 1) + ": " + iae.getMessage());
+                    }
+                }
+            } catch (IllegalArgumentException iae) {
+                alert.setAlertType(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText("This request list can't be read.");
+                alert.setContentText(iae.getMessage());
+                alert.showAndWait();
+                return;
+            }
+
+            double seconds;
+            try {
+                seconds = Double.parseDouble(tfBudget.getText().trim());
+            } catch (NumberFormatException nfe) {
+                seconds = -1;
+            }
+            if (requests.isEmpty() || seconds < 0) {
+                alert.setAlertType(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText(null);
+                alert.setContentText("Please enter at least one request and a number of seconds to search.");
+                alert.showAndWait();
+                return;
+            }
+
+            AutoScheduler scheduler = new AutoScheduler(userId -> calendars.forConsultant(usernameDirectory.get(userId)), Duration.ofMinutes(15), Duration.ofMillis((long) (seconds * 1000)), requests.size());
+            UiActionEvent event = UiActionEvent.begin("autoSchedule", currentUser.getId());
+            Map<Integer, List<Appointment>> busy = scheduler.busyFor(conn, requests);
+
+            // The search only touches the calendars read above, so it can run while the form stays responsive.
+            btnSchedule.setDisable(true);
+            btnSave.setDisable(true);
+            lblSummary.setText("Searching...");
+            CompletableFuture.supplyAsync(() -> scheduler.solve(requests, busy)).whenComplete((schedule, failure) -> Platform.runLater(() -> {
+                if (failure != null) {
+                    event.finish(0);
+                    lblSummary.setText("");
+                    btnSchedule.setDisable(false);
+                    alert.setAlertType(Alert.AlertType.ERROR);
+                    alert.setTitle("Error");
+                    alert.setHeaderText("The search for a schedule failed.");
+                    alert.setContentText(String.valueOf((failure.getCause() != null ? failure.getCause() : failure).getMessage()));
+                    alert.showAndWait();
+                    return;
+                }
+
+                event.finish(schedule.getAssignments().size());
+                tvAssignments.setItems(FXCollections.observableArrayList(schedule.getAssignments()));
+                lblSummary.setText(schedule.getAssignments().size() + " of " + requests.size() + " placed (" + schedule.getGreedyPlaced() +
+                        " by the first pass), load deviation " + schedule.getLoadDeviation() + " minutes, " + schedule.getMoves() + " moves in " +
+                        schedule.getElapsed().toMillis() + " ms");
+                btnSchedule.setDisable(false);
+                btnSave.setDisable(schedule.getAssignments().isEmpty());
+            }));
+        });
+
+        // All or nothing: if any appointment can't be stored, none of them are. If some were booked over since the
+        // schedule was planned, the schedule is planned again around them.
+        btnSave.setOnAction(e -> {
+            List<Appointment> appointments = new ArrayList<>();
+            tvAssignments.getItems().forEach(assignment -> appointments.add(assignment.toAppointment()));
+            UiActionEvent event = UiActionEvent.begin("saveSchedule", currentUser.getId());
+            try {
+                List<Appointment> conflicts = conn.insertAppointments(appointments, currentUser.getUsername());
+                if (!conflicts.isEmpty()) {
+                    event.finish(0);
+                    StringBuilder booked = new StringBuilder();
+                    for (Appointment conflict : conflicts) {
+                        booked.append(usernameDirectory.get(conflict.getUserId())).append(": ").append(conflict.getTitle()).append(", ")
+                                .append(conflict.getStart().format(Appointment.DISPLAY_FORMAT)).append('\n');
+                    }
+                    alert.setAlertType(Alert.AlertType.ERROR);
+                    alert.setTitle("Schedule Out Of Date");
+                    alert.setHeaderText(conflicts.size() + " appointments were booked in the way since this schedule was planned, so none of it was saved. " +
+                            "It will be planned again around them.");
+                    alert.setContentText(booked.toString());
+                    alert.showAndWait();
+                    btnSchedule.fire();
+                    return;
+                }
+                event.finish(appointments.size());
+
+                alert.setAlertType(Alert.AlertType.INFORMATION);
+                alert.setTitle("Saved");
+                alert.setHeaderText(appointments.size() + " appointments saved.");
+                alert.setContentText(null);
+                alert.showAndWait();
+                scheduleStage.close();
+            } catch (SQLException sqle) {
+                event.finish(0);
+                alert.setAlertType(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText("The schedule couldn't be saved, so none of it was.");
+                alert.setContentText(sqle.getMessage());
+                alert.showAndWait();
+            }
+        });
+
+        scheduleStage.setTitle("Schedule Requests");
+        scheduleStage.setScene(scene);
+        scheduleStage.showAndWait();
     }
 
     // Display a report form containing a TableView that updates to show the appointments for the selected user.
     public void displayConsultantReport() {
+        UiActionEvent openEvent = UiActionEvent.begin("openConsultantReport", currentUser.getId());
         Stage reportStage = new Stage();
         GridPane gpRoot = new GridPane();
         Scene scene = new Scene(gpRoot, 500, 650);
@@ -933,31 +1539,31 @@ public class Main extends Application {
         gpRoot.add(new HBox(10, lblUsers, cbUsers), 0, 0);
         gpRoot.add(tvResult, 0, 1);
 
-        try {
-            cbUsers.setItems(conn.getUsernames());
-        } catch (SQLException sqle) {
-            sqle.printStackTrace();
-        }
+        // The username directory was preloaded at login.
+        cbUsers.setItems(FXCollections.observableArrayList(usernameDirectory.values()));
 
         // Lambda expression to update Appointment filter based on the current combobox selection.
         cbUsers.getSelectionModel().selectedItemProperty().addListener((options, oldValue, newValue) -> {
-            tvResult.getItems().clear();
             if(!newValue.isEmpty() && !newValue.isBlank()) {
+                UiActionEvent event = UiActionEvent.begin("runConsultantReport", currentUser.getId());
                 try {
-                    tvResult.setItems(conn.getConsultantReport(newValue));
+                    applyAppointments(tvResult, conn.getConsultantReport(newValue));
                 } catch (SQLException sqle) {
                     sqle.printStackTrace();
                 }
+                event.finish(tvResult.getItems().size());
             }
         });
 
         reportStage.setTitle("Consultant Report");
         reportStage.setScene(scene);
         reportStage.show();
+        openEvent.finish(0);
     }
 
     // Display a report form containing a TableView that updates to show the appointments for the selected contact.
     public void displayContactReport() {
+        UiActionEvent openEvent = UiActionEvent.begin("openContactReport", currentUser.getId());
         Stage reportStage = new Stage();
         GridPane gpRoot = new GridPane();
         Scene scene = new Scene(gpRoot, 500, 650);
@@ -973,27 +1579,26 @@ public class Main extends Application {
         gpRoot.add(new HBox(10, lblContacts, cbContacts), 0, 0);
         gpRoot.add(tvResult, 0, 1);
 
-        try {
-            cbContacts.setItems(conn.getUniqueContacts());
-        } catch (SQLException sqle) {
-            sqle.printStackTrace();
-        }
+        // The contact list was preloaded at login and is extended as appointments are saved.
+        cbContacts.setItems(contacts);
 
         // Lambda expression to update Appointment filter based on the current combobox selection.
         cbContacts.getSelectionModel().selectedItemProperty().addListener((options, oldValue, newValue) -> {
-            tvResult.getItems().clear();
             if(!newValue.isEmpty() && !newValue.isBlank()) {
+                UiActionEvent event = UiActionEvent.begin("runContactReport", currentUser.getId());
                 try {
-                    tvResult.setItems(conn.getContactReport(newValue));
+                    applyAppointments(tvResult, conn.getContactReport(newValue));
                 } catch (SQLException sqle) {
                     sqle.printStackTrace();
                 }
+                event.finish(tvResult.getItems().size());
             }
         });
 
         reportStage.setTitle("Contact Report");
         reportStage.setScene(scene);
         reportStage.show();
+        openEvent.finish(0);
     }
 
     // This is used to append to/create the LoginHistory.txt file.
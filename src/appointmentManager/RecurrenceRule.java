@@ -0,0 +1,260 @@
+package appointmentManager;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+// The subset of iCalendar's RRULE a standing appointment needs:
+//
+//     FREQ=DAILY|WEEKLY|MONTHLY   required
+//     INTERVAL=n                  every n days, weeks or months (1)
+//     BYDAY=MO,WE,FR              WEEKLY only; the days of each week it falls on (the first occurrence's day)
+//     COUNT=n or UNTIL=yyyyMMdd   how many occurrences, or the last day one may fall on (neither: no end)
+//
+// e.g. "FREQ=WEEKLY;BYDAY=TU,TH;COUNT=20". Weeks start on Monday, and a monthly rule skips months that are too short
+// for the first occurrence's day, both as RFC 5545 has it. Occurrences keep the first occurrence's wall clock time in
+// its zone, so a 9:00 AM series stays at 9:00 AM across daylight saving changes.
+//
+// A series is never stored as rows per occurrence: occurrences are computed for the window asked for, and jumping to
+// a window years after the first occurrence costs the same as the first week.
+public class RecurrenceRule {
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Set<DayOfWeek> byDay;
+    private final Integer count;
+    private final LocalDate until;
+
+    private RecurrenceRule(Frequency frequency, int interval, Set<DayOfWeek> byDay, Integer count, LocalDate until) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.count = count;
+        this.until = until;
+    }
+
+    // Throws IllegalArgumentException, with a message fit to show the user, for anything outside the subset above.
+    public static RecurrenceRule parse(String text) {
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+        Integer count = null;
+        LocalDate until = null;
+
+        String rule = text.trim();
+        if (rule.toUpperCase().startsWith("RRULE:")) {
+            rule = rule.substring("RRULE:".length());
+        }
+
+        for (String part : rule.split(";")) {
+            String[] pair = part.trim().split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected NAME=value in the repeat rule, found \"" + part + "\".");
+            }
+
+            String value = pair[1].trim().toUpperCase();
+            try {
+                switch (pair[0].trim().toUpperCase()) {
+                    case "FREQ":
+                        frequency = Frequency.valueOf(value);
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "BYDAY":
+                        for (String day : value.split(",")) {
+                            byDay.add(dayOf(day.trim()));
+                        }
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "UNTIL":
+                        until = LocalDate.parse(value.length() > 8 ? value.substring(0, 8) : value, UNTIL_FORMAT);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Repeat rules don't support " + pair[0].trim() + ".");
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + pair[0].trim() + " in the repeat rule: " + pair[1].trim() + ".");
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("A repeat rule needs FREQ=DAILY, WEEKLY or MONTHLY.");
+        }
+        if (interval < 1 || (count != null && count < 1)) {
+            throw new IllegalArgumentException("INTERVAL and COUNT must be at least 1.");
+        }
+        if (count != null && until != null) {
+            throw new IllegalArgumentException("A repeat rule can have COUNT or UNTIL, not both.");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported with FREQ=WEEKLY.");
+        }
+
+        return new RecurrenceRule(frequency, interval, byDay, count, until);
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    // The same rule ending with the last occurrence on or before the day given.
+    public RecurrenceRule withUntil(LocalDate lastDay) {
+        return new RecurrenceRule(frequency, interval, byDay, null, lastDay);
+    }
+
+    // The start of the last occurrence of a series beginning at first, or null if it never ends.
+    public ZonedDateTime lastStart(ZonedDateTime first) {
+        if (count == null && until == null) {
+            return null;
+        }
+
+        // With UNTIL the search can start just before it; COUNT has to count from the beginning.
+        long fromPeriod = count == null ? Math.max(0, periodsBefore(first.toLocalDate(), until) - 1) : 0;
+        ZonedDateTime[] last = {null};
+        int[] remaining = {count == null ? Integer.MAX_VALUE : count};
+        forEachDay(first.toLocalDate(), fromPeriod, day -> {
+            if ((until != null && day.isAfter(until)) || remaining[0] == 0) {
+                return false;
+            }
+            last[0] = first.with(day);
+            remaining[0]--;
+            return true;
+        });
+        return last[0];
+    }
+
+    // The starts of every occurrence of a series beginning at first, each lasting length, that overlap the half-open
+    // window from windowStart to windowEnd. Only the periods around the window are visited.
+    public List<ZonedDateTime> occurrences(ZonedDateTime first, Duration length, Instant windowStart, Instant windowEnd) {
+        List<ZonedDateTime> starts = new ArrayList<>();
+        ZonedDateTime last = lastStart(first);
+        LocalDate firstDay = first.toLocalDate();
+        // A day either side covers any zone offset, and the length covers occurrences that began before the window.
+        LocalDate fromDay = windowStart.minus(length).atZone(first.getZone()).toLocalDate().minusDays(1);
+        LocalDate toDay = windowEnd.atZone(first.getZone()).toLocalDate().plusDays(1);
+
+        forEachDay(firstDay, periodsBefore(firstDay, fromDay), day -> {
+            if (day.isAfter(toDay)) {
+                return false;
+            }
+
+            ZonedDateTime start = first.with(day);
+            if (last != null && start.isAfter(last)) {
+                return false;
+            }
+            if (start.toInstant().isBefore(windowEnd) && start.plus(length).toInstant().isAfter(windowStart)) {
+                starts.add(start);
+            }
+            return true;
+        });
+        return starts;
+    }
+
+    // Whether a series beginning at first has an occurrence starting at the time given.
+    public boolean occursAt(ZonedDateTime first, ZonedDateTime start) {
+        Instant instant = start.toInstant();
+        List<ZonedDateTime> found = occurrences(first, Duration.ofSeconds(1), instant, instant.plusSeconds(1));
+        return !found.isEmpty() && found.get(0).toInstant().equals(instant);
+    }
+
+    // The rule in the text form parse() reads.
+    @Override
+    public String toString() {
+        StringJoiner rule = new StringJoiner(";");
+        rule.add("FREQ=" + frequency);
+        if (interval != 1) {
+            rule.add("INTERVAL=" + interval);
+        }
+        if (!byDay.isEmpty()) {
+            StringJoiner days = new StringJoiner(",");
+            byDay.forEach(day -> days.add(DAY_CODES[day.ordinal()]));
+            rule.add("BYDAY=" + days);
+        }
+        if (count != null) {
+            rule.add("COUNT=" + count);
+        }
+        if (until != null) {
+            rule.add("UNTIL=" + until.format(UNTIL_FORMAT));
+        }
+        return rule.toString();
+    }
+
+    private interface DayVisitor {
+        // Return false to stop.
+        boolean visit(LocalDate day);
+    }
+
+    // Visit the days occurrences fall on in order, starting from the period given and never before firstDay.
+    private void forEachDay(LocalDate firstDay, long fromPeriod, DayVisitor visitor) {
+        Set<DayOfWeek> days = byDay.isEmpty() ? EnumSet.of(firstDay.getDayOfWeek()) : byDay;
+        LocalDate firstWeek = firstDay.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        for (long period = fromPeriod; ; period++) {
+            switch (frequency) {
+                case DAILY:
+                    if (!visitor.visit(firstDay.plusDays(period * interval))) {
+                        return;
+                    }
+                    break;
+                case WEEKLY:
+                    LocalDate week = firstWeek.plusWeeks(period * interval);
+                    for (DayOfWeek dayOfWeek : days) {
+                        LocalDate day = week.with(dayOfWeek);
+                        if (!day.isBefore(firstDay) && !visitor.visit(day)) {
+                            return;
+                        }
+                    }
+                    break;
+                case MONTHLY:
+                    LocalDate month = firstDay.withDayOfMonth(1).plusMonths(period * interval);
+                    if (firstDay.getDayOfMonth() <= month.lengthOfMonth() && !visitor.visit(month.withDayOfMonth(firstDay.getDayOfMonth()))) {
+                        return;
+                    }
+                    break;
+            }
+        }
+    }
+
+    // Whole periods that end before the day given, which can be skipped without visiting them.
+    private long periodsBefore(LocalDate firstDay, LocalDate day) {
+        if (!day.isAfter(firstDay)) {
+            return 0;
+        }
+
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS.between(firstDay, day) / interval;
+            case WEEKLY:
+                return ChronoUnit.WEEKS.between(firstDay.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), day) / interval;
+            default:
+                return ChronoUnit.MONTHS.between(firstDay.withDayOfMonth(1), day.withDayOfMonth(1)) / interval;
+        }
+    }
+
+    private static DayOfWeek dayOf(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code)) {
+                return DayOfWeek.of(i + 1);
+            }
+        }
+        throw new IllegalArgumentException("Unknown day in BYDAY: " + code + ".");
+    }
+}
@@ -0,0 +1,37 @@
+package appointmentManager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// A Flight Recorder event for one start of the application, committed once the main form is showing. Its times count
+// from the start of the process, so JVM boot, class loading and the JavaFX toolkit are in them, which the UiAction
+// events for each startup phase, begun only once StartupOrchestrator exists, can't show.
+@Name("appointmentManager.Startup")
+@Label("Startup")
+@Category({"Appointment Manager", "UI"})
+@Description("How long after the process started the login form, the database and the main form were ready")
+@StackTrace(false)
+public class StartupEvent extends Event {
+    @Label("First Frame")
+    @Description("From process start to the login form's first frame")
+    @Timespan(Timespan.MILLISECONDS)
+    long firstFrame;
+
+    @Label("Database Opened")
+    @Description("From process start to the backend being open")
+    @Timespan(Timespan.MILLISECONDS)
+    long databaseOpened;
+
+    @Label("Interactive")
+    @Description("From process start to the main form showing, the time spent at the login form included")
+    @Timespan(Timespan.MILLISECONDS)
+    long interactive;
+
+    @Label("User Id")
+    int userId;
+}
@@ -0,0 +1,163 @@
+package appointmentManager;
+
+import DAO.Repositories;
+import DAO.Repository;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Opens the database in the background while the login form is on screen, then hydrates everything the main form
+// needs in parallel once the user has authenticated. Each startup phase is timed as a UiAction event: showLoginForm
+// and openDatabase from construction, hydrateReferenceData, and startInteractive from login to the main form showing.
+// A Startup event then gives the same milestones counted from the start of the process.
+public class StartupOrchestrator {
+    // One pooled connection per hydration query, so the four reference queries genuinely run side by side.
+    private static final int HYDRATION_TASKS = 4;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "startup-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CompletableFuture<Repository> connection;
+    private final long launchMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final UiActionEvent firstFrame = UiActionEvent.begin("showLoginForm", 0);
+    private volatile UiActionEvent interactive;
+    private volatile long firstFrameMillis;
+    private volatile long connectedMillis;
+    private volatile int userId;
+
+    // Start connecting immediately; nothing here blocks the caller.
+    public StartupOrchestrator() {
+        connection = CompletableFuture.supplyAsync(() -> {
+            UiActionEvent event = UiActionEvent.begin("openDatabase", 0);
+            Repository repository = Repositories.open(HYDRATION_TASKS);
+            event.finish(0);
+            connectedMillis = System.currentTimeMillis();
+            return repository;
+        }, executor);
+    }
+
+    // Called from the login Stage's onShown handler.
+    public void markFirstFrame() {
+        firstFrame.finish(0);
+        firstFrameMillis = System.currentTimeMillis();
+    }
+
+    // Block until the primary connection is open. By the time a user has typed their credentials this is usually done.
+    public Repository awaitConnection() {
+        return connection.join();
+    }
+
+    // Run the month view, username directory, contact list and customer index queries in parallel on the pooled
+    // connection. A query that fails is reported and leaves its part empty, rather than keeping the main form from opening.
+    public ReferenceData hydrate(int userId, LocalDate start, LocalDate end) {
+        this.userId = userId;
+        interactive = UiActionEvent.begin("startInteractive", userId);
+        UiActionEvent event = UiActionEvent.begin("hydrateReferenceData", userId);
+
+        CompletableFuture<ObservableList<Appointment>> appointments =
+                query(repository -> repository.getAppointmentsInRange(start, end, userId), FXCollections.observableArrayList());
+        CompletableFuture<Map<Integer, String>> usernames =
+                query(Repository::getUserDirectory, new HashMap<>());
+        CompletableFuture<ObservableList<String>> contacts =
+                query(Repository::getUniqueContacts, FXCollections.observableArrayList());
+        CompletableFuture<ObservableList<Customer>> customers =
+                query(Repository::getAllCustomers, FXCollections.observableArrayList());
+
+        ReferenceData referenceData = new ReferenceData(appointments.join(), usernames.join(), contacts.join(), customers.join());
+        event.finish(start, end, (long) referenceData.getAppointments().size() + referenceData.getUsernames().size() +
+                referenceData.getContacts().size() + referenceData.getCustomers().size());
+
+        return referenceData;
+    }
+
+    // Called once the main Stage is showing.
+    public void markInteractive() {
+        long interactiveMillis = System.currentTimeMillis();
+        if (interactive != null) {
+            interactive.finish(0);
+        }
+
+        StartupEvent startup = new StartupEvent();
+        if (startup.shouldCommit()) {
+            startup.firstFrame = firstFrameMillis - launchMillis;
+            // Login waits for the backend, so it is open by now unless opening it failed.
+            startup.databaseOpened = connectedMillis == 0 ? 0 : connectedMillis - launchMillis;
+            startup.interactive = interactiveMillis - launchMillis;
+            startup.userId = userId;
+            startup.commit();
+        }
+    }
+
+    // Close the connection, even if it is still being established.
+    public void shutdown() {
+        connection.thenAccept(Repository::close);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> query(Query<T> query, T fallback) {
+        return connection.thenApplyAsync(repository -> {
+            try {
+                return query.run(repository);
+            } catch (SQLException sqle) {
+                throw new CompletionException(sqle);
+            }
+        }, executor).exceptionally(t -> {
+            t.printStackTrace();
+            return fallback;
+        });
+    }
+
+    // A DAO call that may throw SQLException, run on the pooled connection.
+    private interface Query<T> {
+        T run(Repository repository) throws SQLException;
+    }
+
+    // Everything the main form needs right after login.
+    public static class ReferenceData {
+        private final ObservableList<Appointment> appointments;
+        private final Map<Integer, String> usernames;
+        private final ObservableList<String> contacts;
+        private final ObservableList<Customer> customers;
+
+        public ReferenceData(ObservableList<Appointment> appointments, Map<Integer, String> usernames,
+                             ObservableList<String> contacts, ObservableList<Customer> customers) {
+            this.appointments = appointments;
+            this.usernames = Collections.unmodifiableMap(usernames);
+            this.contacts = contacts;
+            this.customers = customers;
+        }
+
+        public ObservableList<Appointment> getAppointments() {
+            return appointments;
+        }
+
+        public Map<Integer, String> getUsernames() {
+            return usernames;
+        }
+
+        public ObservableList<String> getContacts() {
+            return contacts;
+        }
+
+        public ObservableList<Customer> getCustomers() {
+            return customers;
+        }
+    }
+}
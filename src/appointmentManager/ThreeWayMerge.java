@@ -0,0 +1,79 @@
+package appointmentManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+// Merges a form's edits with a save that beat it to the database, field by field. base is what the form was opened
+// with, mine what it holds now and theirs what was saved in between. A field only one side changed takes that side's
+// value; a field both changed the same way takes it too; a field both changed differently is a conflict, left at
+// theirs until the user picks.
+public class ThreeWayMerge {
+    private final List<String> labels;
+    private final List<String> mine;
+    private final List<String> theirs;
+    private final List<String> merged = new ArrayList<>();
+    private final List<Integer> conflicts = new ArrayList<>();
+    private final List<Integer> changedByThem = new ArrayList<>();
+
+    public ThreeWayMerge(List<String> labels, List<String> base, List<String> mine, List<String> theirs) {
+        this.labels = labels;
+        this.mine = mine;
+        this.theirs = theirs;
+
+        for (int i = 0; i < labels.size(); i++) {
+            boolean mineChanged = !Objects.equals(base.get(i), mine.get(i));
+            boolean theirsChanged = !Objects.equals(base.get(i), theirs.get(i));
+            if (theirsChanged) {
+                changedByThem.add(i);
+            }
+
+            if (mineChanged && theirsChanged && !Objects.equals(mine.get(i), theirs.get(i))) {
+                conflicts.add(i);
+                merged.add(theirs.get(i));
+            } else {
+                merged.add(mineChanged ? mine.get(i) : theirs.get(i));
+            }
+        }
+    }
+
+    public String getLabel(int field) {
+        return labels.get(field);
+    }
+
+    public String getMine(int field) {
+        return mine.get(field);
+    }
+
+    public String getTheirs(int field) {
+        return theirs.get(field);
+    }
+
+    public int size() {
+        return labels.size();
+    }
+
+    // The fields both sides changed differently.
+    public List<Integer> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    // The fields the other save changed, whether or not they conflict.
+    public List<Integer> getChangedByThem() {
+        return Collections.unmodifiableList(changedByThem);
+    }
+
+    public boolean isConflict(int field) {
+        return conflicts.contains(field);
+    }
+
+    // Settle a conflicting field on the value given.
+    public void resolve(int field, String value) {
+        merged.set(field, value);
+    }
+
+    public List<String> getMerged() {
+        return Collections.unmodifiableList(merged);
+    }
+}
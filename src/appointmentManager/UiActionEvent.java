@@ -0,0 +1,76 @@
+package appointmentManager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A Flight Recorder event spanning one of the main form's handlers: paging the calendar, saving an appointment or
+// customer, and opening or running a report. DAO calls made by the handler show up inside it as DaoCall events.
+//
+//     UiActionEvent event = UiActionEvent.begin("pageNext", currentUser.getId());
+//     ...
+//     event.finish(startDate, endDate, rows);
+//
+// With recording off, finish() does nothing beyond the shouldCommit() check.
+@Name("appointmentManager.UiAction")
+@Label("UI Action")
+@Category({"Appointment Manager", "UI"})
+@Description("A main form handler running on the JavaFX application thread")
+@StackTrace(false)
+public class UiActionEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("User Id")
+    int userId;
+
+    @Label("Range")
+    @Description("The length of the date or time range the action covered, if any")
+    @Timespan(Timespan.SECONDS)
+    long range;
+
+    @Label("Rows")
+    long rows;
+
+    public static UiActionEvent begin(String action, int userId) {
+        UiActionEvent event = new UiActionEvent();
+        event.action = action;
+        event.userId = userId;
+        event.begin();
+        return event;
+    }
+
+    // For actions over a range of days, inclusive of the last.
+    public void finish(LocalDate start, LocalDate end, long rows) {
+        end();
+        if (shouldCommit()) {
+            this.range = Duration.between(start.atStartOfDay(), end.plusDays(1).atStartOfDay()).getSeconds();
+            this.rows = rows;
+            commit();
+        }
+    }
+
+    public void finish(LocalDateTime start, LocalDateTime end, long rows) {
+        end();
+        if (shouldCommit()) {
+            this.range = Duration.between(start, end).getSeconds();
+            this.rows = rows;
+            commit();
+        }
+    }
+
+    public void finish(long rows) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            commit();
+        }
+    }
+}
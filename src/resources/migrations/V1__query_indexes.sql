@@ -0,0 +1,21 @@
+-- Indexes for the predicates the DAO filters and joins on.
+
+-- TEXT columns can only be indexed by prefix in MySQL, and a contact is a name.
+ALTER TABLE appointment MODIFY contact VARCHAR(255) NOT NULL;
+
+-- getAppointmentsInRange, checkForOverlappingAppointment, checkForUpcomingAppointment and getConsultantReport.
+CREATE INDEX idx_appointment_user_start ON appointment (userId, start);
+
+-- getContactReport and getUniqueContacts.
+CREATE INDEX idx_appointment_contact ON appointment (contact);
+
+-- The customer lookup inside insertAppointment and updateAppointment.
+CREATE INDEX idx_customer_name ON customer (customerName);
+
+-- checkUser and getConsultantReport.
+CREATE INDEX idx_user_name ON user (userName);
+
+-- The lookup-or-insert chain behind the customer form.
+CREATE INDEX idx_address_lookup ON address (address, address2, cityId, postalCode, phone);
+CREATE INDEX idx_city_name ON city (city);
+CREATE INDEX idx_country_name ON country (country);
@@ -0,0 +1,5 @@
+-- The Appointments By Type report counts the current month's appointments. Filtering on MONTH(start) can't use an
+-- index, so the year and month are kept in a generated column (yyyymm) that can.
+ALTER TABLE appointment ADD COLUMN startYearMonth INT AS (YEAR(start) * 100 + MONTH(start));
+
+CREATE INDEX idx_appointment_start_year_month ON appointment (startYearMonth);
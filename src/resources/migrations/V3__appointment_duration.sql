@@ -0,0 +1,6 @@
+-- The length of every appointment, so the longest one can be read straight off an index. Range and overlap queries
+-- use it to put a lower bound on start, which turns "start < windowEnd AND end > windowStart" into a bounded range scan
+-- of the (userId, start) index.
+ALTER TABLE appointment ADD COLUMN durationMinutes INT AS (TIMESTAMPDIFF(MINUTE, start, end));
+
+CREATE INDEX idx_appointment_duration ON appointment (durationMinutes);
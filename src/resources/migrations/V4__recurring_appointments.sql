@@ -0,0 +1,22 @@
+-- Recurring series. A series is a single appointment row holding its first occurrence, its repeat rule (an RRULE
+-- subset, see RecurrenceRule) and the zone its wall clock times are kept in. recurrenceUntil is the UTC end of its last
+-- occurrence, 9999-12-31 when it never ends, and NULL on every one-off appointment, so (userId, recurrenceUntil) finds
+-- a user's live series without touching their one-offs.
+ALTER TABLE appointment ADD COLUMN recurrence VARCHAR(255) NULL;
+
+ALTER TABLE appointment ADD COLUMN recurrenceZone VARCHAR(64) NULL;
+
+ALTER TABLE appointment ADD COLUMN recurrenceUntil DATETIME NULL;
+
+CREATE INDEX idx_appointment_series ON appointment (userId, recurrenceUntil);
+
+-- Occurrences taken out of a series, by the UTC start they would have had. An occurrence that is moved or edited on
+-- its own is one of these plus a one-off appointment.
+CREATE TABLE appointment_exception (
+    appointmentId INT NOT NULL,
+    occurrenceStart DATETIME NOT NULL,
+    createDate DATETIME NOT NULL,
+    createdBy VARCHAR(40) NOT NULL,
+    PRIMARY KEY (appointmentId, occurrenceStart),
+    FOREIGN KEY (appointmentId) REFERENCES appointment (appointmentId) ON DELETE CASCADE
+);
@@ -0,0 +1,8 @@
+-- Availability searches read every consultant's appointments for a range of days at once. An IN list of users can't
+-- be range scanned on (userId, start) by every database, so these queries go by time alone and drop the users that
+-- weren't asked for afterwards.
+CREATE INDEX idx_appointment_start ON appointment (start);
+
+CREATE INDEX idx_appointment_until ON appointment (recurrenceUntil);
+
+CREATE INDEX idx_appointment_exception_start ON appointment_exception (occurrenceStart);
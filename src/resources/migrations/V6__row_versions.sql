@@ -0,0 +1,7 @@
+-- Optimistic concurrency for the edit forms. Every update of an appointment or a customer adds one to its version
+-- and only applies WHERE version = the version the form was opened with, so a form that was edited from a stale
+-- copy finds no row to update instead of overwriting whoever saved in between. Nothing is locked while a form is open.
+-- A customer's version stands for the whole form: its row and the address, city and country rows it is shown with.
+ALTER TABLE appointment ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+ALTER TABLE customer ADD COLUMN version INT NOT NULL DEFAULT 0;